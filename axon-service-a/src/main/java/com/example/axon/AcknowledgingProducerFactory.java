@@ -0,0 +1,142 @@
+package com.example.axon;
+
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.axonframework.extensions.kafka.eventhandling.producer.ConfirmationMode;
+import org.axonframework.extensions.kafka.eventhandling.producer.ProducerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Producer factory for the {@link org.axonframework.extensions.kafka.eventhandling.producer.KafkaPublisher}
+ * that tells the {@link AdmissionController} when the broker acknowledged a record. The publisher sends
+ * without a callback; the producers made here add one for every record sent while an admitted request runs
+ * on the sending thread, which it does as long as the Kafka event publisher is a subscribing processor.
+ */
+class AcknowledgingProducerFactory<K, V> implements ProducerFactory<K, V> {
+    private final ProducerFactory<K, V> delegate;
+    private final AdmissionController admission;
+
+    AcknowledgingProducerFactory(ProducerFactory<K, V> delegate, AdmissionController admission) {
+        this.delegate = delegate;
+        this.admission = admission;
+    }
+
+    @Override
+    public Producer<K, V> createProducer() {
+        return new AcknowledgingProducer(delegate.createProducer());
+    }
+
+    @Override
+    public ConfirmationMode confirmationMode() {
+        return delegate.confirmationMode();
+    }
+
+    @Override
+    public void shutDown() {
+        delegate.shutDown();
+    }
+
+    private final class AcknowledgingProducer implements Producer<K, V> {
+        private final Producer<K, V> producer;
+
+        AcknowledgingProducer(Producer<K, V> producer) {
+            this.producer = producer;
+        }
+
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<K, V> record) {
+            return send(record, null);
+        }
+
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+            Consumer<Exception> acknowledged = admission.holdUntilAcknowledged();
+            if (acknowledged == null) {
+                return producer.send(record, callback);
+            }
+            try {
+                return producer.send(record, (metadata, failure) -> {
+                    acknowledged.accept(failure);
+                    if (callback != null) {
+                        callback.onCompletion(metadata, failure);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Thrown before the record was queued, so no callback will come
+                acknowledged.accept(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public void initTransactions() {
+            producer.initTransactions();
+        }
+
+        @Override
+        public void beginTransaction() {
+            producer.beginTransaction();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void sendOffsetsToTransaction(Map<TopicPartition, OffsetAndMetadata> offsets,
+                                             String consumerGroupId) {
+            producer.sendOffsetsToTransaction(offsets, consumerGroupId);
+        }
+
+        @Override
+        public void sendOffsetsToTransaction(Map<TopicPartition, OffsetAndMetadata> offsets,
+                                             ConsumerGroupMetadata groupMetadata) {
+            producer.sendOffsetsToTransaction(offsets, groupMetadata);
+        }
+
+        @Override
+        public void commitTransaction() {
+            producer.commitTransaction();
+        }
+
+        @Override
+        public void abortTransaction() {
+            producer.abortTransaction();
+        }
+
+        @Override
+        public void flush() {
+            producer.flush();
+        }
+
+        @Override
+        public List<PartitionInfo> partitionsFor(String topic) {
+            return producer.partitionsFor(topic);
+        }
+
+        @Override
+        public Map<MetricName, ? extends Metric> metrics() {
+            return producer.metrics();
+        }
+
+        @Override
+        public void close() {
+            producer.close();
+        }
+
+        @Override
+        public void close(Duration timeout) {
+            producer.close(timeout);
+        }
+    }
+}
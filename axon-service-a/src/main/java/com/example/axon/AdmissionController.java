@@ -0,0 +1,251 @@
+package com.example.axon;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Limits how many {@code /emit-event} requests publish at once, so overload turns into fast rejections
+ * instead of exhausted Tomcat threads, a full producer buffer and a full heap.
+ * <p>
+ * The limit adapts to publish latency (AIMD), measured from admission until the broker acknowledged the
+ * request's records, as {@link AcknowledgingProducerFactory} reports it. A request counts against the limit
+ * until then, so records the producer still buffers are in flight too. The lowest latency seen recently is
+ * taken as the unloaded baseline; a sample above {@code tolerance} times that baseline, or a failed publish,
+ * shrinks the limit by {@code backoff}, and a fast sample while the limit is at least half used grows it by
+ * one. The baseline is forgotten every {@code probe-interval} samples so it follows a broker that got slower
+ * for good.
+ * <p>
+ * Priority classes get a share of the limit: bulk requests are shed first, at half the limit, normal ones
+ * at 90%, and critical ones only when the whole limit is in use. A request over its class share gets 429;
+ * one arriving when the limit is exhausted gets 503. Both come with a Retry-After.
+ */
+@Component
+class AdmissionController {
+    static final String PRIORITY_HEADER = "X-Priority";
+
+    enum Priority {
+        CRITICAL(1.0), NORMAL(0.9), BULK(0.5);
+
+        final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+
+        static Priority parse(String value) {
+            if (value == null || value.isBlank()) {
+                return NORMAL;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return NORMAL;
+            }
+        }
+    }
+
+    /**
+     * Thrown instead of running a request; carries the HTTP status and Retry-After to answer with.
+     */
+    static final class Rejected extends RuntimeException {
+        final int status;
+        final long retryAfterSeconds;
+
+        Rejected(int status, long retryAfterSeconds, String message) {
+            super(message, null, false, false);
+            this.status = status;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoff;
+    private final int probeInterval;
+    private final long retryAfterSeconds;
+    private final LongSupplier nanoTime;
+    private final Map<Priority, AtomicLong> rejected = new EnumMap<>(Priority.class);
+    private final AtomicLong admitted = new AtomicLong();
+    private final ThreadLocal<Permit> current = new ThreadLocal<>();
+
+    // Guarded by this
+    private double limit;
+    private int inFlight;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long samples;
+
+    @Autowired
+    AdmissionController(@Value("${events.admission.enabled:false}") boolean enabled,
+                        @Value("${events.admission.initial-limit:20}") int initialLimit,
+                        @Value("${events.admission.min-limit:2}") int minLimit,
+                        @Value("${events.admission.max-limit:200}") int maxLimit,
+                        @Value("${events.admission.tolerance:2.0}") double tolerance,
+                        @Value("${events.admission.backoff:0.9}") double backoff,
+                        @Value("${events.admission.probe-interval:1000}") int probeInterval,
+                        @Value("${events.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        this(enabled, initialLimit, minLimit, maxLimit, tolerance, backoff, probeInterval, retryAfterSeconds,
+             System::nanoTime);
+    }
+
+    AdmissionController(boolean enabled, int initialLimit, int minLimit, int maxLimit, double tolerance,
+                        double backoff, int probeInterval, long retryAfterSeconds, LongSupplier nanoTime) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Admission limits must satisfy 1 <= min <= initial <= max: "
+                                                       + minLimit + ", " + initialLimit + ", " + maxLimit);
+        }
+        this.enabled = enabled;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoff = backoff;
+        this.probeInterval = probeInterval;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.nanoTime = nanoTime;
+        for (Priority priority : Priority.values()) {
+            rejected.put(priority, new AtomicLong());
+        }
+    }
+
+    /**
+     * Runs {@code request} if {@code priority} still has room under the limit, otherwise throws
+     * {@link Rejected} without waiting. The request keeps its place under the limit until it has returned and
+     * every record it sent has been acknowledged, and its latency sample spans both.
+     */
+    <T> T execute(Priority priority, Supplier<T> request) {
+        if (!enabled) {
+            return request.get();
+        }
+        acquire(priority);
+        Permit permit = new Permit(nanoTime.getAsLong());
+        Permit outer = current.get();
+        current.set(permit);
+        boolean failed = true;
+        try {
+            T result = request.get();
+            failed = false;
+            return result;
+        } finally {
+            restore(outer);
+            permit.release(failed);
+        }
+    }
+
+    /**
+     * Called as the request running on this thread hands a record to the producer: its permit is held until
+     * the returned listener hears the record was acknowledged, or failed if it is given an exception. Returns
+     * {@code null} when no admitted request is running on this thread.
+     */
+    Consumer<Exception> holdUntilAcknowledged() {
+        Permit permit = current.get();
+        if (permit == null) {
+            return null;
+        }
+        permit.holds.incrementAndGet();
+        AtomicBoolean acknowledged = new AtomicBoolean();
+        return failure -> {
+            if (acknowledged.compareAndSet(false, true)) {
+                permit.release(failure != null);
+            }
+        };
+    }
+
+    private void restore(Permit outer) {
+        if (outer == null) {
+            current.remove();
+        } else {
+            current.set(outer);
+        }
+    }
+
+    private synchronized void acquire(Priority priority) {
+        int allowed = Math.max(1, (int) (limit * priority.share));
+        if (inFlight < allowed) {
+            inFlight++;
+            admitted.incrementAndGet();
+            return;
+        }
+        rejected.get(priority).incrementAndGet();
+        if (inFlight >= (int) limit) {
+            throw new Rejected(503, retryAfterSeconds, "Service A is at its publish limit of " + (int) limit);
+        }
+        throw new Rejected(429, retryAfterSeconds, priority + " requests are being shed at " + inFlight
+                + " of " + (int) limit + " in flight");
+    }
+
+    private synchronized void release(long latencyNanos, boolean failed) {
+        if (++samples % probeInterval == 0) {
+            // Forget the baseline now and then, so it follows a broker that is lastingly slower or faster
+            baselineNanos = latencyNanos;
+        }
+        baselineNanos = Math.min(baselineNanos, latencyNanos);
+        if (failed || latencyNanos > baselineNanos * tolerance) {
+            limit = Math.max(minLimit, limit * backoff);
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        inFlight--;
+    }
+
+    /**
+     * A request's place under the limit. It is held by the request itself and by each of its records the
+     * producer has not acknowledged yet; the last of them to let go releases it.
+     */
+    private final class Permit {
+        final long start;
+        final AtomicInteger holds = new AtomicInteger(1);
+        volatile boolean failed;
+
+        Permit(long start) {
+            this.start = start;
+        }
+
+        void release(boolean failure) {
+            if (failure) {
+                failed = true;
+            }
+            if (holds.decrementAndGet() == 0) {
+                AdmissionController.this.release(nanoTime.getAsLong() - start, failed);
+            }
+        }
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    long retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    synchronized Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("enabled", enabled);
+        description.put("limit", (int) limit);
+        description.put("inFlight", inFlight);
+        description.put("baselineMicros", baselineNanos == Long.MAX_VALUE ? null : baselineNanos / 1000);
+        description.put("admitted", admitted.get());
+        Map<String, Long> rejections = new LinkedHashMap<>();
+        rejected.forEach((priority, count) -> rejections.put(priority.name().toLowerCase(Locale.ROOT), count.get()));
+        description.put("rejected", rejections);
+        return description;
+    }
+}
@@ -2,31 +2,80 @@ package com.example.axon;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.web.bind.annotation.*;
-import org.axonframework.eventhandling.gateway.EventGateway;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 
 /**
  * Hello world!
  *
  */
 @SpringBootApplication
-@RestController
 public class App 
 {
-    @Autowired
-    private EventGateway eventGateway;
-
     public static void main( String[] args )
     {
         SpringApplication.run(App.class, args);
     }
+}
+
+/**
+ * Blocking {@code /emit-event} endpoints; the {@code reactive} build serves the same paths from
+ * {@code ReactiveEmitEventController} instead.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class EmitEventController {
+    @Autowired
+    private EventEmitter emitter;
+
+    @Autowired
+    private org.springframework.beans.factory.ObjectProvider<BinaryIngestServer> binaryIngest;
+
+    @Autowired
+    private ShutdownDrain shutdownDrain;
 
     @PostMapping("/emit-event")
-    public String emitEvent(@RequestBody String payload) {
-        // Send event to Axon via EventGateway
-        eventGateway.publish(new TestEvent(payload));
-        return "Event emitted: " + payload;
+    public ResponseEntity<String> emitEvent(@RequestBody String payload,
+                                            @RequestHeader(value = "X-Event-Key", required = false) String key,
+                                            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                            @RequestHeader(value = AdmissionController.PRIORITY_HEADER, required = false) String priority) {
+        try {
+            return ResponseEntity.ok(emitter.emit(payload, key, idempotencyKey,
+                                                  AdmissionController.Priority.parse(priority)));
+        } catch (AdmissionController.Rejected e) {
+            return ResponseEntity.status(e.status)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(e.retryAfterSeconds))
+                    .body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/emit-event/dedup")
+    public java.util.Map<String, Object> dedupWindow() {
+        return emitter.duplicateWindow().describe();
+    }
+
+    @GetMapping("/emit-event/admission")
+    public java.util.Map<String, Object> admission() {
+        return emitter.admission().describe();
+    }
+
+    @GetMapping("/emit-event/sequencing")
+    public java.util.Map<String, Object> sequencing() {
+        return emitter.sequencer().describe();
+    }
+
+    @GetMapping("/emit-event/ingest")
+    public java.util.Map<String, Object> binaryIngest() {
+        BinaryIngestServer server = binaryIngest.getIfAvailable();
+        return server == null ? java.util.Map.of("enabled", false) : server.describe();
+    }
+
+    @GetMapping("/emit-event/drain")
+    public java.util.Map<String, Object> shutdownDrain() {
+        return shutdownDrain.describe();
     }
 }
 
@@ -0,0 +1,125 @@
+package com.example.axon;
+
+import com.example.axon.BinaryIngestProtocol.Ack;
+import com.example.axon.BinaryIngestProtocol.Batch;
+import com.example.axon.BinaryIngestProtocol.Event;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Client for {@link BinaryIngestServer}, for internal producers sending at high rates.
+ * <p>
+ * {@link #send} writes a batch and returns at once with a future for its ack, so many batches are on the
+ * wire at the same time; it only blocks while {@code maxInFlight} batches are unacknowledged. A reader
+ * thread completes the futures as acks arrive, in the order the batches were sent. When the connection
+ * breaks, or the client is closed, the batches still waiting for acks complete exceptionally.
+ */
+class BinaryIngestClient implements AutoCloseable {
+    private final Socket socket;
+    private final OutputStream out;
+    private final DataInputStream in;
+    private final Semaphore inFlight;
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final Thread reader;
+    private int nextBatchId;
+    private volatile IOException failure;
+
+    BinaryIngestClient(String host, int port, int maxInFlight) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        inFlight = new Semaphore(maxInFlight);
+        reader = new Thread(this::readAcks, "binary-ingest-client-" + port);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Sends {@code events} as one batch; the future completes with the server's ack.
+     */
+    CompletableFuture<Ack> send(AdmissionController.Priority priority, List<Event> events)
+            throws IOException, InterruptedException {
+        inFlight.acquire();
+        CompletableFuture<Ack> ack = new CompletableFuture<>();
+        synchronized (this) {
+            if (failure != null) {
+                inFlight.release();
+                throw failure;
+            }
+            ByteBuffer frame = BinaryIngestProtocol.encodeBatch(new Batch(nextBatchId, priority, events));
+            pending.add(new Pending(nextBatchId++, ack));
+            out.write(frame.array(), 0, frame.limit());
+            out.flush();
+        }
+        return ack;
+    }
+
+    private void readAcks() {
+        byte[] frame = new byte[BinaryIngestProtocol.ACK_BYTES];
+        try {
+            while (true) {
+                in.readFully(frame);
+                Ack ack = BinaryIngestProtocol.decodeAck(ByteBuffer.wrap(frame));
+                Pending next = pending.poll();
+                if (next == null || (ack.batchId != next.batchId && ack.status != BinaryIngestProtocol.MALFORMED)) {
+                    throw new IOException("Unexpected ack " + ack);
+                }
+                inFlight.release();
+                next.ack.complete(ack);
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e instanceof IOException ? (IOException) e : new IOException(e));
+        }
+    }
+
+    private void fail(IOException e) {
+        try {
+            // Closed first: this also ends a send blocked on a full socket, which holds the lock below
+            socket.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+        synchronized (this) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        Pending next;
+        while ((next = pending.poll()) != null) {
+            inFlight.release();
+            next.ack.completeExceptionally(failure);
+        }
+    }
+
+    @Override
+    public void close() {
+        fail(new IOException("Client closed"));
+        try {
+            reader.join(1_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Pending {
+        final int batchId;
+        final CompletableFuture<Ack> ack;
+
+        Pending(int batchId, CompletableFuture<Ack> ack) {
+            this.batchId = batchId;
+            this.ack = ack;
+        }
+    }
+}
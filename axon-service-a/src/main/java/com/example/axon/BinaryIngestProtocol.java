@@ -0,0 +1,182 @@
+package com.example.axon;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format of the binary ingest listener, shared by {@link BinaryIngestServer} and
+ * {@link BinaryIngestClient}. All integers are big-endian and every frame starts with an int length
+ * counting the bytes after it.
+ * <pre>
+ * batch: int length, int batchId, byte priority, short count, count x (short keyLength, key, int payloadLength, payload)
+ * ack:   int length (13), int batchId, byte status, int emitted, int retryAfterSeconds
+ * </pre>
+ * Strings are UTF-8 and a length of -1 stands for {@code null}. A connection carries any number of batches
+ * without waiting for their acks; acks come back in batch order. {@code emitted} counts the leading events
+ * of the batch that were published, so after {@link #REJECTED} or {@link #FAILED} the client resends the
+ * rest. {@link #MALFORMED} is the last frame on a connection.
+ */
+final class BinaryIngestProtocol {
+    static final byte OK = 0;
+    static final byte REJECTED = 1;
+    static final byte FAILED = 2;
+    static final byte MALFORMED = 3;
+    static final int ACK_BYTES = 4 + 13;
+    static final int BATCH_HEADER = 4 + 4 + 1 + 2;
+    static final int MAX_EVENTS = 0xFFFF;
+
+    private static final AdmissionController.Priority[] PRIORITIES = AdmissionController.Priority.values();
+
+    private BinaryIngestProtocol() {
+    }
+
+    static final class Event {
+        final String key;
+        final String payload;
+
+        Event(String key, String payload) {
+            this.key = key;
+            this.payload = payload;
+        }
+    }
+
+    static final class Batch {
+        final int batchId;
+        final AdmissionController.Priority priority;
+        final List<Event> events;
+
+        Batch(int batchId, AdmissionController.Priority priority, List<Event> events) {
+            this.batchId = batchId;
+            this.priority = priority;
+            this.events = events;
+        }
+    }
+
+    static final class Ack {
+        final int batchId;
+        final byte status;
+        final int emitted;
+        final int retryAfterSeconds;
+
+        Ack(int batchId, byte status, int emitted, int retryAfterSeconds) {
+            this.batchId = batchId;
+            this.status = status;
+            this.emitted = emitted;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        boolean ok() {
+            return status == OK;
+        }
+
+        @Override
+        public String toString() {
+            return "Ack{batch=" + batchId + ", status=" + status + ", emitted=" + emitted
+                    + ", retryAfter=" + retryAfterSeconds + "s}";
+        }
+    }
+
+    /**
+     * Encodes {@code batch} as a complete frame, length prefix included, ready to be written.
+     */
+    static ByteBuffer encodeBatch(Batch batch) {
+        if (batch.events.size() > MAX_EVENTS) {
+            throw new IllegalArgumentException("A batch holds at most " + MAX_EVENTS + " events: " + batch.events.size());
+        }
+        List<byte[]> strings = new ArrayList<>(batch.events.size() * 2);
+        int length = BATCH_HEADER - 4;
+        for (Event event : batch.events) {
+            byte[] key = bytes(event.key);
+            byte[] payload = bytes(event.payload);
+            if (key != null && key.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Key of " + key.length + " bytes is too long");
+            }
+            strings.add(key);
+            strings.add(payload);
+            length += 2 + (key == null ? 0 : key.length) + 4 + (payload == null ? 0 : payload.length);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(4 + length);
+        frame.putInt(length).putInt(batch.batchId).put((byte) batch.priority.ordinal())
+                .putShort((short) batch.events.size());
+        for (int i = 0; i < strings.size(); i += 2) {
+            putBytes(frame, strings.get(i), true);
+            putBytes(frame, strings.get(i + 1), false);
+        }
+        return frame.flip();
+    }
+
+    /**
+     * Decodes the body of a batch frame, i.e. the bytes after its length prefix.
+     *
+     * @throws IllegalArgumentException if the frame is not a well-formed batch
+     */
+    static Batch decodeBatch(ByteBuffer frame) {
+        try {
+            int batchId = frame.getInt();
+            int priority = frame.get();
+            if (priority < 0 || priority >= PRIORITIES.length) {
+                throw new IllegalArgumentException("Unknown priority " + priority);
+            }
+            int count = frame.getShort() & 0xFFFF;
+            List<Event> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String key = string(frame, frame.getShort());
+                events.add(new Event(key, string(frame, frame.getInt())));
+            }
+            if (frame.hasRemaining()) {
+                throw new IllegalArgumentException(frame.remaining() + " bytes after the last event");
+            }
+            return new Batch(batchId, PRIORITIES[priority], events);
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            throw new IllegalArgumentException("Truncated batch frame", e);
+        }
+    }
+
+    static void encodeAck(ByteBuffer out, Ack ack) {
+        out.putInt(ACK_BYTES - 4).putInt(ack.batchId).put(ack.status).putInt(ack.emitted).putInt(ack.retryAfterSeconds);
+    }
+
+    /**
+     * Decodes an ack frame, length prefix included.
+     */
+    static Ack decodeAck(ByteBuffer frame) {
+        int length = frame.getInt();
+        if (length != ACK_BYTES - 4) {
+            throw new IllegalArgumentException("Not an ack frame: length " + length);
+        }
+        return new Ack(frame.getInt(), frame.get(), frame.getInt(), frame.getInt());
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes, boolean shortLength) {
+        int length = bytes == null ? -1 : bytes.length;
+        if (shortLength) {
+            buffer.putShort((short) length);
+        } else {
+            buffer.putInt(length);
+        }
+        if (bytes != null) {
+            buffer.put(bytes);
+        }
+    }
+
+    private static String string(ByteBuffer buffer, int length) {
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("String of " + length + " bytes with " + buffer.remaining() + " left");
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
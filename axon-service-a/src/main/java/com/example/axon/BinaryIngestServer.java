@@ -0,0 +1,303 @@
+package com.example.axon;
+
+import com.example.axon.BinaryIngestProtocol.Ack;
+import com.example.axon.BinaryIngestProtocol.Batch;
+import com.example.axon.BinaryIngestProtocol.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Framed binary ingest for internal high-rate producers, next to {@code /emit-event}: length-prefixed
+ * batches over plain TCP (see {@link BinaryIngestProtocol}), published through the same
+ * {@link EventEmitter} as the HTTP endpoints.
+ * <p>
+ * One acceptor thread hands connections round-robin to a fixed set of NIO loops. A loop reads whatever
+ * frames have arrived, publishes their events in order and answers each batch with an ack, all on its own
+ * thread; a client may send many batches before the first ack. While a connection's acks cannot be
+ * written, the loop stops reading from it, so a client that does not read its acks is slowed down rather
+ * than buffered for.
+ */
+class BinaryIngestServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(BinaryIngestServer.class);
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private final EventEmitter emitter;
+    private final int maxFrameBytes;
+    private final ServerSocketChannel server;
+    private final List<Loop> loops = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong rejectedBatches = new AtomicLong();
+    private volatile boolean running = true;
+
+    BinaryIngestServer(EventEmitter emitter, int port, int maxFrameBytes, int loopCount) {
+        this.emitter = emitter;
+        this.maxFrameBytes = maxFrameBytes;
+        try {
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(port));
+            for (int i = 0; i < loopCount; i++) {
+                loops.add(new Loop(Selector.open()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open binary ingest listener on port " + port, e);
+        }
+        start("binary-ingest-accept", this::accept);
+        for (int i = 0; i < loops.size(); i++) {
+            start("binary-ingest-" + i, loops.get(i));
+        }
+        logger.info("Binary ingest listening on port {} with {} loops", port(), loopCount);
+    }
+
+    private void start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        threads.add(thread);
+    }
+
+    int port() {
+        return server.socket().getLocalPort();
+    }
+
+    private void accept() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = server.accept();
+                connections.incrementAndGet();
+                loops.get(next++ % loops.size()).register(channel);
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Binary ingest accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("port", port());
+        description.put("loops", loops.size());
+        description.put("connections", connections.get());
+        description.put("batches", batches.get());
+        description.put("events", events.get());
+        description.put("rejectedBatches", rejectedBatches.get());
+        return description;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close binary ingest listener: {}", e.getMessage());
+        }
+        for (Loop loop : loops) {
+            loop.close();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private final class Loop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+        private Loop(Selector selector) {
+            this.selector = selector;
+        }
+
+        private void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = pending.poll()) != null) {
+                        open(channel);
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read();
+                            }
+                        } catch (IOException e) {
+                            logger.debug("Binary ingest connection closed: {}", e.getMessage());
+                            connection.close();
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    logger.error("Binary ingest loop stopped", e);
+                }
+            }
+        }
+
+        private void open(SocketChannel channel) {
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(channel, key));
+            } catch (IOException e) {
+                logger.warn("Unable to register binary ingest connection: {}", e.getMessage());
+                closeQuietly(channel);
+            }
+        }
+
+        private void close() {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close binary ingest selector: {}", e.getMessage());
+            }
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER);
+        private ByteBuffer out = ByteBuffer.allocate(BinaryIngestProtocol.ACK_BYTES * 64);
+        private boolean closing;
+
+        private Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        private void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            while (!closing && in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < BinaryIngestProtocol.BATCH_HEADER - 4 || length > maxFrameBytes) {
+                    logger.warn("Binary ingest frame of {} bytes from {} rejected", length, channel.getRemoteAddress());
+                    ack(new Ack(-1, BinaryIngestProtocol.MALFORMED, 0, 0));
+                    closing = true;
+                    break;
+                }
+                if (in.remaining() < 4 + length) {
+                    if (in.capacity() < 4 + length) {
+                        in = ByteBuffer.allocate(4 + length).put(in).flip();
+                    }
+                    break;
+                }
+                ByteBuffer frame = in.slice(in.position() + 4, length);
+                in.position(in.position() + 4 + length);
+                ack(handle(frame));
+            }
+            in.compact();
+            flush();
+        }
+
+        private Ack handle(ByteBuffer frame) {
+            Batch batch;
+            try {
+                batch = BinaryIngestProtocol.decodeBatch(frame);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Malformed binary ingest batch: {}", e.getMessage());
+                closing = true;
+                return new Ack(frame.getInt(0), BinaryIngestProtocol.MALFORMED, 0, 0);
+            }
+            batches.incrementAndGet();
+            int emitted = 0;
+            try {
+                for (Event event : batch.events) {
+                    emitter.emit(event.payload, event.key, null, batch.priority);
+                    emitted++;
+                }
+                return new Ack(batch.batchId, BinaryIngestProtocol.OK, emitted, 0);
+            } catch (AdmissionController.Rejected e) {
+                rejectedBatches.incrementAndGet();
+                return new Ack(batch.batchId, BinaryIngestProtocol.REJECTED, emitted, (int) e.retryAfterSeconds);
+            } catch (RuntimeException e) {
+                logger.error("Publishing binary ingest batch {} failed after {} events", batch.batchId, emitted, e);
+                return new Ack(batch.batchId, BinaryIngestProtocol.FAILED, emitted, 0);
+            } finally {
+                events.addAndGet(emitted);
+            }
+        }
+
+        private void ack(Ack ack) {
+            if (out.remaining() < BinaryIngestProtocol.ACK_BYTES) {
+                out = ByteBuffer.allocate(out.capacity() * 2).put(out.flip());
+            }
+            BinaryIngestProtocol.encodeAck(out, ack);
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            boolean flushed = !out.hasRemaining();
+            out.compact();
+            if (flushed && closing) {
+                close();
+            } else if (key.isValid()) {
+                // Unwritten acks: stop reading until the client takes them
+                key.interestOps(flushed ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void close() {
+            key.cancel();
+            closeQuietly(channel);
+        }
+    }
+
+    private static void closeQuietly(java.nio.channels.Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing left to do with it
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.axon;
+
+/**
+ * Content-addressed storage for payloads too large to travel on {@code Axon.Events}. The reference returned
+ * by {@link #put} is derived from the content, so storing the same bytes twice yields the same reference
+ * and consumers can verify what they read.
+ */
+interface BlobStore {
+
+    /**
+     * Stores {@code content} unless it is already present and returns its reference,
+     * {@code sha256:<hex digest>}.
+     */
+    String put(byte[] content);
+}
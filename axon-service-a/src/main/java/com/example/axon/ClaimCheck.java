@@ -0,0 +1,78 @@
+package com.example.axon;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps large payloads off {@code Axon.Events}: a payload above the threshold is stored in the
+ * {@link BlobStore} and the event carries only its reference. The reference and the payload size travel
+ * as string metadata ({@link #REFERENCE}, {@link #SIZE}); the event's own payload is the reference too, so
+ * a consumer that does not resolve claim checks still sees a stable, distinct value per content.
+ */
+@Component
+class ClaimCheck {
+    private static final Logger logger = LoggerFactory.getLogger(ClaimCheck.class);
+    static final String REFERENCE = "claim-check";
+    static final String SIZE = "claim-check-bytes";
+
+    private final BlobStore blobStore;
+    private final int thresholdBytes;
+
+    @Autowired
+    ClaimCheck(@Value("${events.claim-check.enabled:false}") boolean enabled,
+               @Value("${events.claim-check.threshold-bytes:262144}") int thresholdBytes,
+               @Value("${events.claim-check.directory:${java.io.tmpdir}/axon-blobs}") String directory) {
+        this(enabled ? new FileBlobStore(Paths.get(directory)) : null, thresholdBytes);
+    }
+
+    ClaimCheck(BlobStore blobStore, int thresholdBytes) {
+        this.blobStore = blobStore;
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    /**
+     * The event to publish for {@code payload} and the metadata it needs; small payloads pass unchanged.
+     */
+    Checked checkIn(String payload) {
+        if (!mayCheckIn(payload)) {
+            return new Checked(new TestEvent(payload), Collections.emptyMap());
+        }
+        byte[] content = payload.getBytes(StandardCharsets.UTF_8);
+        if (content.length <= thresholdBytes) {
+            return new Checked(new TestEvent(payload), Collections.emptyMap());
+        }
+        String reference = blobStore.put(content);
+        logger.debug("Payload of {} bytes checked in as {}", content.length, reference);
+        Map<String, Object> metaData = new HashMap<>();
+        metaData.put(REFERENCE, reference);
+        metaData.put(SIZE, Integer.toString(content.length));
+        return new Checked(new TestEvent(reference), metaData);
+    }
+
+    /**
+     * Whether {@code payload} may be large enough to be checked in; {@code false} means it certainly is not.
+     */
+    boolean mayCheckIn(String payload) {
+        // A UTF-8 encoding takes at most three bytes per char, so short payloads skip the encoding entirely
+        return blobStore != null && payload != null && (long) payload.length() * 3 > thresholdBytes;
+    }
+
+    static final class Checked {
+        final TestEvent event;
+        final Map<String, Object> metaData;
+
+        Checked(TestEvent event, Map<String, Object> metaData) {
+            this.event = event;
+            this.metaData = metaData;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.axon;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Drops repeated {@code /emit-event} requests before they are published, so client retries do not cost a
+ * broker round trip and a consumer-side duplicate check.
+ * <p>
+ * A request is identified by its idempotency key header or, without one, by a SHA-256 hash of its
+ * payload. The first request for an identity runs and its result is remembered for the window; repeats
+ * within the window get that result back without publishing. A repeat arriving while the first is still
+ * running waits for it, or with {@link #submit} gets a future of its result. A failed request is forgotten
+ * so the client's retry publishes. The cache holds at most {@code max-entries} identities; the oldest go
+ * first, since insertion order is expiry order.
+ */
+@Component
+class DuplicateSuppressionWindow {
+    private final boolean enabled;
+    private final boolean hashPayloads;
+    private final long windowMillis;
+    private final int maxEntries;
+    private final Clock clock;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    @Autowired
+    DuplicateSuppressionWindow(@Value("${events.dedup.enabled:false}") boolean enabled,
+                               @Value("${events.dedup.hash-payloads:true}") boolean hashPayloads,
+                               @Value("${events.dedup.window-seconds:300}") long windowSeconds,
+                               @Value("${events.dedup.max-entries:100000}") int maxEntries) {
+        this(enabled, hashPayloads, Duration.ofSeconds(windowSeconds), maxEntries, Clock.systemUTC());
+    }
+
+    DuplicateSuppressionWindow(boolean enabled, boolean hashPayloads, Duration window, int maxEntries, Clock clock) {
+        this.enabled = enabled;
+        this.hashPayloads = hashPayloads;
+        this.windowMillis = window.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Runs {@code request} unless a request with the same identity ran within the window, in which case
+     * that request's result is returned instead. Waits while that request is still running.
+     */
+    String execute(String idempotencyKey, String payload, Supplier<String> request) {
+        try {
+            return submit(idempotencyKey, payload, request).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * As {@link #execute}, but never waits: a request that runs here completes the returned future before it
+     * is returned, a repeat of one still running gets a future of that request's result. Should the original
+     * fail, the repeat competes to run again on the common pool, so a caller on an event loop never blocks.
+     */
+    CompletableFuture<String> submit(String idempotencyKey, String payload, Supplier<String> request) {
+        String identity = identity(idempotencyKey, payload);
+        if (!enabled || identity == null) {
+            return CompletableFuture.completedFuture(request.get());
+        }
+        while (true) {
+            long now = clock.millis();
+            evict(now);
+            Entry entry = new Entry(identity, now + windowMillis);
+            Entry existing = entries.putIfAbsent(identity, entry);
+            if (existing == null) {
+                return CompletableFuture.completedFuture(run(entry, request));
+            }
+            if (existing.expiresAt <= now) {
+                entries.remove(identity, existing);
+                continue;
+            }
+            if (existing.result.isCompletedExceptionally()) {
+                // The original failed and was forgotten; this repeat is a retry and competes to run again
+                continue;
+            }
+            return existing.result.thenApply(original -> {
+                suppressed.incrementAndGet();
+                return original;
+            }).exceptionallyComposeAsync(failure -> submit(idempotencyKey, payload, request));
+        }
+    }
+
+    private String run(Entry entry, Supplier<String> request) {
+        insertionOrder.add(entry);
+        admitted.incrementAndGet();
+        try {
+            String result = request.get();
+            entry.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            entries.remove(entry.identity, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private String identity(String idempotencyKey, String payload) {
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            return "key:" + idempotencyKey;
+        }
+        if (!hashPayloads || payload == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(payload.getBytes(StandardCharsets.UTF_8));
+            return "sha256:" + Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void evict(long now) {
+        Entry oldest;
+        while ((oldest = insertionOrder.peek()) != null
+                && (oldest.expiresAt <= now || entries.size() >= maxEntries)) {
+            if (insertionOrder.remove(oldest)) {
+                entries.remove(oldest.identity, oldest);
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("enabled", enabled);
+        description.put("windowSeconds", windowMillis / 1000);
+        description.put("entries", entries.size());
+        description.put("maxEntries", maxEntries);
+        description.put("admitted", admitted.get());
+        description.put("suppressed", suppressed.get());
+        return description;
+    }
+
+    private static final class Entry {
+        final String identity;
+        final long expiresAt;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Entry(String identity, long expiresAt) {
+            this.identity = identity;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
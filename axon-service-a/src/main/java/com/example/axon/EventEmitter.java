@@ -0,0 +1,130 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code /emit-event} pipeline shared by the servlet and the reactive endpoints: admission control,
+ * duplicate suppression, claim check, then a sequenced publish.
+ * <p>
+ * Publishing hands the event to the Kafka producer, which sends asynchronously; nothing here waits for
+ * the broker unless the producer buffer is full. Once {@link #startDraining()} is called every new request is
+ * rejected with a 503, so shutdown only has to wait for the requests already inside.
+ */
+@Component
+class EventEmitter {
+    private final EventGateway eventGateway;
+    private final EventSequencer sequencer;
+    private final DuplicateSuppressionWindow duplicateWindow;
+    private final ClaimCheck claimCheck;
+    private final AdmissionController admission;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean draining;
+
+    EventEmitter(EventGateway eventGateway, EventSequencer sequencer, DuplicateSuppressionWindow duplicateWindow,
+                 ClaimCheck claimCheck, AdmissionController admission) {
+        this.eventGateway = eventGateway;
+        this.sequencer = sequencer;
+        this.duplicateWindow = duplicateWindow;
+        this.claimCheck = claimCheck;
+        this.admission = admission;
+    }
+
+    /**
+     * Publishes {@code payload} and returns the response text, or throws {@link AdmissionController.Rejected}
+     * when the request is shed.
+     */
+    String emit(String payload, String key, String idempotencyKey, AdmissionController.Priority priority) {
+        inFlight.incrementAndGet();
+        try {
+            checkNotDraining();
+            // Overload is shed here, before the request holds a producer buffer slot
+            return admission.execute(priority, () ->
+                    // Retries within the dedup window get the original response and are not published again
+                    duplicateWindow.execute(idempotencyKey, payload, () -> publish(payload, key)));
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * As {@link #emit}, but a repeat of a request that is still running does not wait for it: the returned
+     * future completes with the original's response. For callers on an event loop; a rejection or failure
+     * completes the future exceptionally.
+     */
+    CompletableFuture<String> emitAsync(String payload, String key, String idempotencyKey,
+                                        AdmissionController.Priority priority) {
+        inFlight.incrementAndGet();
+        CompletableFuture<String> emission;
+        try {
+            checkNotDraining();
+            emission = admission.execute(priority, () ->
+                    duplicateWindow.submit(idempotencyKey, payload, () -> publish(payload, key)));
+        } catch (RuntimeException | Error e) {
+            emission = CompletableFuture.failedFuture(e);
+        }
+        return emission.whenComplete((response, failure) -> inFlight.decrementAndGet());
+    }
+
+    private void checkNotDraining() {
+        // Checked after counting, so a drain that saw no requests inside cannot miss this one
+        if (draining) {
+            throw new AdmissionController.Rejected(503, admission.retryAfterSeconds(), "Service A is shutting down");
+        }
+    }
+
+    private String publish(String payload, String key) {
+        // Large payloads are stored aside and only their reference is published
+        ClaimCheck.Checked checked = claimCheck.checkIn(payload);
+        // Send event to Axon via EventGateway, numbered per key so consumers can verify ordering
+        sequencer.publish(key, checked.event, checked.metaData, eventGateway::publish);
+        return "Event emitted: " + payload;
+    }
+
+    /**
+     * Rejects every request from now on; requests already inside carry on.
+     */
+    void startDraining() {
+        draining = true;
+    }
+
+    /**
+     * Waits until no request is inside {@link #emit} or {@link #emitAsync} or the timeout passes, and returns
+     * how many still are.
+     */
+    int awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int remaining;
+        while ((remaining = inFlight.get()) > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        return remaining;
+    }
+
+    boolean draining() {
+        return draining;
+    }
+
+    /**
+     * Whether emitting {@code payload} may write to the blob store, i.e. do file I/O.
+     */
+    boolean mayBlock(String payload) {
+        return claimCheck.mayCheckIn(payload);
+    }
+
+    DuplicateSuppressionWindow duplicateWindow() {
+        return duplicateWindow;
+    }
+
+    AdmissionController admission() {
+        return admission;
+    }
+
+    EventSequencer sequencer() {
+        return sequencer;
+    }
+}
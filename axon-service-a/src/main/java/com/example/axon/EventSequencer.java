@@ -0,0 +1,163 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Stamps each published event with a sequence number so consumers can verify ordering.
+ * <p>
+ * The key, the number and the epoch travel as string metadata ({@link #KEY}, {@link #NUMBER}, {@link #EPOCH});
+ * Kafka headers carry metadata as strings. The epoch is the time this instance started numbering a key, so a
+ * consumer can tell a restarted sequence from a reordering. Numbering and publishing happen under a per-key
+ * lock so the numbers leave this service in order, and a number whose publish failed is handed out again
+ * instead of showing up as a gap. The key is also the Kafka record key, so a key's events share a partition.
+ * <p>
+ * At most {@code events.sequencing.max-keys} keys are numbered at a time; the least recently used idle key is
+ * dropped beyond that, and starts over under a new epoch when it comes back.
+ * <p>
+ * Requests without a key stay unkeyed, so they spread over the partitions and are handled in parallel as
+ * before. They are numbered per instance under {@link #SOURCE}, {@code events.sequencing.default-key} followed
+ * by this instance's {@link #instanceId()}, without a lock: the numbers are unique, but may leave out of order
+ * and a failed publish leaves a gap. Consumers count such events as unsequenced.
+ */
+@Component
+class EventSequencer {
+    static final String KEY = "sequence-key";
+    static final String NUMBER = "sequence-number";
+    static final String EPOCH = "sequence-epoch";
+    static final String SOURCE = "sequence-source";
+
+    private final String source;
+    private final int maxKeys;
+    private final AtomicLong lastEpoch = new AtomicLong();
+    private final String keylessEpoch = nextEpoch();
+    private final AtomicLong keyless = new AtomicLong();
+    private final Map<String, Counter> counters = new LinkedHashMap<>(16, 0.75f, true);
+    private long evicted;
+
+    EventSequencer(@Value("${events.sequencing.default-key:service-a}") String defaultKey,
+                   @Value("${events.sequencing.max-keys:100000}") int maxKeys) {
+        this.source = defaultKey + "/" + instanceId();
+        this.maxKeys = Math.max(1, maxKeys);
+    }
+
+    /**
+     * {@code <host>-<pid>}, which tells the replicas of this service apart.
+     */
+    static String instanceId() {
+        // The runtime name is pid@host on the JVMs we run on
+        String[] runtime = ManagementFactory.getRuntimeMXBean().getName().split("@", 2);
+        return runtime.length == 2 ? runtime[1] + "-" + runtime[0] : runtime[0];
+    }
+
+    /**
+     * Wraps {@code payload} in a message carrying the next sequence number for {@code key} and hands it to
+     * {@code publisher}, while holding that key's lock when there is one.
+     */
+    EventMessage<?> publish(String key, Object payload, Consumer<EventMessage<?>> publisher) {
+        return publish(key, payload, Collections.emptyMap(), publisher);
+    }
+
+    /**
+     * As {@link #publish(String, Object, Consumer)}, with {@code extraMetaData} added to the message.
+     */
+    EventMessage<?> publish(String key, Object payload, Map<String, ?> extraMetaData,
+                            Consumer<EventMessage<?>> publisher) {
+        Map<String, Object> metaData = new HashMap<>(extraMetaData);
+        if (key == null || key.isBlank()) {
+            metaData.put(SOURCE, source);
+            metaData.put(NUMBER, Long.toString(keyless.incrementAndGet()));
+            metaData.put(EPOCH, keylessEpoch);
+            EventMessage<?> message = new GenericEventMessage<>(payload, metaData);
+            publisher.accept(message);
+            return message;
+        }
+        Counter counter = acquire(key);
+        try {
+            synchronized (counter) {
+                long number = counter.last + 1;
+                metaData.put(KEY, key);
+                metaData.put(NUMBER, Long.toString(number));
+                metaData.put(EPOCH, counter.epoch);
+                EventMessage<?> message = new GenericEventMessage<>(payload, metaData);
+                publisher.accept(message);
+                counter.last = number;
+                return message;
+            }
+        } finally {
+            synchronized (counters) {
+                counter.users--;
+            }
+        }
+    }
+
+    private Counter acquire(String key) {
+        synchronized (counters) {
+            Counter counter = counters.get(key);
+            if (counter == null) {
+                counter = new Counter(nextEpoch());
+                counters.put(key, counter);
+            }
+            counter.users++;
+            if (counters.size() > maxKeys) {
+                evictIdle();
+            }
+            return counter;
+        }
+    }
+
+    /**
+     * Drops the least recently used key nobody is publishing under; a key in use keeps its place in the order.
+     */
+    private void evictIdle() {
+        Iterator<Counter> iterator = counters.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().users == 0) {
+                iterator.remove();
+                evicted++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Epochs grow strictly, so a key numbered again after eviction is seen as restarted, never as stale.
+     */
+    private String nextEpoch() {
+        long now = System.currentTimeMillis();
+        return Long.toString(lastEpoch.updateAndGet(last -> Math.max(last + 1, now)));
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        synchronized (counters) {
+            description.put("keys", counters.size());
+            description.put("maxKeys", maxKeys);
+            description.put("evicted", evicted);
+        }
+        description.put("source", source);
+        description.put("keyless", keyless.get());
+        return description;
+    }
+
+    private static final class Counter {
+        final String epoch;
+        long last;
+        int users;
+
+        Counter(String epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
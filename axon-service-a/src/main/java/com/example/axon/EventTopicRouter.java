@@ -0,0 +1,91 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.extensions.kafka.eventhandling.producer.TopicResolver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chooses the Kafka topic for each published event.
+ * <p>
+ * In order of precedence: the value of a routing metadata attribute mapped through
+ * {@code events.routing.attribute-topics}, the payload type (fully qualified or simple class name) mapped
+ * through {@code events.routing.type-topics}, and finally the default topic. Both mappings are written as
+ * {@code key:topic} pairs separated by commas. Attribute values without a mapping fall through to type
+ * routing, so callers cannot send events to arbitrary topics.
+ */
+@Component
+class EventTopicRouter implements TopicResolver {
+    private final String defaultTopic;
+    private final String routingAttribute;
+    private final Map<String, String> attributeTopics;
+    private final Map<String, String> typeTopics;
+    private final Map<Class<?>, String> topicsByType = new ConcurrentHashMap<>();
+
+    EventTopicRouter(@Value("${axon.kafka.default-topic:Axon.Events}") String defaultTopic,
+                     @Value("${events.routing.attribute:}") String routingAttribute,
+                     @Value("${events.routing.attribute-topics:}") String attributeTopics,
+                     @Value("${events.routing.type-topics:}") String typeTopics) {
+        this.defaultTopic = defaultTopic;
+        this.routingAttribute = routingAttribute;
+        this.attributeTopics = parse(attributeTopics);
+        this.typeTopics = parse(typeTopics);
+    }
+
+    @Override
+    public Optional<String> apply(EventMessage<?> event) {
+        if (!routingAttribute.isEmpty() && !attributeTopics.isEmpty()) {
+            Object value = event.getMetaData().get(routingAttribute);
+            String topic = value == null ? null : attributeTopics.get(value.toString());
+            if (topic != null) {
+                return Optional.of(topic);
+            }
+        }
+        return Optional.of(topicsByType.computeIfAbsent(event.getPayloadType(), this::topicForType));
+    }
+
+    private String topicForType(Class<?> type) {
+        String topic = typeTopics.get(type.getName());
+        if (topic == null) {
+            topic = typeTopics.get(type.getSimpleName());
+        }
+        return topic != null ? topic : defaultTopic;
+    }
+
+    /**
+     * All topics events can be routed to, for logging and topic provisioning.
+     */
+    Set<String> topics() {
+        Set<String> topics = new TreeSet<>(attributeTopics.values());
+        topics.addAll(typeTopics.values());
+        topics.add(defaultTopic);
+        return topics;
+    }
+
+    static Map<String, String> parse(String mappings) {
+        if (mappings == null || mappings.isBlank()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> parsed = new LinkedHashMap<>();
+        for (String mapping : mappings.split(",")) {
+            if (mapping.isBlank()) {
+                continue;
+            }
+            int separator = mapping.lastIndexOf(':');
+            if (separator <= 0 || separator == mapping.length() - 1) {
+                throw new IllegalArgumentException("Invalid topic mapping [" + mapping.trim()
+                                                           + "], expected <key>:<topic>");
+            }
+            parsed.put(mapping.substring(0, separator).trim(), mapping.substring(separator + 1).trim());
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.axon;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * {@link BlobStore} in a local directory, one file per blob under a two-character fan-out
+ * ({@code ab/abcdef...}). Blobs are written to a temporary file and moved into place, so a reader never
+ * sees a partial blob; a blob that already exists is not written again.
+ */
+class FileBlobStore implements BlobStore {
+    static final String SCHEME = "sha256:";
+
+    private final Path directory;
+
+    FileBlobStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public String put(byte[] content) {
+        String digest = digest(content);
+        Path target = directory.resolve(digest.substring(0, 2)).resolve(digest);
+        if (Files.exists(target)) {
+            return SCHEME + digest;
+        }
+        try {
+            Files.createDirectories(target.getParent());
+            Path temporary = Files.createTempFile(target.getParent(), digest, ".tmp");
+            try {
+                Files.write(temporary, content);
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | AtomicMoveNotSupportedException e) {
+                // Stored concurrently under the same digest, or the filesystem cannot move atomically
+                if (!Files.exists(target)) {
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to store blob " + digest + " in " + directory, e);
+        }
+        return SCHEME + digest;
+    }
+
+    static String digest(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
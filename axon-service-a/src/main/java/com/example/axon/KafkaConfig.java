@@ -1,9 +1,98 @@
 package com.example.axon;
 
-import org.springframework.context.annotation.Configuration;
+import org.axonframework.config.Configuration;
+import org.axonframework.eventhandling.EventBus;
+import org.axonframework.extensions.kafka.eventhandling.DefaultKafkaMessageConverter;
+import org.axonframework.extensions.kafka.eventhandling.KafkaMessageConverter;
+import org.axonframework.extensions.kafka.eventhandling.producer.KafkaEventPublisher;
+import org.axonframework.extensions.kafka.eventhandling.producer.KafkaPublisher;
+import org.axonframework.extensions.kafka.eventhandling.producer.ProducerFactory;
+import org.axonframework.serialization.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 
-@Configuration
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+
+@org.springframework.context.annotation.Configuration
 public class KafkaConfig {
-    // Configuration is handled by axon-kafka-spring-boot-starter
+    // Remaining configuration is handled by axon-kafka-spring-boot-starter
     // and application.properties
-}
\ No newline at end of file
+    private static final Logger logger = LoggerFactory.getLogger(KafkaConfig.class);
+
+    @Bean
+    public KafkaMessageConverter<String, byte[]> kafkaMessageConverter(@Autowired Serializer serializer) {
+        // Keys records by sequence key so each key's events share a partition and stay in order; keyless events
+        // carry none and spread over the partitions
+        return DefaultKafkaMessageConverter.builder()
+                .serializer(serializer)
+                .sequencingPolicy(event -> event.getMetaData().get(EventSequencer.KEY))
+                .build();
+    }
+
+    @Bean(destroyMethod = "shutDown")
+    @ConditionalOnProperty(name = "axon.kafka.publisher.enabled", havingValue = "true", matchIfMissing = true)
+    public KafkaPublisher<String, byte[]> kafkaPublisher(
+            @Autowired Serializer serializer,
+            @Autowired ProducerFactory<String, byte[]> producerFactory,
+            @Autowired KafkaMessageConverter<String, byte[]> messageConverter,
+            @Autowired Configuration configuration,
+            EventTopicRouter topicRouter,
+            AdmissionController admission) {
+        // Replaces the starter's publisher, which sends everything to axon.kafka.default-topic
+        logger.info("Routing events to Kafka topics {}", topicRouter.topics());
+        return KafkaPublisher.<String, byte[]>builder()
+                .serializer(serializer)
+                // Admission control measures publish latency up to the broker's acknowledgement
+                .producerFactory(new AcknowledgingProducerFactory<>(producerFactory, admission))
+                .messageConverter(messageConverter)
+                .messageMonitor(configuration.messageMonitor(KafkaPublisher.class, "kafkaPublisher"))
+                .topicResolver(topicRouter)
+                .build();
+    }
+
+    @Bean
+    static LazyInitializationExcludeFilter eagerBeans() {
+        // With spring.main.lazy-initialization (fast-startup profile) the beans that hook into publishing or
+        // open a port are still created at startup; nothing asks for them by name, so lazily they never would be
+        return LazyInitializationExcludeFilter.forBeanTypes(KafkaPublisher.class, KafkaEventPublisher.class,
+                                                            MappedQueueWriter.class, BinaryIngestServer.class);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "events.transport.queue.enabled", havingValue = "true")
+    public MappedQueueWriter mappedQueueWriter(
+            EventBus eventBus,
+            @Autowired KafkaMessageConverter<String, byte[]> messageConverter,
+            @Value("${axon.kafka.default-topic:Axon.Events}") String topic,
+            @Value("${events.transport.queue.directory:${java.io.tmpdir}/axon-event-queue}") String directory,
+            @Value("${events.transport.queue.segment-bytes:67108864}") int segmentBytes,
+            @Value("${events.transport.queue.retention-bytes:1073741824}") long retentionBytes,
+            @Value("${events.transport.queue.retention-hours:24}") long retentionHours) {
+        // Single-host transport: records are appended in the publishing thread, in the format Kafka would carry
+        MappedQueueWriter writer = new MappedQueueWriter(Paths.get(directory), segmentBytes, retentionBytes,
+                                                         Duration.ofHours(retentionHours), Clock.systemUTC());
+        eventBus.subscribe(events -> events.forEach(
+                event -> writer.append(messageConverter.createKafkaMessage(event, topic))));
+        logger.info("Appending events to the memory-mapped queue in {}", directory);
+        return writer;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "events.ingest.tcp.enabled", havingValue = "true")
+    public BinaryIngestServer binaryIngestServer(
+            EventEmitter emitter,
+            @Value("${events.ingest.tcp.port:9190}") int port,
+            @Value("${events.ingest.tcp.max-frame-bytes:4194304}") int maxFrameBytes,
+            @Value("${events.ingest.tcp.loops:0}") int loops) {
+        // Internal producers: framed batches over TCP into the same publish path as /emit-event
+        return new BinaryIngestServer(emitter, port, maxFrameBytes,
+                                      loops > 0 ? loops : Runtime.getRuntime().availableProcessors());
+    }
+}
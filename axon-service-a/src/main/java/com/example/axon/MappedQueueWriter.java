@@ -0,0 +1,265 @@
+package com.example.axon;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Single writer of the memory-mapped event queue that Service B tails when both run on one host.
+ * <p>
+ * The queue is a directory of preallocated segment files named after the position of their first record.
+ * Records start on 8-byte boundaries: an int length, an int reserved word, a long timestamp and the
+ * encoded Kafka record (key, headers, value), so Service B decodes them with the converter it uses for
+ * Kafka. The length is written last with release semantics; a reader seeing a non-zero length sees the
+ * whole record. A length of -1 means the queue continues in the next segment, which is created before
+ * the marker is written. Only one process can write: the writer holds an OS lock on {@code writer.lock}.
+ * <p>
+ * Retention runs when a segment rolls: sealed segments are deleted, oldest first, while the queue is
+ * larger than the size limit or their records are older than the age limit.
+ */
+class MappedQueueWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MappedQueueWriter.class);
+    static final String SUFFIX = ".queue";
+    static final int RECORD_HEADER = 16;
+    static final int END_OF_SEGMENT = -1;
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long retentionBytes;
+    private final Duration retention;
+    private final Clock clock;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private MappedByteBuffer segment;
+    private long segmentBase;
+    private int offset;
+    private long nextPosition;
+
+    MappedQueueWriter(Path directory, int segmentBytes, long retentionBytes, Duration retention, Clock clock) {
+        if (segmentBytes < 1024 || segmentBytes % 8 != 0) {
+            throw new IllegalArgumentException("segment-bytes must be a multiple of 8 and at least 1024: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retentionBytes = retentionBytes;
+        this.retention = retention;
+        this.clock = clock;
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve("writer.lock"),
+                                           StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = tryLock(lockChannel);
+            if (lock == null) {
+                lockChannel.close();
+                throw new IllegalStateException("Another process is writing to the event queue in " + directory);
+            }
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open event queue in " + directory, e);
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another writer in this JVM
+            return null;
+        }
+    }
+
+    /**
+     * Appends {@code record} and returns its position.
+     */
+    synchronized long append(ProducerRecord<String, byte[]> record) {
+        byte[] key = record.key() == null ? null : record.key().getBytes(StandardCharsets.UTF_8);
+        List<byte[]> headerNames = new ArrayList<>();
+        int length = 2 + (key == null ? 0 : key.length) + 2 + 4 + (record.value() == null ? 0 : record.value().length);
+        for (Header header : record.headers()) {
+            byte[] name = header.key().getBytes(StandardCharsets.UTF_8);
+            headerNames.add(name);
+            length += 2 + name.length + 4 + (header.value() == null ? 0 : header.value().length);
+        }
+        if (RECORD_HEADER + length > segmentBytes - 8) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit a queue segment");
+        }
+        if (offset + RECORD_HEADER + length > segmentBytes - 8) {
+            roll();
+        }
+        ByteBuffer body = segment.duplicate();
+        body.position(offset + 8);
+        body.putLong(clock.millis());
+        putBytes(body, key, true);
+        body.putShort((short) headerNames.size());
+        int i = 0;
+        for (Header header : record.headers()) {
+            putBytes(body, headerNames.get(i++), true);
+            putBytes(body, header.value(), false);
+        }
+        putBytes(body, record.value(), false);
+        // Publishes the record: readers poll this word with acquire semantics
+        INT.setRelease(segment, offset, length);
+        offset = align(offset + RECORD_HEADER + length);
+        return nextPosition++;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes, boolean shortLength) {
+        int length = bytes == null ? -1 : bytes.length;
+        if (shortLength) {
+            buffer.putShort((short) length);
+        } else {
+            buffer.putInt(length);
+        }
+        if (bytes != null) {
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * Writes the pages of the current segment to disk, as {@link #close()} does, without closing the queue.
+     */
+    synchronized void force() {
+        segment.force();
+    }
+
+    synchronized long nextPosition() {
+        return nextPosition;
+    }
+
+    synchronized int segmentCount() {
+        return segmentFiles().size();
+    }
+
+    private void roll() {
+        MappedByteBuffer sealed = segment;
+        int sealedOffset = offset;
+        openSegment(nextPosition);
+        INT.setRelease(sealed, sealedOffset, END_OF_SEGMENT);
+        applyRetention();
+    }
+
+    private void recover() {
+        List<Path> files = segmentFiles();
+        if (files.isEmpty()) {
+            openSegment(0);
+            return;
+        }
+        Path last = files.get(files.size() - 1);
+        openSegment(baseOf(last));
+        long position = segmentBase;
+        while (true) {
+            int length = (int) INT.getAcquire(segment, offset);
+            if (length == 0) {
+                break;
+            }
+            if (length == END_OF_SEGMENT) {
+                // Crashed between sealing this segment and writing to the next one
+                nextPosition = position;
+                openSegment(position);
+                logger.info("Event queue in {} resumes at position {}", directory, nextPosition);
+                return;
+            }
+            offset = align(offset + RECORD_HEADER + length);
+            position++;
+        }
+        nextPosition = position;
+        logger.info("Event queue in {} resumes at position {}", directory, nextPosition);
+    }
+
+    private void openSegment(long base) {
+        Path file = directory.resolve(String.format("%020d%s", base, SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map event queue segment " + file, e);
+        }
+        segmentBase = base;
+        offset = 0;
+        nextPosition = base;
+    }
+
+    private void applyRetention() {
+        List<Path> files = segmentFiles();
+        long total = (long) files.size() * segmentBytes;
+        long cutoff = clock.millis() - retention.toMillis();
+        // The newest file is the active segment; a sealed segment's records all precede the next one's first
+        for (int i = 0; i < files.size() - 1; i++) {
+            boolean tooLarge = retentionBytes > 0 && total > retentionBytes;
+            boolean tooOld = !retention.isZero() && firstTimestamp(files.get(i + 1)) < cutoff;
+            if (!tooLarge && !tooOld) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(files.get(i));
+                total -= segmentBytes;
+                logger.debug("Deleted event queue segment {}", files.get(i).getFileName());
+            } catch (IOException e) {
+                logger.warn("Unable to delete event queue segment {}: {}", files.get(i), e.getMessage());
+                break;
+            }
+        }
+    }
+
+    private long firstTimestamp(Path file) {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.read(header, 0);
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+        return header.getInt(0) > 0 ? header.getLong(8) : clock.millis();
+    }
+
+    private List<Path> segmentFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> result = new ArrayList<>();
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted().forEach(result::add);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to list event queue segments in " + directory, e);
+        }
+    }
+
+    private static long baseOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            segment.force();
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close event queue in {}: {}", directory, e.getMessage());
+        }
+    }
+}
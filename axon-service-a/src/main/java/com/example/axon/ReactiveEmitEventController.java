@@ -0,0 +1,133 @@
+package com.example.axon;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code /emit-event} on WebFlux and Netty, built with {@code -Dreactive}. A connection costs no thread
+ * while its client is slow to send or to read; the event loops only run the publish itself, which hands
+ * the event to the Kafka producer without waiting for acks. Checking in a large payload writes a file, so
+ * those requests run on a worker instead. A retry of a request that is still being published does not wait
+ * on the event loop either; it completes when the original does.
+ * <p>
+ * {@code /emit-event/batch} and {@code /emit-event/stream} take one payload per line. Lines are read as
+ * they are emitted, a few ahead at most, so a client cannot push more into the service than it publishes.
+ * A batch stops at the first shed line and reports how many went out; a stream instead waits out the
+ * Retry-After and carries on, and stops reading its request body meanwhile.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ReactiveEmitEventController {
+    private static final int PREFETCH = 32;
+
+    private final EventEmitter emitter;
+    private final ShutdownDrain shutdownDrain;
+
+    ReactiveEmitEventController(EventEmitter emitter, ShutdownDrain shutdownDrain) {
+        this.emitter = emitter;
+        this.shutdownDrain = shutdownDrain;
+    }
+
+    @PostMapping("/emit-event")
+    public Mono<ResponseEntity<String>> emitEvent(
+            @RequestBody Mono<String> payload,
+            @RequestHeader(value = "X-Event-Key", required = false) String key,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestHeader(value = AdmissionController.PRIORITY_HEADER, required = false) String priority) {
+        AdmissionController.Priority parsed = AdmissionController.Priority.parse(priority);
+        return payload.flatMap(body -> emit(body, key, idempotencyKey, parsed))
+                .map(ResponseEntity::ok)
+                .onErrorResume(AdmissionController.Rejected.class, e -> Mono.just(
+                        rejected(e).body(e.getMessage())));
+    }
+
+    @PostMapping(path = "/emit-event/batch", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public Mono<ResponseEntity<Map<String, Object>>> emitBatch(
+            @RequestBody Flux<String> payloads,
+            @RequestHeader(value = "X-Event-Key", required = false) String key,
+            @RequestHeader(value = AdmissionController.PRIORITY_HEADER, required = false) String priority) {
+        AdmissionController.Priority parsed = AdmissionController.Priority.parse(priority);
+        AtomicInteger emitted = new AtomicInteger();
+        return payloads.filter(line -> !line.isBlank())
+                .concatMap(line -> emit(line, key, null, parsed), PREFETCH)
+                .doOnNext(response -> emitted.incrementAndGet())
+                .then(Mono.fromSupplier(() -> ResponseEntity.ok(batchResult(emitted.get(), null))))
+                .onErrorResume(AdmissionController.Rejected.class, e -> Mono.just(
+                        rejected(e).body(batchResult(emitted.get(), e.getMessage()))));
+    }
+
+    @PostMapping(path = "/emit-event/stream", consumes = MediaType.TEXT_PLAIN_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> emitStream(
+            @RequestBody Flux<String> payloads,
+            @RequestHeader(value = "X-Event-Key", required = false) String key,
+            @RequestHeader(value = AdmissionController.PRIORITY_HEADER, required = false) String priority) {
+        AdmissionController.Priority parsed = AdmissionController.Priority.parse(priority);
+        return payloads.filter(line -> !line.isBlank())
+                .concatMap(line -> emit(line, key, null, parsed)
+                        .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                            if (!(signal.failure() instanceof AdmissionController.Rejected)) {
+                                return Mono.error(signal.failure());
+                            }
+                            // Shed: hold this line, and with it the rest of the body, for the Retry-After
+                            long seconds = ((AdmissionController.Rejected) signal.failure()).retryAfterSeconds;
+                            return Mono.delay(Duration.ofSeconds(seconds));
+                        })))
+                        .map(response -> Map.<String, Object>of("result", response)), PREFETCH);
+    }
+
+    @GetMapping("/emit-event/dedup")
+    public Map<String, Object> dedupWindow() {
+        return emitter.duplicateWindow().describe();
+    }
+
+    @GetMapping("/emit-event/admission")
+    public Map<String, Object> admission() {
+        return emitter.admission().describe();
+    }
+
+    @GetMapping("/emit-event/sequencing")
+    public Map<String, Object> sequencing() {
+        return emitter.sequencer().describe();
+    }
+
+    @GetMapping("/emit-event/drain")
+    public Map<String, Object> shutdownDrain() {
+        return shutdownDrain.describe();
+    }
+
+    private Mono<String> emit(String payload, String key, String idempotencyKey,
+                              AdmissionController.Priority priority) {
+        Mono<String> emission = Mono.fromFuture(() -> emitter.emitAsync(payload, key, idempotencyKey, priority));
+        return emitter.mayBlock(payload) ? emission.subscribeOn(Schedulers.boundedElastic()) : emission;
+    }
+
+    private static ResponseEntity.BodyBuilder rejected(AdmissionController.Rejected e) {
+        return ResponseEntity.status(e.status).header(HttpHeaders.RETRY_AFTER, Long.toString(e.retryAfterSeconds));
+    }
+
+    private static Map<String, Object> batchResult(int emitted, String error) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("emitted", emitted);
+        if (error != null) {
+            result.put("error", error);
+        }
+        return result;
+    }
+}
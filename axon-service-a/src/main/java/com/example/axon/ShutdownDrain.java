@@ -0,0 +1,164 @@
+package com.example.axon;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.axonframework.config.Configuration;
+import org.axonframework.extensions.kafka.eventhandling.producer.ConfirmationMode;
+import org.axonframework.extensions.kafka.eventhandling.producer.ProducerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Graceful shutdown of the publish side, within {@code events.shutdown.drain-timeout-ms}:
+ * <ol>
+ * <li>new {@code /emit-event} requests get a 503 with Retry-After and the binary ingest listener closes;</li>
+ * <li>requests already inside the {@link EventEmitter} finish;</li>
+ * <li>the Kafka producer is flushed, so records waiting in its buffer go to the broker;</li>
+ * <li>the memory-mapped queue is written to disk.</li>
+ * </ol>
+ * What did not get out before the deadline is logged and kept in {@link #describe()}: requests still inside
+ * and bytes the broker has not acknowledged yet, which the producer keeps trying to send while it closes.
+ * <p>
+ * This bean depends on the Axon configuration, so Spring stops it first: events are published while the
+ * drain waits for them.
+ */
+@Component
+class ShutdownDrain implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(ShutdownDrain.class);
+
+    private final EventEmitter emitter;
+    private final ObjectProvider<ProducerFactory<String, byte[]>> producerFactory;
+    private final ObjectProvider<MappedQueueWriter> queueWriter;
+    private final ObjectProvider<BinaryIngestServer> binaryIngest;
+    private final long timeoutMillis;
+    private volatile boolean running;
+    private volatile Map<String, Object> report = Collections.emptyMap();
+
+    @Autowired
+    ShutdownDrain(EventEmitter emitter,
+                  Configuration axonConfiguration,
+                  ObjectProvider<ProducerFactory<String, byte[]>> producerFactory,
+                  ObjectProvider<MappedQueueWriter> queueWriter,
+                  ObjectProvider<BinaryIngestServer> binaryIngest,
+                  @Value("${events.shutdown.drain-timeout-ms:20000}") long timeoutMillis) {
+        this.emitter = emitter;
+        this.producerFactory = producerFactory;
+        this.queueWriter = queueWriter;
+        this.binaryIngest = binaryIngest;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Map<String, Object> drained = new LinkedHashMap<>();
+        emitter.startDraining();
+        BinaryIngestServer server = binaryIngest.getIfAvailable();
+        if (server != null) {
+            server.close();
+        }
+        try {
+            drained.put("requestsLeft", emitter.awaitIdle(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            flushProducer(deadline, drained);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drained.put("interrupted", true);
+        }
+        MappedQueueWriter writer = queueWriter.getIfAvailable();
+        if (writer != null) {
+            writer.force();
+            drained.put("queuePosition", writer.nextPosition());
+        }
+        drained.put("drainMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        report = drained;
+        if (Integer.valueOf(0).equals(drained.get("requestsLeft"))
+                && !Boolean.FALSE.equals(drained.get("producerFlushed"))) {
+            logger.info("Drained Service A for shutdown: {}", drained);
+        } else {
+            logger.warn("Shutdown drain timed out after {} ms, left behind: {}", timeoutMillis, drained);
+        }
+    }
+
+    private void flushProducer(long deadline, Map<String, Object> drained) throws InterruptedException {
+        ProducerFactory<String, byte[]> factory = producerFactory.getIfAvailable();
+        if (factory == null || factory.confirmationMode() == ConfirmationMode.TRANSACTIONAL) {
+            // No Kafka publisher, or sends that are complete when the publish returns
+            return;
+        }
+        // The shared producer of the publisher; closing it is left to the factory
+        Producer<String, byte[]> producer = factory.createProducer();
+        // flush() takes no timeout, so it runs aside and is waited for until the deadline
+        CompletableFuture<Void> flushed = new CompletableFuture<>();
+        Thread flusher = new Thread(() -> {
+            try {
+                producer.flush();
+                flushed.complete(null);
+            } catch (RuntimeException e) {
+                flushed.completeExceptionally(e);
+            }
+        }, "shutdown-drain-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+        try {
+            flushed.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            drained.put("producerFlushed", true);
+        } catch (TimeoutException e) {
+            drained.put("producerFlushed", false);
+        } catch (ExecutionException e) {
+            logger.warn("Flushing the Kafka producer failed: {}", e.getCause().getMessage());
+            drained.put("producerFlushed", false);
+        }
+        drained.put("producerUnsentBytes", unsentBytes(producer.metrics()));
+    }
+
+    /**
+     * Bytes of the producer buffer held by record batches, i.e. records not yet acknowledged by the broker.
+     */
+    static long unsentBytes(Map<MetricName, ? extends Metric> metrics) {
+        double total = 0;
+        double available = 0;
+        for (Map.Entry<MetricName, ? extends Metric> metric : metrics.entrySet()) {
+            String name = metric.getKey().name();
+            if (name.equals("buffer-total-bytes")) {
+                total = ((Number) metric.getValue().metricValue()).doubleValue();
+            } else if (name.equals("buffer-available-bytes")) {
+                available = ((Number) metric.getValue().metricValue()).doubleValue();
+            }
+        }
+        return (long) (total - available);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("draining", emitter.draining());
+        description.put("timeoutMillis", timeoutMillis);
+        description.putAll(report);
+        return description;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.axon;
+
+import com.example.axon.AdmissionController.Priority;
+import com.example.axon.AdmissionController.Rejected;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Unit tests for latency-adaptive admission control with priority classes
+ */
+public class AdmissionControllerTest {
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void testLowerPrioritiesAreShedFirst() {
+        // Given: A fixed limit of 10 with 5 requests in flight
+        AdmissionController admission = new AdmissionController(true, 10, 10, 10, 2.0, 0.9, 1000, 3, clock::get);
+
+        holding(admission, 5, () -> {
+            // Then: Bulk requests get their share of 5 only
+            Rejected bulk = catchThrowableOfType(() -> admission.execute(Priority.BULK, () -> "bulk"), Rejected.class);
+            assertThat(bulk.status).isEqualTo(429);
+            assertThat(bulk.retryAfterSeconds).isEqualTo(3);
+            assertThat(admission.execute(Priority.NORMAL, () -> "normal")).isEqualTo("normal");
+            return null;
+        });
+
+        holding(admission, 9, () -> {
+            // Then: Normal requests stop at 9, critical ones may still take the last slot
+            assertThatThrownBy(() -> admission.execute(Priority.NORMAL, () -> "normal")).isInstanceOf(Rejected.class);
+            return holding(admission, 1, () -> {
+                Rejected critical = catchThrowableOfType(() -> admission.execute(Priority.CRITICAL, () -> "critical"),
+                                                         Rejected.class);
+                assertThat(critical.status).isEqualTo(503);
+                return null;
+            });
+        });
+        assertThat(admission.inFlight()).isZero();
+        assertThat(admission.describe()).extracting("rejected").asString().contains("bulk=1", "normal=1", "critical=1");
+    }
+
+    @Test
+    void testLimitGrowsWhileFastAndBacksOffWhenSlowOrFailing() {
+        // Given
+        AdmissionController admission = new AdmissionController(true, 4, 2, 100, 2.0, 0.5, 1000, 1, clock::get);
+
+        // When: Fast publishes keep the limit busy
+        holding(admission, 4, () -> null);
+
+        // Then: The limit grew
+        int grown = admission.limit();
+        assertThat(grown).isGreaterThan(4);
+
+        // When: A publish takes far longer than the baseline
+        admission.execute(Priority.NORMAL, latency(TimeUnit.MILLISECONDS.toNanos(50)));
+
+        // Then: Backed off; failures back off too, down to the minimum
+        assertThat(admission.limit()).isLessThan(grown);
+        for (int i = 0; i < 10; i++) {
+            assertThatThrownBy(() -> admission.execute(Priority.NORMAL, () -> {
+                throw new IllegalStateException("buffer full");
+            })).isInstanceOf(IllegalStateException.class);
+        }
+        assertThat(admission.limit()).isEqualTo(2);
+        assertThat(admission.inFlight()).isZero();
+    }
+
+    @Test
+    void testRequestIsInFlightUntilItsRecordIsAcknowledged() {
+        // Given
+        AdmissionController admission = new AdmissionController(true, 4, 2, 100, 2.0, 0.5, 1000, 1, clock::get);
+        List<Consumer<Exception>> acks = new ArrayList<>();
+
+        // When: A request hands its record to the producer and returns within 10 us
+        admission.execute(Priority.NORMAL, sending(admission, acks));
+
+        // Then: It holds its place until the broker acknowledges, 1 ms later, and that is its latency
+        assertThat(admission.inFlight()).isEqualTo(1);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        acks.get(0).accept(null);
+        assertThat(admission.inFlight()).isZero();
+        assertThat(admission.describe()).containsEntry("baselineMicros", 1010L);
+
+        // When: The next request returns as fast, but its acknowledgement takes 50 ms
+        admission.execute(Priority.NORMAL, sending(admission, acks));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        acks.get(1).accept(null);
+
+        // Then: The slow broker shrinks the limit, although the request itself returned at once
+        assertThat(admission.limit()).isEqualTo(2);
+        assertThat(admission.holdUntilAcknowledged()).isNull();
+    }
+
+    @Test
+    void testIdleLimitDoesNotGrowAndDisabledControllerPassesThrough() {
+        AdmissionController admission = new AdmissionController(true, 10, 2, 100, 2.0, 0.9, 1000, 1, clock::get);
+        for (int i = 0; i < 100; i++) {
+            admission.execute(Priority.NORMAL, latency(1_000_000));
+        }
+        assertThat(admission.limit()).isEqualTo(10);
+
+        AdmissionController disabled = new AdmissionController(false, 1, 1, 1, 2.0, 0.9, 1000, 1, clock::get);
+        holding(disabled, 5, () -> null);
+        assertThat(Priority.parse("bulk")).isEqualTo(Priority.BULK);
+        assertThat(Priority.parse("unknown")).isEqualTo(Priority.NORMAL);
+    }
+
+    /**
+     * Runs {@code inner} while {@code count} critical requests are in flight; the clock does not move.
+     */
+    private <T> T holding(AdmissionController admission, int count, Supplier<T> inner) {
+        if (count == 0) {
+            return inner.get();
+        }
+        return admission.execute(Priority.CRITICAL, () -> holding(admission, count - 1, inner));
+    }
+
+    private Supplier<String> sending(AdmissionController admission, List<Consumer<Exception>> acks) {
+        return () -> {
+            acks.add(admission.holdUntilAcknowledged());
+            clock.addAndGet(TimeUnit.MICROSECONDS.toNanos(10));
+            return "sent";
+        };
+    }
+
+    private Supplier<String> latency(long nanos) {
+        return () -> {
+            clock.addAndGet(nanos);
+            return "ok";
+        };
+    }
+}
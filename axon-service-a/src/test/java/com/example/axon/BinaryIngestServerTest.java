@@ -0,0 +1,139 @@
+package com.example.axon;
+
+import com.example.axon.BinaryIngestProtocol.Ack;
+import com.example.axon.BinaryIngestProtocol.Event;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.SimpleEventBus;
+import org.axonframework.eventhandling.gateway.DefaultEventGateway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the framed binary ingest listener and its client
+ */
+public class BinaryIngestServerTest {
+    private final List<EventMessage<?>> published = Collections.synchronizedList(new ArrayList<>());
+    private BinaryIngestServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void testPipelinedBatchesArePublishedInOrderAndAcknowledged() throws Exception {
+        // Given
+        server = new BinaryIngestServer(emitter(disabledAdmission()), 0, 1 << 20, 2);
+
+        // When: Ten batches are sent before reading any ack
+        List<CompletableFuture<Ack>> acks = new ArrayList<>();
+        try (BinaryIngestClient client = new BinaryIngestClient("localhost", server.port(), 16)) {
+            for (int batch = 0; batch < 10; batch++) {
+                List<Event> events = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    events.add(new Event(i % 2 == 0 ? "even" : null, "event-" + (batch * 50 + i) + " \u00e9"));
+                }
+                acks.add(client.send(AdmissionController.Priority.NORMAL, events));
+            }
+
+            // Then: Every batch is acknowledged in full, in order
+            for (int batch = 0; batch < 10; batch++) {
+                Ack ack = acks.get(batch).get(5, TimeUnit.SECONDS);
+                assertThat(ack.ok()).isTrue();
+                assertThat(ack.batchId).isEqualTo(batch);
+                assertThat(ack.emitted).isEqualTo(50);
+            }
+        }
+
+        // And: Events went through the sequenced publish path in order, keys included
+        assertThat(published).hasSize(500);
+        assertThat(((TestEvent) published.get(499).getPayload()).getPayload()).isEqualTo("event-499 \u00e9");
+        assertThat(published.get(0).getMetaData()).containsEntry(EventSequencer.KEY, "even")
+                .containsEntry(EventSequencer.NUMBER, "1");
+        assertThat(published.get(1).getMetaData()).doesNotContainKey(EventSequencer.KEY)
+                .containsEntry(EventSequencer.SOURCE, "binary-default/" + EventSequencer.instanceId());
+        assertThat(server.describe()).containsEntry("events", 500L).containsEntry("batches", 10L);
+    }
+
+    @Test
+    void testShedBatchReportsHowManyEventsWentOut() throws Exception {
+        // Given: A limit of one, held by a request of this test
+        AdmissionController admission = new AdmissionController(true, 1, 1, 1, 2.0, 0.9, 1000, 7, System::nanoTime);
+        server = new BinaryIngestServer(emitter(admission), 0, 1 << 20, 1);
+
+        try (BinaryIngestClient client = new BinaryIngestClient("localhost", server.port(), 4)) {
+            // When
+            Ack ack = admission.execute(AdmissionController.Priority.CRITICAL, () -> {
+                try {
+                    return client.send(AdmissionController.Priority.CRITICAL,
+                                       List.of(new Event(null, "a"), new Event(null, "b"))).get(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            // Then: Nothing was published and the client is told when to retry
+            assertThat(ack.status).isEqualTo(BinaryIngestProtocol.REJECTED);
+            assertThat(ack.emitted).isZero();
+            assertThat(ack.retryAfterSeconds).isEqualTo(7);
+
+            // And: Once the slot is free the same connection carries on
+            assertThat(client.send(AdmissionController.Priority.CRITICAL, List.of(new Event(null, "a")))
+                               .get(5, TimeUnit.SECONDS).ok()).isTrue();
+        }
+        assertThat(published).hasSize(1);
+    }
+
+    @Test
+    void testMalformedFrameIsAnsweredAndConnectionClosed() throws Exception {
+        server = new BinaryIngestServer(emitter(disabledAdmission()), 0, 1024, 1);
+        try (Socket socket = new Socket("localhost", server.port())) {
+            socket.setSoTimeout(5_000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            // A batch of one event whose payload claims more bytes than the frame holds
+            out.writeInt(4 + 1 + 2 + 2 + 4);
+            out.writeInt(42);
+            out.writeByte(1);
+            out.writeShort(1);
+            out.writeShort(-1);
+            out.writeInt(100);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] frame = new byte[BinaryIngestProtocol.ACK_BYTES];
+            in.readFully(frame);
+            Ack ack = BinaryIngestProtocol.decodeAck(ByteBuffer.wrap(frame));
+            assertThat(ack.batchId).isEqualTo(42);
+            assertThat(ack.status).isEqualTo(BinaryIngestProtocol.MALFORMED);
+            assertThat(in.read()).isEqualTo(-1);
+        }
+        assertThat(published).isEmpty();
+    }
+
+    private EventEmitter emitter(AdmissionController admission) {
+        SimpleEventBus eventBus = SimpleEventBus.builder().build();
+        eventBus.subscribe(published::addAll);
+        return new EventEmitter(DefaultEventGateway.builder().eventBus(eventBus).build(),
+                                new EventSequencer("binary-default", 100),
+                                new DuplicateSuppressionWindow(false, false, Duration.ofMinutes(1), 10, Clock.systemUTC()),
+                                new ClaimCheck(null, 0), admission);
+    }
+
+    private static AdmissionController disabledAdmission() {
+        return new AdmissionController(false, 1, 1, 1, 2.0, 0.9, 1000, 1, System::nanoTime);
+    }
+}
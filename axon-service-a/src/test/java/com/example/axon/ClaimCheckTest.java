@@ -0,0 +1,50 @@
+package com.example.axon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Unit tests for claim-check offloading of large payloads
+ */
+public class ClaimCheckTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSmallPayloadsPassUnchanged() {
+        ClaimCheck claimCheck = new ClaimCheck(new FileBlobStore(directory), 64);
+
+        ClaimCheck.Checked checked = claimCheck.checkIn("small");
+
+        assertThat(checked.event.getPayload()).isEqualTo("small");
+        assertThat(checked.metaData).isEmpty();
+    }
+
+    @Test
+    void testLargePayloadsAreStoredByContent() throws Exception {
+        // Given
+        ClaimCheck claimCheck = new ClaimCheck(new FileBlobStore(directory), 64);
+        String payload = "x".repeat(1000);
+
+        // When: The same payload is checked in twice
+        ClaimCheck.Checked first = claimCheck.checkIn(payload);
+        ClaimCheck.Checked second = claimCheck.checkIn(payload);
+
+        // Then: Only the reference is published, and the blob is stored once under its digest
+        String digest = FileBlobStore.digest(payload.getBytes(StandardCharsets.UTF_8));
+        assertThat(first.event.getPayload()).isEqualTo("sha256:" + digest);
+        assertThat(first.metaData).containsEntry(ClaimCheck.REFERENCE, "sha256:" + digest)
+                                  .containsEntry(ClaimCheck.SIZE, "1000");
+        assertThat(second.event.getPayload()).isEqualTo(first.event.getPayload());
+        Path blob = directory.resolve(digest.substring(0, 2)).resolve(digest);
+        assertThat(Files.readString(blob)).isEqualTo(payload);
+        try (var files = Files.list(blob.getParent())) {
+            assertThat(files).hasSize(1);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.axon;
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for producer-side duplicate suppression
+ */
+public class DuplicateSuppressionWindowTest {
+
+    @Test
+    void testRepeatsWithinWindowReturnOriginalResult() {
+        MutableClock clock = new MutableClock();
+        DuplicateSuppressionWindow window = new DuplicateSuppressionWindow(true, true, Duration.ofMinutes(5), 100, clock);
+        AtomicInteger published = new AtomicInteger();
+
+        assertThat(window.execute("req-1", "a", () -> "published " + published.incrementAndGet())).isEqualTo("published 1");
+        assertThat(window.execute("req-1", "b", () -> "published " + published.incrementAndGet())).isEqualTo("published 1");
+        // Without a key the payload hash identifies the request
+        assertThat(window.execute(null, "c", () -> "published " + published.incrementAndGet())).isEqualTo("published 2");
+        assertThat(window.execute(null, "c", () -> "published " + published.incrementAndGet())).isEqualTo("published 2");
+
+        // After the window the same request publishes again
+        clock.advance(Duration.ofMinutes(6));
+        assertThat(window.execute("req-1", "a", () -> "published " + published.incrementAndGet())).isEqualTo("published 3");
+        assertThat(published).hasValue(3);
+        assertThat(window.describe()).containsEntry("suppressed", 2L);
+    }
+
+    @Test
+    void testFailedRequestIsNotRemembered() {
+        DuplicateSuppressionWindow window =
+                new DuplicateSuppressionWindow(true, true, Duration.ofMinutes(5), 100, Clock.systemUTC());
+
+        assertThatThrownBy(() -> window.execute("req-1", "a", () -> {
+            throw new IllegalStateException("broker down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(window.execute("req-1", "a", () -> "retried")).isEqualTo("retried");
+    }
+
+    @Test
+    void testCacheIsBoundedAndDisabledWindowPassesThrough() {
+        DuplicateSuppressionWindow window =
+                new DuplicateSuppressionWindow(true, false, Duration.ofMinutes(5), 10, Clock.systemUTC());
+        for (int i = 0; i < 100; i++) {
+            window.execute("req-" + i, "a", () -> "ok");
+        }
+        assertThat(window.size()).isLessThanOrEqualTo(10);
+        // Payload hashing is off, so requests without a key are never suppressed
+        AtomicInteger published = new AtomicInteger();
+        window.execute(null, "a", () -> "ok " + published.incrementAndGet());
+        window.execute(null, "a", () -> "ok " + published.incrementAndGet());
+        assertThat(published).hasValue(2);
+
+        DuplicateSuppressionWindow disabled =
+                new DuplicateSuppressionWindow(false, true, Duration.ofMinutes(5), 10, Clock.systemUTC());
+        AtomicInteger passed = new AtomicInteger();
+        disabled.execute("req-1", "a", () -> "ok " + passed.incrementAndGet());
+        disabled.execute("req-1", "a", () -> "ok " + passed.incrementAndGet());
+        assertThat(passed).hasValue(2);
+    }
+
+    @Test
+    void testConcurrentRepeatsWaitForTheOriginal() throws Exception {
+        DuplicateSuppressionWindow window =
+                new DuplicateSuppressionWindow(true, true, Duration.ofMinutes(5), 100, Clock.systemUTC());
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger published = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> original = executor.submit(() -> window.execute("req-1", "a", () -> {
+                published.incrementAndGet();
+                await(release);
+                return "original";
+            }));
+            while (window.size() == 0) {
+                Thread.onSpinWait();
+            }
+            Future<String> repeat = executor.submit(() -> window.execute("req-1", "a", () -> {
+                published.incrementAndGet();
+                return "repeat";
+            }));
+            release.countDown();
+
+            assertThat(original.get(5, TimeUnit.SECONDS)).isEqualTo("original");
+            assertThat(repeat.get(5, TimeUnit.SECONDS)).isEqualTo("original");
+            assertThat(published).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSubmittedRepeatDoesNotWaitForTheOriginal() throws Exception {
+        DuplicateSuppressionWindow window =
+                new DuplicateSuppressionWindow(true, true, Duration.ofMinutes(5), 100, Clock.systemUTC());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger published = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> original = executor.submit(() -> window.execute("req-1", "a", () -> {
+                started.countDown();
+                published.incrementAndGet();
+                await(release);
+                throw new IllegalStateException("broker down");
+            }));
+            await(started);
+
+            // A repeat while the original runs returns at once, as on an event loop
+            CompletableFuture<String> repeat = window.submit("req-1", "a", () -> "retried " + published.incrementAndGet());
+            assertThat(repeat).isNotDone();
+
+            // The original fails, so the repeat publishes itself
+            release.countDown();
+            assertThatThrownBy(() -> original.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+            assertThat(repeat.get(5, TimeUnit.SECONDS)).isEqualTo("retried 2");
+            assertThat(window.submit("req-1", "a", () -> "again")).isCompletedWithValue("retried 2");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public java.time.ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
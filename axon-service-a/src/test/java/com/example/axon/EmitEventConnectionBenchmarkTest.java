@@ -0,0 +1,233 @@
+package com.example.axon;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.env.Environment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference measurement of /emit-event latency while many slow clients hold connections open. Runs on
+ * whichever stack the build selected: {@code mvn -Pbenchmark test} measures the servlet version and
+ * {@code mvn -Pbenchmark -Dreactive test} the WebFlux one, so the two printed lines compare like for like.
+ * Tagged {@code benchmark}, so plain {@code mvn test} skips it.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+    "axon.axonserver.enabled=false",
+    "axon.kafka.publisher.enabled=false",
+    "events.ingest.tcp.enabled=true",
+    "events.ingest.tcp.port=0",
+    "server.tomcat.max-keep-alive-requests=-1",
+    "logging.level.org.axonframework=WARN",
+    "logging.level.com.example.axon=INFO"
+})
+@Tag("benchmark")
+public class EmitEventConnectionBenchmarkTest {
+    private static final int SLOW_CLIENTS = 400;
+    private static final int REQUESTS = 200;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private BinaryIngestServer binaryIngest;
+
+    @Test
+    void testLatencyWhileSlowClientsHoldConnections() throws Exception {
+        // Given: Slow clients that sent their headers but only half of their body
+        List<Socket> slowClients = new ArrayList<>();
+        for (int i = 0; i < SLOW_CLIENTS; i++) {
+            Socket socket = new Socket("localhost", port);
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /emit-event HTTP/1.1\r\nHost: localhost\r\nContent-Type: text/plain\r\n"
+                    + "Content-Length: 8\r\n\r\nslow").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            slowClients.add(socket);
+        }
+
+        // When: Regular clients emit events meanwhile
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger timedOut = new AtomicInteger();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<Future<?>> calls = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            String payload = "bench-" + i;
+            calls.add(callers.submit(() -> {
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/emit-event"))
+                        .timeout(Duration.ofSeconds(1))
+                        .header("Content-Type", "text/plain")
+                        .POST(HttpRequest.BodyPublishers.ofString(payload))
+                        .build();
+                long start = System.nanoTime();
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode() == 200) {
+                        latencies.add(System.nanoTime() - start);
+                        return;
+                    }
+                } catch (Exception e) {
+                    // Counted below
+                }
+                timedOut.incrementAndGet();
+            }));
+        }
+        for (Future<?> call : calls) {
+            call.get();
+        }
+        callers.shutdown();
+
+        // And: The slow clients finish their bodies
+        for (Socket socket : slowClients) {
+            try {
+                socket.getOutputStream().write("-end".getBytes(StandardCharsets.US_ASCII));
+            } catch (IOException e) {
+                // Dropped by the server while waiting
+            }
+        }
+        int slowServed = 0;
+        long deadline = System.currentTimeMillis() + 10_000;
+        for (Socket socket : slowClients) {
+            try {
+                socket.setSoTimeout((int) Math.max(1, deadline - System.currentTimeMillis()));
+                InputStream in = socket.getInputStream();
+                if (new String(in.readNBytes(12), StandardCharsets.US_ASCII).endsWith("200")) {
+                    slowServed++;
+                }
+            } catch (IOException e) {
+                // Not served
+            }
+            socket.close();
+        }
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99 = sorted.isEmpty() ? -1 : TimeUnit.NANOSECONDS.toMicros(sorted.get(sorted.size() * 99 / 100));
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%s stack, %d cores: %d slow connections (%d per core), %d/%d requests served "
+                                  + "within 1 s (p99 %d us), %d slow clients served%n",
+                          environment.getProperty("spring.main.web-application-type", webStack()), cores,
+                          SLOW_CLIENTS, SLOW_CLIENTS / cores, latencies.size(), REQUESTS, p99, slowServed);
+
+        // Then: No slow client was dropped, and on the reactive stack they did not hold up anyone else
+        assertThat(slowServed).isEqualTo(SLOW_CLIENTS);
+        if ("reactive".equals(webStack())) {
+            assertThat(timedOut.get()).isZero();
+        }
+    }
+
+    @Test
+    void testBinaryIngestThroughputAgainstHttp() throws Exception {
+        // Given: The same events, through the same publish path, once per transport
+        int events = 10_000;
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+
+        // When: Sent over HTTP by eight keep-alive callers, each request in a single write
+        long start = System.nanoTime();
+        List<Future<?>> calls = new ArrayList<>();
+        for (int caller = 0; caller < 8; caller++) {
+            int first = caller * events / 8;
+            calls.add(callers.submit(() -> {
+                try (Socket socket = new Socket("localhost", port)) {
+                    socket.setTcpNoDelay(true);
+                    OutputStream out = socket.getOutputStream();
+                    java.io.BufferedReader in = new java.io.BufferedReader(
+                            new java.io.InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                    for (int i = first; i < first + events / 8; i++) {
+                        String body = "http-" + i;
+                        out.write(("POST /emit-event HTTP/1.1\r\nHost: localhost\r\nContent-Type: text/plain\r\n"
+                                + "Content-Length: " + body.length() + "\r\n\r\n" + body)
+                                          .getBytes(StandardCharsets.US_ASCII));
+                        assertThat(in.readLine()).startsWith("HTTP/1.1 200");
+                        skipResponse(in);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> call : calls) {
+            call.get();
+        }
+        long httpNanos = System.nanoTime() - start;
+        callers.shutdown();
+
+        // And: Over one binary ingest connection, in pipelined batches of 100
+        start = System.nanoTime();
+        List<java.util.concurrent.CompletableFuture<BinaryIngestProtocol.Ack>> acks = new ArrayList<>();
+        try (BinaryIngestClient ingest = new BinaryIngestClient("localhost", binaryIngest.port(), 32)) {
+            for (int batch = 0; batch < events / 100; batch++) {
+                List<BinaryIngestProtocol.Event> batchEvents = new ArrayList<>(100);
+                for (int i = 0; i < 100; i++) {
+                    batchEvents.add(new BinaryIngestProtocol.Event(null, "binary-" + (batch * 100 + i)));
+                }
+                acks.add(ingest.send(AdmissionController.Priority.NORMAL, batchEvents));
+            }
+            for (java.util.concurrent.CompletableFuture<BinaryIngestProtocol.Ack> ack : acks) {
+                assertThat(ack.get(30, TimeUnit.SECONDS).ok()).isTrue();
+            }
+        }
+        long binaryNanos = System.nanoTime() - start;
+
+        // Then
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d cores: HTTP %.0f events/s per core, binary ingest %.0f events/s per core (%.1fx)%n",
+                          cores, events * 1e9 / httpNanos / cores, events * 1e9 / binaryNanos / cores,
+                          (double) httpNanos / binaryNanos);
+    }
+
+    private static void skipResponse(java.io.BufferedReader in) throws IOException {
+        int length = 0;
+        boolean chunked = false;
+        String line;
+        while (!(line = in.readLine()).isEmpty()) {
+            String header = line.toLowerCase(java.util.Locale.ROOT);
+            if (header.startsWith("content-length:")) {
+                length = Integer.parseInt(header.substring(15).trim());
+            } else if (header.startsWith("transfer-encoding:") && header.contains("chunked")) {
+                chunked = true;
+            }
+        }
+        if (!chunked) {
+            in.skip(length);
+            return;
+        }
+        int chunk;
+        while ((chunk = Integer.parseInt(in.readLine().trim(), 16)) > 0) {
+            in.skip(chunk);
+            in.readLine();
+        }
+        in.readLine();
+    }
+
+    private static String webStack() {
+        try {
+            Class.forName("org.springframework.web.servlet.DispatcherServlet");
+            return "servlet";
+        } catch (ClassNotFoundException e) {
+            return "reactive";
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.EventMessage;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for per-key sequence numbering
+ */
+public class EventSequencerTest {
+
+    @Test
+    void testSequencesAreNumberedPerKey() {
+        EventSequencer sequencer = new EventSequencer("default", 100);
+        List<EventMessage<?>> published = new ArrayList<>();
+
+        sequencer.publish("a", new TestEvent("a1"), published::add);
+        sequencer.publish("b", new TestEvent("b1"), published::add);
+        sequencer.publish("a", new TestEvent("a2"), published::add);
+        sequencer.publish(null, new TestEvent("d1"), published::add);
+        sequencer.publish(" ", new TestEvent("d2"), published::add);
+
+        assertThat(published).extracting(m -> m.getMetaData().get(EventSequencer.KEY))
+                             .containsExactly("a", "b", "a", null, null);
+        assertThat(published).extracting(m -> m.getMetaData().get(EventSequencer.NUMBER))
+                             .containsExactly("1", "1", "2", "1", "2");
+        assertThat(published).extracting(m -> m.getMetaData().get(EventSequencer.EPOCH)).doesNotContainNull();
+        assertThat(published.get(3).getMetaData())
+                .containsEntry(EventSequencer.SOURCE, "default/" + EventSequencer.instanceId());
+    }
+
+    @Test
+    void testKeylessPublishesDoNotWaitForEachOther() throws Exception {
+        // Given: A keyless publish that is still on its way
+        EventSequencer sequencer = new EventSequencer("default", 100);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> first = executor.submit(() -> sequencer.publish(null, new TestEvent("slow"), m -> {
+                sending.countDown();
+                await(release);
+            }));
+            await(sending);
+            List<EventMessage<?>> published = new ArrayList<>();
+
+            // When: Another keyless event is published meanwhile
+            sequencer.publish(null, new TestEvent("fast"), published::add);
+
+            // Then: It went out at once with a number of its own
+            assertThat(published).singleElement()
+                    .satisfies(m -> assertThat(m.getMetaData()).containsEntry(EventSequencer.NUMBER, "2"));
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testLeastRecentlyUsedKeyIsEvictedAndRestartsUnderANewEpoch() {
+        // Given: Room for two keys, with "a" numbered twice
+        EventSequencer sequencer = new EventSequencer("default", 2);
+        List<EventMessage<?>> published = new ArrayList<>();
+        sequencer.publish("a", new TestEvent("a1"), published::add);
+        sequencer.publish("a", new TestEvent("a2"), published::add);
+        sequencer.publish("b", new TestEvent("b1"), published::add);
+
+        // When: A third key arrives, then "a" comes back
+        sequencer.publish("c", new TestEvent("c1"), published::add);
+        sequencer.publish("a", new TestEvent("a3"), published::add);
+
+        // Then: "a" was dropped and numbers from 1 again, under a later epoch
+        EventMessage<?> restarted = published.get(4);
+        assertThat(restarted.getMetaData()).containsEntry(EventSequencer.NUMBER, "1");
+        assertThat(Long.parseLong((String) restarted.getMetaData().get(EventSequencer.EPOCH)))
+                .isGreaterThan(Long.parseLong((String) published.get(0).getMetaData().get(EventSequencer.EPOCH)));
+        assertThat(sequencer.describe()).containsEntry("keys", 2).containsEntry("evicted", 2L);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void testFailedPublishDoesNotConsumeANumber() {
+        EventSequencer sequencer = new EventSequencer("default", 100);
+        List<EventMessage<?>> published = new ArrayList<>();
+
+        assertThatThrownBy(() -> sequencer.publish("a", new TestEvent("lost"), m -> {
+            throw new IllegalStateException("broker down");
+        })).isInstanceOf(IllegalStateException.class);
+        sequencer.publish("a", new TestEvent("retried"), published::add);
+
+        assertThat(published.get(0).getMetaData().get(EventSequencer.NUMBER)).isEqualTo("1");
+    }
+}
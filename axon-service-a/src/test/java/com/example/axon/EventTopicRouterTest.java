@@ -0,0 +1,54 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.messaging.MetaData;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for routing events to Kafka topics
+ */
+public class EventTopicRouterTest {
+
+    @Test
+    void testUnmappedEventsGoToTheDefaultTopic() {
+        EventTopicRouter router = new EventTopicRouter("Axon.Events", "", "", "");
+
+        assertThat(router.apply(GenericEventMessage.asEventMessage(new TestEvent("a")))).contains("Axon.Events");
+    }
+
+    @Test
+    void testEventsAreRoutedByPayloadType() {
+        // Given: TestEvent mapped by simple name, String by fully qualified name
+        EventTopicRouter router = new EventTopicRouter("Axon.Events", "", "",
+                                                       "TestEvent:Axon.Events.Test, java.lang.String:Axon.Strings");
+
+        // Then
+        assertThat(router.apply(GenericEventMessage.asEventMessage(new TestEvent("a")))).contains("Axon.Events.Test");
+        assertThat(router.apply(GenericEventMessage.asEventMessage("text"))).contains("Axon.Strings");
+        assertThat(router.apply(GenericEventMessage.asEventMessage(42))).contains("Axon.Events");
+        assertThat(router.topics()).containsExactly("Axon.Events", "Axon.Events.Test", "Axon.Strings");
+    }
+
+    @Test
+    void testMappedMetadataAttributeTakesPrecedence() {
+        // Given: A routing attribute with one mapped value
+        EventTopicRouter router = new EventTopicRouter("Axon.Events", "routing-key", "bulk:Axon.Events.Bulk",
+                                                       "TestEvent:Axon.Events.Test");
+
+        // Then: Mapped values win, unmapped values fall back to type routing
+        assertThat(router.apply(new GenericEventMessage<>(new TestEvent("a"), MetaData.with("routing-key", "bulk"))))
+                .contains("Axon.Events.Bulk");
+        assertThat(router.apply(new GenericEventMessage<>(new TestEvent("a"), MetaData.with("routing-key", "other"))))
+                .contains("Axon.Events.Test");
+    }
+
+    @Test
+    void testMalformedMappingsAreRejected() {
+        assertThatThrownBy(() -> EventTopicRouter.parse("TestEvent"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> EventTopicRouter.parse("TestEvent:"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.axon;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for the memory-mapped event queue writer
+ */
+public class MappedQueueWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecordsAreLaidOutForReaders() throws Exception {
+        // Given
+        MappedQueueWriter writer = new MappedQueueWriter(directory, 4096, 0, Duration.ZERO, Clock.systemUTC());
+
+        // When
+        assertThat(writer.append(record("key-1", "payload-1"))).isEqualTo(0);
+        assertThat(writer.append(record(null, "payload-2"))).isEqualTo(1);
+        writer.close();
+
+        // Then: The first record carries its length, then key, headers and value
+        ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(String.format("%020d.queue", 0))));
+        int length = segment.getInt(0);
+        assertThat(length).isGreaterThan(0);
+        segment.position(MappedQueueWriter.RECORD_HEADER);
+        assertThat(new String(bytes(segment, segment.getShort()), StandardCharsets.UTF_8)).isEqualTo("key-1");
+        assertThat(segment.getShort()).isEqualTo((short) 1);
+        assertThat(new String(bytes(segment, segment.getShort()), StandardCharsets.UTF_8)).isEqualTo("axon-message-id");
+        assertThat(new String(bytes(segment, segment.getInt()), StandardCharsets.UTF_8)).isEqualTo("id-payload-1");
+        assertThat(new String(bytes(segment, segment.getInt()), StandardCharsets.UTF_8)).isEqualTo("payload-1");
+        assertThat(segment.getInt((MappedQueueWriter.RECORD_HEADER + length + 7) & ~7)).isGreaterThan(0);
+    }
+
+    @Test
+    void testSegmentsRollAndWriterRecoversPosition() {
+        // Given: Small segments
+        MappedQueueWriter writer = new MappedQueueWriter(directory, 1024, 0, Duration.ZERO, Clock.systemUTC());
+        for (int i = 0; i < 100; i++) {
+            writer.append(record("k", "payload-" + i));
+        }
+        assertThat(writer.segmentCount()).isGreaterThan(1);
+        writer.close();
+
+        // When: Reopening the queue
+        MappedQueueWriter reopened = new MappedQueueWriter(directory, 1024, 0, Duration.ZERO, Clock.systemUTC());
+
+        // Then: Positions continue where they left off
+        assertThat(reopened.nextPosition()).isEqualTo(100);
+        assertThat(reopened.append(record("k", "payload-100"))).isEqualTo(100);
+        reopened.close();
+    }
+
+    @Test
+    void testOnlyOneWriterAtATime() {
+        MappedQueueWriter writer = new MappedQueueWriter(directory, 1024, 0, Duration.ZERO, Clock.systemUTC());
+
+        assertThatThrownBy(() -> new MappedQueueWriter(directory, 1024, 0, Duration.ZERO, Clock.systemUTC()))
+                .isInstanceOf(IllegalStateException.class);
+        writer.close();
+    }
+
+    @Test
+    void testRetentionDeletesOldestSealedSegments() throws Exception {
+        // Given: A size limit of four segments
+        MappedQueueWriter writer = new MappedQueueWriter(directory, 1024, 4096, Duration.ZERO, Clock.systemUTC());
+        for (int i = 0; i < 500; i++) {
+            writer.append(record("k", "payload-" + i));
+        }
+
+        // Then: Old segments are gone and the newest remain
+        List<String> names = segmentNames();
+        assertThat(names).hasSizeLessThanOrEqualTo(4);
+        assertThat(names.get(0)).isNotEqualTo(String.format("%020d.queue", 0));
+
+        // When: Everything sealed is older than the age limit
+        MutableClock clock = new MutableClock();
+        writer.close();
+        MappedQueueWriter aged = new MappedQueueWriter(directory, 1024, 0, Duration.ofHours(1), clock);
+        clock.advance(Duration.ofHours(2));
+        long end = aged.nextPosition();
+        for (int i = 0; i < 30; i++) {
+            aged.append(record("k", "late-" + i));
+        }
+
+        // Then: Only the segment that was active before the gap also holds old records; older ones are gone
+        String firstLate = String.format("%020d.queue", end);
+        assertThat(segmentNames().stream().filter(name -> name.compareTo(firstLate) < 0)).hasSizeLessThanOrEqualTo(1);
+        aged.close();
+    }
+
+    private List<String> segmentNames() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(".queue"))
+                        .sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static ProducerRecord<String, byte[]> record(String key, String value) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("axon-message-id", ("id-" + value).getBytes(StandardCharsets.UTF_8));
+        return new ProducerRecord<>("Axon.Events", null, key, value.getBytes(StandardCharsets.UTF_8), headers);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.now();
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public java.time.ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
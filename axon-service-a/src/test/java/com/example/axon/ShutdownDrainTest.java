@@ -0,0 +1,117 @@
+package com.example.axon;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.axonframework.eventhandling.SimpleEventBus;
+import org.axonframework.eventhandling.gateway.DefaultEventGateway;
+import org.axonframework.extensions.kafka.eventhandling.producer.ProducerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.ResolvableType;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the shutdown drain of the publish side
+ */
+public class ShutdownDrainTest {
+    private final CountDownLatch publishing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final MockProducer<String, byte[]> producer =
+            new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+
+    @Test
+    void testDrainRejectsNewRequestsWaitsForThoseInsideAndFlushesTheProducer() throws Exception {
+        // Given: A request stuck in its publish and a record waiting in the producer buffer
+        EventEmitter emitter = blockingEmitter();
+        CompletableFuture<String> inside = CompletableFuture.supplyAsync(
+                () -> emitter.emit("inside", null, null, AdmissionController.Priority.NORMAL));
+        assertThat(publishing.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<RecordMetadata> buffered = producer.send(new ProducerRecord<>("Axon.Events", "buffered".getBytes()));
+        ShutdownDrain drain = drain(emitter, 5_000);
+
+        // When
+        CompletableFuture<Void> stopped = CompletableFuture.runAsync(drain::stop);
+
+        // Then: New requests are turned away while the one inside is waited for
+        assertThatThrownBy(() -> {
+            while (!emitter.draining()) {
+                Thread.sleep(1);
+            }
+            emitter.emit("late", null, null, AdmissionController.Priority.CRITICAL);
+        }).isInstanceOfSatisfying(AdmissionController.Rejected.class, e -> assertThat(e.status).isEqualTo(503));
+        assertThat(stopped).isNotDone();
+
+        // And: Once it finishes the drain flushes the producer and reports nothing left
+        release.countDown();
+        stopped.get(5, TimeUnit.SECONDS);
+        assertThat(inside.get()).isEqualTo("Event emitted: inside");
+        assertThat(buffered.isDone()).isTrue();
+        assertThat(drain.describe()).containsEntry("draining", true).containsEntry("requestsLeft", 0)
+                .containsEntry("producerFlushed", true).containsEntry("producerUnsentBytes", 0L);
+    }
+
+    @Test
+    void testDeadlineReportsRequestsLeftBehind() throws Exception {
+        // Given
+        EventEmitter emitter = blockingEmitter();
+        CompletableFuture<String> inside = CompletableFuture.supplyAsync(
+                () -> emitter.emit("inside", null, null, AdmissionController.Priority.NORMAL));
+        assertThat(publishing.await(5, TimeUnit.SECONDS)).isTrue();
+        ShutdownDrain drain = drain(emitter, 50);
+
+        // When
+        drain.stop();
+
+        // Then
+        assertThat(drain.describe()).containsEntry("requestsLeft", 1);
+        assertThat((Long) drain.describe().get("drainMillis")).isLessThan(5_000L);
+        release.countDown();
+        inside.get(5, TimeUnit.SECONDS);
+    }
+
+    private EventEmitter blockingEmitter() {
+        SimpleEventBus eventBus = SimpleEventBus.builder().build();
+        eventBus.subscribe(events -> {
+            publishing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return new EventEmitter(DefaultEventGateway.builder().eventBus(eventBus).build(),
+                                new EventSequencer("drain-default", 100),
+                                new DuplicateSuppressionWindow(false, false, Duration.ofMinutes(1), 10, Clock.systemUTC()),
+                                new ClaimCheck(null, 0),
+                                new AdmissionController(false, 1, 1, 1, 2.0, 0.9, 1000, 3, System::nanoTime));
+    }
+
+    private ShutdownDrain drain(EventEmitter emitter, long timeoutMillis) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("producerFactory", new ProducerFactory<String, byte[]>() {
+            @Override
+            public Producer<String, byte[]> createProducer() {
+                return producer;
+            }
+
+            @Override
+            public void shutDown() {
+            }
+        });
+        return new ShutdownDrain(emitter, null, beans.getBeanProvider(
+                                         ResolvableType.forClassWithGenerics(ProducerFactory.class, String.class, byte[].class)),
+                                 beans.getBeanProvider(MappedQueueWriter.class),
+                                 beans.getBeanProvider(BinaryIngestServer.class), timeoutMillis);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.axon;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reference measurement of cold start: time from launching a JVM to the first {@code /emit-event} request
+ * accepted with a 200. Each configuration the build produced is measured in fresh JVMs: the plain build, the
+ * {@code fast-startup} Spring profile, and after {@code mvn -Pfast-startup package} also AOT-processed
+ * bean definitions and the AppCDS archive. No broker is needed; sends to Kafka fail in the background. Runs
+ * with {@code mvn -Pbenchmark test}.
+ */
+@Tag("benchmark")
+public class StartupBenchmarkTest {
+    private static final int RUNS = 3;
+    private static final Path TARGET = Paths.get("target").toAbsolutePath();
+
+    @TempDir
+    Path workingDirectory;
+
+    @Test
+    void testTimeToFirstAcceptedRequest() throws Exception {
+        // Given: A launch command per configuration the build produced
+        String classPath = System.getProperty("java.class.path");
+        Map<String, List<String>> configurations = new LinkedHashMap<>();
+        configurations.put("default", command(classPath));
+        configurations.put("fast-startup", command(classPath, "--spring.profiles.active=fast-startup"));
+        if (Files.exists(TARGET.resolve("classes/com/example/axon/App__ApplicationContextInitializer.class"))) {
+            configurations.put("fast-startup + AOT", command(classPath, "-Dspring.aot.enabled=true",
+                                                             "--spring.profiles.active=fast-startup"));
+        }
+        Path archive = TARGET.resolve("fast-startup/app.jsa");
+        if (Files.exists(archive)) {
+            // The archive only matches the class path it was trained with
+            String trainedClassPath = packagedJar() + File.pathSeparator
+                    + TARGET.resolve("fast-startup/lib") + File.separator + "*";
+            configurations.put("fast-startup + AOT + AppCDS",
+                               command(trainedClassPath, "-XX:SharedArchiveFile=" + archive,
+                                       "-Dspring.aot.enabled=true", "--spring.profiles.active=fast-startup"));
+        }
+
+        // When: Each one is started a few times
+        Map<String, Long> medians = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> configuration : configurations.entrySet()) {
+            List<Long> millis = new ArrayList<>();
+            for (int run = 0; run < RUNS; run++) {
+                millis.add(timeToFirstAcceptedRequest(configuration.getValue()));
+            }
+            Collections.sort(millis);
+            medians.put(configuration.getKey(), millis.get(RUNS / 2));
+        }
+
+        // Then: Every configuration accepted its request; the printed line is the result to compare
+        medians.forEach((name, millis) -> System.out.printf(
+                "Service A cold start, %s: first request accepted after %d ms (median of %d)%n", name, millis, RUNS));
+        assertThat(medians.values()).allMatch(millis -> millis > 0);
+    }
+
+    private static Path packagedJar() throws IOException {
+        try (Stream<Path> files = Files.list(TARGET.resolve("fast-startup"))) {
+            return files.filter(file -> file.toString().endsWith(".jar")).findFirst()
+                    .orElseThrow(() -> new IOException("No jar in " + TARGET.resolve("fast-startup")));
+        }
+    }
+
+    private static List<String> command(String classPath, String... options) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String option : options) {
+            if (option.startsWith("-X") || option.startsWith("-D")) {
+                command.add(option);
+            }
+        }
+        command.add("-cp");
+        command.add(classPath);
+        command.add(App.class.getName());
+        for (String option : options) {
+            if (option.startsWith("--")) {
+                command.add(option);
+            }
+        }
+        return command;
+    }
+
+    private long timeToFirstAcceptedRequest(List<String> launch) throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>(launch);
+        command.add("--server.port=" + port);
+        // Without a broker the first send fails at once instead of waiting a minute for topic metadata
+        command.add("--axon.kafka.producer.properties.max.block.ms=1");
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(100)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/emit-event"))
+                .timeout(Duration.ofSeconds(5))
+                .POST(HttpRequest.BodyPublishers.ofString("startup-probe"))
+                .build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).directory(workingDirectory.toFile())
+                .redirectErrorStream(true).redirectOutput(workingDirectory.resolve("service-a.log").toFile())
+                .start();
+        try {
+            while (process.isAlive() && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(120)) {
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(10);
+            }
+            return -1;
+        } finally {
+            process.destroy();
+            if (!process.waitFor(60, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+}
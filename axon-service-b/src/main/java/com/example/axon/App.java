@@ -5,13 +5,26 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.axonframework.eventhandling.EventHandler;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaTrackingToken;
+import org.axonframework.eventhandling.ReplayStatus;
 import org.axonframework.config.ProcessingGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
 
 @SpringBootApplication
 public class App {
@@ -24,27 +37,82 @@ public class App {
 @ProcessingGroup("kafka")
 class TestEventHandler {
     private static final Logger logger = LoggerFactory.getLogger(TestEventHandler.class);
-    private final java.util.List<String> receivedEvents = new java.util.ArrayList<>();
-    private final java.util.Set<String> processedEvents = new java.util.HashSet<>();
     private final java.util.List<String> poisonPillEvents = new java.util.ArrayList<>();
 
+    @Autowired
+    private ReceivedEventHistory receivedEvents;
+
+    @Autowired
+    private EventStreamBuffer eventStream;
+
+    @Autowired
+    private EventStatistics statistics;
+
+    @Autowired
+    private ProjectionSnapshotter snapshotter;
+
+    @Autowired
+    private OrderingMonitor orderingMonitor;
+
+    @Autowired
+    private ProcessedEventIndex processedIndex;
+
+    @Autowired
+    private PartitionedHandlerState partitionState;
+
+    @PostConstruct
+    void restoreSnapshot() {
+        if (snapshotter.restored().isEmpty() && receivedEvents.endPosition() > 0) {
+            // Nothing tells which persisted entries the processor will read again, so the history starts over
+            logger.info("No projection snapshot restored, clearing {} persisted received events",
+                        receivedEvents.endPosition());
+            receivedEvents.clear();
+        }
+        snapshotter.restored().ifPresent(snapshot -> {
+            if (snapshot.getHistoryEnd() >= 0) {
+                // History is persisted on its own; drop what was appended after the snapshot was taken
+                receivedEvents.truncate(snapshot.getHistoryEnd());
+            } else {
+                receivedEvents.clear();
+                snapshot.getReceivedEvents().forEach(receivedEvents::append);
+            }
+            snapshot.getProcessedEvents().forEach((partition, payloads) -> {
+                // Unpartitioned payloads, from older snapshots among others, still count for the idempotency check
+                partitionState.restore(partition, payloads);
+                // Snapshots carry no processing times, so restored payloads are only found by exact or prefix lookup
+                payloads.forEach(payload -> processedIndex.add(
+                        payload, ProcessedEventIndex.UNKNOWN_TIME, ProcessedEventIndex.UNKNOWN_TIME));
+            });
+            poisonPillEvents.addAll(snapshot.getPoisonPillEvents());
+            logger.info("TestEventHandler state restored from snapshot: {} received events",
+                        receivedEvents.endPosition());
+        });
+    }
+
     @EventHandler
-    public void on(TestEvent event) {
+    public void on(TestEvent event, ReplayStatus replayStatus, EventMessage<?> message) {
+        if (replayStatus.isReplay()) {
+            // Replay: rebuild idempotency state only, skip history, live tail, stats and alerts
+            partitionState.remember(message, event.getPayload());
+            processedIndex.add(event.getPayload(), System.currentTimeMillis(), message.getTimestamp().toEpochMilli());
+            logger.debug("Replayed event: {}", event.getPayload());
+            return;
+        }
         logger.info("Received event: {}", event.getPayload());
         
-        // Ordering: maintain a list of received events
-        synchronized (receivedEvents) {
-            receivedEvents.add(event.getPayload());
-        }
+        // Ordering: maintain the history of received events (recent tail on heap, the rest memory-mapped)
+        receivedEvents.append(event.getPayload());
+        // Live tail: lock-free append, slow stream observers lose old entries instead of blocking us
+        eventStream.append(event.getPayload());
         
-        // Idempotency: process only if not seen before
-        synchronized (processedEvents) {
-            if (!processedEvents.contains(event.getPayload())) {
-                processedEvents.add(event.getPayload());
-                logger.info("Processed event: {}", event.getPayload());
-            } else {
-                logger.warn("Duplicate event ignored: {}", event.getPayload());
-            }
+        // Idempotency: process only if not seen before under any key, here or by a previous partition owner
+        if (partitionState.record(message, event.getPayload())) {
+            // Query indexes: exact, prefix and time window lookups without touching the partition state
+            processedIndex.add(event.getPayload(), System.currentTimeMillis(),
+                               message.getTimestamp().toEpochMilli());
+            logger.info("Processed event: {}", event.getPayload());
+        } else {
+            logger.warn("Duplicate event ignored: {}", event.getPayload());
         }
         
         // Poison pill: handle error scenario
@@ -55,19 +123,38 @@ class TestEventHandler {
             }
             // Custom error handling logic here
         }
+        
+        // Statistics: constant-memory sketches instead of scanning the collections above
+        statistics.record(event.getPayload(), "poison-pill".equals(event.getPayload()));
+        
+        // Ordering: compare Service A's per-key sequence number with the last one seen for that key
+        orderingMonitor.observe(message.getMetaData());
+        
+        // Snapshot: captured here, between events, so state and token always line up; while a replay is running
+        // live events still carry a ReplayToken, and the snapshot waits until the token is a plain Kafka one again
+        org.axonframework.eventhandling.TrackingToken token = message instanceof TrackedEventMessage
+                ? ((TrackedEventMessage<?>) message).trackingToken() : null;
+        if (token instanceof KafkaTrackingToken && snapshotter.isDue()) {
+            snapshotter.submit(captureSnapshot((KafkaTrackingToken) token));
+        }
+    }
+    
+    private ProjectionSnapshot captureSnapshot(KafkaTrackingToken token) {
+        java.util.Map<org.apache.kafka.common.TopicPartition, Long> positions =
+                new java.util.HashMap<>(token.getPositions());
+        return new ProjectionSnapshot(positions, java.util.List.of(), receivedEvents.endPosition(),
+                                      partitionState.processedByPartition(), getPoisonPillEvents());
     }
     
     // Getter methods for testing
     public java.util.List<String> getReceivedEvents() {
-        synchronized (receivedEvents) {
-            return new java.util.ArrayList<>(receivedEvents);
-        }
+        java.util.List<String> events = new java.util.ArrayList<>();
+        receivedEvents.forEach(events::add);
+        return events;
     }
     
     public java.util.Set<String> getProcessedEvents() {
-        synchronized (processedEvents) {
-            return new java.util.HashSet<>(processedEvents);
-        }
+        return new java.util.HashSet<>(partitionState.processed());
     }
     
     public java.util.List<String> getPoisonPillEvents() {
@@ -78,15 +165,14 @@ class TestEventHandler {
     
     // Method to clear state for testing
     public void clearState() {
-        synchronized (receivedEvents) {
-            receivedEvents.clear();
-        }
-        synchronized (processedEvents) {
-            processedEvents.clear();
-        }
+        receivedEvents.clear();
         synchronized (poisonPillEvents) {
             poisonPillEvents.clear();
         }
+        statistics.clear();
+        orderingMonitor.clear();
+        processedIndex.clear();
+        partitionState.clear();
         logger.info("TestEventHandler state cleared");
     }
 }
@@ -118,13 +204,94 @@ class TestEvent {
 @RestController
 @RequestMapping("/test")
 class TestController {
+    private static final JsonFactory JSON = new JsonFactory();
     
     @Autowired
     private TestEventHandler eventHandler;
     
-    @GetMapping("/received-events")
-    public java.util.List<String> getReceivedEvents() {
-        return eventHandler.getReceivedEvents();
+    @Autowired
+    private EventStreamPublisher eventStreamPublisher;
+    
+    @Autowired
+    private EventStatistics statistics;
+
+    @Autowired
+    private FetcherMetrics fetcherMetrics;
+
+    @Autowired
+    private PollSizeController pollSizeController;
+
+    @Autowired
+    private ValidationStage validationStage;
+
+    @Autowired
+    private QuarantineStore quarantineStore;
+
+    @Autowired
+    private PartitionedHandlerState partitionState;
+
+    @Autowired
+    private OrderingMonitor orderingMonitor;
+
+    @Autowired
+    private ReceivedEventHistory receivedEventHistory;
+
+    @Autowired
+    private org.springframework.beans.factory.ObjectProvider<LocalEventChannel> localEventChannel;
+
+    @Autowired
+    private ClaimCheckResolver claimCheckResolver;
+
+    @Autowired
+    private CachedUpcasterChain upcasterChain;
+
+    @Autowired
+    private ProcessingDrain processingDrain;
+
+    @GetMapping(path = "/received-events", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody getReceivedEvents() {
+        // Written page by page as the history is read, never collected in full: it may be up to a gigabyte
+        return out -> {
+            try (JsonGenerator json = JSON.createGenerator(out)) {
+                json.writeStartArray();
+                receivedEventHistory.forEach(payload -> {
+                    try {
+                        json.writeString(payload);
+                    } catch (java.io.IOException e) {
+                        throw new java.io.UncheckedIOException(e);
+                    }
+                });
+                json.writeEndArray();
+            } catch (java.io.UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+    }
+
+    @GetMapping("/received-events/range")
+    public java.util.List<java.util.Map<String, Object>> getReceivedEventRange(
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Long until,
+            @RequestParam(defaultValue = "1000") int limit) {
+        // Positions come from the history index; since/until are epoch millis and take precedence
+        java.util.List<SegmentedEventLog.Entry> entries = since != null || until != null
+                ? receivedEventHistory.since(since != null ? since : 0L, until != null ? until : Long.MAX_VALUE, limit)
+                : receivedEventHistory.range(from != null ? from : 0L, limit);
+        java.util.List<java.util.Map<String, Object>> result = new java.util.ArrayList<>();
+        for (SegmentedEventLog.Entry entry : entries) {
+            java.util.Map<String, Object> item = new java.util.LinkedHashMap<>();
+            item.put("position", entry.position);
+            item.put("timestamp", entry.timestamp);
+            item.put("payload", entry.payload);
+            result.add(item);
+        }
+        return result;
+    }
+
+    @GetMapping("/received-events/history")
+    public java.util.Map<String, Object> getReceivedEventHistory() {
+        return receivedEventHistory.describe();
     }
     
     @GetMapping("/processed-events")
@@ -137,6 +304,95 @@ class TestController {
         return eventHandler.getPoisonPillEvents();
     }
     
+    @GetMapping(path = "/events/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamEvents(@RequestParam(required = false) String prefix,
+                                          @RequestParam(required = false) String contains,
+                                          @RequestParam(required = false) String regex,
+                                          @RequestParam(required = false) Long from,
+                                          @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        EventStreamPublisher.PayloadFilter filter;
+        try {
+            filter = new EventStreamPublisher.PayloadFilter(prefix, contains, regex);
+        } catch (IllegalArgumentException e) {
+            // Covers PatternSyntaxException; answered before the stream starts, so as plain text
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN)
+                    .body("Invalid regex: " + e.getMessage());
+        }
+        Long start = from != null ? from : (lastEventId != null ? lastEventId + 1 : null);
+        return ResponseEntity.ok(eventStreamPublisher.subscribe(filter, start));
+    }
+    
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats(@RequestParam(defaultValue = "10") int top) {
+        if (top < 0) {
+            return ResponseEntity.badRequest()
+                    .body(java.util.Collections.singletonMap("error", "top must not be negative"));
+        }
+        return ResponseEntity.ok(statistics.snapshot(top));
+    }
+
+    @GetMapping("/fetcher/metrics")
+    public java.util.Map<String, Object> getFetcherMetrics() {
+        return fetcherMetrics.snapshot();
+    }
+
+    @GetMapping("/fetcher/poll-sizing")
+    public java.util.Map<String, Object> getPollSizing() {
+        return pollSizeController.describe();
+    }
+
+    @GetMapping("/handler-state")
+    public java.util.Map<String, Object> getHandlerState() {
+        return partitionState.describe();
+    }
+
+    @GetMapping("/ordering")
+    public java.util.Map<String, Object> getOrdering() {
+        return orderingMonitor.snapshot();
+    }
+
+    @GetMapping("/ordering/keys/{key}")
+    public java.util.Map<String, Object> getOrderingKey(@PathVariable String key) {
+        return orderingMonitor.key(key);
+    }
+
+    @GetMapping("/claim-checks")
+    public java.util.Map<String, Object> getClaimChecks() {
+        return claimCheckResolver.describe();
+    }
+
+    @GetMapping("/validation")
+    public java.util.Map<String, Object> getValidation() {
+        return validationStage.describe();
+    }
+
+    @GetMapping("/validation/quarantine")
+    public java.util.List<java.util.Map<String, Object>> getQuarantine(@RequestParam(defaultValue = "100") int limit) {
+        return quarantineStore.recent(limit);
+    }
+
+    @GetMapping("/upcasters")
+    public java.util.Map<String, Object> getUpcasters() {
+        return upcasterChain.describe();
+    }
+
+    @GetMapping("/drain")
+    public java.util.Map<String, Object> getDrain() {
+        return processingDrain.describe();
+    }
+
+    @GetMapping("/transport")
+    public java.util.Map<String, Object> getTransport() {
+        LocalEventChannel channel = localEventChannel.getIfAvailable();
+        if (channel == null) {
+            return java.util.Collections.singletonMap("mode", "kafka");
+        }
+        java.util.Map<String, Object> transport = new java.util.LinkedHashMap<>();
+        transport.put("mode", "in-jvm");
+        transport.putAll(channel.describe());
+        return transport;
+    }
+
     @PostMapping("/clear-state")
     public String clearState() {
         eventHandler.clearState();
@@ -0,0 +1,12 @@
+package com.example.axon;
+
+import java.io.IOException;
+
+/**
+ * Read side of the content-addressed store Service A offloads large payloads to. References have the
+ * form {@code sha256:<hex digest>}; implementations return exactly the bytes that digest describes.
+ */
+interface BlobStore {
+
+    byte[] get(String reference) throws IOException;
+}
@@ -0,0 +1,122 @@
+package com.example.axon;
+
+import org.axonframework.serialization.SerializedType;
+import org.axonframework.serialization.SimpleSerializedType;
+import org.axonframework.serialization.upcasting.event.EventUpcaster;
+import org.axonframework.serialization.upcasting.event.IntermediateEventRepresentation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link EventUpcaster} that brings older serialized revisions of a payload type to the current one by
+ * following {@link UpcastStep}s from revision to revision.
+ * <p>
+ * Axon's own chain asks every upcaster about every event. Here the steps for a (type, revision) pair are
+ * resolved once and cached, so an event already at the current revision, which is nearly every live event,
+ * costs one map lookup and passes through untouched. Steps work on the intermediate representation, so
+ * the payload is deserialized only once, by the converter, in its final shape.
+ */
+class CachedUpcasterChain implements EventUpcaster {
+    static final CachedUpcasterChain EMPTY = new CachedUpcasterChain(Collections.emptyList());
+
+    private final Map<Key, UpcastStep<?>> steps = new HashMap<>();
+    private final Map<Key, List<UpcastStep<?>>> chains = new ConcurrentHashMap<>();
+
+    CachedUpcasterChain(List<? extends UpcastStep<?>> steps) {
+        for (UpcastStep<?> step : steps) {
+            UpcastStep<?> previous = this.steps.put(new Key(step.type, step.fromRevision), step);
+            if (previous != null) {
+                throw new IllegalArgumentException("Two upcast steps start at " + step.type + " revision "
+                                                           + step.fromRevision + ": " + previous + ", " + step);
+            }
+        }
+        // Resolve every chain up front so a cycle fails at startup rather than on the first old event
+        this.steps.keySet().forEach(key -> chain(key.type, key.revision));
+    }
+
+    @Override
+    public Stream<IntermediateEventRepresentation> upcast(Stream<IntermediateEventRepresentation> representations) {
+        return steps.isEmpty() ? representations : representations.map(this::upcast);
+    }
+
+    IntermediateEventRepresentation upcast(IntermediateEventRepresentation representation) {
+        SerializedType type = representation.getType();
+        IntermediateEventRepresentation result = representation;
+        for (UpcastStep<?> step : chain(type.getName(), type.getRevision())) {
+            result = apply(step, result);
+        }
+        return result;
+    }
+
+    private static <T> IntermediateEventRepresentation apply(UpcastStep<T> step,
+                                                             IntermediateEventRepresentation representation) {
+        return representation.upcastPayload(new SimpleSerializedType(step.type, step.toRevision),
+                                            step.representation, step.conversion);
+    }
+
+    /**
+     * Whether records of {@code type} at {@code revision} need upcasting, i.e. are not at the current revision.
+     */
+    boolean needsUpcasting(String type, String revision) {
+        return !steps.isEmpty() && !chain(type, revision).isEmpty();
+    }
+
+    List<UpcastStep<?>> chain(String type, String revision) {
+        return chains.computeIfAbsent(new Key(type, revision), this::resolve);
+    }
+
+    private List<UpcastStep<?>> resolve(Key start) {
+        List<UpcastStep<?>> chain = new ArrayList<>();
+        Key key = start;
+        UpcastStep<?> step;
+        while ((step = steps.get(key)) != null) {
+            chain.add(step);
+            if (chain.size() > steps.size()) {
+                throw new IllegalArgumentException("Upcast steps of " + start.type + " form a cycle: " + chain);
+            }
+            key = new Key(step.type, step.toRevision);
+        }
+        return chain.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(chain);
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("steps", steps.values().stream().map(UpcastStep::toString).sorted()
+                                      .collect(Collectors.toList()));
+        description.put("cachedChains", chains.size());
+        return description;
+    }
+
+    private static final class Key {
+        final String type;
+        final String revision;
+
+        Key(String type, String revision) {
+            this.type = type;
+            this.revision = revision;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return type.equals(other.type) && Objects.equals(revision, other.revision);
+        }
+
+        @Override
+        public int hashCode() {
+            return type.hashCode() * 31 + Objects.hashCode(revision);
+        }
+    }
+}
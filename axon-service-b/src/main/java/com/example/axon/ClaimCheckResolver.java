@@ -0,0 +1,128 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.GenericTrackedEventMessage;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.messaging.GenericMessage;
+import org.axonframework.messaging.InterceptorChain;
+import org.axonframework.messaging.Message;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handler interceptor for the {@code kafka} processing group that swaps a claim-checked
+ * {@link TestEvent} (one whose metadata carries a {@link #REFERENCE} from Service A) for the payload stored
+ * in the {@link BlobStore}.
+ * <p>
+ * Resolution happens when the event is about to be handled, not when it is fetched, so large payloads
+ * never sit in the fetch buffer and small events are not held up behind them. Resolved payloads are kept
+ * in an LRU cache bounded by {@code events.claim-check.cache-bytes}, which serves repeats and replays.
+ */
+@Component
+class ClaimCheckResolver implements MessageHandlerInterceptor<EventMessage<?>> {
+    static final String REFERENCE = "claim-check";
+
+    private final BlobStore blobStore;
+    private final long cacheBytes;
+    private final LinkedHashMap<String, String> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong resolved = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private long cachedBytes;
+
+    @Autowired
+    ClaimCheckResolver(@Value("${events.claim-check.directory:${java.io.tmpdir}/axon-blobs}") String directory,
+                       @Value("${events.claim-check.cache-bytes:67108864}") long cacheBytes) {
+        this(new FileBlobStore(Paths.get(directory)), cacheBytes);
+    }
+
+    ClaimCheckResolver(BlobStore blobStore, long cacheBytes) {
+        this.blobStore = blobStore;
+        this.cacheBytes = cacheBytes;
+    }
+
+    @Override
+    public Object handle(UnitOfWork<? extends EventMessage<?>> unitOfWork, InterceptorChain interceptorChain)
+            throws Exception {
+        Object reference = unitOfWork.getMessage().getMetaData().get(REFERENCE);
+        if (reference instanceof String) {
+            TestEvent payload = new TestEvent(resolve((String) reference));
+            unitOfWork.transformMessage(message -> withPayload(message, payload));
+        }
+        return interceptorChain.proceed();
+    }
+
+    String resolve(String reference) {
+        resolved.incrementAndGet();
+        synchronized (cache) {
+            String cached = cache.get(reference);
+            if (cached != null) {
+                cacheHits.incrementAndGet();
+                return cached;
+            }
+        }
+        String payload;
+        try {
+            payload = new String(blobStore.get(reference), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to resolve claim check " + reference, e);
+        }
+        cache(reference, payload);
+        return payload;
+    }
+
+    private void cache(String reference, String payload) {
+        long size = weight(payload);
+        if (size > cacheBytes) {
+            return;
+        }
+        synchronized (cache) {
+            if (cache.put(reference, payload) == null) {
+                cachedBytes += size;
+            }
+            Iterator<String> eldest = cache.values().iterator();
+            while (cachedBytes > cacheBytes && eldest.hasNext()) {
+                cachedBytes -= weight(eldest.next());
+                eldest.remove();
+            }
+        }
+    }
+
+    private static long weight(String payload) {
+        // Upper bound of a String's heap footprint: compact Latin-1 strings use one byte per char
+        return payload.length() * 2L;
+    }
+
+    private static EventMessage<?> withPayload(EventMessage<?> message, Object payload) {
+        Message<Object> resolved = new GenericMessage<>(message.getIdentifier(), payload, message.getMetaData());
+        if (message instanceof TrackedEventMessage) {
+            return new GenericTrackedEventMessage<>(((TrackedEventMessage<?>) message).trackingToken(), resolved,
+                                                    message::getTimestamp);
+        }
+        return new GenericEventMessage<>(resolved, message::getTimestamp);
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("resolved", resolved.get());
+        description.put("cacheHits", cacheHits.get());
+        synchronized (cache) {
+            description.put("cachedPayloads", cache.size());
+            description.put("cachedBytes", cachedBytes);
+        }
+        description.put("cacheLimitBytes", cacheBytes);
+        return description;
+    }
+}
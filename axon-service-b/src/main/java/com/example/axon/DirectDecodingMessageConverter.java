@@ -0,0 +1,119 @@
+package com.example.axon;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.extensions.kafka.eventhandling.HeaderUtils;
+import org.axonframework.extensions.kafka.eventhandling.KafkaMessageConverter;
+import org.axonframework.messaging.MetaData;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static org.axonframework.messaging.Headers.AGGREGATE_ID;
+import static org.axonframework.messaging.Headers.MESSAGE_ID;
+import static org.axonframework.messaging.Headers.MESSAGE_METADATA;
+import static org.axonframework.messaging.Headers.MESSAGE_TIMESTAMP;
+import static org.axonframework.messaging.Headers.MESSAGE_REVISION;
+import static org.axonframework.messaging.Headers.MESSAGE_TYPE;
+
+/**
+ * {@link KafkaMessageConverter} that builds {@link TestEvent} messages straight from the record bytes with a
+ * {@link TestEventDecoder}, skipping the serializer's intermediate representations (XML DOM, JSON tree,
+ * upcaster stream).
+ * <p>
+ * The payload type is read from the record headers first. Records whose type no handler accepts are
+ * turned into a {@link SkippedRecord} placeholder without looking at the value: the processor ignores it
+ * but still advances its token past the record. {@link TestEvent} payloads are decoded on first access
+ * through a {@link LazyTestEventMessage}, unless their revision needs upcasting. Domain events, older
+ * revisions and other handled payload types go to the delegate, which is also used for writing.
+ */
+class DirectDecodingMessageConverter implements KafkaMessageConverter<String, byte[]> {
+    private static final byte[] TEST_EVENT_TYPE = TestEvent.class.getName().getBytes(StandardCharsets.UTF_8);
+    private static final String METADATA_PREFIX = MESSAGE_METADATA + "-";
+
+    private final KafkaMessageConverter<String, byte[]> delegate;
+    private final Predicate<String> handledTypes;
+    private final AtomicLong skippedRecords;
+    private final CachedUpcasterChain upcasters;
+
+    DirectDecodingMessageConverter(KafkaMessageConverter<String, byte[]> delegate) {
+        this(delegate, type -> true, new AtomicLong(), CachedUpcasterChain.EMPTY);
+    }
+
+    DirectDecodingMessageConverter(KafkaMessageConverter<String, byte[]> delegate, Predicate<String> handledTypes,
+                                   AtomicLong skippedRecords, CachedUpcasterChain upcasters) {
+        this.delegate = delegate;
+        this.handledTypes = handledTypes;
+        this.skippedRecords = skippedRecords;
+        this.upcasters = upcasters;
+    }
+
+    @Override
+    public ProducerRecord<String, byte[]> createKafkaMessage(EventMessage<?> eventMessage, String topic) {
+        return delegate.createKafkaMessage(eventMessage, topic);
+    }
+
+    @Override
+    public Optional<EventMessage<?>> readKafkaMessage(ConsumerRecord<String, byte[]> consumerRecord) {
+        Headers headers = consumerRecord.headers();
+        Header type = headers.lastHeader(MESSAGE_TYPE);
+        String identifier = HeaderUtils.valueAsString(headers, MESSAGE_ID);
+        Long timestamp = HeaderUtils.valueAsLong(headers, MESSAGE_TIMESTAMP);
+        if (type == null || identifier == null || timestamp == null) {
+            return delegate.readKafkaMessage(consumerRecord);
+        }
+        boolean testEvent = Arrays.equals(type.value(), TEST_EVENT_TYPE);
+        if (!testEvent && !handledTypes.test(new String(type.value(), StandardCharsets.UTF_8))) {
+            skippedRecords.incrementAndGet();
+            return Optional.of(new GenericEventMessage<>(identifier, SkippedRecord.INSTANCE, MetaData.emptyInstance(),
+                                                         Instant.ofEpochMilli(timestamp)));
+        }
+        if (!testEvent || headers.lastHeader(AGGREGATE_ID) != null
+                || upcasters.needsUpcasting(TestEvent.class.getName(), HeaderUtils.valueAsString(headers, MESSAGE_REVISION))) {
+            // Older TestEvent revisions take the delegate's path, which runs the upcasters first
+            return delegate.readKafkaMessage(consumerRecord);
+        }
+        LazyTestEventMessage message = new LazyTestEventMessage(
+                identifier, consumerRecord.value(), metaData(headers),
+                () -> (TestEvent) delegate.readKafkaMessage(consumerRecord)
+                                          .map(EventMessage::getPayload)
+                                          .orElseThrow(() -> new IllegalStateException(
+                                                  "Record at offset " + consumerRecord.offset() + " of "
+                                                          + consumerRecord.topic() + "-" + consumerRecord.partition()
+                                                          + " is not a readable TestEvent")));
+        return Optional.of(new GenericEventMessage<>(message, () -> Instant.ofEpochMilli(timestamp)));
+    }
+
+    private static MetaData metaData(Headers headers) {
+        // Most records carry no metadata; avoid building the header map for them
+        for (Header header : headers) {
+            if (header.key().startsWith(METADATA_PREFIX)) {
+                return MetaData.from(HeaderUtils.extractAxonMetadata(headers));
+            }
+        }
+        return MetaData.emptyInstance();
+    }
+
+    /**
+     * Payload standing in for a record whose type no handler in this service accepts.
+     */
+    static final class SkippedRecord {
+        static final SkippedRecord INSTANCE = new SkippedRecord();
+
+        private SkippedRecord() {
+        }
+
+        @Override
+        public String toString() {
+            return "SkippedRecord";
+        }
+    }
+}
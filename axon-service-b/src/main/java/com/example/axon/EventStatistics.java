@@ -0,0 +1,104 @@
+package com.example.axon;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate aggregate statistics over everything {@link TestEventHandler} has seen, maintained
+ * incrementally in constant memory: a HyperLogLog for distinct payloads, a Space-Saving summary for the
+ * most duplicated payloads and per-second windowed counters for event and poison-pill rates.
+ */
+@Component
+class EventStatistics {
+    private static final long BUCKET_MILLIS = 1000;
+
+    private final HyperLogLog distinctPayloads;
+    private final SpaceSavingCounter heavyHitters;
+    private final WindowedCounter receivedRate;
+    private final WindowedCounter poisonPillRate;
+    private long totalReceived;
+    private long totalPoisonPills;
+
+    EventStatistics(@Value("${events.stats.hll-precision:14}") int hllPrecision,
+                    @Value("${events.stats.heavy-hitters:64}") int heavyHitterCapacity,
+                    @Value("${events.stats.rate-window-seconds:300}") int rateWindowSeconds) {
+        this.distinctPayloads = new HyperLogLog(hllPrecision);
+        this.heavyHitters = new SpaceSavingCounter(heavyHitterCapacity);
+        this.receivedRate = new WindowedCounter(rateWindowSeconds, BUCKET_MILLIS);
+        this.poisonPillRate = new WindowedCounter(rateWindowSeconds, BUCKET_MILLIS);
+    }
+
+    synchronized void record(String payload, boolean poisonPill) {
+        record(payload, poisonPill, System.currentTimeMillis());
+    }
+
+    synchronized void record(String payload, boolean poisonPill, long nowMillis) {
+        totalReceived++;
+        String key = payload == null ? "" : payload;
+        distinctPayloads.add(key);
+        heavyHitters.add(key);
+        receivedRate.increment(nowMillis);
+        if (poisonPill) {
+            totalPoisonPills++;
+            poisonPillRate.increment(nowMillis);
+        }
+    }
+
+    synchronized Map<String, Object> snapshot(int topLimit) {
+        return snapshot(topLimit, System.currentTimeMillis());
+    }
+
+    synchronized Map<String, Object> snapshot(int topLimit, long nowMillis) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long distinct = Math.min(distinctPayloads.estimate(), totalReceived);
+        stats.put("totalReceived", totalReceived);
+        stats.put("distinctPayloadsEstimate", distinct);
+        stats.put("duplicatesEstimate", totalReceived - distinct);
+
+        List<Map<String, Object>> top = new ArrayList<>();
+        // only payloads guaranteed to have been seen at least twice are duplicates
+        for (SpaceSavingCounter.Counter counter : heavyHitters.top(topLimit, 2)) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("payload", counter.item);
+            entry.put("count", counter.count);
+            entry.put("maxOvercount", counter.error);
+            top.add(entry);
+        }
+        stats.put("topDuplicates", top);
+
+        stats.put("totalPoisonPills", totalPoisonPills);
+        stats.put("poisonPillRatio", totalReceived == 0 ? 0.0 : (double) totalPoisonPills / totalReceived);
+        stats.put("rates", rates(nowMillis));
+        stats.put("poisonPillsPerSecond", poisonPillRate.series(nowMillis));
+        return stats;
+    }
+
+    private Map<String, Object> rates(long nowMillis) {
+        Map<String, Object> rates = new LinkedHashMap<>();
+        for (long windowSeconds : new long[]{60, receivedRate.windowMillis() / 1000}) {
+            long windowMillis = windowSeconds * 1000;
+            long received = receivedRate.count(nowMillis, windowMillis);
+            long poison = poisonPillRate.count(nowMillis, windowMillis);
+            Map<String, Object> window = new LinkedHashMap<>();
+            window.put("eventsPerSecond", (double) received / windowSeconds);
+            window.put("poisonPillsPerSecond", (double) poison / windowSeconds);
+            window.put("poisonPillRatio", received == 0 ? 0.0 : (double) poison / received);
+            rates.put(windowSeconds + "s", window);
+        }
+        return rates;
+    }
+
+    synchronized void clear() {
+        distinctPayloads.clear();
+        heavyHitters.clear();
+        receivedRate.clear();
+        poisonPillRate.clear();
+        totalReceived = 0;
+        totalPoisonPills = 0;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.axon;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded ring buffer of processed events that live-tail observers read from.
+ * <p>
+ * Writers never block: {@link #append(String)} claims a sequence number and overwrites the oldest slot.
+ * Readers keep their own cursor and detect when they have been lapped, so a slow observer loses the
+ * oldest entries instead of holding back the event handler.
+ */
+@Component
+class EventStreamBuffer {
+
+    static final class Entry {
+        final long sequence;
+        final String payload;
+        final long timestamp;
+
+        Entry(long sequence, String payload, long timestamp) {
+            this.sequence = sequence;
+            this.payload = payload;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Outcome of a {@link #read} call: the next cursor position and how many entries were lost
+     * because the reader fell more than one buffer length behind.
+     */
+    static final class ReadResult {
+        final long nextCursor;
+        final long dropped;
+
+        ReadResult(long nextCursor, long dropped) {
+            this.nextCursor = nextCursor;
+            this.dropped = dropped;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    EventStreamBuffer(@Value("${events.stream.buffer-capacity:4096}") int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Buffer capacity must be positive but was " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    void append(String payload) {
+        long sequence = nextSequence.getAndIncrement();
+        slots.set((int) (sequence & mask), new Entry(sequence, payload, System.currentTimeMillis()));
+    }
+
+    /**
+     * Sequence number the next appended entry will receive; a new subscriber starting here only sees
+     * events appended after it subscribed.
+     */
+    long headSequence() {
+        return nextSequence.get();
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * Copies up to {@code maxEntries} entries starting at {@code cursor} into {@code out}. Entries whose
+     * slot has not been published yet end the read; they will be picked up by the next call.
+     */
+    ReadResult read(long cursor, int maxEntries, List<Entry> out) {
+        long head = nextSequence.get();
+        long oldest = Math.max(0, head - slots.length());
+        long dropped = 0;
+        if (cursor < oldest) {
+            dropped = oldest - cursor;
+            cursor = oldest;
+        }
+        int read = 0;
+        while (cursor < head && read < maxEntries) {
+            Entry entry = slots.get((int) (cursor & mask));
+            if (entry == null || entry.sequence < cursor) {
+                break;
+            }
+            if (entry.sequence > cursor) {
+                // lapped by a writer while reading, skip ahead to the oldest entry still in the buffer
+                long resumeAt = Math.max(cursor + 1, nextSequence.get() - slots.length());
+                dropped += resumeAt - cursor;
+                cursor = resumeAt;
+                continue;
+            }
+            out.add(entry);
+            cursor++;
+            read++;
+        }
+        return new ReadResult(cursor, dropped);
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.axon;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pushes entries from the {@link EventStreamBuffer} to Server-Sent Events subscribers.
+ * <p>
+ * A dispatcher thread hands each subscriber with new entries a delivery of its own, at most one at a time, on
+ * a sender pool; observers only pay for events appended since their last delivery and never run on the event
+ * processing thread. An {@link SseEmitter} write blocks while the client's TCP window is full, so a slow
+ * client holds up only its own delivery and, falling behind the ring buffer, is told how many events it lost.
+ * One whose write has not returned within {@code events.stream.send-timeout-ms} is dropped; its emitter is
+ * completed once the write returns, since the emitter cannot be touched while a write holds it.
+ */
+@Component
+class EventStreamPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(EventStreamPublisher.class);
+
+    /**
+     * Server-side payload filter; all configured conditions must match.
+     * <p>
+     * The regex comes from the client and runs on the sender pool every subscriber shares, so it is
+     * bounded: at most {@link #MAX_REGEX_LENGTH} characters, matched against the first
+     * {@link #MAX_MATCHED_CHARS} characters of a payload, and given up as no match after
+     * {@link #MAX_MATCH_STEPS} character reads, which stops a backtracking pattern from stalling every stream.
+     */
+    static final class PayloadFilter {
+        static final int MAX_REGEX_LENGTH = 256;
+        static final int MAX_MATCHED_CHARS = 4096;
+        static final int MAX_MATCH_STEPS = 1_000_000;
+
+        private final String prefix;
+        private final String contains;
+        private final Pattern regex;
+
+        /**
+         * @throws IllegalArgumentException if {@code regex} is too long or not a valid pattern
+         */
+        PayloadFilter(String prefix, String contains, String regex) {
+            if (regex != null && regex.length() > MAX_REGEX_LENGTH) {
+                throw new IllegalArgumentException("regex is longer than " + MAX_REGEX_LENGTH + " characters");
+            }
+            this.prefix = prefix;
+            this.contains = contains;
+            this.regex = regex == null ? null : Pattern.compile(regex);
+        }
+
+        boolean matches(String payload) {
+            if (payload == null) {
+                return false;
+            }
+            if (prefix != null && !payload.startsWith(prefix)) {
+                return false;
+            }
+            if (contains != null && !payload.contains(contains)) {
+                return false;
+            }
+            if (regex == null) {
+                return true;
+            }
+            Matcher matcher = regex.matcher(new MeteredInput(payload));
+            matcher.region(0, Math.min(payload.length(), MAX_MATCHED_CHARS)).useAnchoringBounds(false);
+            try {
+                return matcher.find();
+            } catch (MatchBudgetExceeded e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * A payload that counts the characters the regex engine reads and stops it past the budget.
+     */
+    private static final class MeteredInput implements CharSequence {
+        private final String payload;
+        private int steps;
+
+        MeteredInput(String payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public int length() {
+            return payload.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++steps > PayloadFilter.MAX_MATCH_STEPS) {
+                throw new MatchBudgetExceeded();
+            }
+            return payload.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return payload.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return payload;
+        }
+    }
+
+    private static final class MatchBudgetExceeded extends RuntimeException {
+        MatchBudgetExceeded() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final PayloadFilter filter;
+        private volatile long cursor;
+        private volatile boolean closed;
+        private volatile boolean sending;
+        private volatile long sendingSince;
+        private volatile boolean timedOut;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, PayloadFilter filter, long cursor) {
+            this.emitter = emitter;
+            this.filter = filter;
+            this.cursor = cursor;
+        }
+    }
+
+    private final EventStreamBuffer buffer;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "event-stream-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senders = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "event-stream-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final int batchSize;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final AtomicLong slowDropped = new AtomicLong();
+
+    @Autowired
+    EventStreamPublisher(EventStreamBuffer buffer,
+                         @Value("${events.stream.dispatch-interval-ms:100}") long dispatchIntervalMillis,
+                         @Value("${events.stream.batch-size:256}") int batchSize,
+                         @Value("${events.stream.emitter-timeout-ms:0}") long timeoutMillis,
+                         @Value("${events.stream.send-timeout-ms:10000}") long sendTimeoutMillis) {
+        this.buffer = buffer;
+        this.batchSize = batchSize;
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        dispatcher.scheduleWithFixedDelay(this::dispatch, dispatchIntervalMillis, dispatchIntervalMillis,
+                                          TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a new subscriber. Without a {@code fromSequence} the subscriber starts at the current
+     * head; an older sequence (e.g. a reconnect's Last-Event-ID) replays whatever is still buffered.
+     */
+    SseEmitter subscribe(PayloadFilter filter, Long fromSequence) {
+        return subscribe(new SseEmitter(timeoutMillis), filter, fromSequence);
+    }
+
+    SseEmitter subscribe(SseEmitter emitter, PayloadFilter filter, Long fromSequence) {
+        long start = fromSequence == null ? buffer.headSequence() : Math.max(0, fromSequence);
+        Subscriber subscriber = new Subscriber(emitter, filter, start);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        subscribers.add(subscriber);
+        logger.debug("Event stream subscriber added at sequence {}, {} active", start, subscribers.size());
+        return emitter;
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Subscribers dropped because a write did not return within the send timeout.
+     */
+    long slowDropped() {
+        return slowDropped.get();
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+    }
+
+    private void dispatch() {
+        long now = System.nanoTime();
+        long head = buffer.headSequence();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.closed) {
+                continue;
+            }
+            if (subscriber.sending) {
+                if (now - subscriber.sendingSince > sendTimeoutNanos) {
+                    logger.info("Event stream subscriber did not take a write within {} ms, dropping it",
+                                TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+                    subscriber.timedOut = true;
+                    remove(subscriber);
+                    slowDropped.incrementAndGet();
+                    if (!subscriber.sending) {
+                        // The write returned meanwhile, too late to see the flag
+                        completeDropped(subscriber);
+                    }
+                }
+                continue;
+            }
+            if (subscriber.cursor >= head) {
+                continue;
+            }
+            subscriber.sendingSince = now;
+            subscriber.sending = true;
+            try {
+                senders.execute(() -> deliver(subscriber, head));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                subscriber.sending = false;
+            }
+        }
+    }
+
+    /**
+     * Sends {@code subscriber} what was appended up to {@code target}, on a sender thread of its own.
+     */
+    private void deliver(Subscriber subscriber, long target) {
+        List<EventStreamBuffer.Entry> entries = new ArrayList<>(batchSize);
+        try {
+            // bound the work per delivery so a busy producer cannot keep a sender on one subscriber
+            EventStreamBuffer.ReadResult result;
+            do {
+                entries.clear();
+                result = buffer.read(subscriber.cursor, batchSize, entries);
+                subscriber.cursor = result.nextCursor;
+                if (result.dropped > 0) {
+                    subscriber.emitter.send(SseEmitter.event().name("dropped").data(result.dropped));
+                }
+                for (EventStreamBuffer.Entry entry : entries) {
+                    if (subscriber.filter.matches(entry.payload)) {
+                        subscriber.emitter.send(SseEmitter.event()
+                                                          .id(Long.toString(entry.sequence))
+                                                          .name("event")
+                                                          .data(entry.payload));
+                    }
+                }
+            } while (!subscriber.closed && entries.size() == batchSize && subscriber.cursor < target);
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Event stream subscriber disconnected: {}", e.getMessage());
+            subscriber.emitter.completeWithError(e);
+            remove(subscriber);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to dispatch events to stream subscriber", e);
+        } finally {
+            subscriber.sending = false;
+            if (subscriber.timedOut) {
+                completeDropped(subscriber);
+            }
+        }
+    }
+
+    private static void completeDropped(Subscriber subscriber) {
+        if (subscriber.completed.compareAndSet(false, true)) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+}
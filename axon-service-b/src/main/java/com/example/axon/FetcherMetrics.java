@@ -0,0 +1,54 @@
+package com.example.axon;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and gauges published by {@link PipelinedFetcher}, summed over all open streams, plus the
+ * records {@link DirectDecodingMessageConverter} skipped because no handler accepts their payload type.
+ * The prefetch limits are the ones {@link PollSizeController} set for the latest poll.
+ */
+@Component
+class FetcherMetrics {
+    final AtomicLong bufferedBytes = new AtomicLong();
+    final AtomicLong bufferedBatches = new AtomicLong();
+    final AtomicLong polls = new AtomicLong();
+    final AtomicLong emptyPolls = new AtomicLong();
+    final AtomicLong records = new AtomicLong();
+    final AtomicLong pollWaitNanos = new AtomicLong();
+    final AtomicLong pausedPolls = new AtomicLong();
+    final AtomicLong dispatchBlockedNanos = new AtomicLong();
+    final AtomicLong skippedRecords = new AtomicLong();
+    private volatile int maxBufferedRecords;
+    private volatile long maxBufferedBytes;
+
+    void setLimits(int maxBufferedRecords, long maxBufferedBytes) {
+        this.maxBufferedRecords = maxBufferedRecords;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long max = maxBufferedBytes;
+        long buffered = bufferedBytes.get();
+        long pollCount = polls.get();
+        metrics.put("bufferedBytes", buffered);
+        metrics.put("maxBufferedBytesPerStream", max);
+        metrics.put("maxBufferedRecordsPerStream", maxBufferedRecords);
+        metrics.put("bufferOccupancy", max == 0 ? 0.0 : (double) buffered / max);
+        metrics.put("bufferedBatches", bufferedBatches.get());
+        metrics.put("polls", pollCount);
+        metrics.put("emptyPolls", emptyPolls.get());
+        metrics.put("pausedPolls", pausedPolls.get());
+        metrics.put("records", records.get());
+        metrics.put("skippedRecords", skippedRecords.get());
+        metrics.put("pollWaitMillisTotal", TimeUnit.NANOSECONDS.toMillis(pollWaitNanos.get()));
+        metrics.put("pollWaitMillisAvg", pollCount == 0 ? 0.0 : pollWaitNanos.get() / 1e6 / pollCount);
+        metrics.put("dispatchBlockedMillisTotal", TimeUnit.NANOSECONDS.toMillis(dispatchBlockedNanos.get()));
+        return metrics;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.axon;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * {@link BlobStore} over the directory Service A writes blobs to ({@code ab/abcdef...} under the digest).
+ * Content is checked against its digest, so a truncated or replaced file is never handed to a handler.
+ */
+class FileBlobStore implements BlobStore {
+    static final String SCHEME = "sha256:";
+
+    private final Path directory;
+
+    FileBlobStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public byte[] get(String reference) throws IOException {
+        if (!reference.startsWith(SCHEME) || reference.length() != SCHEME.length() + 64) {
+            throw new IllegalArgumentException("Not a blob reference: " + reference);
+        }
+        String digest = reference.substring(SCHEME.length());
+        byte[] content = Files.readAllBytes(directory.resolve(digest.substring(0, 2)).resolve(digest));
+        if (!digest.equals(digest(content))) {
+            throw new IOException("Blob " + reference + " does not match its digest");
+        }
+        return content;
+    }
+
+    static String digest(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
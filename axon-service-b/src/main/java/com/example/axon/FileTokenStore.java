@@ -0,0 +1,504 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.Segment;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventhandling.WrappedToken;
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.axonframework.eventhandling.tokenstore.UnableToClaimTokenException;
+import org.axonframework.eventhandling.tokenstore.UnableToInitializeTokenException;
+import org.axonframework.eventhandling.tokenstore.UnableToRetrieveIdentifierException;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaTrackingToken;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.SimpleSerializedObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TokenStore} keeping one small file per processor segment in a directory that may be shared by
+ * several Service B instances.
+ * <p>
+ * Each file holds the owner's name and claim timestamp next to the serialized token. A segment can be
+ * claimed when it is unowned, owned by this node, or its claim is older than the claim timeout; every
+ * read-modify-write happens under an OS file lock so instances on a shared volume cannot both win, and
+ * replaces the file atomically. Tokens are only stored for segments this node has claimed.
+ * <p>
+ * Tokens are not written on every {@link #storeToken} call. The latest token per segment is kept in
+ * memory and written once the commit interval has passed or enough events have been covered, and always
+ * when the claim is released. A crash therefore reprocesses at most one commit window, which
+ * the handler's idempotency check absorbs.
+ * <p>
+ * {@link ClaimListener}s hear when this node takes a segment and before it gives one up, so state that
+ * belongs with the segment can be handed over along with the token.
+ */
+class FileTokenStore implements TokenStore {
+    private static final Logger logger = LoggerFactory.getLogger(FileTokenStore.class);
+    private static final String SUFFIX = ".token";
+
+    /**
+     * Called under the store's lock: on a new claim before the token is returned, and on release before the
+     * segment becomes available to other nodes.
+     */
+    interface ClaimListener {
+        void claimed(String processorName, Segment segment);
+
+        void releasing(String processorName, Segment segment);
+    }
+
+    private static final class Claim {
+        TrackingToken pending;
+        long pendingEvents;
+        long lastFlushMillis;
+        long lastFlushPosition;
+        boolean dirty;
+    }
+
+    private static final class SegmentFile {
+        String owner;
+        long claimMillis;
+        String tokenType;
+        String tokenRevision;
+        byte[] tokenData;
+    }
+
+    private final Path directory;
+    private final Serializer serializer;
+    private final String nodeId;
+    private final Duration claimTimeout;
+    private final long commitIntervalMillis;
+    private final long commitEveryEvents;
+    private final Clock clock;
+    private final Map<String, Claim> claims = new HashMap<>();
+    private final List<ClaimListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService flusher;
+
+    FileTokenStore(Path directory, Serializer serializer, String nodeId, Duration claimTimeout,
+                   long commitIntervalMillis, long commitEveryEvents, Clock clock) {
+        this.directory = directory;
+        this.serializer = serializer;
+        this.nodeId = nodeId;
+        this.claimTimeout = claimTimeout;
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.commitEveryEvents = commitEveryEvents;
+        this.clock = clock;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create token directory " + directory, e);
+        }
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-store-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tick = Math.max(10, Math.min(commitIntervalMillis, claimTimeout.toMillis() / 2));
+        flusher.scheduleWithFixedDelay(this::flushDue, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    void addClaimListener(ClaimListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public synchronized void initializeTokenSegments(String processorName, int segmentCount) {
+        initializeTokenSegments(processorName, segmentCount, null);
+    }
+
+    @Override
+    public synchronized void initializeTokenSegments(String processorName, int segmentCount,
+                                                     TrackingToken initialToken) {
+        if (fetchSegments(processorName).length > 0) {
+            throw new UnableToClaimTokenException(
+                    "Could not initialize segments. Some segments were already present for " + processorName);
+        }
+        for (int segment = 0; segment < segmentCount; segment++) {
+            initializeSegment(initialToken, processorName, segment);
+        }
+    }
+
+    @Override
+    public synchronized void initializeSegment(TrackingToken token, String processorName, int segment) {
+        Path file = file(processorName, segment);
+        SegmentFile content = new SegmentFile();
+        setToken(content, token);
+        try {
+            Files.write(file, encode(content), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UnableToInitializeTokenException(
+                    "Could not initialize segment " + segment + " for processor " + processorName, e);
+        }
+    }
+
+    @Override
+    public boolean requiresExplicitSegmentInitialization() {
+        return true;
+    }
+
+    @Override
+    public synchronized void storeToken(TrackingToken token, String processorName, int segment) {
+        String key = key(processorName, segment);
+        Claim claim = claims.get(key);
+        if (claim == null) {
+            throw new UnableToClaimTokenException(
+                    "Unable to store token of segment " + segment + " of " + processorName + ": not owned by " + nodeId);
+        }
+        long position = position(token);
+        claim.pendingEvents = position >= 0 && claim.lastFlushPosition >= 0
+                ? position - claim.lastFlushPosition : claim.pendingEvents + 1;
+        claim.pending = token;
+        claim.dirty = true;
+        if (claim.pendingEvents >= commitEveryEvents
+                || clock.millis() - claim.lastFlushMillis >= commitIntervalMillis) {
+            flush(processorName, segment, claim, false);
+        }
+    }
+
+    @Override
+    public synchronized TrackingToken fetchToken(String processorName, int segment) {
+        Claim claim = claim(processorName, segment);
+        return claim.pending;
+    }
+
+    @Override
+    public synchronized void extendClaim(String processorName, int segment) {
+        Claim claim = claims.get(key(processorName, segment));
+        if (claim == null) {
+            throw new UnableToClaimTokenException(
+                    "Unable to extend claim on segment " + segment + " of " + processorName + ": not owned by " + nodeId);
+        }
+        // idle processors extend constantly; only touch the file once the claim is getting old
+        if (claim.dirty || clock.millis() - claim.lastFlushMillis >= claimTimeout.toMillis() / 4) {
+            flush(processorName, segment, claim, false);
+        }
+    }
+
+    @Override
+    public synchronized void releaseClaim(String processorName, int segment) {
+        Claim claim = claims.get(key(processorName, segment));
+        if (claim == null) {
+            return;
+        }
+        for (ClaimListener listener : listeners) {
+            try {
+                listener.releasing(processorName, segmentOf(processorName, segment));
+            } catch (RuntimeException e) {
+                logger.warn("Handing over state of segment {} of {} failed", segment, processorName, e);
+            }
+        }
+        claims.remove(key(processorName, segment));
+        flush(processorName, segment, claim, true);
+    }
+
+    @Override
+    public synchronized void deleteToken(String processorName, int segment) {
+        String key = key(processorName, segment);
+        if (!claims.containsKey(key)) {
+            throw new UnableToClaimTokenException(
+                    "Unable to delete segment " + segment + " of " + processorName + ": not owned by " + nodeId);
+        }
+        claims.remove(key);
+        try {
+            Files.deleteIfExists(file(processorName, segment));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized int[] fetchSegments(String processorName) {
+        List<Integer> segments = new ArrayList<>();
+        String prefix = processorName + "-";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String segment = name.substring(prefix.length(), name.length() - SUFFIX.length());
+                if (segment.chars().allMatch(Character::isDigit) && !segment.isEmpty()) {
+                    segments.add(Integer.parseInt(segment));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return segments.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    @Override
+    public synchronized Optional<String> retrieveStorageIdentifier() {
+        Path file = directory.resolve("identifier");
+        try {
+            if (!Files.exists(file)) {
+                try {
+                    Files.write(file, UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8),
+                                StandardOpenOption.CREATE_NEW);
+                } catch (FileAlreadyExistsException e) {
+                    // another instance created it first
+                }
+            }
+            return Optional.of(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+        } catch (IOException e) {
+            throw new UnableToRetrieveIdentifierException("Unable to read token store identifier", e);
+        }
+    }
+
+    /**
+     * Writes every pending token and stops the background flusher. Claims are left for the processors
+     * to release during their own shutdown.
+     */
+    synchronized void shutdown() {
+        flusher.shutdownNow();
+        for (Map.Entry<String, Claim> entry : new ArrayList<>(claims.entrySet())) {
+            int separator = entry.getKey().lastIndexOf('-');
+            try {
+                flush(entry.getKey().substring(0, separator),
+                      Integer.parseInt(entry.getKey().substring(separator + 1)), entry.getValue(), false);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to flush token for {} on shutdown", entry.getKey(), e);
+            }
+        }
+    }
+
+    private synchronized void flushDue() {
+        long now = clock.millis();
+        for (Map.Entry<String, Claim> entry : new ArrayList<>(claims.entrySet())) {
+            Claim claim = entry.getValue();
+            long sinceFlush = now - claim.lastFlushMillis;
+            // also refresh idle claims well before they time out and another instance takes them
+            if ((claim.dirty && sinceFlush >= commitIntervalMillis) || sinceFlush >= claimTimeout.toMillis() / 2) {
+                int separator = entry.getKey().lastIndexOf('-');
+                try {
+                    flush(entry.getKey().substring(0, separator),
+                          Integer.parseInt(entry.getKey().substring(separator + 1)), claim, false);
+                } catch (UnableToClaimTokenException e) {
+                    logger.warn("Lost claim on {}: {}", entry.getKey(), e.getMessage());
+                    claims.remove(entry.getKey());
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to flush token for {}", entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    private Claim claim(String processorName, int segment) {
+        String key = key(processorName, segment);
+        Claim existing = claims.get(key);
+        SegmentFile content = update(processorName, segment, file -> {
+            if (file.owner != null && !file.owner.equals(nodeId)
+                    && clock.millis() - file.claimMillis < claimTimeout.toMillis()) {
+                throw new UnableToClaimTokenException(
+                        "Unable to claim segment " + segment + " of " + processorName + ": owned by " + file.owner);
+            }
+            file.owner = nodeId;
+            file.claimMillis = clock.millis();
+            if (existing != null && existing.dirty) {
+                setToken(file, existing.pending);
+            }
+        });
+        Claim claim = existing != null ? existing : new Claim();
+        claim.pending = getToken(content);
+        claim.pendingEvents = 0;
+        claim.dirty = false;
+        claim.lastFlushMillis = clock.millis();
+        claim.lastFlushPosition = position(claim.pending);
+        claims.put(key, claim);
+        if (existing == null) {
+            try {
+                for (ClaimListener listener : listeners) {
+                    listener.claimed(processorName, segmentOf(processorName, segment));
+                }
+            } catch (RuntimeException e) {
+                // The file still names this node, so the processor's next attempt claims it again and retries
+                claims.remove(key);
+                throw new UnableToClaimTokenException(
+                        "Unable to take over state of segment " + segment + " of " + processorName, e);
+            }
+        }
+        return claim;
+    }
+
+    private Segment segmentOf(String processorName, int segment) {
+        return Segment.computeSegment(segment, fetchSegments(processorName));
+    }
+
+    private void flush(String processorName, int segment, Claim claim, boolean release) {
+        boolean dirty = claim.dirty;
+        TrackingToken token = claim.pending;
+        try {
+            update(processorName, segment, file -> {
+                if (file.owner != null && !file.owner.equals(nodeId)) {
+                    throw new UnableToClaimTokenException(
+                            "Segment " + segment + " of " + processorName + " was claimed by " + file.owner);
+                }
+                if (dirty) {
+                    setToken(file, token);
+                }
+                file.owner = release ? null : nodeId;
+                file.claimMillis = clock.millis();
+            });
+        } catch (UnableToClaimTokenException e) {
+            claims.remove(key(processorName, segment));
+            throw e;
+        }
+        claim.dirty = false;
+        claim.pendingEvents = 0;
+        claim.lastFlushMillis = clock.millis();
+        claim.lastFlushPosition = position(token);
+    }
+
+    private interface SegmentUpdate {
+        void apply(SegmentFile file);
+    }
+
+    private SegmentFile update(String processorName, int segment, SegmentUpdate update) {
+        Path path = file(processorName, segment);
+        if (!Files.exists(path)) {
+            throw new UnableToClaimTokenException(
+                    "Segment " + segment + " of " + processorName + " has not been initialized");
+        }
+        // The lock lives in a file of its own: the segment file is replaced, so a lock on it would not hold
+        try (FileChannel lockChannel = FileChannel.open(lockFile(processorName, segment), StandardOpenOption.CREATE,
+                                                        StandardOpenOption.WRITE);
+             FileLock ignored = lockChannel.lock()) {
+            SegmentFile content = decode(Files.readAllBytes(path));
+            update.apply(content);
+            // Written aside and moved into place, so a crash leaves the old token or the new one, never a torn file
+            Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(encode(content));
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                }
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return content;
+        } catch (IOException e) {
+            throw new UnableToClaimTokenException(
+                    "Unable to access segment " + segment + " of " + processorName, e);
+        }
+    }
+
+    private void setToken(SegmentFile file, TrackingToken token) {
+        if (token == null) {
+            file.tokenType = null;
+            file.tokenRevision = null;
+            file.tokenData = null;
+            return;
+        }
+        SerializedObject<byte[]> serialized = serializer.serialize(token, byte[].class);
+        file.tokenType = serialized.getType().getName();
+        file.tokenRevision = serialized.getType().getRevision();
+        file.tokenData = serialized.getData();
+    }
+
+    private TrackingToken getToken(SegmentFile file) {
+        if (file.tokenData == null) {
+            return null;
+        }
+        return serializer.deserialize(
+                new SimpleSerializedObject<>(file.tokenData, byte[].class, file.tokenType, file.tokenRevision));
+    }
+
+    /**
+     * Sum of Kafka offsets, used to measure how many events a pending token covers; -1 when unknown.
+     */
+    private static long position(TrackingToken token) {
+        if (token == null) {
+            return 0;
+        }
+        TrackingToken unwrapped = WrappedToken.unwrapUpperBound(token);
+        if (!(unwrapped instanceof KafkaTrackingToken)) {
+            return -1;
+        }
+        return ((KafkaTrackingToken) unwrapped).getPositions().values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private Path file(String processorName, int segment) {
+        return directory.resolve(processorName + "-" + segment + SUFFIX);
+    }
+
+    private Path lockFile(String processorName, int segment) {
+        return directory.resolve(processorName + "-" + segment + SUFFIX + ".lock");
+    }
+
+    private static String key(String processorName, int segment) {
+        return processorName + "-" + segment;
+    }
+
+    private static byte[] encode(SegmentFile file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeNullable(out, file.owner);
+        out.writeLong(file.claimMillis);
+        writeNullable(out, file.tokenType);
+        writeNullable(out, file.tokenRevision);
+        out.writeInt(file.tokenData == null ? -1 : file.tokenData.length);
+        if (file.tokenData != null) {
+            out.write(file.tokenData);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static SegmentFile decode(byte[] data) throws IOException {
+        SegmentFile file = new SegmentFile();
+        if (data.length == 0) {
+            // only a segment initialized without a token is empty; updates never leave a partial file
+            return file;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        file.owner = readNullable(in);
+        file.claimMillis = in.readLong();
+        file.tokenType = readNullable(in);
+        file.tokenRevision = readNullable(in);
+        int length = in.readInt();
+        if (length >= 0) {
+            file.tokenData = new byte[length];
+            in.readFully(file.tokenData);
+        }
+        return file;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
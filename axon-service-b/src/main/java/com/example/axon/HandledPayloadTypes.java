@@ -0,0 +1,97 @@
+package com.example.axon;
+
+import org.axonframework.config.ProcessingGroup;
+import org.axonframework.eventhandling.EventHandler;
+import org.axonframework.messaging.Message;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Answers whether any {@code @EventHandler} in the {@code kafka} processing group accepts a serialized
+ * payload type, so records nobody handles can be skipped before their payload is decoded.
+ * <p>
+ * Handler payload types are collected from the Spring beans of the group on first use, after the context
+ * has started. A type matches when it is assignable to one of them, mirroring how Axon resolves handlers;
+ * types that cannot be loaded only match a handler for {@code Object}. Decisions are cached per type name.
+ */
+@Component
+class HandledPayloadTypes implements Predicate<String> {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private final Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+    private volatile Set<Class<?>> handlerTypes;
+
+    @Override
+    public boolean test(String typeName) {
+        return decisions.computeIfAbsent(typeName, this::resolve);
+    }
+
+    private boolean resolve(String typeName) {
+        Set<Class<?>> handled = handlerTypes();
+        if (handled.contains(Object.class)) {
+            return true;
+        }
+        Class<?> type;
+        try {
+            type = ClassUtils.forName(typeName, applicationContext.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+        for (Class<?> handlerType : handled) {
+            if (handlerType.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Set<Class<?>> handlerTypes() {
+        Set<Class<?>> types = handlerTypes;
+        if (types == null) {
+            types = collect(applicationContext.getBeansWithAnnotation(ProcessingGroup.class).values());
+            handlerTypes = types;
+        }
+        return types;
+    }
+
+    static Set<Class<?>> collect(Iterable<Object> beans) {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (Object bean : beans) {
+            Class<?> beanClass = AopUtils.getTargetClass(bean);
+            ProcessingGroup group = AnnotatedElementUtils.findMergedAnnotation(beanClass, ProcessingGroup.class);
+            if (group == null || !ReplayService.PROCESSING_GROUP.equals(group.value())) {
+                continue;
+            }
+            for (Method method : ReflectionUtils.getUniqueDeclaredMethods(beanClass)) {
+                EventHandler handler = AnnotatedElementUtils.findMergedAnnotation(method, EventHandler.class);
+                if (handler == null) {
+                    continue;
+                }
+                if (handler.payloadType() != Object.class) {
+                    types.add(handler.payloadType());
+                } else if (method.getParameterCount() > 0
+                        && !Message.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                    types.add(method.getParameterTypes()[0]);
+                } else {
+                    // Handlers taking the whole message, or nothing, receive every payload type
+                    types.add(Object.class);
+                }
+            }
+        }
+        return types;
+    }
+}
@@ -1,27 +1,192 @@
 package com.example.axon;
 
+import org.axonframework.extensions.kafka.eventhandling.DefaultKafkaMessageConverter;
+import org.axonframework.extensions.kafka.eventhandling.KafkaMessageConverter;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaEventMessage;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.SortedKafkaMessageBuffer;
 import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.StreamableKafkaMessageSource;
 import org.axonframework.extensions.kafka.eventhandling.consumer.ConsumerFactory;
 import org.axonframework.extensions.kafka.eventhandling.consumer.Fetcher;
+import org.axonframework.extensions.kafka.eventhandling.producer.KafkaEventPublisher;
+import org.apache.kafka.common.TopicPartition;
+import org.axonframework.config.EventProcessingConfigurer;
+import org.axonframework.eventhandling.EventBus;
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.axonframework.eventhandling.tokenstore.inmemory.InMemoryTokenStore;
 import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.upcasting.event.EventUpcasterChain;
+import org.axonframework.serialization.json.JacksonSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import java.util.Arrays;
+import org.springframework.core.env.Environment;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Configuration
 public class KafkaConfig {
+    private static final Logger logger = LoggerFactory.getLogger(KafkaConfig.class);
     
     @Bean
     public StreamableKafkaMessageSource<String, byte[]> kafkaMessageSource(
             @Autowired ConsumerFactory<String, byte[]> consumerFactory,
-            @Autowired Fetcher fetcher,
-            @Autowired Serializer serializer) {
-        return StreamableKafkaMessageSource.<String, byte[]>builder()
-                .topics(Arrays.asList("Axon.Events"))
+            @Autowired Fetcher<String, byte[], KafkaEventMessage> fetcher,
+            @Autowired Serializer serializer,
+            @Value("${events.fetcher.stream-buffer-records:1000}") int streamBufferRecords,
+            @Value("${events.decoding.direct:true}") boolean directDecoding,
+            @Value("${events.decoding.skip-unhandled:true}") boolean skipUnhandled,
+            HandledPayloadTypes handledPayloadTypes,
+            FetcherMetrics fetcherMetrics,
+            CachedUpcasterChain upcasters,
+            Environment environment) {
+        KafkaMessageConverter<String, byte[]> converter = messageConverter(
+                serializer, directDecoding, skipUnhandled, handledPayloadTypes, fetcherMetrics, upcasters);
+        TopicSubscription subscription = TopicSubscription.forGroup(environment, ReplayService.PROCESSING_GROUP);
+        logger.info("Processing group [{}] subscribes to {}", ReplayService.PROCESSING_GROUP, subscription);
+        return subscription.applyTo(StreamableKafkaMessageSource.<String, byte[]>builder())
                 .consumerFactory(consumerFactory)
                 .fetcher(fetcher)
+                .messageConverter(converter)
+                .bufferFactory(() -> new SortedKafkaMessageBuffer<>(streamBufferRecords))
+                .build();
+    }
+
+    private static KafkaMessageConverter<String, byte[]> messageConverter(Serializer serializer,
+                                                                         boolean directDecoding,
+                                                                         boolean skipUnhandled,
+                                                                         HandledPayloadTypes handledPayloadTypes,
+                                                                         FetcherMetrics fetcherMetrics,
+                                                                         CachedUpcasterChain upcasters) {
+        KafkaMessageConverter<String, byte[]> converter = DefaultKafkaMessageConverter.builder()
                 .serializer(serializer)
+                .upcasterChain(new EventUpcasterChain(upcasters))
                 .build();
+        if (directDecoding) {
+            // TestEvent records are decoded lazily from the record bytes; unhandled types are never decoded
+            converter = new DirectDecodingMessageConverter(
+                    converter, skipUnhandled ? handledPayloadTypes : type -> true, fetcherMetrics.skippedRecords,
+                    upcasters);
+        }
+        return converter;
+    }
+
+    @Bean
+    public CachedUpcasterChain upcasterChain(ObjectProvider<UpcastStep<?>> upcastSteps) {
+        // Older payload revisions are converted on their serialized form; steps are plain beans
+        List<UpcastStep<?>> steps = upcastSteps.orderedStream().collect(Collectors.toList());
+        if (!steps.isEmpty()) {
+            logger.info("Upcasting older payload revisions with {}", steps);
+        }
+        return new CachedUpcasterChain(steps);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "axon.eventhandling.processors.kafka.source", havingValue = "queueMessageSource")
+    public MappedQueueMessageSource queueMessageSource(
+            @Autowired Serializer serializer,
+            @Value("${events.decoding.direct:true}") boolean directDecoding,
+            @Value("${events.decoding.skip-unhandled:true}") boolean skipUnhandled,
+            HandledPayloadTypes handledPayloadTypes,
+            FetcherMetrics fetcherMetrics,
+            CachedUpcasterChain upcasters,
+            @Value("${axon.kafka.default-topic:Axon.Events}") String topic,
+            @Value("${events.transport.queue.directory:${java.io.tmpdir}/axon-event-queue}") String directory,
+            @Value("${events.transport.queue.idle-park-micros:50}") long idleParkMicros) {
+        // Single-host mode: tails the memory-mapped queue Service A appends to, decoding as for Kafka
+        logger.info("Processing group [{}] tails the event queue in {}", ReplayService.PROCESSING_GROUP, directory);
+        return new MappedQueueMessageSource(
+                Paths.get(directory), new TopicPartition(topic + ".queue", 0),
+                messageConverter(serializer, directDecoding, skipUnhandled, handledPayloadTypes, fetcherMetrics,
+                                 upcasters),
+                TimeUnit.MICROSECONDS.toNanos(idleParkMicros));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "axon.eventhandling.processors.kafka.source", havingValue = "localEventChannel")
+    public LocalEventChannel localEventChannel(
+            EventBus eventBus,
+            @Value("${axon.kafka.default-topic:Axon.Events}") String topic,
+            @Value("${events.transport.local.capacity:65536}") int capacity,
+            @Value("${events.transport.local.publish-timeout-ms:5000}") long publishTimeoutMillis) {
+        // Co-located mode: whatever is published on this JVM's event bus reaches the processing group by reference
+        LocalEventChannel channel = new LocalEventChannel(new TopicPartition(topic + ".local", 0), capacity,
+                                                          publishTimeoutMillis,
+                                                          TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()));
+        eventBus.subscribe(channel::publish);
+        logger.info("Processing group [{}] reads from the in-JVM event channel", ReplayService.PROCESSING_GROUP);
+        return channel;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public Fetcher<String, byte[], KafkaEventMessage> kafkaFetcher(
+            FetcherMetrics fetcherMetrics,
+            PollSizeController pollSizeController,
+            @Value("${axon.kafka.fetcher.poll-timeout:5000}") long pollTimeoutMillis) {
+        // Replaces the starter's AsyncFetcher; its @ConditionalOnMissingBean backs off
+        return new PipelinedFetcher<>(Duration.ofMillis(pollTimeoutMillis), pollSizeController, fetcherMetrics);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "events.token-store.type", havingValue = "memory", matchIfMissing = true)
+    public TokenStore tokenStore() {
+        // Exposed as a bean so projection snapshots can seed the processor's starting position
+        return new InMemoryTokenStore();
+    }
+
+    @Bean(name = "tokenStore", destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "events.token-store.type", havingValue = "file")
+    public TokenStore fileTokenStore(
+            @Value("${events.token-store.directory:data/tokens}") String directory,
+            @Value("${events.token-store.node-id:}") String nodeId,
+            @Value("${events.token-store.claim-timeout-ms:10000}") long claimTimeoutMillis,
+            @Value("${events.token-store.commit-interval-ms:1000}") long commitIntervalMillis,
+            @Value("${events.token-store.commit-every-events:1000}") long commitEveryEvents,
+            PartitionedHandlerState partitionState) {
+        // Jackson handles KafkaTrackingToken's TopicPartition keys without extra XStream type permissions
+        String node = nodeId.isEmpty() ? ManagementFactory.getRuntimeMXBean().getName() : nodeId;
+        FileTokenStore store = new FileTokenStore(Paths.get(directory), JacksonSerializer.defaultSerializer(), node,
+                                                  Duration.ofMillis(claimTimeoutMillis), commitIntervalMillis,
+                                                  commitEveryEvents, Clock.systemUTC());
+        // Handler state moves with the segment claims between instances sharing the directory
+        store.addClaimListener(partitionState);
+        return store;
+    }
+    
+    @Bean
+    static LazyInitializationExcludeFilter eagerBeans() {
+        // With spring.main.lazy-initialization (fast-startup profile) the handler and what seeds or feeds it
+        // are still created at startup, so the first event does not wait for them; the starter's
+        // KafkaEventPublisher only registers the publishing processor when it is created
+        return LazyInitializationExcludeFilter.forBeanTypes(TestEventHandler.class, ProjectionSnapshotter.class,
+                                                            LocalEventChannel.class, KafkaEventPublisher.class);
+    }
+
+    @Autowired
+    public void configureKafkaProcessingGroup(EventProcessingConfigurer configurer, ReplayThrottle replayThrottle,
+                                              ClaimCheckResolver claimCheckResolver,
+                                              PollSizeController pollSizeController,
+                                              ValidationStage validationStage) {
+        // A key's events stay in one segment and one handler state partition; keyless ones spread over all of them
+        configurer.registerSequencingPolicy(ReplayService.PROCESSING_GROUP,
+                                            configuration -> PartitionedHandlerState::sequenceIdentifier);
+        // Outermost, so the time per record the fetch size follows includes pacing and claim-check loads
+        configurer.registerHandlerInterceptor(ReplayService.PROCESSING_GROUP, configuration -> pollSizeController);
+        // Paces replayed events only; live events pass straight through
+        configurer.registerHandlerInterceptor(ReplayService.PROCESSING_GROUP, configuration -> replayThrottle);
+        // Claim-checked payloads are loaded just before handling, never in the fetcher
+        configurer.registerHandlerInterceptor(ReplayService.PROCESSING_GROUP, configuration -> claimCheckResolver);
+        // Innermost, so claim-checked events are validated with their loaded payload; invalid ones are quarantined
+        configurer.registerHandlerInterceptor(ReplayService.PROCESSING_GROUP, configuration -> validationStage);
     }
 }
@@ -0,0 +1,76 @@
+package com.example.axon;
+
+import org.axonframework.messaging.AbstractMessage;
+import org.axonframework.messaging.Message;
+import org.axonframework.messaging.MetaData;
+
+import java.util.function.Supplier;
+
+/**
+ * {@link Message} carrying a {@link TestEvent} that is decoded from the record bytes on first access to
+ * {@link #getPayload()}. The payload type is known up front from the record headers, so Axon can route
+ * and filter the message without touching the bytes.
+ * <p>
+ * When the bytes are not in a form {@link TestEventDecoder} understands, the {@code fallback} (normally the
+ * regular serializer) produces the payload instead.
+ */
+class LazyTestEventMessage extends AbstractMessage<TestEvent> {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] data;
+    private final MetaData metaData;
+    private final transient Supplier<TestEvent> fallback;
+    private volatile TestEvent payload;
+    private volatile boolean decoded;
+
+    LazyTestEventMessage(String identifier, byte[] data, MetaData metaData, Supplier<TestEvent> fallback) {
+        super(identifier);
+        this.data = data;
+        this.metaData = metaData;
+        this.fallback = fallback;
+    }
+
+    private LazyTestEventMessage(LazyTestEventMessage original, MetaData metaData) {
+        super(original.getIdentifier());
+        this.data = original.data;
+        this.metaData = metaData;
+        this.fallback = original.fallback;
+        if (original.decoded) {
+            this.payload = original.payload;
+            this.decoded = true;
+        }
+    }
+
+    @Override
+    public MetaData getMetaData() {
+        return metaData;
+    }
+
+    @Override
+    public TestEvent getPayload() {
+        if (!decoded) {
+            synchronized (this) {
+                if (!decoded) {
+                    TestEvent event = TestEventDecoder.forCurrentThread().decode(data);
+                    payload = event != null ? event : fallback.get();
+                    decoded = true;
+                }
+            }
+        }
+        return payload;
+    }
+
+    @Override
+    public Class<TestEvent> getPayloadType() {
+        return TestEvent.class;
+    }
+
+    boolean isPayloadDecoded() {
+        return decoded;
+    }
+
+    @Override
+    protected Message<TestEvent> withMetaData(MetaData metaData) {
+        return new LazyTestEventMessage(this, metaData);
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.axon;
+
+import org.apache.kafka.common.TopicPartition;
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericTrackedEventMessage;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventhandling.WrappedToken;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaTrackingToken;
+import org.axonframework.messaging.StreamableMessageSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process transport for a publisher running in the same JVM as the {@code kafka} processing group:
+ * event messages are handed over by reference through a bounded ring, with no serialization and no broker.
+ * <p>
+ * Tokens are {@link KafkaTrackingToken}s on a single synthetic partition, so projection snapshots, replay
+ * and the token stores work unchanged, and a single partition keeps the per-key order Service A assigns.
+ * Positions start at the channel's creation time in microseconds; a token left over from an earlier run
+ * therefore lies before the retained range and the stream starts at the oldest retained message.
+ * <p>
+ * The ring holds {@code capacity} messages. While a stream is open, publishers block once the slowest
+ * stream is {@code capacity} messages behind, and fail after the publish timeout; with no open stream the
+ * oldest messages are overwritten.
+ */
+class LocalEventChannel implements StreamableMessageSource<TrackedEventMessage<?>> {
+    private static final Logger logger = LoggerFactory.getLogger(LocalEventChannel.class);
+
+    private final TopicPartition partition;
+    private final EventMessage<?>[] ring;
+    private final long base;
+    private final long publishTimeoutNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition consumed = lock.newCondition();
+    private final Set<Stream> streams = ConcurrentHashMap.newKeySet();
+    private final AtomicLong blockedPublishes = new AtomicLong();
+    private final AtomicLong rejectedPublishes = new AtomicLong();
+    private long head;
+
+    LocalEventChannel(TopicPartition partition, int capacity, long publishTimeoutMillis, long base) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.partition = partition;
+        this.ring = new EventMessage<?>[capacity];
+        this.base = base;
+        this.head = base;
+        this.publishTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(publishTimeoutMillis);
+    }
+
+    /**
+     * Appends {@code messages} in order, waiting for the slowest open stream to make room.
+     *
+     * @throws IllegalStateException when the channel stays full for the publish timeout
+     */
+    void publish(List<? extends EventMessage<?>> messages) {
+        lock.lock();
+        try {
+            for (EventMessage<?> message : messages) {
+                awaitRoom();
+                ring[index(head)] = message;
+                head++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing to the local event channel", e);
+        } finally {
+            // Also wakes streams for the messages appended before a failure
+            appended.signalAll();
+            lock.unlock();
+        }
+    }
+
+    private void awaitRoom() throws InterruptedException {
+        long remaining = publishTimeoutNanos;
+        boolean blocked = false;
+        while (head - slowestStreamPosition() >= ring.length) {
+            if (!blocked) {
+                blocked = true;
+                blockedPublishes.incrementAndGet();
+            }
+            if (remaining <= 0) {
+                rejectedPublishes.incrementAndGet();
+                throw new IllegalStateException("Local event channel is full: " + ring.length
+                                                        + " messages not yet consumed");
+            }
+            remaining = consumed.awaitNanos(remaining);
+        }
+    }
+
+    private long slowestStreamPosition() {
+        long slowest = head;
+        for (Stream stream : streams) {
+            slowest = Math.min(slowest, stream.next);
+        }
+        return slowest;
+    }
+
+    @Override
+    public BlockingStream<TrackedEventMessage<?>> openStream(TrackingToken trackingToken) {
+        TrackingToken token = WrappedToken.unwrapLowerBound(trackingToken);
+        long start = 0;
+        if (token != null) {
+            Long position = KafkaTrackingToken.from(token).getPositions().get(partition);
+            start = position == null ? 0 : position + 1;
+        }
+        lock.lock();
+        try {
+            Stream stream = new Stream(Math.min(Math.max(start, oldest()), head));
+            streams.add(stream);
+            logger.info("Opened local event stream at position {} (retained {}..{})", stream.next, oldest(), head);
+            return stream;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public TrackingToken createTailToken() {
+        return KafkaTrackingToken.emptyToken();
+    }
+
+    @Override
+    public TrackingToken createHeadToken() {
+        lock.lock();
+        try {
+            return head == base ? createTailToken() : tokenAt(head - 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public TrackingToken createTokenAt(Instant dateTime) {
+        lock.lock();
+        try {
+            // Message timestamps follow publication order closely enough for a linear scan of the ring
+            for (long position = oldest(); position < head; position++) {
+                if (!ring[index(position)].getTimestamp().isBefore(dateTime)) {
+                    return position == base ? createTailToken() : tokenAt(position - 1);
+                }
+            }
+            return createHeadToken();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Map<String, Object> describe() {
+        lock.lock();
+        try {
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put("partition", partition.toString());
+            description.put("capacity", ring.length);
+            description.put("published", head - base);
+            description.put("oldestPosition", oldest());
+            description.put("headPosition", head);
+            description.put("openStreams", streams.size());
+            description.put("backlog", head - slowestStreamPosition());
+            description.put("blockedPublishes", blockedPublishes.get());
+            description.put("rejectedPublishes", rejectedPublishes.get());
+            return description;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long oldest() {
+        return Math.max(base, head - ring.length);
+    }
+
+    private int index(long position) {
+        return (int) ((position - base) % ring.length);
+    }
+
+    private KafkaTrackingToken tokenAt(long position) {
+        return KafkaTrackingToken.newInstance(Collections.singletonMap(partition, position));
+    }
+
+    private <T> TrackedEventMessage<T> track(EventMessage<T> message, long position) {
+        return new GenericTrackedEventMessage<>(tokenAt(position), message);
+    }
+
+    private final class Stream implements BlockingStream<TrackedEventMessage<?>> {
+        private volatile long next;
+
+        private Stream(long next) {
+            this.next = next;
+        }
+
+        @Override
+        public Optional<TrackedEventMessage<?>> peek() {
+            lock.lock();
+            try {
+                skipOverwritten();
+                return next < head ? Optional.of(track(ring[index(next)], next)) : Optional.empty();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean hasNextAvailable(int timeout, TimeUnit unit) throws InterruptedException {
+            long remaining = unit.toNanos(timeout);
+            lock.lock();
+            try {
+                while (next >= head && remaining > 0) {
+                    remaining = appended.awaitNanos(remaining);
+                }
+                return next < head;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public TrackedEventMessage<?> nextAvailable() throws InterruptedException {
+            lock.lock();
+            try {
+                while (next >= head) {
+                    appended.await();
+                }
+                skipOverwritten();
+                TrackedEventMessage<?> message = track(ring[index(next)], next);
+                next++;
+                consumed.signalAll();
+                return message;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void skipOverwritten() {
+            // Only possible for a stream opened while nobody held back the publishers
+            long oldest = oldest();
+            if (next < oldest) {
+                logger.warn("Local event stream fell behind the ring; skipping positions {}..{}", next, oldest - 1);
+                next = oldest;
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                streams.remove(this);
+                consumed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
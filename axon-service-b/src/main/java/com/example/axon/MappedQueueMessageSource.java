@@ -0,0 +1,330 @@
+package com.example.axon;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericTrackedEventMessage;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventhandling.WrappedToken;
+import org.axonframework.extensions.kafka.eventhandling.KafkaMessageConverter;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaTrackingToken;
+import org.axonframework.messaging.StreamableMessageSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Tails the memory-mapped event queue Service A writes when both services run on one host, as a drop-in
+ * for {@link org.axonframework.extensions.kafka.eventhandling.consumer.streamable.StreamableKafkaMessageSource}.
+ * <p>
+ * Records hold the key, headers and value Kafka would have carried, so they go through the same
+ * {@link KafkaMessageConverter} (including direct decoding and skipping of unhandled types). Tokens are
+ * {@link KafkaTrackingToken}s whose single synthetic partition holds the record position, so snapshots,
+ * replay and the token stores work unchanged.
+ * <p>
+ * The segment layout is defined by Service A's {@code MappedQueueWriter}: 8-byte aligned records of an
+ * int length (published last, read here with acquire semantics), an int reserved word, a long timestamp
+ * and the record body; a length of -1 continues in the next segment. An idle stream spins briefly and
+ * then parks for {@code idleParkNanos} between polls, which keeps handoff latency in the microseconds
+ * without burning a core while the queue is quiet.
+ */
+class MappedQueueMessageSource implements StreamableMessageSource<TrackedEventMessage<?>> {
+    private static final Logger logger = LoggerFactory.getLogger(MappedQueueMessageSource.class);
+    private static final String SUFFIX = ".queue";
+    private static final int RECORD_HEADER = 16;
+    private static final int END_OF_SEGMENT = -1;
+    private static final int SPIN_ITERATIONS = 256;
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path directory;
+    private final TopicPartition partition;
+    private final KafkaMessageConverter<String, byte[]> converter;
+    private final long idleParkNanos;
+
+    MappedQueueMessageSource(Path directory, TopicPartition partition,
+                             KafkaMessageConverter<String, byte[]> converter, long idleParkNanos) {
+        this.directory = directory;
+        this.partition = partition;
+        this.converter = converter;
+        this.idleParkNanos = idleParkNanos;
+    }
+
+    @Override
+    public BlockingStream<TrackedEventMessage<?>> openStream(TrackingToken trackingToken) {
+        TrackingToken token = WrappedToken.unwrapLowerBound(trackingToken);
+        long start = 0;
+        if (token != null) {
+            Long position = KafkaTrackingToken.from(token).getPositions().get(partition);
+            start = position == null ? 0 : position + 1;
+        }
+        Cursor cursor = new Cursor(start);
+        logger.info("Opened event queue stream in {} at position {}", directory, cursor.position);
+        return new QueueStream(cursor);
+    }
+
+    @Override
+    public TrackingToken createTailToken() {
+        return KafkaTrackingToken.emptyToken();
+    }
+
+    @Override
+    public TrackingToken createHeadToken() {
+        List<Path> files = segmentFiles();
+        if (files.isEmpty()) {
+            return createTailToken();
+        }
+        Cursor cursor = new Cursor(baseOf(files.get(files.size() - 1)));
+        while (cursor.available() > 0) {
+            cursor.skip();
+        }
+        return cursor.position == 0 ? createTailToken() : tokenAt(cursor.position - 1);
+    }
+
+    @Override
+    public TrackingToken createTokenAt(Instant dateTime) {
+        // Record timestamps are append times, so they never decrease along the queue
+        Cursor cursor = new Cursor(0);
+        while (cursor.available() > 0 && cursor.timestamp() < dateTime.toEpochMilli()) {
+            cursor.skip();
+        }
+        return cursor.position == 0 ? createTailToken() : tokenAt(cursor.position - 1);
+    }
+
+    private KafkaTrackingToken tokenAt(long position) {
+        return KafkaTrackingToken.newInstance(Collections.singletonMap(partition, position));
+    }
+
+    private List<Path> segmentFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> result = new ArrayList<>();
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted().forEach(result::add);
+            return result;
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to list event queue segments in " + directory, e);
+        }
+    }
+
+    private static long baseOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static Path segmentFile(Path directory, long base) {
+        return directory.resolve(String.format("%020d%s", base, SUFFIX));
+    }
+
+    /**
+     * Read position in the queue: the mapped segment holding record {@code position} and its offset.
+     */
+    private final class Cursor {
+        private MappedByteBuffer segment;
+        private int offset;
+        private long position;
+
+        private Cursor(long position) {
+            this.position = position;
+            locate();
+        }
+
+        private void locate() {
+            List<Path> files = segmentFiles();
+            segment = null;
+            offset = 0;
+            if (files.isEmpty()) {
+                return;
+            }
+            Path file = files.get(0);
+            for (Path candidate : files) {
+                if (baseOf(candidate) <= position) {
+                    file = candidate;
+                }
+            }
+            long base = baseOf(file);
+            if (base > position) {
+                logger.warn("Event queue positions {}..{} were removed by retention; continuing at {}",
+                            position, base - 1, base);
+                position = base;
+            }
+            if (!map(file)) {
+                return;
+            }
+            long target = position;
+            position = base;
+            while (position < target && available() > 0) {
+                skip();
+            }
+        }
+
+        private boolean map(Path file) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < RECORD_HEADER) {
+                    // Created by the writer but not mapped yet
+                    return false;
+                }
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                offset = 0;
+                return true;
+            } catch (NoSuchFileException e) {
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to map event queue segment " + file, e);
+            }
+        }
+
+        /**
+         * Length of the record at the cursor, or 0 when the writer has not published it yet.
+         */
+        private int available() {
+            if (segment == null) {
+                locate();
+                if (segment == null) {
+                    return 0;
+                }
+            }
+            int length = (int) INT.getAcquire(segment, offset);
+            if (length == END_OF_SEGMENT) {
+                Path next = segmentFile(directory, position);
+                if (!map(next)) {
+                    // Rolled past us and already removed by retention
+                    locate();
+                    return segment == null ? 0 : available();
+                }
+                return (int) INT.getAcquire(segment, offset);
+            }
+            return length;
+        }
+
+        private long timestamp() {
+            return segment.getLong(offset + 8);
+        }
+
+        private void skip() {
+            offset = (offset + RECORD_HEADER + (int) INT.getAcquire(segment, offset) + 7) & ~7;
+            position++;
+        }
+
+        private ConsumerRecord<String, byte[]> read(int length) {
+            ByteBuffer body = segment.duplicate();
+            body.position(offset + RECORD_HEADER).limit(offset + RECORD_HEADER + length);
+            byte[] key = bytes(body, body.getShort());
+            RecordHeaders headers = new RecordHeaders();
+            int headerCount = body.getShort();
+            for (int i = 0; i < headerCount; i++) {
+                String name = new String(bytes(body, body.getShort()), StandardCharsets.UTF_8);
+                headers.add(name, bytes(body, body.getInt()));
+            }
+            byte[] value = bytes(body, body.getInt());
+            return new ConsumerRecord<>(partition.topic(), partition.partition(), position, timestamp(),
+                                        TimestampType.LOG_APPEND_TIME, (Long) null, -1,
+                                        value == null ? -1 : value.length,
+                                        key == null ? null : new String(key, StandardCharsets.UTF_8), value, headers);
+        }
+
+        private byte[] bytes(ByteBuffer buffer, int length) {
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+    }
+
+    private final class QueueStream implements BlockingStream<TrackedEventMessage<?>> {
+        private final Cursor cursor;
+        private TrackedEventMessage<?> peeked;
+
+        private QueueStream(Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public Optional<TrackedEventMessage<?>> peek() {
+            return Optional.ofNullable(fetch());
+        }
+
+        @Override
+        public boolean hasNextAvailable(int timeout, TimeUnit unit) {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            int spins = 0;
+            while (fetch() == null) {
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                if (spins++ < SPIN_ITERATIONS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(idleParkNanos);
+                    if (Thread.currentThread().isInterrupted()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public TrackedEventMessage<?> nextAvailable() throws InterruptedException {
+            while (!hasNextAvailable(1, TimeUnit.SECONDS)) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            TrackedEventMessage<?> next = peeked;
+            peeked = null;
+            return next;
+        }
+
+        private TrackedEventMessage<?> fetch() {
+            while (peeked == null) {
+                int length = cursor.available();
+                if (length <= 0) {
+                    return null;
+                }
+                long position = cursor.position;
+                Optional<EventMessage<?>> message = converter.readKafkaMessage(cursor.read(length));
+                cursor.skip();
+                // Records the converter cannot read are passed over, as on Kafka
+                message.ifPresent(m -> peeked = track(m, position));
+            }
+            return peeked;
+        }
+
+        private <T> TrackedEventMessage<T> track(EventMessage<T> message, long position) {
+            return new GenericTrackedEventMessage<>(tokenAt(position), message);
+        }
+
+        @Override
+        public void close() {
+            peeked = null;
+        }
+    }
+}
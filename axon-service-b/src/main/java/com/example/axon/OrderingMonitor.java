@@ -0,0 +1,162 @@
+package com.example.axon;
+
+import org.axonframework.messaging.MetaData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Continuous ordering verification over the per-key sequence numbers Service A puts in event metadata.
+ * <p>
+ * Only the last sequence per key is kept (see {@link SequenceTable}), so a number that is skipped is
+ * reported as a gap when the next one arrives and, should it show up later, once more as a reordering.
+ * The most recent anomalies are kept in a fixed-size ring for inspection.
+ */
+@Component
+class OrderingMonitor {
+    static final String KEY = "sequence-key";
+    static final String NUMBER = "sequence-number";
+    static final String EPOCH = "sequence-epoch";
+
+    private final SequenceTable table = new SequenceTable(1024);
+    private final Map<SequenceTable.Outcome, Long> outcomes = new EnumMap<>(SequenceTable.Outcome.class);
+    private final Anomaly[] recent;
+    private int recentNext;
+    private long recentCount;
+    private long missingEvents;
+    private long unsequenced;
+
+    OrderingMonitor(@Value("${events.ordering.recent-anomalies:100}") int recentAnomalies) {
+        this.recent = new Anomaly[Math.max(1, recentAnomalies)];
+    }
+
+    void observe(MetaData metaData) {
+        Object key = metaData.get(KEY);
+        Object number = metaData.get(NUMBER);
+        Object epoch = metaData.get(EPOCH);
+        long sequence;
+        long epochValue;
+        try {
+            sequence = number == null ? -1 : Long.parseLong(number.toString());
+            epochValue = epoch == null ? 0 : Long.parseLong(epoch.toString());
+        } catch (NumberFormatException e) {
+            sequence = -1;
+            epochValue = 0;
+        }
+        if (key == null || sequence < 0) {
+            synchronized (this) {
+                unsequenced++;
+            }
+            return;
+        }
+        observe(key.toString(), epochValue, sequence);
+    }
+
+    /**
+     * Takes over the last sequence of a key from another instance, unless this one has already seen the key.
+     */
+    synchronized void seed(String key, long epoch, long sequence) {
+        if (table.lastSequence(key) < 0) {
+            table.observe(key, epoch, sequence);
+        }
+    }
+
+    synchronized SequenceTable.Outcome observe(String key, long epoch, long sequence) {
+        long previous = table.lastSequence(key);
+        SequenceTable.Outcome outcome = table.observe(key, epoch, sequence);
+        outcomes.merge(outcome, 1L, Long::sum);
+        switch (outcome) {
+            case GAP:
+                missingEvents += sequence - previous - 1;
+                remember(new Anomaly(outcome, key, previous, sequence));
+                break;
+            case DUPLICATE:
+            case REORDERED:
+            case STALE_EPOCH:
+                remember(new Anomaly(outcome, key, previous, sequence));
+                break;
+            default:
+                break;
+        }
+        return outcome;
+    }
+
+    private void remember(Anomaly anomaly) {
+        recent[recentNext] = anomaly;
+        recentNext = (recentNext + 1) % recent.length;
+        recentCount++;
+    }
+
+    synchronized Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedKeys", table.size());
+        stats.put("tableCapacity", table.capacity());
+        for (SequenceTable.Outcome outcome : SequenceTable.Outcome.values()) {
+            stats.put(outcome.name().toLowerCase(), outcomes.getOrDefault(outcome, 0L));
+        }
+        stats.put("missingEvents", missingEvents);
+        stats.put("unsequenced", unsequenced);
+        List<Map<String, Object>> anomalies = new ArrayList<>();
+        int count = (int) Math.min(recentCount, recent.length);
+        for (int i = 1; i <= count; i++) {
+            // newest first
+            anomalies.add(recent[Math.floorMod(recentNext - i, recent.length)].toMap());
+        }
+        stats.put("recentAnomalies", anomalies);
+        return stats;
+    }
+
+    synchronized Map<String, Object> key(String key) {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("key", key);
+        long last = table.lastSequence(key);
+        state.put("seen", last >= 0);
+        if (last >= 0) {
+            state.put("lastSequence", last);
+            state.put("epoch", table.epoch(key));
+        }
+        return state;
+    }
+
+    synchronized void clear() {
+        table.clear();
+        outcomes.clear();
+        Arrays.fill(recent, null);
+        recentNext = 0;
+        recentCount = 0;
+        missingEvents = 0;
+        unsequenced = 0;
+    }
+
+    private static final class Anomaly {
+        final SequenceTable.Outcome type;
+        final String key;
+        final long lastSequence;
+        final long received;
+        final Instant at = Instant.now();
+
+        Anomaly(SequenceTable.Outcome type, String key, long lastSequence, long received) {
+            this.type = type;
+            this.key = key;
+            this.lastSequence = lastSequence;
+            this.received = received;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("type", type.name().toLowerCase());
+            map.put("key", key);
+            map.put("lastSequence", lastSequence);
+            map.put("receivedSequence", received);
+            map.put("at", at.toString());
+            return map;
+        }
+    }
+}
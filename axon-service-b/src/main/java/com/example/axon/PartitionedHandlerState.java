@@ -0,0 +1,416 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.Segment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handler state of the {@code kafka} processing group, sharded so it can follow the segments when they
+ * move between Service B instances: processed payloads for the idempotency check, the last sequence per
+ * key and counters.
+ * <p>
+ * The idempotency check itself is node-wide, like the handler's set of processed payloads used to be: a
+ * payload is a duplicate whatever key it arrives under, through whichever Service A replica, and a keyless
+ * re-publish is caught although its message identifier, and so its partition, is new. The partitions only
+ * decide where a payload is stored for the next owner.
+ * <p>
+ * An event's partition is the hash of its sequence key modulo {@link #PARTITIONS}, the same value the
+ * processor's sequencing policy ({@link #sequenceIdentifier}) hands to {@link Segment#matches(int)}. Every
+ * partition therefore lies within one segment, for up to {@code PARTITIONS} segments, and a key's events
+ * always meet the same partition.
+ * <p>
+ * {@link FileTokenStore} reports claims. Before a claim is released, the partitions of that segment are
+ * written to one file each in {@code events.handler-state.directory}, on the volume the token files share,
+ * and dropped here unless another segment this node holds still covers them. When a segment is claimed,
+ * its partitions are read back and sequences are seeded into the {@link OrderingMonitor} before the
+ * processor fetches the first event, and the payloads of every partition on the volume are added to the
+ * node-wide set. Duplicates and gaps are thus recognised across a handoff. Releasing a segment drops its
+ * partitions but not their payloads from the node-wide set. After a crash the new owner starts from the last
+ * handoff; the state added since then is rebuilt as events arrive.
+ * <p>
+ * The processed payloads here are {@link TestEventHandler}'s only idempotency state; projection snapshots
+ * store them per partition, so a restored snapshot puts each back where it came from, and those held by no
+ * partition under {@link ProjectionSnapshot#UNPARTITIONED}.
+ */
+@Component
+class PartitionedHandlerState implements FileTokenStore.ClaimListener {
+    static final int PARTITIONS = 256;
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedHandlerState.class);
+    private static final int FORMAT = 1;
+
+    private final Path directory;
+    private final OrderingMonitor orderingMonitor;
+    private final Partition[] partitions = new Partition[PARTITIONS];
+    private final Set<String> processed = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Segment> claimed = new HashMap<>();
+    private final AtomicLong checkpoints = new AtomicLong();
+    private final AtomicLong warmed = new AtomicLong();
+
+    PartitionedHandlerState(@Value("${events.handler-state.directory:data/handler-state}") String directory,
+                            OrderingMonitor orderingMonitor) {
+        this.directory = Paths.get(directory);
+        this.orderingMonitor = orderingMonitor;
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * Sequencing policy of the {@code kafka} processing group: Service A's sequence key, like the Kafka record
+     * key. Without one Axon falls back to the message identifier, as {@link #partitionOf} does.
+     */
+    static Object sequenceIdentifier(EventMessage<?> event) {
+        return event.getMetaData().get(OrderingMonitor.KEY);
+    }
+
+    static int partitionOf(EventMessage<?> event) {
+        Object key = sequenceIdentifier(event);
+        return Objects.hashCode(key != null ? key : event.getIdentifier()) & (PARTITIONS - 1);
+    }
+
+    /**
+     * Whether the payload was processed on this node or handed over to it, under any key.
+     */
+    boolean isProcessed(String payload) {
+        return processed.contains(payload);
+    }
+
+    /**
+     * Records a handled event: its payload and the sequence number Service A assigned. Returns whether the
+     * payload is new to this node; one processed before, under any key, here or by a previous owner of a
+     * partition, is counted as a duplicate. This is the handler's idempotency check; the node-wide set adds
+     * atomically, so of two concurrent copies only one is new.
+     */
+    boolean record(EventMessage<?> event, String payload) {
+        Partition partition = partitions[partitionOf(event)];
+        Object key = event.getMetaData().get(OrderingMonitor.KEY);
+        long epoch = parse(event.getMetaData().get(OrderingMonitor.EPOCH), 0);
+        long sequence = parse(event.getMetaData().get(OrderingMonitor.NUMBER), -1);
+        boolean added = processed.add(payload);
+        synchronized (partition) {
+            partition.processed.add(payload);
+            if (added) {
+                partition.handled++;
+            } else {
+                partition.duplicates++;
+            }
+            if (key != null && sequence >= 0) {
+                partition.advance(key.toString(), epoch, sequence);
+            }
+            partition.dirty = true;
+            return added;
+        }
+    }
+
+    /**
+     * Records a payload seen during a replay, for the idempotency check only.
+     */
+    void remember(EventMessage<?> event, String payload) {
+        Partition partition = partitions[partitionOf(event)];
+        processed.add(payload);
+        synchronized (partition) {
+            if (partition.processed.add(payload)) {
+                partition.dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Every payload processed on this node or handed over to it.
+     */
+    Set<String> processed() {
+        return Collections.unmodifiableSet(processed);
+    }
+
+    /**
+     * Processed payloads per partition, for a snapshot; those no partition holds, because they were handed
+     * over from segments this node does not own or restored from an older snapshot, come under
+     * {@link ProjectionSnapshot#UNPARTITIONED}.
+     */
+    Map<Integer, Set<String>> processedByPartition() {
+        Map<Integer, Set<String>> byPartition = new TreeMap<>();
+        Set<String> unpartitioned = new LinkedHashSet<>(processed);
+        for (int i = 0; i < PARTITIONS; i++) {
+            Partition partition = partitions[i];
+            synchronized (partition) {
+                if (!partition.processed.isEmpty()) {
+                    byPartition.put(i, new LinkedHashSet<>(partition.processed));
+                    unpartitioned.removeAll(partition.processed);
+                }
+            }
+        }
+        if (!unpartitioned.isEmpty()) {
+            byPartition.put(ProjectionSnapshot.UNPARTITIONED, unpartitioned);
+        }
+        return byPartition;
+    }
+
+    /**
+     * Puts back the processed payloads of {@code partition} from a snapshot. Payloads of
+     * {@link ProjectionSnapshot#UNPARTITIONED} go to the node-wide set only.
+     */
+    void restore(int partition, Collection<String> payloads) {
+        processed.addAll(payloads);
+        if (partition == ProjectionSnapshot.UNPARTITIONED) {
+            return;
+        }
+        Partition restored = partitions[partition];
+        synchronized (restored) {
+            restored.processed.addAll(payloads);
+            restored.dirty = true;
+        }
+    }
+
+    @Override
+    public void claimed(String processorName, Segment segment) {
+        if (!ReplayService.PROCESSING_GROUP.equals(processorName)) {
+            return;
+        }
+        int count = 0;
+        synchronized (claimed) {
+            claimed.put(segment.getSegmentId(), segment);
+        }
+        for (int index = 0; index < PARTITIONS; index++) {
+            Path file = file(index);
+            if (!Files.exists(file)) {
+                continue;
+            }
+            Partition stored = read(file);
+            // Any partition may hold a duplicate of what this segment will see, so all of them warm the check
+            processed.addAll(stored.processed);
+            if (!covers(segment, index)) {
+                continue;
+            }
+            Partition partition = partitions[index];
+            synchronized (partition) {
+                partition.merge(stored);
+            }
+            stored.sequences.forEach((key, last) -> orderingMonitor.seed(key, last[0], last[1]));
+            count++;
+        }
+        if (count > 0) {
+            warmed.addAndGet(count);
+            logger.info("Warmed {} handler state partitions for segment {} of [{}]", count, segment, processorName);
+        }
+    }
+
+    @Override
+    public void releasing(String processorName, Segment segment) {
+        if (!ReplayService.PROCESSING_GROUP.equals(processorName)) {
+            return;
+        }
+        List<Segment> remaining;
+        synchronized (claimed) {
+            claimed.remove(segment.getSegmentId());
+            remaining = new ArrayList<>(claimed.values());
+        }
+        int count = 0;
+        for (int index : partitionsOf(segment)) {
+            Partition partition = partitions[index];
+            synchronized (partition) {
+                if (partition.dirty) {
+                    write(index, partition);
+                    partition.dirty = false;
+                    count++;
+                }
+                if (remaining.stream().noneMatch(other -> covers(other, index))) {
+                    partition.reset();
+                }
+            }
+        }
+        checkpoints.addAndGet(count);
+        logger.info("Checkpointed {} handler state partitions of segment {} of [{}] for the next owner",
+                    count, segment, processorName);
+    }
+
+    private static List<Integer> partitionsOf(Segment segment) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int index = 0; index < PARTITIONS; index++) {
+            if (covers(segment, index)) {
+                indexes.add(index);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * A partition belongs to a segment when its low bits match; beyond {@code PARTITIONS} segments a partition
+     * is shared by several, and each of them carries all of it.
+     */
+    private static boolean covers(Segment segment, int partition) {
+        return (partition & segment.getMask()) == (segment.getSegmentId() & (PARTITIONS - 1));
+    }
+
+    private void write(int index, Partition partition) {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "partition-" + index, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT);
+                out.writeLong(partition.handled);
+                out.writeLong(partition.duplicates);
+                out.writeInt(partition.processed.size());
+                for (String payload : partition.processed) {
+                    writeString(out, payload);
+                }
+                out.writeInt(partition.sequences.size());
+                for (Map.Entry<String, long[]> entry : partition.sequences.entrySet()) {
+                    writeString(out, entry.getKey());
+                    out.writeLong(entry.getValue()[0]);
+                    out.writeLong(entry.getValue()[1]);
+                }
+            }
+            Files.move(temp, file(index), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to checkpoint handler state partition " + index, e);
+        }
+    }
+
+    private static Partition read(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int format = in.readInt();
+            if (format != FORMAT) {
+                throw new IOException("Unknown handler state format " + format);
+            }
+            Partition partition = new Partition();
+            partition.handled = in.readLong();
+            partition.duplicates = in.readLong();
+            int payloads = in.readInt();
+            for (int i = 0; i < payloads; i++) {
+                partition.processed.add(readString(in));
+            }
+            int keys = in.readInt();
+            for (int i = 0; i < keys; i++) {
+                partition.sequences.put(readString(in), new long[]{in.readLong(), in.readLong()});
+            }
+            return partition;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read handler state " + file, e);
+        }
+    }
+
+    private Path file(int index) {
+        return directory.resolve("partition-" + index + ".state");
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long parse(Object value, long fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    void clear() {
+        processed.clear();
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                partition.reset();
+            }
+        }
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        Map<Integer, Map<String, Object>> held = new TreeMap<>();
+        for (int i = 0; i < PARTITIONS; i++) {
+            Partition partition = partitions[i];
+            synchronized (partition) {
+                if (partition.handled + partition.duplicates + partition.processed.size() > 0) {
+                    Map<String, Object> counts = new LinkedHashMap<>();
+                    counts.put("handled", partition.handled);
+                    counts.put("duplicates", partition.duplicates);
+                    counts.put("payloads", partition.processed.size());
+                    counts.put("keys", partition.sequences.size());
+                    held.put(i, counts);
+                }
+            }
+        }
+        synchronized (claimed) {
+            description.put("claimedSegments", new TreeMap<>(claimed).keySet());
+        }
+        description.put("partitions", PARTITIONS);
+        description.put("payloads", processed.size());
+        description.put("checkpoints", checkpoints.get());
+        description.put("warmed", warmed.get());
+        description.put("held", held);
+        return description;
+    }
+
+    private static final class Partition {
+        final Set<String> processed = new HashSet<>();
+        final Map<String, long[]> sequences = new HashMap<>();
+        long handled;
+        long duplicates;
+        boolean dirty;
+
+        void advance(String key, long epoch, long sequence) {
+            long[] last = sequences.get(key);
+            if (last == null || epoch > last[0] || (epoch == last[0] && sequence > last[1])) {
+                sequences.put(key, new long[]{epoch, sequence});
+            }
+        }
+
+        void reset() {
+            processed.clear();
+            sequences.clear();
+            handled = 0;
+            duplicates = 0;
+            dirty = false;
+        }
+
+        /**
+         * Folds in what a previous owner stored. Counters only grow, so the larger one is the later one.
+         */
+        void merge(Partition stored) {
+            processed.addAll(stored.processed);
+            stored.sequences.forEach((key, last) -> advance(key, last[0], last[1]));
+            handled = Math.max(handled, stored.handled);
+            duplicates = Math.max(duplicates, stored.duplicates);
+        }
+    }
+}
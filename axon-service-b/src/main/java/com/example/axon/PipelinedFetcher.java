@@ -0,0 +1,278 @@
+package com.example.axon;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.axonframework.common.Registration;
+import org.axonframework.extensions.kafka.eventhandling.consumer.EventConsumer;
+import org.axonframework.extensions.kafka.eventhandling.consumer.Fetcher;
+import org.axonframework.extensions.kafka.eventhandling.consumer.RecordConverter;
+import org.axonframework.extensions.kafka.eventhandling.consumer.RuntimeErrorHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Fetcher} that keeps polling Kafka while the previous batch is still being converted and handed
+ * to the event processor.
+ * <p>
+ * Each stream gets two threads: a poller that owns the {@link Consumer} and a dispatcher that converts
+ * batches and pushes them into the stream's buffer. Between them sits a prefetch queue bounded by the
+ * number and serialized size of the records it holds, as set by a {@link PollSizeController} before each
+ * poll. When a bound is reached the poller pauses its partitions and keeps calling {@code poll()} so the
+ * consumer stays in the group without fetching more data.
+ */
+class PipelinedFetcher<K, V, E> implements Fetcher<K, V, E> {
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedFetcher.class);
+
+    private final Duration pollTimeout;
+    private final PollSizeController sizing;
+    private final FetcherMetrics metrics;
+    private final ExecutorService executor;
+    private final List<Stream> streams = new CopyOnWriteArrayList<>();
+
+    PipelinedFetcher(Duration pollTimeout, long maxBufferedBytes, FetcherMetrics metrics) {
+        this(pollTimeout, PollSizeController.fixed(maxBufferedBytes), metrics);
+    }
+
+    PipelinedFetcher(Duration pollTimeout, PollSizeController sizing, FetcherMetrics metrics) {
+        this.pollTimeout = pollTimeout;
+        this.sizing = sizing;
+        this.metrics = metrics;
+        metrics.setLimits(sizing.recordLimit(), sizing.byteLimit());
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "kafka-fetcher-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Registration poll(Consumer<K, V> consumer, RecordConverter<K, V, E> recordConverter,
+                             EventConsumer<E> eventConsumer) {
+        return poll(consumer, recordConverter, eventConsumer, e -> logger.warn("Fetching events failed", e));
+    }
+
+    @Override
+    public Registration poll(Consumer<K, V> consumer, RecordConverter<K, V, E> recordConverter,
+                             EventConsumer<E> eventConsumer, RuntimeErrorHandler runtimeErrorHandler) {
+        Stream stream = new Stream(consumer, recordConverter, eventConsumer, runtimeErrorHandler);
+        streams.add(stream);
+        stream.dispatcher = executor.submit(stream::dispatchLoop);
+        executor.execute(stream::pollLoop);
+        return () -> {
+            stream.close();
+            streams.remove(stream);
+            return true;
+        };
+    }
+
+    @Override
+    public void shutdown() {
+        for (Stream stream : streams) {
+            stream.close();
+        }
+        streams.clear();
+        executor.shutdownNow();
+    }
+
+    private static final class Batch<K, V> {
+        final ConsumerRecords<K, V> records;
+        final int count;
+        final long bytes;
+
+        Batch(ConsumerRecords<K, V> records, long bytes) {
+            this.records = records;
+            this.count = records.count();
+            this.bytes = bytes;
+        }
+    }
+
+    private final class Stream {
+        private final Consumer<K, V> consumer;
+        private final RecordConverter<K, V, E> recordConverter;
+        private final EventConsumer<E> eventConsumer;
+        private final RuntimeErrorHandler errorHandler;
+        private final ArrayDeque<Batch<K, V>> prefetched = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private long bufferedBytes;
+        private long bufferedRecords;
+        private volatile boolean running = true;
+        private volatile Future<?> dispatcher;
+
+        Stream(Consumer<K, V> consumer, RecordConverter<K, V, E> recordConverter, EventConsumer<E> eventConsumer,
+               RuntimeErrorHandler errorHandler) {
+            this.consumer = consumer;
+            this.recordConverter = recordConverter;
+            this.eventConsumer = eventConsumer;
+            this.errorHandler = errorHandler;
+        }
+
+        void pollLoop() {
+            try {
+                while (running) {
+                    sizing.adjust();
+                    int recordLimit = sizing.recordLimit();
+                    long byteLimit = sizing.byteLimit();
+                    metrics.setLimits(recordLimit, byteLimit);
+                    boolean full = isFull(recordLimit, byteLimit);
+                    Set<TopicPartition> paused = consumer.paused();
+                    if (full && paused.size() < consumer.assignment().size()) {
+                        consumer.pause(consumer.assignment());
+                    } else if (!full && !paused.isEmpty()) {
+                        consumer.resume(paused);
+                    }
+
+                    long start = System.nanoTime();
+                    ConsumerRecords<K, V> records = consumer.poll(pollTimeout);
+                    metrics.pollWaitNanos.addAndGet(System.nanoTime() - start);
+                    metrics.polls.incrementAndGet();
+                    if (full) {
+                        metrics.pausedPolls.incrementAndGet();
+                    }
+                    if (records.isEmpty()) {
+                        metrics.emptyPolls.incrementAndGet();
+                        continue;
+                    }
+                    metrics.records.addAndGet(records.count());
+                    Batch<K, V> batch = new Batch<>(records, sizeOf(records));
+                    sizing.fetched(batch.count, batch.bytes);
+                    enqueue(batch);
+                }
+            } catch (WakeupException e) {
+                // close() woke us up
+            } catch (RuntimeException e) {
+                if (running) {
+                    errorHandler.handle(e);
+                }
+            } finally {
+                running = false;
+                if (dispatcher != null) {
+                    dispatcher.cancel(true);
+                }
+                drain();
+                consumer.close();
+            }
+        }
+
+        void dispatchLoop() {
+            try {
+                while (running) {
+                    Batch<K, V> batch = take();
+                    if (batch == null) {
+                        continue;
+                    }
+                    try {
+                        List<E> events = recordConverter.convert(batch.records);
+                        long start = System.nanoTime();
+                        eventConsumer.consume(events);
+                        metrics.dispatchBlockedNanos.addAndGet(System.nanoTime() - start);
+                    } finally {
+                        release(batch.count, batch.bytes);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                if (running) {
+                    errorHandler.handle(e);
+                    close();
+                }
+            }
+        }
+
+        private void enqueue(Batch<K, V> batch) {
+            lock.lock();
+            try {
+                prefetched.addLast(batch);
+                bufferedRecords += batch.count;
+                bufferedBytes += batch.bytes;
+                metrics.bufferedBytes.addAndGet(batch.bytes);
+                metrics.bufferedBatches.incrementAndGet();
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Batch<K, V> take() throws InterruptedException {
+            lock.lock();
+            try {
+                if (prefetched.isEmpty()) {
+                    notEmpty.await(pollTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                }
+                Batch<K, V> batch = prefetched.pollFirst();
+                if (batch != null) {
+                    metrics.bufferedBatches.decrementAndGet();
+                }
+                return batch;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void drain() {
+            lock.lock();
+            try {
+                Batch<K, V> batch;
+                while ((batch = prefetched.pollFirst()) != null) {
+                    metrics.bufferedBatches.decrementAndGet();
+                    release(batch.count, batch.bytes);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release(int records, long bytes) {
+            lock.lock();
+            try {
+                bufferedRecords -= records;
+                bufferedBytes -= bytes;
+            } finally {
+                lock.unlock();
+            }
+            metrics.bufferedBytes.addAndGet(-bytes);
+        }
+
+        private boolean isFull(int recordLimit, long byteLimit) {
+            lock.lock();
+            try {
+                return bufferedRecords >= recordLimit || bufferedBytes >= byteLimit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            if (running) {
+                running = false;
+                consumer.wakeup();
+            }
+        }
+    }
+
+    private static <K, V> long sizeOf(ConsumerRecords<K, V> records) {
+        long bytes = 0;
+        for (ConsumerRecord<K, V> record : records) {
+            bytes += Math.max(0, record.serializedKeySize()) + Math.max(0, record.serializedValueSize());
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.messaging.InterceptorChain;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Feedback controller for how much {@link PipelinedFetcher} fetches ahead of the {@code kafka} processing
+ * group: the number of records and the bytes a stream may hold before it pauses its partitions.
+ * <p>
+ * As a handler interceptor it measures the time each event spends in the processing group. Before every poll
+ * the fetcher asks for new limits: the records that fit in {@code events.fetcher.adaptive.budget-fraction} of
+ * the tightest processing deadline at the measured time per record, between the configured floor and ceiling.
+ * The deadlines are the consumer's {@code max.poll.interval.ms} and the token claim timeout, after which
+ * another instance may take the segments over. A slower sample shrinks the limit at once; recovery grows it
+ * by at most a quarter per poll, following a moving average, so a single spike does not make it oscillate.
+ * The byte limit is the record limit at the average size of fetched records, capped by
+ * {@code events.fetcher.max-prefetch-bytes}. While nothing is handled the limits stay where they are.
+ */
+@Component
+class PollSizeController implements MessageHandlerInterceptor<EventMessage<?>> {
+    private static final double SMOOTHING = 0.2;
+    private static final long MIN_FETCH_BYTES = 64 * 1024;
+
+    private final boolean enabled;
+    private final int minRecords;
+    private final int maxRecords;
+    private final long maxBytes;
+    private final long budgetNanos;
+    private final LongAdder handledEvents = new LongAdder();
+    private final LongAdder handlingNanos = new LongAdder();
+    private final LongAdder fetchedRecords = new LongAdder();
+    private final LongAdder fetchedBytes = new LongAdder();
+    private final AtomicLong shrunk = new AtomicLong();
+    private final AtomicLong grown = new AtomicLong();
+    private double averageNanosPerRecord;
+    private volatile int recordLimit;
+    private volatile long byteLimit;
+
+    PollSizeController(@Value("${events.fetcher.adaptive.enabled:true}") boolean enabled,
+                       @Value("${axon.kafka.consumer.max-poll-records:500}") int initialRecords,
+                       @Value("${events.fetcher.adaptive.min-records:50}") int minRecords,
+                       @Value("${events.fetcher.adaptive.max-records:5000}") int maxRecords,
+                       @Value("${events.fetcher.max-prefetch-bytes:8388608}") long maxBytes,
+                       @Value("${axon.kafka.consumer.properties.max.poll.interval.ms:300000}") long pollIntervalMillis,
+                       @Value("${events.token-store.claim-timeout-ms:10000}") long claimTimeoutMillis,
+                       @Value("${events.fetcher.adaptive.budget-fraction:0.5}") double budgetFraction) {
+        this.enabled = enabled;
+        this.minRecords = minRecords;
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        this.budgetNanos = (long) (TimeUnit.MILLISECONDS.toNanos(Math.min(pollIntervalMillis, claimTimeoutMillis))
+                * budgetFraction);
+        this.recordLimit = enabled ? Math.max(minRecords, Math.min(maxRecords, initialRecords)) : Integer.MAX_VALUE;
+        this.byteLimit = maxBytes;
+    }
+
+    /**
+     * Limits that never change: no record limit and the given byte limit, as before this controller existed.
+     */
+    static PollSizeController fixed(long maxBytes) {
+        return new PollSizeController(false, Integer.MAX_VALUE, 1, Integer.MAX_VALUE, maxBytes, 1, 1, 1.0);
+    }
+
+    @Override
+    public Object handle(UnitOfWork<? extends EventMessage<?>> unitOfWork, InterceptorChain interceptorChain)
+            throws Exception {
+        long start = System.nanoTime();
+        try {
+            return interceptorChain.proceed();
+        } finally {
+            handled(1, System.nanoTime() - start);
+        }
+    }
+
+    void handled(int events, long nanos) {
+        handlingNanos.add(nanos);
+        handledEvents.add(events);
+    }
+
+    void fetched(int records, long bytes) {
+        fetchedRecords.add(records);
+        fetchedBytes.add(bytes);
+    }
+
+    /**
+     * Folds in what was handled since the last call and recomputes the limits; called before each poll.
+     */
+    synchronized void adjust() {
+        if (!enabled) {
+            return;
+        }
+        long events = handledEvents.sumThenReset();
+        long nanos = handlingNanos.sumThenReset();
+        if (events == 0) {
+            return;
+        }
+        double sample = (double) nanos / events;
+        averageNanosPerRecord = averageNanosPerRecord == 0
+                ? sample : averageNanosPerRecord + SMOOTHING * (sample - averageNanosPerRecord);
+        double estimate = Math.max(sample, averageNanosPerRecord);
+        int target = (int) Math.max(minRecords, Math.min(maxRecords, budgetNanos / Math.max(1.0, estimate)));
+        int current = recordLimit;
+        if (target < current) {
+            recordLimit = target;
+            shrunk.incrementAndGet();
+        } else if (target > current) {
+            recordLimit = Math.min(target, current + Math.max(1, current / 4));
+            grown.incrementAndGet();
+        }
+        long records = fetchedRecords.sum();
+        if (records > 0) {
+            long bytesPerRecord = Math.max(1, fetchedBytes.sum() / records);
+            byteLimit = Math.max(MIN_FETCH_BYTES, Math.min(maxBytes, recordLimit * bytesPerRecord));
+        }
+    }
+
+    int recordLimit() {
+        return recordLimit;
+    }
+
+    long byteLimit() {
+        return byteLimit;
+    }
+
+    synchronized Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("enabled", enabled);
+        description.put("recordLimit", recordLimit);
+        description.put("byteLimit", byteLimit);
+        description.put("minRecords", minRecords);
+        description.put("maxRecords", maxRecords);
+        description.put("maxBytes", maxBytes);
+        description.put("budgetMillis", TimeUnit.NANOSECONDS.toMillis(budgetNanos));
+        description.put("handlerMicrosPerRecord", averageNanosPerRecord / 1_000);
+        description.put("shrunk", shrunk.get());
+        description.put("grown", grown.get());
+        return description;
+    }
+}
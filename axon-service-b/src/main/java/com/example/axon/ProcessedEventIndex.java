@@ -0,0 +1,156 @@
+package com.example.axon;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Secondary indexes over the payloads {@link TestEventHandler} has processed, maintained as events arrive
+ * so queries never scan or copy the handler's collections:
+ * <ul>
+ *     <li>a hash index from payload to when it was first processed, for exact lookups;</li>
+ *     <li>a sorted index over the same entries, for prefix queries;</li>
+ *     <li>time buckets of {@code events.query.bucket-ms} holding payloads in processing order, for windows.</li>
+ * </ul>
+ * All three are concurrent structures, so queries run alongside the handler without locking it out.
+ * Payloads restored from a projection snapshot carry no processing time and are left out of the time index.
+ */
+@Component
+class ProcessedEventIndex {
+    static final long UNKNOWN_TIME = -1L;
+
+    private final long bucketMillis;
+    private final ConcurrentMap<String, Processed> byPayload = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Processed> sorted = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+
+    ProcessedEventIndex(@Value("${events.query.bucket-ms:60000}") long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+    }
+
+    /**
+     * Indexes {@code payload} unless it was indexed before; the first processing time wins.
+     */
+    void add(String payload, long processedAt, long eventTimestamp) {
+        String key = payload == null ? "" : payload;
+        Processed processed = new Processed(key, processedAt, eventTimestamp);
+        if (byPayload.putIfAbsent(key, processed) != null) {
+            return;
+        }
+        sorted.put(key, processed);
+        if (processedAt != UNKNOWN_TIME) {
+            buckets.computeIfAbsent(processedAt / bucketMillis, b -> new Bucket()).add(processed);
+        }
+    }
+
+    Processed lookup(String payload) {
+        return byPayload.get(payload == null ? "" : payload);
+    }
+
+    /**
+     * Up to {@code limit} processed payloads starting with {@code prefix}, in lexicographic order.
+     */
+    List<Processed> withPrefix(String prefix, int limit) {
+        List<Processed> result = new ArrayList<>(Math.min(limit, 64));
+        // Keys sharing a prefix are contiguous in sort order, so stop at the first one that doesn't match
+        for (Processed processed : sorted.tailMap(prefix, true).values()) {
+            if (result.size() >= limit || !processed.payload.startsWith(prefix)) {
+                break;
+            }
+            result.add(processed);
+        }
+        return result;
+    }
+
+    /**
+     * Up to {@code limit} payloads first processed in {@code [fromMillis, toMillis)}, in processing order.
+     */
+    List<Processed> inWindow(long fromMillis, long toMillis, int limit) {
+        List<Processed> result = new ArrayList<>(Math.min(limit, 64));
+        if (toMillis <= fromMillis) {
+            return result;
+        }
+        for (Bucket bucket : buckets.subMap(fromMillis / bucketMillis, true, (toMillis - 1) / bucketMillis, true).values()) {
+            if (!bucket.collect(fromMillis, toMillis, limit, result)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return byPayload.size();
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    void clear() {
+        byPayload.clear();
+        sorted.clear();
+        buckets.clear();
+    }
+
+    static final class Processed {
+        final String payload;
+        final long processedAt;
+        final long eventTimestamp;
+
+        Processed(String payload, long processedAt, long eventTimestamp) {
+            this.payload = payload;
+            this.processedAt = processedAt;
+            this.eventTimestamp = eventTimestamp;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("payload", payload);
+            map.put("processedAt", processedAt == UNKNOWN_TIME ? null : processedAt);
+            map.put("eventTimestamp", eventTimestamp == UNKNOWN_TIME ? null : eventTimestamp);
+            return map;
+        }
+    }
+
+    private static final class Bucket {
+        private final List<Processed> entries = new ArrayList<>();
+
+        synchronized void add(Processed processed) {
+            entries.add(processed);
+        }
+
+        /**
+         * Adds matching entries to {@code result}; returns {@code false} once {@code limit} is reached.
+         */
+        synchronized boolean collect(long fromMillis, long toMillis, int limit, List<Processed> result) {
+            for (Processed processed : entries) {
+                if (result.size() >= limit) {
+                    return false;
+                }
+                if (processed.processedAt >= fromMillis && processed.processedAt < toMillis) {
+                    result.add(processed);
+                }
+            }
+            return result.size() < limit;
+        }
+    }
+
+    static List<Map<String, Object>> toMaps(List<Processed> entries) {
+        if (entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> maps = new ArrayList<>(entries.size());
+        for (Processed processed : entries) {
+            maps.add(processed.toMap());
+        }
+        return maps;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.axon;
+
+import org.axonframework.config.Configuration;
+import org.axonframework.eventhandling.EventTrackerStatus;
+import org.axonframework.eventhandling.StreamingEventProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Graceful shutdown of the {@code kafka} processing group, before anything it relies on is closed.
+ * <p>
+ * The processor is told to stop and the drain waits, up to {@code events.shutdown.drain-timeout-ms}, for its
+ * workers to finish: each completes the batch it is handling, stores the token for it and releases its
+ * segment claim, which also writes the token through a coalescing token store. Another instance can claim
+ * the segments right away instead of waiting for the claim timeout. The token holds the Kafka offsets,
+ * so storing it is committing them. A batch still running after Axon's worker termination timeout is
+ * interrupted and rolled back; its events are delivered again to whoever claims the segment next.
+ * <p>
+ * This bean depends on the Axon configuration, so Spring stops it before Axon shuts the rest down, and
+ * before the fetcher and token store beans are destroyed.
+ */
+@Component
+class ProcessingDrain implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingDrain.class);
+
+    private final Supplier<Optional<StreamingEventProcessor>> processor;
+    private final long timeoutMillis;
+    private volatile boolean running;
+    private volatile Map<String, Object> report = Collections.emptyMap();
+
+    @Autowired
+    ProcessingDrain(Configuration axonConfiguration,
+                    @Value("${events.shutdown.drain-timeout-ms:20000}") long timeoutMillis) {
+        this(() -> axonConfiguration.eventProcessingConfiguration()
+                     .eventProcessor(ReplayService.PROCESSING_GROUP, StreamingEventProcessor.class),
+             timeoutMillis);
+    }
+
+    ProcessingDrain(Supplier<Optional<StreamingEventProcessor>> processor, long timeoutMillis) {
+        this.processor = processor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Optional<StreamingEventProcessor> streaming = processor.get();
+        if (streaming.isEmpty() || !streaming.get().isRunning()) {
+            // Subscribing processors handle events on the publishing thread; nothing to wait for
+            return;
+        }
+        long start = System.nanoTime();
+        Map<Integer, EventTrackerStatus> claimed = new TreeMap<>(streaming.get().processingStatus());
+        Map<String, Object> drained = new LinkedHashMap<>();
+        drained.put("processor", streaming.get().getName());
+        drained.put("segments", claimed.keySet());
+        try {
+            streaming.get().shutdownAsync().get(timeoutMillis, TimeUnit.MILLISECONDS);
+            drained.put("released", true);
+        } catch (TimeoutException e) {
+            drained.put("released", false);
+        } catch (ExecutionException e) {
+            logger.warn("Stopping processing group [{}] failed: {}", ReplayService.PROCESSING_GROUP,
+                        e.getCause().getMessage());
+            drained.put("released", false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drained.put("released", false);
+        }
+        Map<Integer, Long> positions = new TreeMap<>();
+        claimed.forEach((segment, status) -> status.getCurrentPosition()
+                .ifPresent(position -> positions.put(segment, position)));
+        drained.put("positionsAtStop", positions);
+        drained.put("drainMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        report = drained;
+        if (Boolean.TRUE.equals(drained.get("released"))) {
+            logger.info("Drained processing group [{}] for shutdown: {}", ReplayService.PROCESSING_GROUP, drained);
+        } else {
+            logger.warn("Processing group [{}] did not stop within {} ms; unreleased claims expire after the claim "
+                                + "timeout: {}", ReplayService.PROCESSING_GROUP, timeoutMillis, drained);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("timeoutMillis", timeoutMillis);
+        description.putAll(report);
+        return description;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.axon;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Point-in-time copy of {@link TestEventHandler} state together with the Kafka positions of the last
+ * event it reflects. Resuming the {@code kafka} processor from these positions reproduces the state
+ * exactly, without reprocessing the topic from the beginning.
+ */
+class ProjectionSnapshot {
+    private static final int MAGIC = 0x41585350; // "AXSP"
+    private static final int VERSION = 3;
+    /** Partition of processed payloads no partition holds, and of all read from a version 1 or 2 snapshot. */
+    static final int UNPARTITIONED = -1;
+
+    private final Map<TopicPartition, Long> positions;
+    private final List<String> receivedEvents;
+    private final long historyEnd;
+    private final Map<Integer, Set<String>> processedEvents;
+    private final List<String> poisonPillEvents;
+
+    ProjectionSnapshot(Map<TopicPartition, Long> positions,
+                       List<String> receivedEvents,
+                       Map<Integer, Set<String>> processedEvents,
+                       List<String> poisonPillEvents) {
+        this(positions, receivedEvents, -1, processedEvents, poisonPillEvents);
+    }
+
+    /**
+     * @param historyEnd end position of the persisted received-event history at snapshot time, or -1 when
+     *                   the received events are carried in {@code receivedEvents} instead
+     * @param processedEvents processed payloads by {@link PartitionedHandlerState} partition
+     */
+    ProjectionSnapshot(Map<TopicPartition, Long> positions,
+                       List<String> receivedEvents,
+                       long historyEnd,
+                       Map<Integer, Set<String>> processedEvents,
+                       List<String> poisonPillEvents) {
+        this.positions = positions;
+        this.receivedEvents = receivedEvents;
+        this.historyEnd = historyEnd;
+        this.processedEvents = processedEvents;
+        this.poisonPillEvents = poisonPillEvents;
+    }
+
+    Map<TopicPartition, Long> getPositions() {
+        return positions;
+    }
+
+    List<String> getReceivedEvents() {
+        return receivedEvents;
+    }
+
+    long getHistoryEnd() {
+        return historyEnd;
+    }
+
+    long receivedCount() {
+        return historyEnd >= 0 ? historyEnd : receivedEvents.size();
+    }
+
+    Map<Integer, Set<String>> getProcessedEvents() {
+        return processedEvents;
+    }
+
+    List<String> getPoisonPillEvents() {
+        return poisonPillEvents;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(positions.size());
+        for (Map.Entry<TopicPartition, Long> position : positions.entrySet()) {
+            writeString(out, position.getKey().topic());
+            out.writeInt(position.getKey().partition());
+            out.writeLong(position.getValue());
+        }
+        out.writeLong(historyEnd);
+        writeStrings(out, receivedEvents);
+        out.writeInt(processedEvents.size());
+        for (Map.Entry<Integer, Set<String>> partition : processedEvents.entrySet()) {
+            out.writeInt(partition.getKey());
+            writeStrings(out, partition.getValue());
+        }
+        writeStrings(out, poisonPillEvents);
+    }
+
+    static ProjectionSnapshot readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a projection snapshot");
+        }
+        int version = in.readInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported projection snapshot version " + version);
+        }
+        int partitions = in.readInt();
+        Map<TopicPartition, Long> positions = new HashMap<>(partitions * 2);
+        for (int i = 0; i < partitions; i++) {
+            String topic = readString(in);
+            int partition = in.readInt();
+            positions.put(new TopicPartition(topic, partition), in.readLong());
+        }
+        // version 1 predates the persisted history and always carries the received events
+        long historyEnd = version == 1 ? -1 : in.readLong();
+        List<String> received = readStrings(in, new ArrayList<>());
+        Map<Integer, Set<String>> processed = new TreeMap<>();
+        if (version < 3) {
+            processed.put(UNPARTITIONED, readStrings(in, new LinkedHashSet<>()));
+        } else {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                processed.put(in.readInt(), readStrings(in, new LinkedHashSet<>()));
+            }
+        }
+        List<String> poisonPills = readStrings(in, new ArrayList<>());
+        return new ProjectionSnapshot(positions, received, historyEnd, processed, poisonPills);
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static <C extends Collection<String>> C readStrings(DataInputStream in, C target) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            target.add(readString(in));
+        }
+        return target;
+    }
+
+    // length-prefixed UTF-8; DataOutputStream.writeUTF caps strings at 64KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.axon;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.axonframework.eventhandling.tokenstore.UnableToClaimTokenException;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaTrackingToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Periodically snapshots {@link TestEventHandler} state to a compact binary file and restores it on
+ * startup.
+ * <p>
+ * A timer only raises a flag; the handler captures the snapshot on the processing thread between two
+ * events, so state and token always match, and hands it back for writing on a background thread. On
+ * startup the snapshot's positions seed the {@link TokenStore} before the processor starts, so the
+ * {@code kafka} processor resumes right after the last snapshotted event. A store that already holds a
+ * position (a shared file store, say) keeps it; the snapshot then only restores the handler state.
+ */
+@Component
+class ProjectionSnapshotter {
+    private static final Logger logger = LoggerFactory.getLogger(ProjectionSnapshotter.class);
+    private static final String SNAPSHOT_FILE = "projection.snapshot";
+
+    @Autowired
+    private TokenStore tokenStore;
+
+    @Value("${events.snapshot.enabled:false}")
+    private boolean enabled;
+
+    @Value("${events.snapshot.directory:snapshots}")
+    private String directory;
+
+    @Value("${events.snapshot.interval-ms:60000}")
+    private long intervalMillis;
+
+    private final AtomicBoolean due = new AtomicBoolean();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private ScheduledExecutorService timer;
+    private ExecutorService writer;
+    private volatile ProjectionSnapshot restored;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        restored = load().orElse(null);
+        if (restored != null) {
+            resumeProcessorFrom(restored);
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "projection-snapshot-timer"));
+        timer.scheduleWithFixedDelay(() -> due.set(true), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "projection-snapshot-writer"));
+    }
+
+    /**
+     * Snapshot loaded at startup, if any; the handler seeds its collections from it.
+     */
+    Optional<ProjectionSnapshot> restored() {
+        return Optional.ofNullable(restored);
+    }
+
+    /**
+     * Whether the handler should capture a snapshot after the current event. Returns {@code true} at most
+     * once per interval and never while the previous snapshot is still being written.
+     */
+    boolean isDue() {
+        return enabled && !writing.get() && due.compareAndSet(true, false);
+    }
+
+    void submit(ProjectionSnapshot snapshot) {
+        writing.set(true);
+        writer.execute(() -> {
+            try {
+                write(snapshot);
+            } finally {
+                writing.set(false);
+            }
+        });
+    }
+
+    private void write(ProjectionSnapshot snapshot) {
+        Path dir = Paths.get(directory);
+        Path target = dir.resolve(SNAPSHOT_FILE);
+        try {
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, SNAPSHOT_FILE, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                snapshot.writeTo(out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Projection snapshot written: {} events at positions {}",
+                        snapshot.receivedCount(), snapshot.getPositions());
+        } catch (IOException e) {
+            logger.warn("Failed to write projection snapshot to {}", target, e);
+        }
+    }
+
+    private Optional<ProjectionSnapshot> load() {
+        Path file = Paths.get(directory).resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            ProjectionSnapshot snapshot = ProjectionSnapshot.readFrom(in);
+            logger.info("Loaded projection snapshot with {} events at positions {}",
+                        snapshot.receivedCount(), snapshot.getPositions());
+            return Optional.of(snapshot);
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable projection snapshot {}, rebuilding from the topic", file, e);
+            return Optional.empty();
+        }
+    }
+
+    private void resumeProcessorFrom(ProjectionSnapshot snapshot) {
+        KafkaTrackingToken token = KafkaTrackingToken.newInstance(snapshot.getPositions());
+        String processor = ReplayService.PROCESSING_GROUP;
+        if (tokenStore.fetchSegments(processor).length == 0) {
+            tokenStore.initializeTokenSegments(processor, 1, token);
+            return;
+        }
+        // A shared store's position is the group's, not this instance's: seed it only while it has none
+        try {
+            if (tokenStore.fetchToken(processor, 0) == null) {
+                tokenStore.storeToken(token, processor, 0);
+                logger.info("Seeded segment 0 of [{}] from the projection snapshot", processor);
+            } else {
+                logger.info("Token store already holds a position for [{}]; not seeding it from the snapshot",
+                            processor);
+            }
+            tokenStore.releaseClaim(processor, 0);
+        } catch (UnableToClaimTokenException e) {
+            logger.info("Segment 0 of [{}] is claimed elsewhere; not seeding it from the snapshot: {}",
+                        processor, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        if (writer != null) {
+            writer.shutdown();
+            writer.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+}
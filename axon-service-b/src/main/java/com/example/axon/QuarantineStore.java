@@ -0,0 +1,121 @@
+package com.example.axon;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.axonframework.eventhandling.EventMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Events the {@link ValidationStage} rejected, with the reason code and detail of the violation, so they can
+ * be inspected and fixed or re-published instead of disappearing from the stream. Each entry is a JSON object
+ * in a {@link SegmentedEventLog} under {@code events.validation.quarantine.directory}, retained by size and
+ * age like the received-event history.
+ */
+@Component
+class QuarantineStore {
+    private static final int MAX_PAYLOAD_CHARS = 4096;
+    private static final TypeReference<Map<String, Object>> ENTRY = new TypeReference<>() {
+    };
+
+    private final SegmentedEventLog log;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<SchemaValidator.ReasonCode, Long> counts = new EnumMap<>(SchemaValidator.ReasonCode.class);
+
+    QuarantineStore(@Value("${events.validation.quarantine.directory:data/quarantine}") String directory,
+                    @Value("${events.validation.quarantine.segment-bytes:16777216}") int segmentBytes,
+                    @Value("${events.validation.quarantine.retention-bytes:268435456}") long retentionBytes,
+                    @Value("${events.validation.quarantine.retention-hours:168}") long retentionHours) {
+        this.log = new SegmentedEventLog(Paths.get(directory), segmentBytes, 100, retentionBytes,
+                                         Duration.ofHours(retentionHours), Clock.systemUTC());
+    }
+
+    /**
+     * Stores {@code event} with the reason it was rejected and returns its position.
+     */
+    long add(EventMessage<?> event, SchemaValidator.Violation violation) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("reason", violation.reason.name());
+        entry.put("detail", violation.detail);
+        entry.put("eventIdentifier", event.getIdentifier());
+        entry.put("eventTimestamp", event.getTimestamp().toEpochMilli());
+        entry.put("payloadType", event.getPayloadType().getName());
+        entry.put("sequenceKey", event.getMetaData().get(OrderingMonitor.KEY));
+        entry.put("payload", render(event.getPayload()));
+        String json;
+        try {
+            json = mapper.writeValueAsString(entry);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Unable to quarantine event " + event.getIdentifier(), e);
+        }
+        synchronized (this) {
+            counts.merge(violation.reason, 1L, Long::sum);
+            return log.append(json);
+        }
+    }
+
+    private String render(Object payload) {
+        String rendered;
+        try {
+            rendered = mapper.writeValueAsString(payload);
+        } catch (JsonProcessingException | RuntimeException e) {
+            rendered = String.valueOf(payload);
+        }
+        return rendered.length() > MAX_PAYLOAD_CHARS ? rendered.substring(0, MAX_PAYLOAD_CHARS) : rendered;
+    }
+
+    /**
+     * The most recent {@code limit} entries, oldest first, each with its position and quarantine time.
+     */
+    synchronized List<Map<String, Object>> recent(int limit) {
+        long from = Math.max(log.startPosition(), log.endPosition() - limit);
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (SegmentedEventLog.Entry entry : log.entries(from, limit)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("position", entry.position);
+            item.put("quarantinedAt", entry.timestamp);
+            try {
+                item.putAll(mapper.readValue(entry.payload, ENTRY));
+            } catch (JsonProcessingException e) {
+                item.put("raw", entry.payload);
+            }
+            entries.add(item);
+        }
+        return entries;
+    }
+
+    synchronized long size() {
+        return log.endPosition() - log.startPosition();
+    }
+
+    synchronized void clear() {
+        log.clear();
+        counts.clear();
+    }
+
+    synchronized Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("entries", log.endPosition() - log.startPosition());
+        description.put("endPosition", log.endPosition());
+        description.put("sizeBytes", log.sizeBytes());
+        description.put("quarantinedSinceStart", new LinkedHashMap<>(counts));
+        return description;
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        log.close();
+    }
+}
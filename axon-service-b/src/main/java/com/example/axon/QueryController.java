@@ -0,0 +1,70 @@
+package com.example.axon;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookups over processed events, answered from {@link ProcessedEventIndex} rather than the handler's state.
+ */
+@RestController
+@RequestMapping("/test/query")
+class QueryController {
+    private static final int MAX_LIMIT = 10_000;
+
+    @Autowired
+    private ProcessedEventIndex index;
+
+    @GetMapping("/processed")
+    public Map<String, Object> processed(@RequestParam String payload) {
+        ProcessedEventIndex.Processed processed = index.lookup(payload);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("payload", payload);
+        result.put("processed", processed != null);
+        if (processed != null) {
+            result.putAll(processed.toMap());
+        }
+        return result;
+    }
+
+    @GetMapping("/prefix")
+    public ResponseEntity<?> prefix(@RequestParam String prefix,
+                                    @RequestParam(defaultValue = "100") int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "limit must be in 1.." + MAX_LIMIT));
+        }
+        return ResponseEntity.ok(ProcessedEventIndex.toMaps(index.withPrefix(prefix, limit)));
+    }
+
+    /**
+     * Payloads first processed in {@code [from, to)}, both epoch milliseconds.
+     */
+    @GetMapping("/window")
+    public ResponseEntity<?> window(@RequestParam long from,
+                                    @RequestParam(required = false) Long to,
+                                    @RequestParam(defaultValue = "100") int limit) {
+        long until = to == null ? Long.MAX_VALUE : to;
+        if (limit <= 0 || limit > MAX_LIMIT || until < from) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap(
+                    "error", "limit must be in 1.." + MAX_LIMIT + " and to must not precede from"));
+        }
+        List<ProcessedEventIndex.Processed> entries = index.inWindow(from, until, limit);
+        return ResponseEntity.ok(ProcessedEventIndex.toMaps(entries));
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexedPayloads", index.size());
+        stats.put("timeBuckets", index.bucketCount());
+        return stats;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.axon;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * History of every payload {@link TestEventHandler} received, in arrival order. The recent tail lives on
+ * heap; everything is appended to memory-mapped segments (see {@link SegmentedEventLog}) so the audit
+ * trail survives restarts without growing the heap. Retention is by total size and by age.
+ * <p>
+ * A restart keeps the history only up to the restored projection snapshot's position; without a snapshot
+ * {@link TestEventHandler} clears it with the rest of its state, since nothing tells which entries the
+ * processor will read again.
+ */
+@Component
+class ReceivedEventHistory {
+    static final int PAGE = 1000;
+
+    private final SegmentedEventLog log;
+
+    ReceivedEventHistory(@Value("${events.history.directory:data/history}") String directory,
+                         @Value("${events.history.segment-bytes:67108864}") int segmentBytes,
+                         @Value("${events.history.hot-capacity:10000}") int hotCapacity,
+                         @Value("${events.history.retention-bytes:1073741824}") long retentionBytes,
+                         @Value("${events.history.retention-hours:168}") long retentionHours) {
+        this.log = new SegmentedEventLog(Paths.get(directory), segmentBytes, hotCapacity, retentionBytes,
+                                         Duration.ofHours(retentionHours), Clock.systemUTC());
+    }
+
+    synchronized long append(String payload) {
+        return log.append(payload);
+    }
+
+    /**
+     * Hands every payload retained now to {@code action}, oldest first. The history is read {@link #PAGE}
+     * entries at a time and locked only while a page is read, so neither the whole history nor the lock is
+     * held while a slow caller consumes it. Entries that retention drops meanwhile are skipped.
+     */
+    void forEach(Consumer<String> action) {
+        long position = 0;
+        long end = endPosition();
+        while (position < end) {
+            List<SegmentedEventLog.Entry> page = range(position, (int) Math.min(PAGE, end - position));
+            if (page.isEmpty()) {
+                return;
+            }
+            for (SegmentedEventLog.Entry entry : page) {
+                action.accept(entry.payload);
+            }
+            position = page.get(page.size() - 1).position + 1;
+        }
+    }
+
+    synchronized List<SegmentedEventLog.Entry> range(long from, int limit) {
+        return log.entries(from, limit);
+    }
+
+    synchronized List<SegmentedEventLog.Entry> since(long timestampMillis, long untilMillis, int limit) {
+        long from = log.positionAt(timestampMillis);
+        long to = untilMillis == Long.MAX_VALUE ? log.endPosition() : log.positionAt(untilMillis);
+        return log.entries(from, (int) Math.min(limit, Math.max(0, to - from)));
+    }
+
+    synchronized long endPosition() {
+        return log.endPosition();
+    }
+
+    /**
+     * Drops entries at or after {@code end}, so the history matches a restored snapshot.
+     */
+    synchronized void truncate(long end) {
+        log.truncate(end);
+    }
+
+    synchronized void clear() {
+        log.clear();
+    }
+
+    synchronized Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("startPosition", log.startPosition());
+        description.put("endPosition", log.endPosition());
+        description.put("hotEntries", log.hotSize());
+        description.put("segments", log.segmentCount());
+        description.put("sizeBytes", log.sizeBytes());
+        return description;
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        log.close();
+    }
+}
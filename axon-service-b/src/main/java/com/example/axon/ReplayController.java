@@ -0,0 +1,74 @@
+package com.example.axon;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin/replay")
+class ReplayController {
+
+    @Autowired
+    private ReplayService replayService;
+
+    /**
+     * Example: {@code {"offsets": {"Axon.Events-0": 1200}, "eventsPerSecond": 500}} or
+     * {@code {"timestamp": "2026-10-18T08:00:00Z"}}.
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> replay(@RequestBody ReplayRequest request) {
+        try {
+            Instant timestamp = request.getTimestamp() == null ? null : Instant.parse(request.getTimestamp());
+            return ResponseEntity.ok(replayService.replay(request.getOffsets(), timestamp,
+                                                          request.getEventsPerSecond()));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    public Map<String, Object> status() {
+        return replayService.status();
+    }
+}
+
+class ReplayRequest {
+    private Map<String, Long> offsets;
+    private String timestamp;
+    private double eventsPerSecond;
+
+    public Map<String, Long> getOffsets() {
+        return offsets;
+    }
+
+    public void setOffsets(Map<String, Long> offsets) {
+        this.offsets = offsets;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(String timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    public void setEventsPerSecond(double eventsPerSecond) {
+        this.eventsPerSecond = eventsPerSecond;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.axon;
+
+import org.apache.kafka.common.TopicPartition;
+import org.axonframework.config.EventProcessingConfiguration;
+import org.axonframework.eventhandling.EventTrackerStatus;
+import org.axonframework.eventhandling.ReplayToken;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventhandling.WrappedToken;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaTrackingToken;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.StreamableKafkaMessageSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operator-driven replay of the {@code kafka} processing group. Moves the tracking token of the
+ * {@link TrackingEventProcessor} back to explicit per-partition offsets or to the offsets matching a
+ * timestamp, leaving partitions that are not mentioned at their current position.
+ */
+@Component
+class ReplayService {
+    private static final Logger logger = LoggerFactory.getLogger(ReplayService.class);
+    static final String PROCESSING_GROUP = "kafka";
+
+    private final EventProcessingConfiguration processingConfiguration;
+    private final StreamableKafkaMessageSource<String, byte[]> kafkaMessageSource;
+    private final ReplayThrottle throttle;
+    private volatile Map<TopicPartition, Long> replayStart;
+    private volatile Instant replayStartedAt;
+
+    @Autowired
+    ReplayService(EventProcessingConfiguration processingConfiguration,
+                  StreamableKafkaMessageSource<String, byte[]> kafkaMessageSource, ReplayThrottle throttle) {
+        this.processingConfiguration = processingConfiguration;
+        this.kafkaMessageSource = kafkaMessageSource;
+        this.throttle = throttle;
+    }
+
+    /**
+     * Resets the processor to the given offsets, or to the offsets at {@code timestamp} when no offsets are
+     * given. Offsets are keyed by {@code <topic>-<partition>} and name the first record to reprocess.
+     * <p>
+     * The processor is started again whether or not the reset succeeded. Resetting needs a claim on every
+     * segment; when another instance holds one the tokens stay as they were and an
+     * {@link IllegalStateException} reports why.
+     */
+    synchronized Map<String, Object> replay(Map<String, Long> offsets, Instant timestamp, double eventsPerSecond) {
+        if ((offsets == null || offsets.isEmpty()) && timestamp == null) {
+            throw new IllegalArgumentException("Either offsets or a timestamp must be provided");
+        }
+        TrackingEventProcessor processor = processor();
+        if (!processor.supportsReset()) {
+            throw new IllegalStateException("Processing group [" + PROCESSING_GROUP + "] does not support reset");
+        }
+
+        Map<TopicPartition, Long> positions = new HashMap<>(currentPositions(processor));
+        if (offsets != null && !offsets.isEmpty()) {
+            offsets.forEach((partition, offset) -> positions.put(parsePartition(partition), offset - 1));
+        } else {
+            KafkaTrackingToken atTime = KafkaTrackingToken.from(kafkaMessageSource.createTokenAt(timestamp));
+            positions.putAll(atTime.getPositions());
+        }
+
+        logger.info("Replaying processing group [{}] from positions {} at max {} events/s",
+                    PROCESSING_GROUP, positions, eventsPerSecond > 0 ? eventsPerSecond : "unlimited");
+        processor.shutDown();
+        try {
+            processor.resetTokens(KafkaTrackingToken.newInstance(positions));
+            // Set before the restart below, so the first replayed event is already paced
+            throttle.setEventsPerSecond(eventsPerSecond);
+            throttle.resetCounter();
+            replayStart = positions;
+            replayStartedAt = Instant.now();
+        } catch (RuntimeException e) {
+            logger.warn("Replay of processing group [{}] failed, resuming where it was", PROCESSING_GROUP, e);
+            throw new IllegalStateException("Unable to reset processing group [" + PROCESSING_GROUP + "]: "
+                                                    + e.getMessage(), e);
+        } finally {
+            processor.start();
+        }
+        return status();
+    }
+
+    /**
+     * Progress per partition as the share of offsets between the replay start and the position at reset
+     * that have been reprocessed.
+     */
+    Map<String, Object> status() {
+        TrackingEventProcessor processor = processor();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", processor.isRunning());
+        status.put("maxEventsPerSecond", throttle.getEventsPerSecond());
+        status.put("replayedEvents", throttle.replayedEvents());
+        status.put("startedAt", replayStartedAt);
+
+        boolean replaying = false;
+        long totalDone = 0;
+        long totalToDo = 0;
+        Map<String, Object> partitions = new LinkedHashMap<>();
+        Map<TopicPartition, Long> start = replayStart;
+        for (EventTrackerStatus trackerStatus : processor.processingStatus().values()) {
+            TrackingToken token = trackerStatus.getTrackingToken();
+            replaying |= trackerStatus.isReplaying();
+            if (!(token instanceof ReplayToken) || start == null) {
+                continue;
+            }
+            Map<TopicPartition, Long> current = positionsOf(((ReplayToken) token).getCurrentToken());
+            Map<TopicPartition, Long> atReset = positionsOf(((ReplayToken) token).getTokenAtReset());
+            for (Map.Entry<TopicPartition, Long> entry : atReset.entrySet()) {
+                long from = start.getOrDefault(entry.getKey(), entry.getValue());
+                long to = entry.getValue();
+                long at = Math.min(to, Math.max(from, current.getOrDefault(entry.getKey(), from)));
+                if (to <= from) {
+                    continue;
+                }
+                totalDone += at - from;
+                totalToDo += to - from;
+                Map<String, Object> partition = new LinkedHashMap<>();
+                partition.put("from", from + 1);
+                partition.put("current", at);
+                partition.put("target", to);
+                partition.put("progress", (double) (at - from) / (to - from));
+                partitions.put(entry.getKey().toString(), partition);
+            }
+        }
+        status.put("replaying", replaying);
+        status.put("progress", totalToDo == 0 ? (replaying ? 0.0 : 1.0) : (double) totalDone / totalToDo);
+        status.put("partitions", partitions);
+        return status;
+    }
+
+    private TrackingEventProcessor processor() {
+        return processingConfiguration.eventProcessor(PROCESSING_GROUP, TrackingEventProcessor.class)
+                                      .orElseThrow(() -> new IllegalStateException(
+                                              "No tracking processor for processing group [" + PROCESSING_GROUP + "]"));
+    }
+
+    private static Map<TopicPartition, Long> currentPositions(TrackingEventProcessor processor) {
+        Map<TopicPartition, Long> positions = new HashMap<>();
+        for (EventTrackerStatus trackerStatus : processor.processingStatus().values()) {
+            positions.putAll(positionsOf(WrappedToken.unwrapUpperBound(trackerStatus.getTrackingToken())));
+        }
+        return positions;
+    }
+
+    private static Map<TopicPartition, Long> positionsOf(TrackingToken token) {
+        if (token == null) {
+            return new HashMap<>();
+        }
+        return KafkaTrackingToken.from(WrappedToken.unwrapUpperBound(token)).getPositions();
+    }
+
+    static TopicPartition parsePartition(String value) {
+        int separator = value.lastIndexOf('-');
+        if (separator <= 0 || separator == value.length() - 1) {
+            throw new IllegalArgumentException("Expected <topic>-<partition> but got [" + value + "]");
+        }
+        try {
+            return new TopicPartition(value.substring(0, separator), Integer.parseInt(value.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected <topic>-<partition> but got [" + value + "]", e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.ReplayToken;
+import org.axonframework.messaging.InterceptorChain;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Handler interceptor for the {@code kafka} processing group that paces replayed events to a configured
+ * rate. Live events pass through untouched; only messages carrying a {@link ReplayToken} are delayed.
+ */
+@Component
+class ReplayThrottle implements MessageHandlerInterceptor<EventMessage<?>> {
+
+    private final AtomicLong replayedEvents = new AtomicLong();
+    private volatile long intervalNanos;
+    private long nextPermitNanos;
+
+    /**
+     * Sets the maximum replay rate; zero or a negative value disables throttling.
+     */
+    void setEventsPerSecond(double eventsPerSecond) {
+        this.intervalNanos = eventsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / eventsPerSecond) : 0;
+        synchronized (this) {
+            nextPermitNanos = System.nanoTime();
+        }
+    }
+
+    double getEventsPerSecond() {
+        long interval = intervalNanos;
+        return interval == 0 ? 0 : (double) TimeUnit.SECONDS.toNanos(1) / interval;
+    }
+
+    long replayedEvents() {
+        return replayedEvents.get();
+    }
+
+    void resetCounter() {
+        replayedEvents.set(0);
+    }
+
+    @Override
+    public Object handle(UnitOfWork<? extends EventMessage<?>> unitOfWork, InterceptorChain interceptorChain)
+            throws Exception {
+        if (ReplayToken.isReplay(unitOfWork.getMessage())) {
+            acquire();
+            replayedEvents.incrementAndGet();
+        }
+        return interceptorChain.proceed();
+    }
+
+    private void acquire() {
+        long interval = intervalNanos;
+        if (interval == 0) {
+            return;
+        }
+        long waitUntil;
+        synchronized (this) {
+            long now = System.nanoTime();
+            // do not bank permits while idle, otherwise a pause would be followed by an unthrottled burst
+            waitUntil = Math.max(nextPermitNanos, now);
+            nextPermitNanos = waitUntil + interval;
+        }
+        long remaining;
+        while ((remaining = waitUntil - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.axon;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks event payloads against an Avro schema. The schema is compiled once, when the validator is created,
+ * into a tree of checks: a method handle reads each field of the Java class and a type test follows the
+ * field's schema. Validating a payload walks that tree without parsing, lookups or allocation, so it takes
+ * well under a microsecond for a flat event. It allocates only when it reports a {@link Violation}.
+ * <p>
+ * Avro types are mapped as {@code ReflectData} maps them: records to classes with fields of the same names,
+ * {@code string} to any {@code CharSequence}, {@code bytes} to {@code byte[]} or {@code ByteBuffer},
+ * {@code enum} to a Java enum or a symbol string, arrays to collections or arrays and maps to maps with
+ * string keys. A union with {@code null} makes a field optional; every other field must be set.
+ */
+final class SchemaValidator {
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    enum ReasonCode {
+        /** No schema is registered for the payload type. */
+        UNKNOWN_TYPE,
+        /** The event has no payload at all. */
+        NULL_PAYLOAD,
+        /** A field the schema requires is null. */
+        MISSING_FIELD,
+        /** A value does not have the type the schema declares. */
+        WRONG_TYPE,
+        /** An enum value is not one of the schema's symbols. */
+        UNKNOWN_SYMBOL
+    }
+
+    static final class Violation {
+        final ReasonCode reason;
+        final String detail;
+
+        Violation(ReasonCode reason, String detail) {
+            this.reason = reason;
+            this.detail = detail;
+        }
+
+        @Override
+        public String toString() {
+            return reason + ": " + detail;
+        }
+    }
+
+    private final Schema schema;
+    private final Class<?> type;
+    private final long fingerprint;
+    private final Check check;
+
+    private SchemaValidator(Schema schema, Class<?> type, Check check) {
+        this.schema = schema;
+        this.type = type;
+        this.fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+        this.check = check;
+    }
+
+    /**
+     * Compiles {@code schema}, a record schema, for payloads of {@code type}.
+     *
+     * @throws IllegalArgumentException if a field of the schema has no counterpart in {@code type}
+     */
+    static SchemaValidator compile(Schema schema, Class<?> type) {
+        if (schema.getType() != Schema.Type.RECORD) {
+            throw new IllegalArgumentException("Schema " + schema.getFullName() + " is not a record");
+        }
+        return new SchemaValidator(schema, type, compile(schema, type, schema.getName()));
+    }
+
+    /**
+     * The first violation found in {@code payload}, or {@code null} if it matches the schema.
+     */
+    Violation validate(Object payload) {
+        if (payload == null) {
+            return new Violation(ReasonCode.NULL_PAYLOAD, schema.getFullName());
+        }
+        if (!type.isInstance(payload)) {
+            return new Violation(ReasonCode.WRONG_TYPE, schema.getFullName() + " expects " + type.getName()
+                    + ", got " + payload.getClass().getName());
+        }
+        return check.check(payload);
+    }
+
+    Schema schema() {
+        return schema;
+    }
+
+    Class<?> type() {
+        return type;
+    }
+
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    private interface Check {
+        Violation check(Object value);
+    }
+
+    private static Check compile(Schema schema, Class<?> declared, String path) {
+        switch (schema.getType()) {
+            case RECORD:
+                return record(schema, declared, path);
+            case UNION:
+                return union(schema, declared, path);
+            case NULL:
+                return value -> value == null ? null : wrongType(path, schema, value);
+            case STRING:
+                return required(path, schema, value -> value instanceof CharSequence);
+            case INT:
+                return required(path, schema, value -> value instanceof Integer || value instanceof Short
+                        || value instanceof Byte || value instanceof Character);
+            case LONG:
+                return required(path, schema, value -> value instanceof Long || value instanceof Integer
+                        || value instanceof Short || value instanceof Byte);
+            case FLOAT:
+                return required(path, schema, value -> value instanceof Float);
+            case DOUBLE:
+                return required(path, schema, value -> value instanceof Double || value instanceof Float);
+            case BOOLEAN:
+                return required(path, schema, value -> value instanceof Boolean);
+            case BYTES:
+                return required(path, schema, value -> value instanceof byte[] || value instanceof ByteBuffer);
+            case FIXED:
+                int size = schema.getFixedSize();
+                return required(path, schema, value -> value instanceof byte[] && ((byte[]) value).length == size);
+            case ENUM:
+                return enumeration(schema, path);
+            case ARRAY:
+                return array(schema, path);
+            case MAP:
+                return map(schema, path);
+            default:
+                throw new IllegalArgumentException("Unsupported schema type " + schema.getType() + " at " + path);
+        }
+    }
+
+    private static Check record(Schema schema, Class<?> declared, String path) {
+        Class<?> recordType = declared == Object.class || declared.isInterface()
+                || Modifier.isAbstract(declared.getModifiers()) ? load(schema) : declared;
+        List<MethodHandle> getters = new ArrayList<>();
+        List<Check> checks = new ArrayList<>();
+        for (Schema.Field field : schema.getFields()) {
+            Field javaField = field(recordType, field.name());
+            if (javaField == null) {
+                throw new IllegalArgumentException("Field " + path + "." + field.name() + " of schema "
+                        + schema.getFullName() + " has no counterpart in " + recordType.getName());
+            }
+            try {
+                javaField.setAccessible(true);
+                getters.add(MethodHandles.lookup().unreflectGetter(javaField).asType(GETTER));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Field " + javaField + " is not accessible", e);
+            }
+            checks.add(compile(field.schema(), javaField.getType(), path + "." + field.name()));
+        }
+        MethodHandle[] fieldGetters = getters.toArray(new MethodHandle[0]);
+        Check[] fieldChecks = checks.toArray(new Check[0]);
+        return required(path, schema, recordType::isInstance, value -> {
+            for (int i = 0; i < fieldGetters.length; i++) {
+                Object fieldValue;
+                try {
+                    fieldValue = (Object) fieldGetters[i].invokeExact(value);
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Unable to read " + path + " of " + value.getClass(), e);
+                }
+                Violation violation = fieldChecks[i].check(fieldValue);
+                if (violation != null) {
+                    return violation;
+                }
+            }
+            return null;
+        });
+    }
+
+    private static Check union(Schema schema, Class<?> declared, String path) {
+        List<Check> branches = new ArrayList<>();
+        boolean nullable = false;
+        for (Schema branch : schema.getTypes()) {
+            if (branch.getType() == Schema.Type.NULL) {
+                nullable = true;
+            } else {
+                branches.add(compile(branch, branches.isEmpty() && schema.getTypes().size() <= 2
+                        ? declared : Object.class, path));
+            }
+        }
+        boolean optional = nullable;
+        if (branches.size() == 1) {
+            Check only = branches.get(0);
+            return value -> value == null && optional ? null : only.check(value);
+        }
+        Check[] alternatives = branches.toArray(new Check[0]);
+        return value -> {
+            if (value == null) {
+                return optional ? null : new Violation(ReasonCode.MISSING_FIELD, path);
+            }
+            Violation first = null;
+            for (Check alternative : alternatives) {
+                Violation violation = alternative.check(value);
+                if (violation == null) {
+                    return null;
+                }
+                first = first == null ? violation : first;
+            }
+            return first;
+        };
+    }
+
+    private static Check enumeration(Schema schema, String path) {
+        Set<String> symbols = new HashSet<>(schema.getEnumSymbols());
+        return required(path, schema, value -> value instanceof Enum || value instanceof CharSequence, value -> {
+            String symbol = value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+            return symbols.contains(symbol) ? null
+                    : new Violation(ReasonCode.UNKNOWN_SYMBOL, path + " has no symbol " + symbol);
+        });
+    }
+
+    private static Check array(Schema schema, String path) {
+        Check element = compile(schema.getElementType(), Object.class, path + "[]");
+        return required(path, schema, value -> value instanceof Collection || value instanceof Object[], value -> {
+            Iterable<?> elements = value instanceof Collection ? (Collection<?>) value : List.of((Object[]) value);
+            for (Object item : elements) {
+                Violation violation = element.check(item);
+                if (violation != null) {
+                    return violation;
+                }
+            }
+            return null;
+        });
+    }
+
+    private static Check map(Schema schema, String path) {
+        Check entry = compile(schema.getValueType(), Object.class, path + "{}");
+        return required(path, schema, value -> value instanceof Map, value -> {
+            for (Map.Entry<?, ?> item : ((Map<?, ?>) value).entrySet()) {
+                if (!(item.getKey() instanceof CharSequence)) {
+                    return new Violation(ReasonCode.WRONG_TYPE, path + " has a key that is not a string");
+                }
+                Violation violation = entry.check(item.getValue());
+                if (violation != null) {
+                    return violation;
+                }
+            }
+            return null;
+        });
+    }
+
+    private interface TypeTest {
+        boolean matches(Object value);
+    }
+
+    private static Check required(String path, Schema schema, TypeTest test) {
+        return required(path, schema, test, value -> null);
+    }
+
+    private static Check required(String path, Schema schema, TypeTest test, Check contents) {
+        return value -> {
+            if (value == null) {
+                return new Violation(ReasonCode.MISSING_FIELD, path);
+            }
+            return test.matches(value) ? contents.check(value) : wrongType(path, schema, value);
+        };
+    }
+
+    private static Violation wrongType(String path, Schema schema, Object value) {
+        return new Violation(ReasonCode.WRONG_TYPE, path + " expects " + schema.getType().getName() + ", got "
+                + (value == null ? "null" : value.getClass().getSimpleName()));
+    }
+
+    private static Field field(Class<?> type, String name) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.getName().equals(name) && !Modifier.isStatic(field.getModifiers())) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    static Class<?> load(Schema schema) {
+        try {
+            return Class.forName(schema.getFullName(), false, SchemaValidator.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("No class " + schema.getFullName() + " for schema", e);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.example.axon;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of event payloads stored in memory-mapped segment files, with the most recent entries
+ * also kept on heap.
+ * <p>
+ * Every entry gets a global position. A segment is a pair of files named after the position of its first
+ * entry: {@code .log} holds length-prefixed UTF-8 payloads and {@code .idx} holds one fixed-width
+ * {@code (offset + 1, timestamp)} slot per entry, so an entry is found by position in constant time and by
+ * time with a binary search. Timestamps never decrease. Unused index slots are zero, which is how the
+ * entry count is recovered after a restart.
+ * <p>
+ * When a segment is full a new one is started and whole old segments are deleted while the log exceeds
+ * its size or age retention. Not thread safe; callers synchronize.
+ */
+class SegmentedEventLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedEventLog.class);
+    private static final int INDEX_ENTRY_BYTES = 12;
+    private static final int MIN_BYTES_PER_ENTRY = 16;
+    // stands in for null payloads in the hot tail, compared by identity
+    private static final String NULL_PAYLOAD = new String();
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long retentionBytes;
+    private final Duration retentionAge;
+    private final Clock clock;
+    private final int hotCapacity;
+    private final ArrayDeque<String> hot = new ArrayDeque<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private long lastTimestamp;
+
+    SegmentedEventLog(Path directory, int segmentBytes, int hotCapacity, long retentionBytes, Duration retentionAge,
+                      Clock clock) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.hotCapacity = hotCapacity;
+        this.retentionBytes = retentionBytes;
+        this.retentionAge = retentionAge;
+        this.clock = clock;
+        try {
+            Files.createDirectories(directory);
+            open();
+            applyRetention();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open event log in " + directory, e);
+        }
+    }
+
+    /**
+     * Appends {@code payload} and returns its position.
+     */
+    long append(String payload) {
+        byte[] bytes = payload == null ? null : payload.getBytes(StandardCharsets.UTF_8);
+        int length = bytes == null ? 0 : bytes.length;
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || !segment.fits(length)) {
+            segment = roll(length);
+        }
+        long timestamp = Math.max(clock.millis(), lastTimestamp);
+        lastTimestamp = timestamp;
+        long position = segment.append(bytes, timestamp);
+        hot.addLast(payload == null ? NULL_PAYLOAD : payload);
+        if (hot.size() > hotCapacity) {
+            hot.removeFirst();
+        }
+        return position;
+    }
+
+    long startPosition() {
+        return segments.isEmpty() ? 0 : segments.get(0).base;
+    }
+
+    long endPosition() {
+        return segments.isEmpty() ? 0 : segments.get(segments.size() - 1).end();
+    }
+
+    /**
+     * Up to {@code limit} payloads starting at {@code from}, clamped to the retained range.
+     */
+    List<String> read(long from, int limit) {
+        List<String> payloads = new ArrayList<>();
+        for (Entry entry : entries(from, limit)) {
+            payloads.add(entry.payload);
+        }
+        return payloads;
+    }
+
+    List<Entry> entries(long from, int limit) {
+        long start = Math.max(from, startPosition());
+        long end = Math.min(endPosition(), start + Math.max(0, limit));
+        List<Entry> entries = new ArrayList<>((int) Math.max(0, end - start));
+        long hotStart = endPosition() - hot.size();
+        Iterator<String> hotIterator = null;
+        for (long position = start; position < end; position++) {
+            Segment segment = segmentFor(position);
+            String payload;
+            if (position >= hotStart) {
+                if (hotIterator == null) {
+                    hotIterator = hot.iterator();
+                    for (long skip = hotStart; skip < position; skip++) {
+                        hotIterator.next();
+                    }
+                }
+                payload = hotIterator.next();
+                payload = payload == NULL_PAYLOAD ? null : payload;
+            } else {
+                payload = segment.payload(position);
+            }
+            entries.add(new Entry(position, segment.timestamp(position), payload));
+        }
+        return entries;
+    }
+
+    /**
+     * Position of the first entry appended at or after {@code timestampMillis}; {@link #endPosition()} when
+     * there is none.
+     */
+    long positionAt(long timestampMillis) {
+        for (Segment segment : segments) {
+            if (segment.count > 0 && segment.timestamp(segment.end() - 1) >= timestampMillis) {
+                int low = 0;
+                int high = segment.count - 1;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (segment.timestamp(segment.base + mid) >= timestampMillis) {
+                        high = mid;
+                    } else {
+                        low = mid + 1;
+                    }
+                }
+                return segment.base + low;
+            }
+        }
+        return endPosition();
+    }
+
+    /**
+     * Drops every entry at or after {@code end}.
+     */
+    void truncate(long end) {
+        long previousEnd = endPosition();
+        while (!segments.isEmpty() && segments.get(segments.size() - 1).base >= end
+                && segments.get(segments.size() - 1).base > startPosition()) {
+            segments.remove(segments.size() - 1).delete();
+        }
+        if (!segments.isEmpty()) {
+            Segment last = segments.get(segments.size() - 1);
+            last.truncate(Math.max(end, last.base));
+        }
+        for (long removed = endPosition(); removed < previousEnd && !hot.isEmpty(); removed++) {
+            hot.removeLast();
+        }
+    }
+
+    void clear() {
+        long next = endPosition();
+        for (Segment segment : segments) {
+            segment.delete();
+        }
+        segments.clear();
+        hot.clear();
+        // positions keep increasing so readers never confuse new entries with cleared ones
+        if (next > 0) {
+            segments.add(create(next, segmentBytes));
+        }
+    }
+
+    long sizeBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.usedBytes();
+        }
+        return bytes;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    int hotSize() {
+        return hot.size();
+    }
+
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+        hot.clear();
+    }
+
+    private Segment roll(int length) {
+        Segment segment = create(endPosition(), Math.max(segmentBytes, length + 4));
+        segments.add(segment);
+        applyRetention();
+        return segment;
+    }
+
+    private void applyRetention() {
+        long cutoff = retentionAge.isZero() ? Long.MIN_VALUE : clock.millis() - retentionAge.toMillis();
+        while (segments.size() > 1) {
+            Segment oldest = segments.get(0);
+            boolean tooBig = retentionBytes > 0 && sizeBytes() > retentionBytes;
+            boolean tooOld = oldest.count > 0 && oldest.timestamp(oldest.end() - 1) < cutoff;
+            if (!tooBig && !tooOld) {
+                break;
+            }
+            segments.remove(0).delete();
+            logger.debug("Event log segment starting at {} removed by retention", oldest.base);
+        }
+    }
+
+    private Segment segmentFor(long position) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segments.get(mid).base <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return segments.get(low);
+    }
+
+    private void open() throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                 .filter(name -> name.endsWith(".log"))
+                 .forEach(name -> bases.add(Long.parseLong(name.substring(0, name.length() - 4))));
+        }
+        bases.sort(Long::compare);
+        for (long base : bases) {
+            Segment segment = new Segment(base, dataFile(base), indexFile(base), 0);
+            segments.add(segment);
+            if (segment.count > 0) {
+                lastTimestamp = Math.max(lastTimestamp, segment.timestamp(segment.end() - 1));
+            }
+        }
+        if (!segments.isEmpty()) {
+            logger.info("Opened event log in {}: positions {} to {} in {} segments",
+                        directory, startPosition(), endPosition(), segments.size());
+        }
+    }
+
+    private Segment create(long base, int dataBytes) {
+        try {
+            return new Segment(base, dataFile(base), indexFile(base), dataBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create event log segment at " + base, e);
+        }
+    }
+
+    private Path dataFile(long base) {
+        return directory.resolve(String.format("%020d.log", base));
+    }
+
+    private Path indexFile(long base) {
+        return directory.resolve(String.format("%020d.idx", base));
+    }
+
+    static final class Entry {
+        final long position;
+        final long timestamp;
+        final String payload;
+
+        Entry(long position, long timestamp, String payload) {
+            this.position = position;
+            this.timestamp = timestamp;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Segment {
+        final long base;
+        final Path dataPath;
+        final Path indexPath;
+        final FileChannel dataChannel;
+        final FileChannel indexChannel;
+        final MappedByteBuffer data;
+        final MappedByteBuffer index;
+        final int indexCapacity;
+        int count;
+        int writeOffset;
+
+        /**
+         * Opens the segment at {@code base}, creating it with {@code dataBytes} of payload space when
+         * {@code dataBytes} is positive and reusing the existing files otherwise.
+         */
+        Segment(long base, Path dataPath, Path indexPath, int dataBytes) throws IOException {
+            this.base = base;
+            this.dataPath = dataPath;
+            this.indexPath = indexPath;
+            this.dataChannel = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                StandardOpenOption.WRITE);
+            this.indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                 StandardOpenOption.WRITE);
+            long dataSize = dataBytes > 0 ? dataBytes : dataChannel.size();
+            int entries = dataBytes > 0 ? Math.max(1024, dataBytes / MIN_BYTES_PER_ENTRY)
+                                        : (int) (indexChannel.size() / INDEX_ENTRY_BYTES);
+            this.data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, dataSize);
+            this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) entries * INDEX_ENTRY_BYTES);
+            this.indexCapacity = entries;
+            recover();
+        }
+
+        private void recover() {
+            // filled slots form a prefix of the index
+            int low = 0;
+            int high = indexCapacity;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (index.getInt(mid * INDEX_ENTRY_BYTES) != 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            count = low;
+            if (count > 0) {
+                int offset = index.getInt((count - 1) * INDEX_ENTRY_BYTES) - 1;
+                writeOffset = offset + 4 + Math.max(0, data.getInt(offset));
+            }
+        }
+
+        boolean fits(int length) {
+            return count < indexCapacity && writeOffset + 4 + length <= data.capacity();
+        }
+
+        long append(byte[] bytes, long timestamp) {
+            int offset = writeOffset;
+            data.putInt(offset, bytes == null ? -1 : bytes.length);
+            if (bytes != null) {
+                data.put(offset + 4, bytes);
+            }
+            // the slot is written last so a crash never exposes a half-written payload
+            index.putLong(count * INDEX_ENTRY_BYTES + 4, timestamp);
+            index.putInt(count * INDEX_ENTRY_BYTES, offset + 1);
+            writeOffset = offset + 4 + (bytes == null ? 0 : bytes.length);
+            return base + count++;
+        }
+
+        String payload(long position) {
+            int offset = index.getInt((int) (position - base) * INDEX_ENTRY_BYTES) - 1;
+            int length = data.getInt(offset);
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            data.get(offset + 4, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long timestamp(long position) {
+            return index.getLong((int) (position - base) * INDEX_ENTRY_BYTES + 4);
+        }
+
+        long end() {
+            return base + count;
+        }
+
+        long usedBytes() {
+            return writeOffset + (long) count * INDEX_ENTRY_BYTES;
+        }
+
+        void truncate(long end) {
+            int keep = (int) (end - base);
+            if (keep >= count) {
+                return;
+            }
+            writeOffset = keep == 0 ? 0 : index.getInt(keep * INDEX_ENTRY_BYTES) - 1;
+            ByteBuffer zeros = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+            for (int slot = keep; slot < count; slot++) {
+                index.put(slot * INDEX_ENTRY_BYTES, zeros.array());
+            }
+            count = keep;
+        }
+
+        void close() {
+            try {
+                data.force();
+                index.force();
+                dataChannel.close();
+                indexChannel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close event log segment {}", dataPath, e);
+            }
+        }
+
+        void delete() {
+            close();
+            try {
+                Files.deleteIfExists(dataPath);
+                Files.deleteIfExists(indexPath);
+            } catch (IOException e) {
+                logger.warn("Failed to delete event log segment {}", dataPath, e);
+            }
+        }
+    }
+}
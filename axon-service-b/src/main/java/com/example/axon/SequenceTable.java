@@ -0,0 +1,129 @@
+package com.example.axon;
+
+/**
+ * Last seen sequence number and producer epoch per key, in an open-addressing table of primitive arrays.
+ * <p>
+ * Keys are stored as their 64-bit hash, so memory is three {@code long}s per slot regardless of key length
+ * and independent of the number of events observed. Colliding hashes of distinct keys would share a
+ * slot; at 64 bits that is negligible for the key counts this service sees. The table doubles when it is
+ * half full. Not thread safe.
+ */
+class SequenceTable {
+    private static final long EMPTY = 0L;
+
+    private long[] hashes;
+    private long[] sequences;
+    private long[] epochs;
+    private int size;
+
+    SequenceTable(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        allocate(capacity);
+    }
+
+    /**
+     * Records {@code sequence} for {@code key} and returns the outcome compared with the previous value.
+     */
+    Outcome observe(String key, long epoch, long sequence) {
+        long hash = hash(key);
+        int slot = slotOf(hash);
+        if (hashes[slot] == EMPTY) {
+            insert(slot, hash, epoch, sequence);
+            return Outcome.FIRST;
+        }
+        long lastEpoch = epochs[slot];
+        long last = sequences[slot];
+        if (epoch > lastEpoch) {
+            epochs[slot] = epoch;
+            sequences[slot] = sequence;
+            return Outcome.RESTARTED;
+        }
+        if (epoch < lastEpoch) {
+            return Outcome.STALE_EPOCH;
+        }
+        if (sequence == last + 1) {
+            sequences[slot] = sequence;
+            return Outcome.IN_ORDER;
+        }
+        if (sequence > last + 1) {
+            sequences[slot] = sequence;
+            return Outcome.GAP;
+        }
+        return sequence == last ? Outcome.DUPLICATE : Outcome.REORDERED;
+    }
+
+    /**
+     * Last sequence number for {@code key}, or -1 when the key has not been seen.
+     */
+    long lastSequence(String key) {
+        int slot = slotOf(hash(key));
+        return hashes[slot] == EMPTY ? -1 : sequences[slot];
+    }
+
+    long epoch(String key) {
+        int slot = slotOf(hash(key));
+        return hashes[slot] == EMPTY ? -1 : epochs[slot];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return hashes.length;
+    }
+
+    void clear() {
+        allocate(16);
+    }
+
+    private int slotOf(long hash) {
+        int mask = hashes.length - 1;
+        int slot = (int) hash & mask;
+        while (hashes[slot] != EMPTY && hashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insert(int slot, long hash, long epoch, long sequence) {
+        hashes[slot] = hash;
+        epochs[slot] = epoch;
+        sequences[slot] = sequence;
+        if (++size * 2 > hashes.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        long[] oldHashes = hashes;
+        long[] oldSequences = sequences;
+        long[] oldEpochs = epochs;
+        allocate(oldHashes.length * 2);
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != EMPTY) {
+                int slot = slotOf(oldHashes[i]);
+                hashes[slot] = oldHashes[i];
+                sequences[slot] = oldSequences[i];
+                epochs[slot] = oldEpochs[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new long[capacity];
+        sequences = new long[capacity];
+        epochs = new long[capacity];
+        size = 0;
+    }
+
+    private static long hash(String key) {
+        long hash = HyperLogLog.hash64(key);
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    enum Outcome {
+        FIRST, IN_ORDER, GAP, DUPLICATE, REORDERED, RESTARTED, STALE_EPOCH
+    }
+}
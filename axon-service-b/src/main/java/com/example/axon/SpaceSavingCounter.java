@@ -0,0 +1,91 @@
+package com.example.axon;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitter tracker holding at most {@code capacity} counters.
+ * <p>
+ * When a new item arrives and all counters are taken, the smallest counter is reassigned to it and
+ * inherits its count as the error bound. Any item occurring more than {@code total / capacity} times is
+ * guaranteed to be tracked. Not thread-safe; callers synchronize.
+ */
+class SpaceSavingCounter {
+
+    static final class Counter {
+        final String item;
+        final long count;
+        final long error;
+
+        Counter(String item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private static final class Slot {
+        String item;
+        long count;
+        long error;
+    }
+
+    private final int capacity;
+    private final Map<String, Slot> slots;
+
+    SpaceSavingCounter(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive but was " + capacity);
+        }
+        this.capacity = capacity;
+        this.slots = new HashMap<>(capacity * 2);
+    }
+
+    void add(String item) {
+        Slot slot = slots.get(item);
+        if (slot != null) {
+            slot.count++;
+            return;
+        }
+        if (slots.size() < capacity) {
+            slot = new Slot();
+            slot.item = item;
+            slot.count = 1;
+            slots.put(item, slot);
+            return;
+        }
+        Slot min = null;
+        for (Slot candidate : slots.values()) {
+            if (min == null || candidate.count < min.count) {
+                min = candidate;
+            }
+        }
+        slots.remove(min.item);
+        min.error = min.count;
+        min.count++;
+        min.item = item;
+        slots.put(item, min);
+    }
+
+    /**
+     * Returns up to {@code limit} tracked items with a guaranteed count (count minus error) of at least
+     * {@code minGuaranteedCount}, most frequent first; none for a limit below one.
+     */
+    List<Counter> top(int limit, long minGuaranteedCount) {
+        List<Counter> result = new ArrayList<>();
+        for (Slot slot : slots.values()) {
+            if (slot.count - slot.error >= minGuaranteedCount) {
+                result.add(new Counter(slot.item, slot.count, slot.error));
+            }
+        }
+        result.sort(Comparator.comparingLong((Counter c) -> c.count).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, Math.max(0, limit))) : result;
+    }
+
+    void clear() {
+        slots.clear();
+    }
+}
@@ -0,0 +1,337 @@
+package com.example.axon;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes a {@link TestEvent} straight from the serialized bytes of a Kafka record value.
+ * <p>
+ * Understands the two forms Service A can produce: XStream's compact XML
+ * ({@code <com.example.axon.TestEvent><payload>..</payload></com.example.axon.TestEvent>}) and Jackson's
+ * JSON ({@code {"payload":".."}}). The payload is located by scanning the bytes in place; when it contains
+ * no escapes the {@code String} is built directly from the record's bytes, otherwise it is unescaped into
+ * a scratch buffer owned by this decoder. Nothing else is allocated apart from the event itself.
+ * <p>
+ * Instances are not thread safe; use {@link #forCurrentThread()}. {@link #decode} returns {@code null} for
+ * anything it does not recognise, a record without a payload field included, so the caller can fall back to
+ * the regular serializer.
+ */
+final class TestEventDecoder {
+    private static final ThreadLocal<TestEventDecoder> DECODERS = ThreadLocal.withInitial(TestEventDecoder::new);
+    private static final int MAX_RETAINED_SCRATCH = 64 * 1024;
+
+    private static final byte[] XML_PAYLOAD_OPEN = ascii("<payload>");
+    private static final byte[] XML_PAYLOAD_CLOSE = ascii("</payload>");
+    private static final byte[] XML_PAYLOAD_EMPTY = ascii("<payload/>");
+    private static final byte[] JSON_PAYLOAD_KEY = ascii("\"payload\"");
+    private static final byte[] JSON_NULL = ascii("null");
+
+    private byte[] scratch = new byte[256];
+
+    private TestEventDecoder() {
+    }
+
+    static TestEventDecoder forCurrentThread() {
+        return DECODERS.get();
+    }
+
+    TestEvent decode(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        int start = skipWhitespace(data, 0, data.length);
+        if (start == data.length) {
+            return null;
+        }
+        try {
+            if (data[start] == '<') {
+                return decodeXml(data, start);
+            } else if (data[start] == '{') {
+                return decodeJson(data, start);
+            }
+            return null;
+        } finally {
+            if (scratch.length > MAX_RETAINED_SCRATCH) {
+                scratch = new byte[256];
+            }
+        }
+    }
+
+    private TestEvent decodeXml(byte[] data, int start) {
+        int open = indexOf(data, XML_PAYLOAD_OPEN, start, data.length);
+        if (open < 0) {
+            // XStream omits null fields entirely and may write an empty element as <payload/>
+            int empty = indexOf(data, XML_PAYLOAD_EMPTY, start, data.length);
+            if (empty >= 0) {
+                return new TestEvent("");
+            }
+            // No payload element: the serializer decides what that means
+            return null;
+        }
+        int from = open + XML_PAYLOAD_OPEN.length;
+        int to = indexOf(data, XML_PAYLOAD_CLOSE, from, data.length);
+        if (to < 0) {
+            return null;
+        }
+        int amp = indexOf(data, (byte) '&', from, to);
+        if (amp < 0) {
+            return new TestEvent(new String(data, from, to - from, StandardCharsets.UTF_8));
+        }
+        int length = unescapeXml(data, from, to, amp);
+        return length < 0 ? null : new TestEvent(new String(scratch, 0, length, StandardCharsets.UTF_8));
+    }
+
+    private TestEvent decodeJson(byte[] data, int start) {
+        int key = indexOf(data, JSON_PAYLOAD_KEY, start, data.length);
+        if (key < 0) {
+            return null;
+        }
+        int i = skipWhitespace(data, key + JSON_PAYLOAD_KEY.length, data.length);
+        if (i == data.length || data[i] != ':') {
+            return null;
+        }
+        i = skipWhitespace(data, i + 1, data.length);
+        if (regionMatches(data, i, JSON_NULL)) {
+            return new TestEvent(null);
+        }
+        if (i == data.length || data[i] != '"') {
+            return null;
+        }
+        int from = i + 1;
+        int to = from;
+        boolean escaped = false;
+        while (to < data.length && data[to] != '"') {
+            if (data[to] == '\\') {
+                escaped = true;
+                to++;
+            }
+            to++;
+        }
+        if (to >= data.length) {
+            return null;
+        }
+        if (!escaped) {
+            return new TestEvent(new String(data, from, to - from, StandardCharsets.UTF_8));
+        }
+        int length = unescapeJson(data, from, to);
+        return length < 0 ? null : new TestEvent(new String(scratch, 0, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Copies {@code data[from, to)} into the scratch buffer, resolving XML entity and character references.
+     * Returns the number of bytes written, or -1 when an unknown reference is found.
+     */
+    private int unescapeXml(byte[] data, int from, int to, int firstAmp) {
+        ensureScratch(to - from);
+        System.arraycopy(data, from, scratch, 0, firstAmp - from);
+        int out = firstAmp - from;
+        int i = firstAmp;
+        while (i < to) {
+            byte b = data[i];
+            if (b != '&') {
+                scratch[out++] = b;
+                i++;
+                continue;
+            }
+            int semicolon = indexOf(data, (byte) ';', i + 1, Math.min(to, i + 12));
+            if (semicolon < 0) {
+                return -1;
+            }
+            int codePoint = xmlReference(data, i + 1, semicolon);
+            if (codePoint < 0) {
+                return -1;
+            }
+            out = writeUtf8(codePoint, out);
+            i = semicolon + 1;
+        }
+        return out;
+    }
+
+    private static int xmlReference(byte[] data, int from, int to) {
+        if (to - from >= 2 && data[from] == '#') {
+            if (data[from + 1] == 'x' || data[from + 1] == 'X') {
+                return parseHex(data, from + 2, to);
+            }
+            int value = 0;
+            for (int i = from + 1; i < to; i++) {
+                int digit = data[i] - '0';
+                if (digit < 0 || digit > 9 || value > 0x10FFFF) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return to - from > 1 && value <= 0x10FFFF ? value : -1;
+        }
+        switch (to - from) {
+            case 2:
+                if (data[from] == 'l' && data[from + 1] == 't') {
+                    return '<';
+                }
+                if (data[from] == 'g' && data[from + 1] == 't') {
+                    return '>';
+                }
+                return -1;
+            case 3:
+                return data[from] == 'a' && data[from + 1] == 'm' && data[from + 2] == 'p' ? '&' : -1;
+            case 4:
+                if (data[from] == 'q' && data[from + 1] == 'u' && data[from + 2] == 'o' && data[from + 3] == 't') {
+                    return '"';
+                }
+                if (data[from] == 'a' && data[from + 1] == 'p' && data[from + 2] == 'o' && data[from + 3] == 's') {
+                    return '\'';
+                }
+                return -1;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Copies {@code data[from, to)} into the scratch buffer, resolving JSON escape sequences.
+     * Returns the number of bytes written, or -1 for malformed input.
+     */
+    private int unescapeJson(byte[] data, int from, int to) {
+        ensureScratch(to - from);
+        int out = 0;
+        int i = from;
+        while (i < to) {
+            byte b = data[i++];
+            if (b != '\\') {
+                scratch[out++] = b;
+                continue;
+            }
+            if (i == to) {
+                return -1;
+            }
+            byte escape = data[i++];
+            switch (escape) {
+                case '"':
+                case '\\':
+                case '/':
+                    scratch[out++] = escape;
+                    break;
+                case 'b':
+                    scratch[out++] = '\b';
+                    break;
+                case 'f':
+                    scratch[out++] = '\f';
+                    break;
+                case 'n':
+                    scratch[out++] = '\n';
+                    break;
+                case 'r':
+                    scratch[out++] = '\r';
+                    break;
+                case 't':
+                    scratch[out++] = '\t';
+                    break;
+                case 'u':
+                    if (to - i < 4) {
+                        return -1;
+                    }
+                    int unit = parseHex(data, i, i + 4);
+                    i += 4;
+                    if (unit < 0) {
+                        return -1;
+                    }
+                    if (Character.isHighSurrogate((char) unit)) {
+                        int low = to - i >= 6 && data[i] == '\\' && data[i + 1] == 'u' ? parseHex(data, i + 2, i + 6) : -1;
+                        if (low < 0 || !Character.isLowSurrogate((char) low)) {
+                            return -1;
+                        }
+                        unit = Character.toCodePoint((char) unit, (char) low);
+                        i += 6;
+                    } else if (Character.isLowSurrogate((char) unit)) {
+                        return -1;
+                    }
+                    out = writeUtf8(unit, out);
+                    break;
+                default:
+                    return -1;
+            }
+        }
+        return out;
+    }
+
+    private int writeUtf8(int codePoint, int out) {
+        // Escapes are never shorter than the UTF-8 they stand for, so the scratch buffer always has room
+        if (codePoint < 0x80) {
+            scratch[out++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            scratch[out++] = (byte) (0xC0 | (codePoint >> 6));
+            scratch[out++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            scratch[out++] = (byte) (0xE0 | (codePoint >> 12));
+            scratch[out++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            scratch[out++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else {
+            scratch[out++] = (byte) (0xF0 | (codePoint >> 18));
+            scratch[out++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            scratch[out++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            scratch[out++] = (byte) (0x80 | (codePoint & 0x3F));
+        }
+        return out;
+    }
+
+    private void ensureScratch(int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+    }
+
+    private static int parseHex(byte[] data, int from, int to) {
+        if (from >= to || to - from > 6) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(data[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value <= 0x10FFFF ? value : -1;
+    }
+
+    private static int skipWhitespace(byte[] data, int from, int to) {
+        int i = from;
+        while (i < to && (data[i] == ' ' || data[i] == '\n' || data[i] == '\r' || data[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int indexOf(byte[] data, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from, int to) {
+        for (int i = from; i <= to - pattern.length; i++) {
+            if (regionMatches(data, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(byte[] data, int offset, byte[] pattern) {
+        if (data.length - offset < pattern.length) {
+            return false;
+        }
+        for (int j = 0; j < pattern.length; j++) {
+            if (data[offset + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
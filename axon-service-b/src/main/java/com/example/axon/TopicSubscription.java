@@ -0,0 +1,50 @@
+package com.example.axon;
+
+import org.axonframework.extensions.kafka.eventhandling.consumer.TopicSubscriberBuilder;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Topics a processing group's Kafka message source subscribes to, read from
+ * {@code events.subscription.<group>.topics} (comma separated) or {@code events.subscription.<group>.topic-pattern}.
+ * A pattern takes precedence; without either the group reads {@code axon.kafka.default-topic}.
+ */
+final class TopicSubscription {
+    private final List<String> topics;
+    private final Pattern pattern;
+
+    private TopicSubscription(List<String> topics, Pattern pattern) {
+        this.topics = topics;
+        this.pattern = pattern;
+    }
+
+    static TopicSubscription forGroup(Environment environment, String processingGroup) {
+        String prefix = "events.subscription." + processingGroup + ".";
+        String pattern = environment.getProperty(prefix + "topic-pattern", "").trim();
+        if (!pattern.isEmpty()) {
+            return new TopicSubscription(List.of(), Pattern.compile(pattern));
+        }
+        List<String> topics = new ArrayList<>();
+        for (String topic : environment.getProperty(prefix + "topics", "").split(",")) {
+            if (!topic.isBlank()) {
+                topics.add(topic.trim());
+            }
+        }
+        if (topics.isEmpty()) {
+            topics.add(environment.getProperty("axon.kafka.default-topic", "Axon.Events"));
+        }
+        return new TopicSubscription(List.copyOf(topics), null);
+    }
+
+    <B extends TopicSubscriberBuilder<B>> B applyTo(B builder) {
+        return pattern != null ? builder.topicPattern(pattern) : builder.topics(topics);
+    }
+
+    @Override
+    public String toString() {
+        return pattern != null ? "pattern " + pattern.pattern() : "topics " + topics;
+    }
+}
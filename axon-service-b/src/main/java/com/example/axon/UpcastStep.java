@@ -0,0 +1,42 @@
+package com.example.axon;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * One revision step of a payload type, e.g. {@code TestEvent} revision {@code "1"} to {@code "2"}, applied
+ * to the serialized form in the representation the step asks for ({@code JsonNode}, dom4j
+ * {@code Document}, {@code String}, ...) so the payload is never deserialized to get there. A {@code null}
+ * revision stands for an unversioned payload, as written by a class without {@code @Revision}.
+ * <p>
+ * Steps are picked up from the application context and assembled by {@link CachedUpcasterChain}.
+ */
+final class UpcastStep<T> {
+    final String type;
+    final String fromRevision;
+    final String toRevision;
+    final Class<T> representation;
+    final Function<T, T> conversion;
+
+    private UpcastStep(String type, String fromRevision, String toRevision, Class<T> representation,
+                       Function<T, T> conversion) {
+        if (Objects.equals(fromRevision, toRevision)) {
+            throw new IllegalArgumentException("Upcast step of " + type + " must change the revision: " + fromRevision);
+        }
+        this.type = type;
+        this.fromRevision = fromRevision;
+        this.toRevision = toRevision;
+        this.representation = representation;
+        this.conversion = conversion;
+    }
+
+    static <T> UpcastStep<T> of(String type, String fromRevision, String toRevision, Class<T> representation,
+                                Function<T, T> conversion) {
+        return new UpcastStep<>(type, fromRevision, toRevision, representation, conversion);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + fromRevision + " -> " + toRevision;
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.axon;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.avro.Schema;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.ReplayToken;
+import org.axonframework.messaging.InterceptorChain;
+import org.axonframework.messaging.MessageHandlerInterceptor;
+import org.axonframework.messaging.unitofwork.BatchingUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Handler interceptor for the {@code kafka} processing group that checks every event against the Avro schema
+ * of its payload type before {@link TestEventHandler} sees it, once {@code events.validation.enabled} is set.
+ * Invalid events are not handled: they go to the {@link QuarantineStore} with a reason code and the processor
+ * moves on.
+ * <p>
+ * Schemas are read from {@code events.validation.schemas} at startup; a record schema applies to the class
+ * of the same full name. Each is compiled once into a {@link SchemaValidator}, cached by payload type. The
+ * first event of a batch validates the whole batch, on a dedicated pool once the batch has at least
+ * {@code events.validation.parallel-threshold} events, and the verdicts are kept in the unit of work for the
+ * events after it; batches only form when {@code axon.eventhandling.processors.kafka.batch-size} is set above
+ * one. Claim-checked events are validated on their own once {@link ClaimCheckResolver} has loaded their
+ * payload, so this stage is registered after it. Payload types without a schema pass unless
+ * {@code events.validation.require-schema} is set. Replayed events are rejected like live ones but not
+ * quarantined again.
+ */
+@Component
+class ValidationStage implements MessageHandlerInterceptor<EventMessage<?>> {
+    private static final Logger logger = LoggerFactory.getLogger(ValidationStage.class);
+    private static final String VERDICTS = ValidationStage.class.getName() + ".verdicts";
+    // stands in for a valid event among the verdicts, compared by identity
+    private static final SchemaValidator.Violation VALID = new SchemaValidator.Violation(null, null);
+
+    private final boolean enabled;
+    private final boolean requireSchema;
+    private final int parallelThreshold;
+    private final Map<Class<?>, SchemaValidator> validators = new HashMap<>();
+    private final QuarantineStore quarantine;
+    private final ForkJoinPool pool;
+    private final LongAdder validated = new LongAdder();
+    private final LongAdder validationNanos = new LongAdder();
+    private final LongAdder unvalidated = new LongAdder();
+    private final LongAdder parallelBatches = new LongAdder();
+    private final Map<SchemaValidator.ReasonCode, LongAdder> rejected =
+            new EnumMap<>(SchemaValidator.ReasonCode.class);
+
+    @Autowired
+    ValidationStage(@Value("${events.validation.enabled:false}") boolean enabled,
+                    @Value("${events.validation.schemas:classpath*:schemas/*.avsc}") String schemaLocations,
+                    @Value("${events.validation.require-schema:false}") boolean requireSchema,
+                    @Value("${events.validation.parallelism:0}") int parallelism,
+                    @Value("${events.validation.parallel-threshold:32}") int parallelThreshold,
+                    QuarantineStore quarantine) {
+        this(enabled, load(schemaLocations), requireSchema, parallelism, parallelThreshold, quarantine);
+    }
+
+    ValidationStage(boolean enabled, Collection<Schema> schemas, boolean requireSchema, int parallelism,
+                    int parallelThreshold, QuarantineStore quarantine) {
+        this.enabled = enabled;
+        this.requireSchema = requireSchema;
+        this.parallelThreshold = parallelThreshold;
+        this.quarantine = quarantine;
+        for (Schema schema : schemas) {
+            SchemaValidator validator = SchemaValidator.compile(schema, SchemaValidator.load(schema));
+            validators.put(validator.type(), validator);
+        }
+        for (SchemaValidator.ReasonCode reason : SchemaValidator.ReasonCode.values()) {
+            rejected.put(reason, new LongAdder());
+        }
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+                                     pool -> {
+                                         ForkJoinWorkerThread thread =
+                                                 ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                                         thread.setName("event-validation-" + thread.getPoolIndex());
+                                         return thread;
+                                     }, null, false);
+        logger.info("Event validation {} with schemas for {}", enabled ? "enabled" : "disabled",
+                    validators.keySet());
+    }
+
+    static List<Schema> load(String locations) {
+        List<Schema> schemas = new ArrayList<>();
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        for (String location : locations.split(",")) {
+            if (location.isBlank()) {
+                continue;
+            }
+            try {
+                for (Resource resource : resolver.getResources(location.trim())) {
+                    try (InputStream in = resource.getInputStream()) {
+                        schemas.add(new Schema.Parser().parse(in));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read event schemas from " + location, e);
+            }
+        }
+        return schemas;
+    }
+
+    @Override
+    public Object handle(UnitOfWork<? extends EventMessage<?>> unitOfWork, InterceptorChain interceptorChain)
+            throws Exception {
+        if (!enabled) {
+            return interceptorChain.proceed();
+        }
+        EventMessage<?> message = unitOfWork.getMessage();
+        SchemaValidator.Violation violation = verdict(unitOfWork, message);
+        if (violation == VALID) {
+            return interceptorChain.proceed();
+        }
+        rejected.get(violation.reason).increment();
+        if (ReplayToken.isReplay(message)) {
+            logger.debug("Rejected replayed event {}: {}", message.getIdentifier(), violation);
+        } else {
+            long position = quarantine.add(message, violation);
+            logger.warn("Quarantined event {} at {}: {}", message.getIdentifier(), position, violation);
+        }
+        return null;
+    }
+
+    private SchemaValidator.Violation verdict(UnitOfWork<? extends EventMessage<?>> unitOfWork,
+                                              EventMessage<?> message) {
+        if (unitOfWork instanceof BatchingUnitOfWork) {
+            List<? extends EventMessage<?>> batch = ((BatchingUnitOfWork<? extends EventMessage<?>>) unitOfWork)
+                    .getMessages();
+            Map<String, SchemaValidator.Violation> verdicts =
+                    unitOfWork.getOrComputeResource(VERDICTS, key -> validate(batch));
+            SchemaValidator.Violation verdict = verdicts.get(message.getIdentifier());
+            if (verdict != null) {
+                return verdict;
+            }
+        }
+        return validate(message);
+    }
+
+    /**
+     * Verdicts for the events of a batch by identifier, except for claim-checked ones whose payload is not
+     * loaded yet.
+     */
+    Map<String, SchemaValidator.Violation> validate(List<? extends EventMessage<?>> batch) {
+        SchemaValidator.Violation[] verdicts = new SchemaValidator.Violation[batch.size()];
+        if (batch.size() >= parallelThreshold) {
+            parallelBatches.increment();
+            pool.submit(() -> IntStream.range(0, verdicts.length).parallel()
+                    .forEach(i -> verdicts[i] = validateResolved(batch.get(i)))).join();
+        } else {
+            for (int i = 0; i < verdicts.length; i++) {
+                verdicts[i] = validateResolved(batch.get(i));
+            }
+        }
+        Map<String, SchemaValidator.Violation> byIdentifier = new HashMap<>();
+        for (int i = 0; i < verdicts.length; i++) {
+            if (verdicts[i] != null) {
+                byIdentifier.put(batch.get(i).getIdentifier(), verdicts[i]);
+            }
+        }
+        return byIdentifier;
+    }
+
+    private SchemaValidator.Violation validateResolved(EventMessage<?> message) {
+        return message.getMetaData().containsKey(ClaimCheckResolver.REFERENCE) ? null : validate(message);
+    }
+
+    /**
+     * The violation in {@code message}'s payload, or {@link #VALID}.
+     */
+    SchemaValidator.Violation validate(EventMessage<?> message) {
+        long start = System.nanoTime();
+        SchemaValidator validator = validators.get(message.getPayloadType());
+        SchemaValidator.Violation violation;
+        if (validator != null) {
+            violation = validator.validate(message.getPayload());
+        } else {
+            unvalidated.increment();
+            violation = requireSchema ? new SchemaValidator.Violation(
+                    SchemaValidator.ReasonCode.UNKNOWN_TYPE, message.getPayloadType().getName()) : null;
+        }
+        validationNanos.add(System.nanoTime() - start);
+        validated.increment();
+        return violation != null ? violation : VALID;
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("enabled", enabled);
+        description.put("requireSchema", requireSchema);
+        Map<String, Object> schemas = new LinkedHashMap<>();
+        validators.forEach((type, validator) -> schemas.put(
+                type.getName(), String.format("%016x", validator.fingerprint())));
+        description.put("schemaFingerprints", schemas);
+        long events = validated.sum();
+        description.put("validated", events);
+        description.put("unvalidated", unvalidated.sum());
+        Map<String, Long> rejections = new LinkedHashMap<>();
+        rejected.forEach((reason, count) -> rejections.put(reason.name(), count.sum()));
+        description.put("rejected", rejections);
+        description.put("averageValidationMicros",
+                        events == 0 ? 0.0 : validationNanos.sum() / (double) events / TimeUnit.MICROSECONDS.toNanos(1));
+        description.put("parallelism", pool.getParallelism());
+        description.put("parallelThreshold", parallelThreshold);
+        description.put("parallelBatches", parallelBatches.sum());
+        description.put("quarantine", quarantine.describe());
+        return description;
+    }
+
+    @PreDestroy
+    void close() {
+        pool.shutdown();
+    }
+}
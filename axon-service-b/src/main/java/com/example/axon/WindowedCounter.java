@@ -0,0 +1,67 @@
+package com.example.axon;
+
+import java.util.Arrays;
+
+/**
+ * Event counter over a sliding window of fixed-width time buckets, e.g. 60 one-second buckets.
+ * Memory is constant in the number of events; buckets are recycled as the window moves.
+ * Not thread-safe; callers synchronize.
+ */
+class WindowedCounter {
+    private final long bucketMillis;
+    private final long[] counts;
+    private final long[] bucketStarts;
+
+    WindowedCounter(int buckets, long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.counts = new long[buckets];
+        this.bucketStarts = new long[buckets];
+    }
+
+    void increment(long nowMillis) {
+        long start = nowMillis - nowMillis % bucketMillis;
+        int index = (int) ((start / bucketMillis) % counts.length);
+        if (bucketStarts[index] != start) {
+            bucketStarts[index] = start;
+            counts[index] = 0;
+        }
+        counts[index]++;
+    }
+
+    /**
+     * Sum of the buckets that fall within the last {@code windowMillis}, capped at the full window.
+     */
+    long count(long nowMillis, long windowMillis) {
+        long oldest = nowMillis - Math.min(windowMillis, bucketMillis * counts.length);
+        long sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (bucketStarts[i] + bucketMillis > oldest && bucketStarts[i] <= nowMillis) {
+                sum += counts[i];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Per-bucket counts from oldest to newest, for plotting a rate over time.
+     */
+    long[] series(long nowMillis) {
+        long currentStart = nowMillis - nowMillis % bucketMillis;
+        long[] series = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            long start = currentStart - (long) (counts.length - 1 - i) * bucketMillis;
+            int index = (int) ((start / bucketMillis) % counts.length);
+            series[i] = bucketStarts[index] == start ? counts[index] : 0;
+        }
+        return series;
+    }
+
+    long windowMillis() {
+        return bucketMillis * counts.length;
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(bucketStarts, 0);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.axon;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.extensions.kafka.eventhandling.DefaultKafkaMessageConverter;
+import org.axonframework.extensions.kafka.eventhandling.KafkaMessageConverter;
+import org.axonframework.messaging.Headers;
+import org.axonframework.serialization.json.JacksonSerializer;
+import org.axonframework.serialization.upcasting.event.EventUpcasterChain;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Unit tests for resolving, caching and applying upcast steps
+ */
+public class CachedUpcasterChainTest {
+    private static final String TYPE = TestEvent.class.getName();
+
+    @Test
+    void testChainsAreResolvedOncePerRevision() {
+        // Given: Two steps, from revision "0" to "1" and from "1" to the current, unversioned shape
+        UpcastStep<JsonNode> first = UpcastStep.of(TYPE, "0", "1", JsonNode.class, node -> node);
+        UpcastStep<JsonNode> second = UpcastStep.of(TYPE, "1", null, JsonNode.class, node -> node);
+        CachedUpcasterChain chain = new CachedUpcasterChain(List.of(second, first));
+
+        // Then: Old revisions get every remaining step, in order, and the same cached list each time
+        assertThat(chain.chain(TYPE, "0")).containsExactly(first, second);
+        assertThat(chain.chain(TYPE, "1")).containsExactly(second);
+        assertThat(chain.chain(TYPE, "0")).isSameAs(chain.chain(TYPE, "0"));
+
+        // And: The current revision and other types pass through
+        assertThat(chain.needsUpcasting(TYPE, null)).isFalse();
+        assertThat(chain.needsUpcasting("java.lang.String", "0")).isFalse();
+        assertThat(chain.needsUpcasting(TYPE, "0")).isTrue();
+        assertThat(CachedUpcasterChain.EMPTY.needsUpcasting(TYPE, "0")).isFalse();
+    }
+
+    @Test
+    void testAmbiguousAndCyclicStepsAreRejected() {
+        assertThatThrownBy(() -> new CachedUpcasterChain(List.of(
+                UpcastStep.of(TYPE, "0", "1", JsonNode.class, node -> node),
+                UpcastStep.of(TYPE, "0", "2", JsonNode.class, node -> node))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CachedUpcasterChain(List.of(
+                UpcastStep.of(TYPE, "1", "2", JsonNode.class, node -> node),
+                UpcastStep.of(TYPE, "2", "1", JsonNode.class, node -> node))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> UpcastStep.of(TYPE, "1", "1", JsonNode.class, node -> node))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testOldRevisionRecordsAreUpcastBeforeDecoding() {
+        // Given: A step renaming the field of revision "0" TestEvents, wired as in the kafka processing group
+        CachedUpcasterChain upcasters = new CachedUpcasterChain(List.of(UpcastStep.of(
+                TYPE, "0", null, JsonNode.class, node -> {
+                    ObjectNode object = (ObjectNode) node;
+                    object.set("payload", object.remove("message"));
+                    return object;
+                })));
+        KafkaMessageConverter<String, byte[]> delegate = DefaultKafkaMessageConverter.builder()
+                .serializer(JacksonSerializer.defaultSerializer())
+                .upcasterChain(new EventUpcasterChain(upcasters))
+                .build();
+        DirectDecodingMessageConverter converter = new DirectDecodingMessageConverter(
+                delegate, type -> true, new java.util.concurrent.atomic.AtomicLong(), upcasters);
+
+        // And: A current record, and one written in the old shape at revision "0"
+        ProducerRecord<String, byte[]> current = delegate.createKafkaMessage(
+                GenericEventMessage.asEventMessage(new TestEvent("new")), "Axon.Events");
+        ConsumerRecord<String, byte[]> old = consumerRecord(current, "{\"message\":\"old\"}".getBytes(StandardCharsets.UTF_8));
+        old.headers().remove(Headers.MESSAGE_REVISION);
+        old.headers().add(Headers.MESSAGE_REVISION, "0".getBytes(StandardCharsets.UTF_8));
+
+        // When
+        EventMessage<?> upcast = converter.readKafkaMessage(old).get();
+        EventMessage<?> direct = converter.readKafkaMessage(consumerRecord(current, current.value())).get();
+
+        // Then: Both arrive in the current shape; only the old one needed the chain
+        assertThat(((TestEvent) upcast.getPayload()).getPayload()).isEqualTo("old");
+        assertThat(((TestEvent) direct.getPayload()).getPayload()).isEqualTo("new");
+        assertThat(upcasters.describe()).containsEntry("cachedChains", 2);
+    }
+
+    private static ConsumerRecord<String, byte[]> consumerRecord(ProducerRecord<String, byte[]> producerRecord,
+                                                                 byte[] value) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(producerRecord.topic(), 0, 0L,
+                                                                     producerRecord.key(), value);
+        producerRecord.headers().forEach(header -> record.headers().add(header));
+        return record;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.axon;
+
+import org.apache.kafka.common.TopicPartition;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.GenericTrackedEventMessage;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaTrackingToken;
+import org.axonframework.messaging.DefaultInterceptorChain;
+import org.axonframework.messaging.MetaData;
+import org.axonframework.messaging.unitofwork.DefaultUnitOfWork;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for resolving claim-checked payloads
+ */
+public class ClaimCheckResolverTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReferenceIsReplacedByStoredPayloadBeforeHandling() throws Exception {
+        // Given: A blob stored the way Service A stores it and an event referring to it
+        String payload = "large-" + "x".repeat(1000);
+        String reference = store(payload);
+        ClaimCheckResolver resolver = new ClaimCheckResolver(new FileBlobStore(directory), 1 << 20);
+        KafkaTrackingToken token = KafkaTrackingToken.newInstance(Collections.singletonMap(
+                new TopicPartition("Axon.Events", 0), 5L));
+        TrackedEventMessage<TestEvent> message = new GenericTrackedEventMessage<>(token, new GenericEventMessage<>(
+                new TestEvent(reference), MetaData.with(ClaimCheckResolver.REFERENCE, reference)));
+
+        // When
+        EventMessage<?> handled = handle(resolver, message);
+
+        // Then: The handler sees the stored payload with the original identity, metadata and token
+        assertThat(((TestEvent) handled.getPayload()).getPayload()).isEqualTo(payload);
+        assertThat(handled.getIdentifier()).isEqualTo(message.getIdentifier());
+        assertThat(handled.getMetaData()).isEqualTo(message.getMetaData());
+        assertThat(((TrackedEventMessage<?>) handled).trackingToken()).isEqualTo(token);
+    }
+
+    @Test
+    void testResolvedPayloadsAreCachedWithinByteLimit() throws Exception {
+        // Given: A store that counts reads, and a cache that holds about two payloads
+        AtomicInteger reads = new AtomicInteger();
+        FileBlobStore files = new FileBlobStore(directory);
+        ClaimCheckResolver resolver = new ClaimCheckResolver(reference -> {
+            reads.incrementAndGet();
+            return files.get(reference);
+        }, 4_500);
+        String a = store("a".repeat(1000));
+        String b = store("b".repeat(1000));
+        String c = store("c".repeat(1000));
+
+        // When
+        resolver.resolve(a);
+        resolver.resolve(a);
+        resolver.resolve(b);
+        resolver.resolve(c);
+        resolver.resolve(a);
+
+        // Then: The repeat was served from the cache; a was evicted by b and c and read again
+        assertThat(reads).hasValue(4);
+        assertThat((Long) resolver.describe().get("cachedBytes")).isLessThanOrEqualTo(4_500L);
+    }
+
+    @Test
+    void testTamperedBlobIsRejected() throws Exception {
+        String reference = store("original");
+        String digest = reference.substring(FileBlobStore.SCHEME.length());
+        Files.writeString(directory.resolve(digest.substring(0, 2)).resolve(digest), "tampered");
+        ClaimCheckResolver resolver = new ClaimCheckResolver(new FileBlobStore(directory), 1 << 20);
+
+        assertThatThrownBy(() -> resolver.resolve(reference)).isInstanceOf(UncheckedIOException.class);
+    }
+
+    private String store(String payload) throws IOException {
+        byte[] content = payload.getBytes(StandardCharsets.UTF_8);
+        String digest = FileBlobStore.digest(content);
+        Path file = directory.resolve(digest.substring(0, 2)).resolve(digest);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+        return FileBlobStore.SCHEME + digest;
+    }
+
+    private static EventMessage<?> handle(ClaimCheckResolver resolver, EventMessage<?> message) throws Exception {
+        AtomicReference<EventMessage<?>> handled = new AtomicReference<>();
+        DefaultUnitOfWork<EventMessage<?>> unitOfWork = DefaultUnitOfWork.startAndGet(message);
+        try {
+            new DefaultInterceptorChain<>(unitOfWork, Collections.singletonList(resolver), m -> {
+                handled.set(m);
+                return null;
+            }).proceed();
+        } finally {
+            unitOfWork.commit();
+        }
+        return handled.get();
+    }
+}
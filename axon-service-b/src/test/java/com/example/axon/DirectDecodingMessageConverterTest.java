@@ -0,0 +1,217 @@
+package com.example.axon;
+
+import com.thoughtworks.xstream.XStream;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.record.TimestampType;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.extensions.kafka.eventhandling.DefaultKafkaMessageConverter;
+import org.axonframework.extensions.kafka.eventhandling.KafkaMessageConverter;
+import org.axonframework.messaging.MetaData;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.json.JacksonSerializer;
+import org.axonframework.serialization.xml.XStreamSerializer;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Unit tests for decoding TestEvent records directly from their bytes
+ */
+public class DirectDecodingMessageConverterTest {
+
+    @Test
+    void testXStreamRecordsDecodeToTheSameMessage() {
+        // Given: A record written by Service A's default XStream serializer
+        KafkaMessageConverter<String, byte[]> serializerPath = converter(xStream());
+        EventMessage<?> original = new GenericEventMessage<>(new TestEvent("order <1> & \"co\" \u00e9\u20ac"),
+                                                             MetaData.with("traceId", "abc"));
+        ConsumerRecord<String, byte[]> record = consumerRecord(serializerPath.createKafkaMessage(original, "Axon.Events"));
+
+        // When: Reading it through the direct path
+        EventMessage<?> decoded = new DirectDecodingMessageConverter(serializerPath).readKafkaMessage(record).get();
+
+        // Then: Payload, identifier, timestamp and metadata all survive
+        assertThat(((TestEvent) decoded.getPayload()).getPayload()).isEqualTo("order <1> & \"co\" \u00e9\u20ac");
+        assertThat(decoded.getIdentifier()).isEqualTo(original.getIdentifier());
+        assertThat(decoded.getTimestamp()).isEqualTo(original.getTimestamp().truncatedTo(java.time.temporal.ChronoUnit.MILLIS));
+        assertThat(decoded.getMetaData()).containsEntry("traceId", "abc");
+    }
+
+    @Test
+    void testJacksonRecordsWithEscapesAreDecoded() {
+        // Given: A JSON record whose payload needs unescaping, including a surrogate pair
+        KafkaMessageConverter<String, byte[]> serializerPath = converter(JacksonSerializer.defaultSerializer());
+        String payload = "line1\nline2\t\"quoted\" \\ \ud83d\ude00";
+        ConsumerRecord<String, byte[]> record = consumerRecord(
+                serializerPath.createKafkaMessage(GenericEventMessage.asEventMessage(new TestEvent(payload)), "Axon.Events"));
+
+        // When / Then: The direct path produces the original payload
+        EventMessage<?> decoded = new DirectDecodingMessageConverter(serializerPath).readKafkaMessage(record).get();
+        assertThat(((TestEvent) decoded.getPayload()).getPayload()).isEqualTo(payload);
+        assertThat(decoded.getMetaData()).isEmpty();
+    }
+
+    @Test
+    void testDecoderHandlesMissingPayloadAndRejectsUnknownFormats() {
+        TestEventDecoder decoder = TestEventDecoder.forCurrentThread();
+
+        assertThat(decoder.decode(bytes("<com.example.axon.TestEvent/>"))).isNull();
+        assertThat(decoder.decode(bytes("{}"))).isNull();
+        assertThat(decoder.decode(bytes("{\"payload\" : null}")).getPayload()).isNull();
+        assertThat(decoder.decode(bytes("<com.example.axon.TestEvent><payload>&#x41;&#66;</payload>"
+                                        + "</com.example.axon.TestEvent>")).getPayload()).isEqualTo("AB");
+        assertThat(decoder.decode(bytes("<x><payload>&bogus;</payload></x>"))).isNull();
+        assertThat(decoder.decode(bytes("{\"payload\":\"unterminated}"))).isNull();
+        assertThat(decoder.decode(bytes("plain text"))).isNull();
+    }
+
+    @Test
+    void testOtherPayloadTypesGoToTheDelegate() {
+        // Given: A record carrying a String payload rather than a TestEvent
+        KafkaMessageConverter<String, byte[]> serializerPath = converter(xStream());
+        ConsumerRecord<String, byte[]> record = consumerRecord(
+                serializerPath.createKafkaMessage(GenericEventMessage.asEventMessage("not a test event"), "Axon.Events"));
+
+        // When / Then: The serializer path handles it
+        Optional<EventMessage<?>> decoded = new DirectDecodingMessageConverter(serializerPath).readKafkaMessage(record);
+        assertThat(decoded).isPresent();
+        assertThat(decoded.get().getPayload()).isEqualTo("not a test event");
+    }
+
+    @Test
+    void testRecordWithoutPayloadFallsBackToTheSerializer() {
+        // Given: XStream leaves a null payload out of the record entirely
+        KafkaMessageConverter<String, byte[]> serializerPath = converter(xStream());
+        ConsumerRecord<String, byte[]> record = consumerRecord(serializerPath.createKafkaMessage(
+                GenericEventMessage.asEventMessage(new TestEvent(null)), "Axon.Events"));
+
+        // When
+        EventMessage<?> decoded = new DirectDecodingMessageConverter(serializerPath).readKafkaMessage(record).get();
+
+        // Then: The serializer reads it, as it would without the direct path
+        assertThat(decoded.getPayload()).isInstanceOf(TestEvent.class);
+        assertThat(((TestEvent) decoded.getPayload()).getPayload()).isNull();
+    }
+
+    @Test
+    void testPayloadIsDecodedOnFirstAccessOnly() {
+        // Given: A TestEvent record whose value turns out to be unreadable
+        KafkaMessageConverter<String, byte[]> serializerPath = converter(xStream());
+        ConsumerRecord<String, byte[]> record = consumerRecord(serializerPath.createKafkaMessage(
+                GenericEventMessage.asEventMessage(new TestEvent("lazy")), "Axon.Events"));
+        ConsumerRecord<String, byte[]> corrupt = new ConsumerRecord<>(record.topic(), 0, 1L, record.key(),
+                                                                      bytes("not xml"));
+        record.headers().forEach(header -> corrupt.headers().add(header));
+
+        // When: Reading it through the direct path
+        EventMessage<?> message = new DirectDecodingMessageConverter(serializerPath).readKafkaMessage(corrupt).get();
+
+        // Then: The message is routable by type, and decoding only fails once the payload is asked for
+        assertThat(message.getPayloadType()).isEqualTo(TestEvent.class);
+        org.assertj.core.api.Assertions.assertThatThrownBy(message::getPayload).isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void testLazyMessageDecodesOnceAndKeepsPayloadAcrossMetaDataChanges() {
+        java.util.concurrent.atomic.AtomicInteger fallbacks = new java.util.concurrent.atomic.AtomicInteger();
+        LazyTestEventMessage message = new LazyTestEventMessage("id", bytes("{\"payload\":\"json\"}"),
+                                                                MetaData.emptyInstance(),
+                                                                () -> new TestEvent("fallback-" + fallbacks.incrementAndGet()));
+
+        assertThat(message.isPayloadDecoded()).isFalse();
+        TestEvent first = message.getPayload();
+        assertThat(first.getPayload()).isEqualTo("json");
+        assertThat(message.getPayload()).isSameAs(first);
+        assertThat(message.andMetaData(MetaData.with("k", "v")).getPayload()).isSameAs(first);
+        assertThat(fallbacks.get()).isZero();
+    }
+
+    @Test
+    void testUnhandledTypesAreSkippedWithoutDecoding() {
+        // Given: A record of a type no handler accepts, with a value no serializer could read
+        KafkaMessageConverter<String, byte[]> serializerPath = converter(xStream());
+        ConsumerRecord<String, byte[]> record = consumerRecord(serializerPath.createKafkaMessage(
+                GenericEventMessage.asEventMessage("ignored"), "Axon.Events"));
+        ConsumerRecord<String, byte[]> corrupt = new ConsumerRecord<>(record.topic(), 0, 1L, record.key(),
+                                                                      new byte[]{(byte) 0xFF, 0x00});
+        record.headers().forEach(header -> corrupt.headers().add(header));
+        java.util.concurrent.atomic.AtomicLong skipped = new java.util.concurrent.atomic.AtomicLong();
+        DirectDecodingMessageConverter converter = new DirectDecodingMessageConverter(
+                serializerPath, type -> type.equals(TestEvent.class.getName()), skipped, CachedUpcasterChain.EMPTY);
+
+        // When
+        EventMessage<?> message = converter.readKafkaMessage(corrupt).get();
+
+        // Then: A placeholder comes back so the token still advances, and nothing was deserialized
+        assertThat(message.getPayload()).isSameAs(DirectDecodingMessageConverter.SkippedRecord.INSTANCE);
+        assertThat(skipped.get()).isEqualTo(1);
+    }
+
+    @Test
+    void testHandledTypesAreCollectedFromTheKafkaProcessingGroup() {
+        assertThat(HandledPayloadTypes.collect(java.util.List.of(new TestEventHandler(), new Object())))
+                .containsExactly(TestEvent.class);
+    }
+
+    @Test
+    void testDirectPathAllocatesFarLessPerEvent() {
+        // Given: The same record read through both paths
+        KafkaMessageConverter<String, byte[]> serializerPath = converter(xStream());
+        KafkaMessageConverter<String, byte[]> directPath = new DirectDecodingMessageConverter(serializerPath);
+        ConsumerRecord<String, byte[]> record = consumerRecord(serializerPath.createKafkaMessage(
+                GenericEventMessage.asEventMessage(new TestEvent("event-0123456789")), "Axon.Events"));
+
+        // When: Measuring bytes allocated per event after warm-up
+        long serializerBytes = bytesPerEvent(serializerPath, record);
+        long directBytes = bytesPerEvent(directPath, record);
+        System.out.printf("Allocated bytes per event: serializer=%d, direct=%d%n", serializerBytes, directBytes);
+
+        // Then: The direct path allocates a fraction of what the serializer path does
+        assertThat(directBytes).isLessThan(serializerBytes / 4);
+    }
+
+    private static long bytesPerEvent(KafkaMessageConverter<String, byte[]> converter,
+                                      ConsumerRecord<String, byte[]> record) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int iterations = 20_000;
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += ((TestEvent) converter.readKafkaMessage(record).get().getPayload()).getPayload().length();
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            sink += ((TestEvent) converter.readKafkaMessage(record).get().getPayload()).getPayload().length();
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertThat(sink).isPositive();
+        return allocated / iterations;
+    }
+
+    private static KafkaMessageConverter<String, byte[]> converter(Serializer serializer) {
+        return DefaultKafkaMessageConverter.builder().serializer(serializer).build();
+    }
+
+    private static Serializer xStream() {
+        XStream xStream = new XStream();
+        xStream.allowTypesByWildcard(new String[]{"com.example.**"});
+        return XStreamSerializer.builder().xStream(xStream).build();
+    }
+
+    private static ConsumerRecord<String, byte[]> consumerRecord(ProducerRecord<String, byte[]> producerRecord) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(producerRecord.topic(), 0, 0L, 0L,
+                                                                     TimestampType.CREATE_TIME, 0L, 0,
+                                                                     producerRecord.value().length,
+                                                                     producerRecord.key(), producerRecord.value());
+        producerRecord.headers().forEach(header -> record.headers().add(header));
+        return record;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.axon;
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the approximate statistics sketches
+ */
+public class EventStatisticsTest {
+
+    @Test
+    void testHyperLogLogEstimateIsWithinErrorBound() {
+        // Given: A HyperLogLog with default precision
+        HyperLogLog hll = new HyperLogLog(14);
+
+        // When: 100k distinct values are added, each twice
+        for (int i = 0; i < 100_000; i++) {
+            hll.add("event-" + i);
+            hll.add("event-" + i);
+        }
+
+        // Then: The estimate is within 3% of the true cardinality
+        assertThat((double) hll.estimate()).isCloseTo(100_000, within(3_000.0));
+    }
+
+    @Test
+    void testSpaceSavingFindsHeavyHitters() {
+        // Given: A small Space-Saving summary
+        SpaceSavingCounter counter = new SpaceSavingCounter(8);
+
+        // When: Two hot payloads are interleaved with many unique ones
+        for (int i = 0; i < 1_000; i++) {
+            counter.add("hot-A");
+            if (i % 2 == 0) {
+                counter.add("hot-B");
+            }
+            counter.add("unique-" + i);
+        }
+
+        // Then: The hot payloads are reported first
+        List<SpaceSavingCounter.Counter> top = counter.top(2, 1);
+        assertThat(top).extracting(c -> c.item).containsExactly("hot-A", "hot-B");
+        assertThat(top.get(0).count).isGreaterThanOrEqualTo(1_000);
+        assertThat(counter.top(0, 1)).isEmpty();
+        assertThat(counter.top(-1, 1)).isEmpty();
+    }
+
+    @Test
+    void testWindowedCounterExpiresOldBuckets() {
+        // Given: A 10 second window of 1 second buckets
+        WindowedCounter counter = new WindowedCounter(10, 1000);
+        counter.increment(1_000);
+        counter.increment(1_500);
+        counter.increment(5_000);
+
+        // Then: Counts reflect only buckets inside the requested window
+        assertThat(counter.count(5_000, 10_000)).isEqualTo(3);
+        assertThat(counter.count(5_000, 1_000)).isEqualTo(1);
+        assertThat(counter.count(20_000, 10_000)).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSnapshotReportsDuplicatesAndPoisonPills() {
+        // Given: Statistics fed with a duplicate and a poison pill
+        EventStatistics statistics = new EventStatistics(14, 16, 60);
+        long now = 100_000;
+        statistics.record("event-A", false, now);
+        statistics.record("event-B", false, now);
+        statistics.record("event-A", false, now);
+        statistics.record("poison-pill", true, now);
+
+        // When: Taking a snapshot
+        Map<String, Object> stats = statistics.snapshot(10, now);
+
+        // Then: Counts, duplicates and poison-pill ratio are reported
+        assertThat(stats.get("totalReceived")).isEqualTo(4L);
+        assertThat(stats.get("distinctPayloadsEstimate")).isEqualTo(3L);
+        assertThat(stats.get("duplicatesEstimate")).isEqualTo(1L);
+        assertThat(stats.get("poisonPillRatio")).isEqualTo(0.25);
+        List<Map<String, Object>> top = (List<Map<String, Object>>) stats.get("topDuplicates");
+        assertThat(top).hasSize(1);
+        assertThat(top.get(0).get("payload")).isEqualTo("event-A");
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.axon;
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for the live-tail ring buffer and its payload filter
+ */
+public class EventStreamBufferTest {
+
+    @Test
+    void testReadFromCursorReturnsOnlyNewEvents() {
+        // Given: A buffer with two events already appended
+        EventStreamBuffer buffer = new EventStreamBuffer(8);
+        buffer.append("event1");
+        buffer.append("event2");
+        long cursor = buffer.headSequence();
+        buffer.append("event3");
+
+        // When: Reading from the cursor taken before event3
+        List<EventStreamBuffer.Entry> entries = new ArrayList<>();
+        EventStreamBuffer.ReadResult result = buffer.read(cursor, 10, entries);
+
+        // Then: Only the new event is returned
+        assertThat(payloads(entries)).containsExactly("event3");
+        assertThat(result.nextCursor).isEqualTo(3);
+        assertThat(result.dropped).isZero();
+    }
+
+    @Test
+    void testSlowReaderDropsOldestEntries() {
+        // Given: A buffer of capacity 4 that received 10 events
+        EventStreamBuffer buffer = new EventStreamBuffer(4);
+        for (int i = 0; i < 10; i++) {
+            buffer.append("event" + i);
+        }
+
+        // When: A reader still at the start reads
+        List<EventStreamBuffer.Entry> entries = new ArrayList<>();
+        EventStreamBuffer.ReadResult result = buffer.read(0, 10, entries);
+
+        // Then: The oldest events are reported as dropped and the newest are delivered
+        assertThat(result.dropped).isEqualTo(6);
+        assertThat(payloads(entries)).containsExactly("event6", "event7", "event8", "event9");
+        assertThat(result.nextCursor).isEqualTo(10);
+    }
+
+    @Test
+    void testReadIsBoundedByMaxEntries() {
+        // Given: A buffer with five events
+        EventStreamBuffer buffer = new EventStreamBuffer(16);
+        for (int i = 0; i < 5; i++) {
+            buffer.append("event" + i);
+        }
+
+        // When: Reading at most two entries
+        List<EventStreamBuffer.Entry> entries = new ArrayList<>();
+        EventStreamBuffer.ReadResult result = buffer.read(0, 2, entries);
+
+        // Then: The cursor only advances past the entries returned
+        assertThat(payloads(entries)).containsExactly("event0", "event1");
+        assertThat(result.nextCursor).isEqualTo(2);
+    }
+
+    @Test
+    void testCapacityIsRoundedToPowerOfTwo() {
+        assertThat(new EventStreamBuffer(5).capacity()).isEqualTo(8);
+        assertThat(new EventStreamBuffer(8).capacity()).isEqualTo(8);
+    }
+
+    @Test
+    void testPayloadFilter() {
+        // Given: A filter requiring a prefix and a regex match
+        EventStreamPublisher.PayloadFilter filter = new EventStreamPublisher.PayloadFilter("order-", null, "\\d+$");
+
+        // Then: Only payloads satisfying both conditions match
+        assertThat(filter.matches("order-42")).isTrue();
+        assertThat(filter.matches("order-abc")).isFalse();
+        assertThat(filter.matches("invoice-42")).isFalse();
+        assertThat(new EventStreamPublisher.PayloadFilter(null, null, null).matches("anything")).isTrue();
+    }
+
+    @Test
+    void testRegexIsBounded() {
+        // Then: Invalid and overlong patterns are refused up front
+        assertThatThrownBy(() -> new EventStreamPublisher.PayloadFilter(null, null, "(unclosed"))
+                .isInstanceOf(PatternSyntaxException.class);
+        assertThatThrownBy(() -> new EventStreamPublisher.PayloadFilter(
+                null, null, "a".repeat(EventStreamPublisher.PayloadFilter.MAX_REGEX_LENGTH + 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // And: Only the start of a long payload is searched, and $ does not match where that start ends
+        EventStreamPublisher.PayloadFilter tail = new EventStreamPublisher.PayloadFilter(null, null, "x$");
+        String longPayload = "x".repeat(EventStreamPublisher.PayloadFilter.MAX_MATCHED_CHARS) + "-end";
+        assertThat(tail.matches(longPayload)).isFalse();
+        assertThat(new EventStreamPublisher.PayloadFilter(null, null, "end").matches(longPayload)).isFalse();
+
+        // And: A catastrophically backtracking pattern gives up instead of stalling the dispatcher
+        EventStreamPublisher.PayloadFilter backtracking = new EventStreamPublisher.PayloadFilter(null, null, "(a+)+b");
+        long start = System.nanoTime();
+        assertThat(backtracking.matches("a".repeat(40))).isFalse();
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+    }
+
+    private static List<String> payloads(List<EventStreamBuffer.Entry> entries) {
+        return entries.stream().map(e -> e.payload).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.axon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for pushing the live tail to Server-Sent Events subscribers
+ */
+public class EventStreamPublisherTest {
+
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private EventStreamPublisher publisher;
+
+    @AfterEach
+    void shutdown() {
+        unblock.countDown();
+        if (publisher != null) {
+            publisher.shutdown();
+        }
+    }
+
+    @Test
+    void testSlowSubscriberDoesNotStallTheOthersAndIsDropped() throws Exception {
+        // Given: Two subscribers, one of which never gets its first write through
+        EventStreamBuffer buffer = new EventStreamBuffer(64);
+        publisher = new EventStreamPublisher(buffer, 10, 256, 0, 300);
+        RecordingEmitter stuck = new RecordingEmitter(true);
+        RecordingEmitter live = new RecordingEmitter(false);
+        EventStreamPublisher.PayloadFilter all = new EventStreamPublisher.PayloadFilter(null, null, null);
+        publisher.subscribe(stuck, all, null);
+        publisher.subscribe(live, all, null);
+
+        // When: Events keep arriving
+        for (int i = 0; i < 5; i++) {
+            buffer.append("event-" + i);
+            Thread.sleep(20);
+        }
+
+        // Then: The other subscriber receives them all while the first write is still blocked
+        assertThat(live.sent.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(stuck.events).isEmpty();
+
+        // And: The blocked one is dropped after the send timeout, and completed once its write returns
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (publisher.subscriberCount() > 1 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(publisher.subscriberCount()).isEqualTo(1);
+        assertThat(publisher.slowDropped()).isEqualTo(1);
+        unblock.countDown();
+        assertThat(stuck.completed.await(2, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private final class RecordingEmitter extends SseEmitter {
+        final List<SseEventBuilder> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch sent = new CountDownLatch(5);
+        final CountDownLatch completed = new CountDownLatch(1);
+        private final boolean blocking;
+
+        RecordingEmitter(boolean blocking) {
+            this.blocking = blocking;
+        }
+
+        @Override
+        public void send(SseEventBuilder event) {
+            if (blocking) {
+                // A client that stopped reading: the write waits for TCP window space
+                try {
+                    unblock.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return;
+            }
+            events.add(event);
+            sent.countDown();
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
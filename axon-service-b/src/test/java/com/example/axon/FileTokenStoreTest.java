@@ -0,0 +1,156 @@
+package com.example.axon;
+
+import org.apache.kafka.common.TopicPartition;
+import org.axonframework.eventhandling.tokenstore.UnableToClaimTokenException;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaTrackingToken;
+import org.axonframework.serialization.json.JacksonSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+/**
+ * Unit tests for the file-backed token store: persistence, batched commits and claim semantics
+ */
+public class FileTokenStoreTest {
+
+    private static final String PROCESSOR = "kafka";
+
+    @TempDir
+    Path directory;
+
+    private MutableClock clock;
+    private FileTokenStore nodeA;
+    private FileTokenStore nodeB;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock();
+        nodeA = store("node-A");
+        nodeB = store("node-B");
+        nodeA.initializeTokenSegments(PROCESSOR, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+    }
+
+    @Test
+    void testTokensAreCoalescedUntilEventThreshold() {
+        // Given: Node A owns the segment
+        nodeA.fetchToken(PROCESSOR, 0);
+
+        // When: Storing a token covering fewer events than the commit threshold
+        nodeA.storeToken(token(50), PROCESSOR, 0);
+        nodeA.releaseClaim(PROCESSOR, 0);
+
+        // Then: Releasing the claim forces the pending token to disk
+        assertThat(nodeB.fetchToken(PROCESSOR, 0)).isEqualTo(token(50));
+    }
+
+    @Test
+    void testPendingTokenIsNotVisibleBeforeCommit() {
+        // Given: Node A stores a small advance and then crashes (never releases)
+        nodeA.fetchToken(PROCESSOR, 0);
+        nodeA.storeToken(token(10), PROCESSOR, 0);
+
+        // When: Node B takes over after the claim timeout
+        clock.advance(Duration.ofSeconds(11));
+        FileTokenStore restarted = store("node-B2");
+
+        // Then: Only the last committed position is durable
+        assertThat(restarted.fetchToken(PROCESSOR, 0)).isNull();
+        restarted.shutdown();
+    }
+
+    @Test
+    void testTokenIsCommittedOnceEventThresholdIsReached() {
+        // Given: Node A owns the segment
+        nodeA.fetchToken(PROCESSOR, 0);
+
+        // When: A token covering more events than the threshold is stored
+        nodeA.storeToken(token(150), PROCESSOR, 0);
+        clock.advance(Duration.ofSeconds(11));
+
+        // Then: It is visible to another node without a release
+        assertThat(nodeB.fetchToken(PROCESSOR, 0)).isEqualTo(token(150));
+    }
+
+    @Test
+    void testClaimedSegmentCannotBeTakenBeforeTimeout() {
+        // Given: Node A owns the segment
+        nodeA.fetchToken(PROCESSOR, 0);
+
+        // Then: Node B cannot claim it until the claim times out
+        assertThatThrownBy(() -> nodeB.fetchToken(PROCESSOR, 0)).isInstanceOf(UnableToClaimTokenException.class);
+        clock.advance(Duration.ofSeconds(11));
+        nodeB.fetchToken(PROCESSOR, 0);
+
+        // And: Node A notices it lost the claim when committing
+        assertThatThrownBy(() -> nodeA.storeToken(token(500), PROCESSOR, 0))
+                .isInstanceOf(UnableToClaimTokenException.class);
+    }
+
+    @Test
+    void testTokenCannotBeStoredWithoutClaim() {
+        // Given: Node B never claimed the segment Node A holds
+        nodeA.fetchToken(PROCESSOR, 0);
+
+        // Then: Storing is refused instead of taking the segment over
+        assertThatThrownBy(() -> nodeB.storeToken(token(500), PROCESSOR, 0))
+                .isInstanceOf(UnableToClaimTokenException.class);
+        nodeA.releaseClaim(PROCESSOR, 0);
+        assertThat(nodeB.fetchToken(PROCESSOR, 0)).isNull();
+        assertThat(directory.toFile().list((dir, name) -> name.endsWith(".tmp"))).isEmpty();
+    }
+
+    @Test
+    void testSegmentsAndIdentifier() {
+        assertThat(nodeB.fetchSegments(PROCESSOR)).containsExactly(0);
+        assertThat(nodeA.retrieveStorageIdentifier()).isEqualTo(nodeB.retrieveStorageIdentifier());
+        assertThatThrownBy(() -> nodeB.initializeTokenSegments(PROCESSOR, 1))
+                .isInstanceOf(UnableToClaimTokenException.class);
+    }
+
+    private FileTokenStore store(String nodeId) {
+        return new FileTokenStore(directory, JacksonSerializer.defaultSerializer(), nodeId, Duration.ofSeconds(10),
+                                  60_000, 100, clock);
+    }
+
+    private static KafkaTrackingToken token(long offset) {
+        return KafkaTrackingToken.newInstance(Map.of(new TopicPartition("Axon.Events", 0), offset));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public java.time.ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.axon;
+
+import org.apache.kafka.common.TopicPartition;
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.common.transaction.NoTransactionManager;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.EventMessageHandler;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.SimpleEventHandlerInvoker;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventhandling.TrackingEventProcessorConfiguration;
+import org.axonframework.eventhandling.tokenstore.inmemory.InMemoryTokenStore;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaTrackingToken;
+import org.axonframework.messaging.MetaData;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the co-located in-JVM transport, plus a reference throughput measurement
+ */
+public class LocalEventChannelTest {
+    private static final TopicPartition PARTITION = new TopicPartition("Axon.Events.local", 0);
+
+    @Test
+    void testMessagesArePassedByReferenceWithKafkaTokens() throws InterruptedException {
+        // Given
+        LocalEventChannel channel = new LocalEventChannel(PARTITION, 16, 100, 1_000);
+        EventMessage<TestEvent> first = event("event-A");
+        channel.publish(List.of(first, event("event-B")));
+
+        // When
+        BlockingStream<TrackedEventMessage<?>> stream = channel.openStream(channel.createTailToken());
+
+        // Then: The very same message objects arrive, in order, each with its own position
+        TrackedEventMessage<?> received = stream.nextAvailable();
+        assertThat(received.getPayload()).isSameAs(first.getPayload());
+        assertThat(received.getMetaData()).isEqualTo(first.getMetaData());
+        assertThat(KafkaTrackingToken.from(received.trackingToken()).getPositions()).containsEntry(PARTITION, 1_000L);
+        assertThat(((TestEvent) stream.nextAvailable().getPayload()).getPayload()).isEqualTo("event-B");
+        assertThat(stream.hasNextAvailable(10, TimeUnit.MILLISECONDS)).isFalse();
+        stream.close();
+    }
+
+    @Test
+    void testStreamResumesAfterTokenAndSkipsStaleTokens() throws InterruptedException {
+        // Given
+        LocalEventChannel channel = new LocalEventChannel(PARTITION, 16, 100, 1_000);
+        for (int i = 0; i < 5; i++) {
+            channel.publish(List.of(event("event-" + i)));
+        }
+
+        // When: Resuming after position 1002, and from a token of an earlier run
+        BlockingStream<TrackedEventMessage<?>> resumed =
+                channel.openStream(KafkaTrackingToken.newInstance(Map.of(PARTITION, 1_002L)));
+        BlockingStream<TrackedEventMessage<?>> stale =
+                channel.openStream(KafkaTrackingToken.newInstance(Map.of(PARTITION, 17L)));
+
+        // Then
+        assertThat(((TestEvent) resumed.nextAvailable().getPayload()).getPayload()).isEqualTo("event-3");
+        assertThat(((TestEvent) stale.nextAvailable().getPayload()).getPayload()).isEqualTo("event-0");
+        assertThat(KafkaTrackingToken.from(channel.createHeadToken()).getPositions()).containsEntry(PARTITION, 1_004L);
+        resumed.close();
+        stale.close();
+    }
+
+    @Test
+    void testFullChannelBlocksThenRejectsPublishers() throws InterruptedException {
+        // Given: An open stream that has consumed nothing
+        LocalEventChannel channel = new LocalEventChannel(PARTITION, 4, 50, 0);
+        BlockingStream<TrackedEventMessage<?>> stream = channel.openStream(null);
+        channel.publish(List.of(event("1"), event("2"), event("3"), event("4")));
+
+        // Then: The next publish times out instead of overwriting unconsumed messages
+        assertThatThrownBy(() -> channel.publish(List.of(event("5")))).isInstanceOf(IllegalStateException.class);
+        assertThat(channel.describe()).containsEntry("rejectedPublishes", 1L);
+
+        // When: The stream consumes one message
+        stream.nextAvailable();
+
+        // Then: There is room again
+        channel.publish(List.of(event("5")));
+        assertThat(channel.describe()).containsEntry("backlog", 4L);
+        stream.close();
+    }
+
+    @Test
+    void testReferenceThroughputThroughTrackingProcessor() throws InterruptedException {
+        // Given: A tracking processor reading the channel, as the kafka processing group does when co-located
+        int events = 100_000;
+        LocalEventChannel channel = new LocalEventChannel(PARTITION, 4096, 10_000, 0);
+        CountDownLatch handled = new CountDownLatch(events);
+        TrackingEventProcessor processor = TrackingEventProcessor.builder()
+                .name("local-benchmark")
+                .eventHandlerInvoker(SimpleEventHandlerInvoker.builder()
+                                             .eventHandlers((EventMessageHandler)
+                                                                    message -> {
+                                                                        handled.countDown();
+                                                                        return null;
+                                                                    })
+                                             .build())
+                .messageSource(channel)
+                .tokenStore(new InMemoryTokenStore())
+                .transactionManager(NoTransactionManager.INSTANCE)
+                .trackingEventProcessorConfiguration(TrackingEventProcessorConfiguration
+                                                             .forSingleThreadedProcessing().andBatchSize(100))
+                .build();
+        processor.start();
+
+        // When
+        long start = System.nanoTime();
+        List<EventMessage<?>> batch = new ArrayList<>(100);
+        for (int i = 0; i < events; i++) {
+            batch.add(event("event-" + i));
+            if (batch.size() == 100) {
+                channel.publish(batch);
+                batch.clear();
+            }
+        }
+        boolean completed = handled.await(60, TimeUnit.SECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+        processor.shutDown();
+
+        // Then: Everything arrives; the rate is the framework cost with no serialization or broker involved
+        assertThat(completed).isTrue();
+        System.out.printf("In-JVM transport: %d events in %d ms (%.0f events/s)%n", events,
+                          TimeUnit.NANOSECONDS.toMillis(elapsedNanos), events * 1e9 / elapsedNanos);
+    }
+
+    private static EventMessage<TestEvent> event(String payload) {
+        return new GenericEventMessage<>(new TestEvent(payload), MetaData.with(OrderingMonitor.KEY, "k"));
+    }
+}
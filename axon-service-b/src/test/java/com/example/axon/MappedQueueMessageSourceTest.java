@@ -0,0 +1,169 @@
+package com.example.axon;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.extensions.kafka.eventhandling.DefaultKafkaMessageConverter;
+import org.axonframework.extensions.kafka.eventhandling.KafkaMessageConverter;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaTrackingToken;
+import org.axonframework.messaging.MetaData;
+import org.axonframework.serialization.json.JacksonSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for tailing the memory-mapped event queue; segments are written here in Service A's layout
+ */
+public class MappedQueueMessageSourceTest {
+    private static final TopicPartition PARTITION = new TopicPartition("Axon.Events.queue", 0);
+    private static final KafkaMessageConverter<String, byte[]> CONVERTER = DefaultKafkaMessageConverter.builder()
+            .serializer(JacksonSerializer.defaultSerializer())
+            .build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecordsAreDecodedAcrossSegmentsAndResumeFromToken() throws Exception {
+        // Given: Records in two segments, joined by an end-of-segment marker
+        QueueWriter writer = new QueueWriter(directory, 1024);
+        for (int i = 0; i < 30; i++) {
+            writer.append("event-" + i, 1_000L + i);
+        }
+        assertThat(writer.base).isGreaterThan(0);
+        MappedQueueMessageSource source = new MappedQueueMessageSource(directory, PARTITION, CONVERTER, 10_000);
+
+        // When
+        BlockingStream<TrackedEventMessage<?>> stream = source.openStream(source.createTailToken());
+
+        // Then: Every record arrives in order with its position as token
+        for (int i = 0; i < 30; i++) {
+            TrackedEventMessage<?> message = stream.nextAvailable();
+            assertThat(((TestEvent) message.getPayload()).getPayload()).isEqualTo("event-" + i);
+            assertThat(message.getMetaData()).containsEntry(OrderingMonitor.KEY, "k");
+            assertThat(KafkaTrackingToken.from(message.trackingToken()).getPositions())
+                    .containsEntry(PARTITION, (long) i);
+        }
+        assertThat(stream.hasNextAvailable(10, TimeUnit.MILLISECONDS)).isFalse();
+        stream.close();
+
+        // When: Resuming after position 24, and looking up tokens
+        BlockingStream<TrackedEventMessage<?>> resumed =
+                source.openStream(KafkaTrackingToken.newInstance(Map.of(PARTITION, 24L)));
+
+        // Then
+        assertThat(((TestEvent) resumed.nextAvailable().getPayload()).getPayload()).isEqualTo("event-25");
+        assertThat(KafkaTrackingToken.from(source.createHeadToken()).getPositions()).containsEntry(PARTITION, 29L);
+        assertThat(KafkaTrackingToken.from(source.createTokenAt(Instant.ofEpochMilli(1_010L))).getPositions())
+                .containsEntry(PARTITION, 9L);
+        resumed.close();
+    }
+
+    @Test
+    void testStreamPicksUpRecordsAppendedWhileWaiting() throws Exception {
+        // Given: A stream opened on an empty queue
+        QueueWriter writer = new QueueWriter(directory, 1 << 20);
+        MappedQueueMessageSource source = new MappedQueueMessageSource(directory, PARTITION, CONVERTER, 1_000);
+        BlockingStream<TrackedEventMessage<?>> stream = source.openStream(null);
+        assertThat(stream.hasNextAvailable(10, TimeUnit.MILLISECONDS)).isFalse();
+
+        // When: Records are appended one at a time and taken as soon as they are visible
+        int rounds = 2_000;
+        long[] handoffNanos = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long appended = System.nanoTime();
+            writer.append("live-" + i, System.currentTimeMillis());
+            assertThat(stream.hasNextAvailable(1, TimeUnit.SECONDS)).isTrue();
+            handoffNanos[i] = System.nanoTime() - appended;
+            assertThat(((TestEvent) stream.nextAvailable().getPayload()).getPayload()).isEqualTo("live-" + i);
+        }
+
+        // Then
+        Arrays.sort(handoffNanos);
+        System.out.printf("Event queue handoff incl. encoding and decoding: median %d us, p99 %d us%n",
+                          TimeUnit.NANOSECONDS.toMicros(handoffNanos[rounds / 2]),
+                          TimeUnit.NANOSECONDS.toMicros(handoffNanos[rounds * 99 / 100]));
+        stream.close();
+    }
+
+    /**
+     * Minimal writer in the layout of Service A's {@code MappedQueueWriter}.
+     */
+    private static class QueueWriter {
+        private final Path directory;
+        private final int segmentBytes;
+        private MappedByteBuffer segment;
+        private long base;
+        private long next;
+        private int offset;
+
+        QueueWriter(Path directory, int segmentBytes) throws Exception {
+            this.directory = directory;
+            this.segmentBytes = segmentBytes;
+            this.segment = map(0);
+        }
+
+        void append(String payload, long timestamp) throws Exception {
+            ProducerRecord<String, byte[]> record = CONVERTER.createKafkaMessage(
+                    new GenericEventMessage<>(new TestEvent(payload), MetaData.with(OrderingMonitor.KEY, "k")),
+                    PARTITION.topic());
+            ByteBuffer body = ByteBuffer.allocate(segmentBytes);
+            putBytes(body, record.key() == null ? null : record.key().getBytes(StandardCharsets.UTF_8), true);
+            Header[] headers = record.headers().toArray();
+            body.putShort((short) headers.length);
+            for (Header header : headers) {
+                putBytes(body, header.key().getBytes(StandardCharsets.UTF_8), true);
+                putBytes(body, header.value(), false);
+            }
+            putBytes(body, record.value(), false);
+            int length = body.position();
+            if (offset + 16 + length > segmentBytes - 8) {
+                MappedByteBuffer sealed = segment;
+                int sealedOffset = offset;
+                base = next;
+                segment = map(base);
+                offset = 0;
+                sealed.putInt(sealedOffset, -1);
+            }
+            segment.putLong(offset + 8, timestamp);
+            segment.put(offset + 16, body.array(), 0, length);
+            segment.putInt(offset, length);
+            offset = (offset + 16 + length + 7) & ~7;
+            next++;
+        }
+
+        private MappedByteBuffer map(long base) throws Exception {
+            Path file = directory.resolve(String.format("%020d.queue", base));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                        StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            }
+        }
+
+        private static void putBytes(ByteBuffer buffer, byte[] bytes, boolean shortLength) {
+            int length = bytes == null ? -1 : bytes.length;
+            if (shortLength) {
+                buffer.putShort((short) length);
+            } else {
+                buffer.putInt(length);
+            }
+            if (bytes != null) {
+                buffer.put(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.axon;
+
+import org.axonframework.messaging.MetaData;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for per-key ordering verification
+ */
+public class OrderingMonitorTest {
+
+    @Test
+    void testOutcomesAreClassifiedPerKey() {
+        OrderingMonitor monitor = new OrderingMonitor(10);
+
+        assertThat(monitor.observe("a", 1, 1)).isEqualTo(SequenceTable.Outcome.FIRST);
+        assertThat(monitor.observe("a", 1, 2)).isEqualTo(SequenceTable.Outcome.IN_ORDER);
+        assertThat(monitor.observe("b", 1, 1)).isEqualTo(SequenceTable.Outcome.FIRST);
+        assertThat(monitor.observe("a", 1, 5)).isEqualTo(SequenceTable.Outcome.GAP);
+        assertThat(monitor.observe("a", 1, 5)).isEqualTo(SequenceTable.Outcome.DUPLICATE);
+        assertThat(monitor.observe("a", 1, 3)).isEqualTo(SequenceTable.Outcome.REORDERED);
+        assertThat(monitor.observe("a", 2, 1)).isEqualTo(SequenceTable.Outcome.RESTARTED);
+        assertThat(monitor.observe("a", 1, 6)).isEqualTo(SequenceTable.Outcome.STALE_EPOCH);
+
+        Map<String, Object> stats = monitor.snapshot();
+        assertThat(stats).containsEntry("trackedKeys", 2).containsEntry("gap", 1L)
+                         .containsEntry("missingEvents", 2L).containsEntry("duplicate", 1L)
+                         .containsEntry("reordered", 1L).containsEntry("restarted", 1L);
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> anomalies = (List<Map<String, Object>>) stats.get("recentAnomalies");
+        assertThat(anomalies).extracting(a -> a.get("type"))
+                             .containsExactly("stale_epoch", "reordered", "duplicate", "gap");
+        assertThat(monitor.key("a")).containsEntry("lastSequence", 1L).containsEntry("epoch", 2L);
+        assertThat(monitor.key("missing")).containsEntry("seen", false);
+    }
+
+    @Test
+    void testMetadataFromKafkaHeadersIsParsed() {
+        OrderingMonitor monitor = new OrderingMonitor(10);
+        Map<String, Object> metaData = new HashMap<>();
+        metaData.put(OrderingMonitor.KEY, "a");
+        metaData.put(OrderingMonitor.EPOCH, "100");
+        metaData.put(OrderingMonitor.NUMBER, "1");
+
+        monitor.observe(MetaData.from(metaData));
+        monitor.observe(MetaData.emptyInstance());
+
+        assertThat(monitor.snapshot()).containsEntry("first", 1L).containsEntry("unsequenced", 1L);
+    }
+
+    @Test
+    void testTableMemoryDependsOnKeysNotEvents() {
+        SequenceTable table = new SequenceTable(16);
+        for (int key = 0; key < 1000; key++) {
+            for (long sequence = 1; sequence <= 100; sequence++) {
+                table.observe("key-" + key, 1, sequence);
+            }
+        }
+
+        assertThat(table.size()).isEqualTo(1000);
+        assertThat(table.capacity()).isEqualTo(2048);
+        assertThat(table.lastSequence("key-999")).isEqualTo(100);
+    }
+}
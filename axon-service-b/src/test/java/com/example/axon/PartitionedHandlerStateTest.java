@@ -0,0 +1,152 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.messaging.MetaData;
+import org.axonframework.serialization.json.JacksonSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for handing partition-scoped handler state over with segment claims
+ */
+public class PartitionedHandlerStateTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testNextOwnerRecognisesDuplicatesAndSequencesOfTheSegment() {
+        // Given: Node A handled an event and saw its duplicate, node B shares the token and state directories
+        OrderingMonitor monitorA = new OrderingMonitor(10);
+        OrderingMonitor monitorB = new OrderingMonitor(10);
+        PartitionedHandlerState stateA = new PartitionedHandlerState(directory.resolve("state").toString(), monitorA);
+        PartitionedHandlerState stateB = new PartitionedHandlerState(directory.resolve("state").toString(), monitorB);
+        FileTokenStore nodeA = store("node-A", stateA);
+        FileTokenStore nodeB = store("node-B", stateB);
+        nodeA.initializeTokenSegments(ReplayService.PROCESSING_GROUP, 1);
+        nodeA.fetchToken(ReplayService.PROCESSING_GROUP, 0);
+        EventMessage<?> event = event("order-1", 7, "payload-1");
+        assertThat(stateA.record(event, "payload-1")).isTrue();
+        assertThat(stateA.record(event, "payload-1")).isFalse();
+
+        // When: A gives the segment up and B claims it
+        nodeA.releaseClaim(ReplayService.PROCESSING_GROUP, 0);
+        nodeB.fetchToken(ReplayService.PROCESSING_GROUP, 0);
+
+        // Then: A no longer holds the partition, B does before handling anything
+        assertThat(held(stateA)).isEmpty();
+        assertThat(stateB.isProcessed("payload-1")).isTrue();
+        assertThat(stateB.record(event("order-1", 8, "payload-1"), "payload-1")).isFalse();
+        assertThat(monitorB.key("order-1")).containsEntry("lastSequence", 7L);
+        assertThat(monitorB.observe("order-1", 0, 8)).isEqualTo(SequenceTable.Outcome.IN_ORDER);
+        assertThat(held(stateB).get(PartitionedHandlerState.partitionOf(event)))
+                .containsEntry("handled", 1L).containsEntry("duplicates", 2L);
+        assertThat(stateA.describe()).containsEntry("checkpoints", 1L);
+        assertThat(stateB.describe()).containsEntry("warmed", 1L);
+    }
+
+    @Test
+    void testOnlyPartitionsOfTheReleasedSegmentAreHandedOver() {
+        // Given: Node A holds both halves of a split processor, with an event in each
+        OrderingMonitor monitor = new OrderingMonitor(10);
+        PartitionedHandlerState state = new PartitionedHandlerState(directory.resolve("state").toString(), monitor);
+        FileTokenStore nodeA = store("node-A", state);
+        nodeA.initializeTokenSegments(ReplayService.PROCESSING_GROUP, 2);
+        nodeA.fetchToken(ReplayService.PROCESSING_GROUP, 0);
+        nodeA.fetchToken(ReplayService.PROCESSING_GROUP, 1);
+        EventMessage<?> even = event(keyInPartitionOfParity(0), 1, "even");
+        EventMessage<?> odd = event(keyInPartitionOfParity(1), 1, "odd");
+        state.record(even, "even");
+        state.record(odd, "odd");
+
+        // When: Segment 1 (odd partitions) moves away
+        nodeA.releaseClaim(ReplayService.PROCESSING_GROUP, 1);
+
+        // Then: Segment 0 keeps its state, segment 1's is on disk for the next owner
+        assertThat(held(state)).containsOnlyKeys(PartitionedHandlerState.partitionOf(even));
+        assertThat(state.isProcessed("odd")).isTrue();
+        assertThat(directory.resolve("state/partition-" + PartitionedHandlerState.partitionOf(odd) + ".state"))
+                .exists();
+        assertThat(directory.resolve("state/partition-" + PartitionedHandlerState.partitionOf(even) + ".state"))
+                .doesNotExist();
+    }
+
+    @Test
+    void testPayloadIsADuplicateUnderAnyKey() {
+        // Given: A payload handled under a client key
+        PartitionedHandlerState state = new PartitionedHandlerState(directory.resolve("state").toString(),
+                                                                    new OrderingMonitor(10));
+        assertThat(state.record(event("order-1", 1, "payload-1"), "payload-1")).isTrue();
+
+        // When/Then: Another key, another Service A replica's default key and a keyless re-publish are duplicates
+        assertThat(state.record(event("order-2", 1, "payload-1"), "payload-1")).isFalse();
+        assertThat(state.record(event("default/host-b-42", 1, "payload-1"), "payload-1")).isFalse();
+        assertThat(state.record(GenericEventMessage.asEventMessage(new TestEvent("payload-1")), "payload-1"))
+                .isFalse();
+        assertThat(state.record(GenericEventMessage.asEventMessage(new TestEvent("payload-1")), "payload-1"))
+                .isFalse();
+
+        // When/Then: Payloads of an older snapshot count as well, and are kept apart in the next snapshot
+        state.restore(ProjectionSnapshot.UNPARTITIONED, List.of("payload-0", "payload-9"));
+        assertThat(state.record(event("order-3", 1, "payload-0"), "payload-0")).isFalse();
+        assertThat(state.processedByPartition()).containsEntry(ProjectionSnapshot.UNPARTITIONED, Set.of("payload-9"));
+    }
+
+    @Test
+    void testClaimWarmsTheCheckFromEveryHandedOverPartition() {
+        // Given: Node A handled an odd-partition event and handed both halves over
+        PartitionedHandlerState stateA = new PartitionedHandlerState(directory.resolve("state").toString(),
+                                                                     new OrderingMonitor(10));
+        PartitionedHandlerState stateB = new PartitionedHandlerState(directory.resolve("state").toString(),
+                                                                     new OrderingMonitor(10));
+        FileTokenStore nodeA = store("node-A", stateA);
+        FileTokenStore nodeB = store("node-B", stateB);
+        nodeA.initializeTokenSegments(ReplayService.PROCESSING_GROUP, 2);
+        nodeA.fetchToken(ReplayService.PROCESSING_GROUP, 0);
+        nodeA.fetchToken(ReplayService.PROCESSING_GROUP, 1);
+        stateA.record(event(keyInPartitionOfParity(1), 1, "odd"), "odd");
+        nodeA.releaseClaim(ReplayService.PROCESSING_GROUP, 0);
+        nodeA.releaseClaim(ReplayService.PROCESSING_GROUP, 1);
+
+        // When: B claims only the even half
+        nodeB.fetchToken(ReplayService.PROCESSING_GROUP, 0);
+
+        // Then: The payload arriving there under an even key is still a duplicate
+        assertThat(stateB.record(event(keyInPartitionOfParity(0), 1, "odd"), "odd")).isFalse();
+        assertThat(held(stateB)).allSatisfy((partition, counts) -> assertThat(partition & 1).isZero());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, Map<String, Object>> held(PartitionedHandlerState state) {
+        return (Map<Integer, Map<String, Object>>) state.describe().get("held");
+    }
+
+    private FileTokenStore store(String nodeId, PartitionedHandlerState state) {
+        FileTokenStore store = new FileTokenStore(directory.resolve("tokens"), JacksonSerializer.defaultSerializer(),
+                                                  nodeId, Duration.ofSeconds(10), 60_000, 1_000, Clock.systemUTC());
+        store.addClaimListener(state);
+        return store;
+    }
+
+    private static EventMessage<?> event(String key, long sequence, String payload) {
+        return new GenericEventMessage<>(new TestEvent(payload), MetaData.with(OrderingMonitor.KEY, key)
+                .and(OrderingMonitor.NUMBER, sequence).and(OrderingMonitor.EPOCH, 0L));
+    }
+
+    private static String keyInPartitionOfParity(int parity) {
+        for (int i = 0; ; i++) {
+            String key = "key-" + i;
+            if ((PartitionedHandlerState.partitionOf(event(key, 0, "probe")) & 1) == parity) {
+                return key;
+            }
+        }
+    }
+}
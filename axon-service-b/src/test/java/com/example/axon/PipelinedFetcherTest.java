@@ -0,0 +1,147 @@
+package com.example.axon;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.axonframework.common.Registration;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the pipelined fetcher using Kafka's MockConsumer
+ */
+public class PipelinedFetcherTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("Axon.Events", 0);
+
+    @Test
+    void testRecordsAreConvertedAndDispatchedInOrder() throws InterruptedException {
+        // Given: A consumer with three records
+        MockConsumer<String, String> consumer = consumer();
+        for (int i = 0; i < 3; i++) {
+            consumer.addRecord(new ConsumerRecord<>(PARTITION.topic(), 0, i, "key", "event" + i));
+        }
+        FetcherMetrics metrics = new FetcherMetrics();
+        PipelinedFetcher<String, String, String> fetcher =
+                new PipelinedFetcher<>(Duration.ofMillis(10), 1024 * 1024, metrics);
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        // When: Polling through the fetcher
+        Registration registration = fetcher.poll(consumer, PipelinedFetcherTest::values, received::addAll);
+
+        // Then: All events arrive in offset order and are counted
+        awaitSize(received, 3);
+        assertThat(received).containsExactly("event0", "event1", "event2");
+        assertThat(metrics.records.get()).isEqualTo(3);
+        registration.cancel();
+        fetcher.shutdown();
+    }
+
+    @Test
+    void testPartitionsArePausedWhenPrefetchBytesAreExhausted() throws InterruptedException {
+        // Given: A tiny byte budget and a handler that does not drain
+        MockConsumer<String, String> consumer = consumer();
+        FetcherMetrics metrics = new FetcherMetrics();
+        PipelinedFetcher<String, String, String> fetcher = new PipelinedFetcher<>(Duration.ofMillis(10), 1, metrics);
+        CountDownLatch handlerBusy = new CountDownLatch(1);
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        Registration registration = fetcher.poll(consumer, PipelinedFetcherTest::values, events -> {
+            received.addAll(events);
+            handlerBusy.await();
+        });
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(sized(0, "event0"));
+            consumer.addRecord(sized(1, "event1"));
+        });
+        awaitSize(received, 2);
+        consumer.schedulePollTask(() -> consumer.addRecord(sized(2, "event2")));
+
+        // When: The next batch is prefetched while the handler is still busy
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (consumer.paused().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Then: The poller pauses instead of buffering more, and resumes once the handler drains
+        assertThat(consumer.paused()).containsExactly(PARTITION);
+        assertThat(metrics.bufferedBytes.get()).isGreaterThanOrEqualTo(9);
+        handlerBusy.countDown();
+        awaitSize(received, 3);
+        assertThat(received).containsExactly("event0", "event1", "event2");
+        registration.cancel();
+        fetcher.shutdown();
+    }
+
+    @Test
+    void testPartitionsArePausedAtTheControllersRecordLimit() throws InterruptedException {
+        // Given: Ample bytes but room for two records ahead of a handler that does not drain
+        MockConsumer<String, String> consumer = consumer();
+        FetcherMetrics metrics = new FetcherMetrics();
+        PollSizeController sizing = new PollSizeController(true, 2, 2, 2, 1024 * 1024, 300_000, 10_000, 0.5);
+        PipelinedFetcher<String, String, String> fetcher = new PipelinedFetcher<>(Duration.ofMillis(10), sizing, metrics);
+        CountDownLatch handlerBusy = new CountDownLatch(1);
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        Registration registration = fetcher.poll(consumer, PipelinedFetcherTest::values, events -> {
+            received.addAll(events);
+            handlerBusy.await();
+        });
+        consumer.schedulePollTask(() -> consumer.addRecord(sized(0, "event0")));
+        awaitSize(received, 1);
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(sized(1, "event1"));
+            consumer.addRecord(sized(2, "event2"));
+        });
+
+        // When: Two records are prefetched while the handler is still busy
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (consumer.paused().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Then: The poller pauses long before the byte bound, and the limit is published
+        assertThat(consumer.paused()).containsExactly(PARTITION);
+        assertThat(metrics.snapshot()).containsEntry("maxBufferedRecordsPerStream", 2);
+        handlerBusy.countDown();
+        awaitSize(received, 3);
+        registration.cancel();
+        fetcher.shutdown();
+    }
+
+    private static MockConsumer<String, String> consumer() {
+        MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(Collections.singletonList(PARTITION));
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        return consumer;
+    }
+
+    private static ConsumerRecord<String, String> sized(long offset, String value) {
+        return new ConsumerRecord<>(PARTITION.topic(), 0, offset, 0L, TimestampType.CREATE_TIME, 0L, 3, 6, "key", value);
+    }
+
+    private static List<String> values(ConsumerRecords<String, String> records) {
+        List<String> values = new ArrayList<>();
+        records.forEach(record -> values.add(record.value()));
+        return values;
+    }
+
+    private static void awaitSize(List<String> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(list).hasSize(size);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.axon;
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the feedback controller behind the fetcher's prefetch limits
+ */
+public class PollSizeControllerTest {
+
+    @Test
+    void testSlowHandlerShrinksLimitsAtOnce() {
+        // Given: A 500 ms budget (half of a one second claim timeout) and 10 KiB records
+        PollSizeController controller = controller();
+        controller.fetched(100, 100 * 10_240);
+
+        // When: Handling takes 10 ms per event
+        controller.handled(10, TimeUnit.MILLISECONDS.toNanos(100));
+        controller.adjust();
+
+        // Then: Only what can be handled within the budget is fetched ahead
+        assertThat(controller.recordLimit()).isEqualTo(50);
+        assertThat(controller.byteLimit()).isEqualTo(50 * 10_240);
+        assertThat(controller.describe()).containsEntry("shrunk", 1L).containsEntry("budgetMillis", 500L);
+    }
+
+    @Test
+    void testFastHandlerGrowsLimitsGraduallyUpToTheCeiling() {
+        // Given
+        PollSizeController controller = controller();
+
+        // When: Handling takes a microsecond per event
+        controller.handled(1_000, TimeUnit.MICROSECONDS.toNanos(1_000));
+        controller.adjust();
+
+        // Then: The limit grows by a quarter per poll, not straight to the target
+        assertThat(controller.recordLimit()).isEqualTo(625);
+        for (int poll = 0; poll < 10; poll++) {
+            controller.handled(1_000, TimeUnit.MICROSECONDS.toNanos(1_000));
+            controller.adjust();
+        }
+        assertThat(controller.recordLimit()).isEqualTo(2_000);
+    }
+
+    @Test
+    void testLimitsHoldWhileNothingIsHandled() {
+        // Given
+        PollSizeController controller = controller();
+        controller.handled(10, TimeUnit.MILLISECONDS.toNanos(100));
+        controller.adjust();
+
+        // When: Polls go by with an idle handler
+        controller.adjust();
+        controller.adjust();
+
+        // Then
+        assertThat(controller.recordLimit()).isEqualTo(50);
+        assertThat(PollSizeController.fixed(1_024).recordLimit()).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    private static PollSizeController controller() {
+        return new PollSizeController(true, 500, 10, 2_000, 8 * 1024 * 1024, 300_000, 1_000, 0.5);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.axon;
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for the secondary indexes behind /test/query
+ */
+public class ProcessedEventIndexTest {
+
+    @Test
+    void testExactLookupKeepsFirstProcessingTime() {
+        // Given
+        ProcessedEventIndex index = new ProcessedEventIndex(1_000);
+        index.add("event-A", 5_000, 4_900);
+        index.add("event-A", 9_000, 8_900);
+
+        // Then: The duplicate does not overwrite the first entry
+        assertThat(index.lookup("event-A").processedAt).isEqualTo(5_000);
+        assertThat(index.lookup("event-B")).isNull();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testPrefixQueryReturnsSortedMatchesUpToLimit() {
+        // Given
+        ProcessedEventIndex index = new ProcessedEventIndex(1_000);
+        for (String payload : List.of("order-3", "order-1", "invoice-1", "order-2", "orders", "order\uffff")) {
+            index.add(payload, 1_000, 1_000);
+        }
+
+        // Then
+        assertThat(payloads(index.withPrefix("order-", 10))).containsExactly("order-1", "order-2", "order-3");
+        assertThat(payloads(index.withPrefix("order", 2))).containsExactly("order-1", "order-2");
+        assertThat(payloads(index.withPrefix("payment", 10))).isEmpty();
+    }
+
+    @Test
+    void testWindowQuerySpansBucketsAndSkipsRestoredPayloads() {
+        // Given: Events processed across several one-second buckets, and one restored from a snapshot
+        ProcessedEventIndex index = new ProcessedEventIndex(1_000);
+        for (int i = 0; i < 10; i++) {
+            index.add("event-" + i, 10_000 + i * 500L, 0);
+        }
+        index.add("restored", ProcessedEventIndex.UNKNOWN_TIME, ProcessedEventIndex.UNKNOWN_TIME);
+
+        // Then: [11000, 13000) covers events 2..5, in processing order
+        assertThat(payloads(index.inWindow(11_000, 13_000, 100)))
+                .containsExactly("event-2", "event-3", "event-4", "event-5");
+        assertThat(payloads(index.inWindow(11_000, 13_000, 3))).containsExactly("event-2", "event-3", "event-4");
+        assertThat(index.inWindow(0, Long.MAX_VALUE, 100)).hasSize(10);
+        assertThat(index.lookup("restored")).isNotNull();
+
+        // When
+        index.clear();
+
+        // Then
+        assertThat(index.size()).isZero();
+        assertThat(index.bucketCount()).isZero();
+    }
+
+    private static List<String> payloads(List<ProcessedEventIndex.Processed> entries) {
+        return entries.stream().map(processed -> processed.payload).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.axon;
+
+import org.apache.kafka.common.TopicPartition;
+import org.axonframework.common.transaction.NoTransactionManager;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.EventMessageHandler;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.SimpleEventHandlerInvoker;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventhandling.TrackingEventProcessorConfiguration;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.messaging.MetaData;
+import org.axonframework.serialization.json.JacksonSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for the shutdown drain of the kafka processing group
+ */
+public class ProcessingDrainTest {
+    private static final TopicPartition PARTITION = new TopicPartition("Axon.Events.local", 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testCurrentBatchFinishesAndClaimIsReleasedWithItsToken() throws Exception {
+        // Given: A processor halfway through a batch of ten, with token commits coalesced for a minute
+        LocalEventChannel channel = new LocalEventChannel(PARTITION, 64, 1_000, 0);
+        CountDownLatch handling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = new ArrayList<>();
+        AtomicReference<TrackingToken> lastToken = new AtomicReference<>();
+        TrackingEventProcessor processor = TrackingEventProcessor.builder()
+                .name(ReplayService.PROCESSING_GROUP)
+                .eventHandlerInvoker(SimpleEventHandlerInvoker.builder()
+                                             .eventHandlers((EventMessageHandler) message -> {
+                                                 String payload = ((TestEvent) message.getPayload()).getPayload();
+                                                 if (payload.equals("event-4")) {
+                                                     handling.countDown();
+                                                     release.await();
+                                                 }
+                                                 handled.add(payload);
+                                                 lastToken.set(((TrackedEventMessage<?>) message).trackingToken());
+                                                 return null;
+                                             })
+                                             .build())
+                .messageSource(channel)
+                .tokenStore(store("node-A"))
+                .transactionManager(NoTransactionManager.INSTANCE)
+                .trackingEventProcessorConfiguration(TrackingEventProcessorConfiguration
+                                                             .forSingleThreadedProcessing().andBatchSize(10))
+                .build();
+        processor.start();
+        List<EventMessage<?>> events = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            events.add(new GenericEventMessage<>(new TestEvent("event-" + i), MetaData.emptyInstance()));
+        }
+        channel.publish(events);
+        assertThat(handling.await(5, TimeUnit.SECONDS)).isTrue();
+        ProcessingDrain drain = new ProcessingDrain(() -> Optional.of(processor), 5_000);
+
+        // When
+        CompletableFuture<Void> stopped = CompletableFuture.runAsync(drain::stop);
+        Thread.sleep(200);
+        assertThat(stopped).isNotDone();
+        release.countDown();
+        stopped.get(5, TimeUnit.SECONDS);
+
+        // Then: The batch was completed rather than cut short
+        assertThat(handled).hasSize(10);
+        assertThat(drain.describe()).containsEntry("processor", ReplayService.PROCESSING_GROUP)
+                .containsEntry("released", true);
+
+        // And: Another node claims the segment at once and resumes after the last handled event
+        FileTokenStore other = store("node-B");
+        assertThat(other.fetchToken(ReplayService.PROCESSING_GROUP, 0)).isEqualTo(lastToken.get());
+    }
+
+    @Test
+    void testNothingToDrainWithoutAStreamingProcessor() {
+        // Given
+        ProcessingDrain drain = new ProcessingDrain(Optional::empty, 100);
+
+        // When
+        drain.stop();
+
+        // Then
+        assertThat(drain.describe()).containsOnlyKeys("timeoutMillis");
+    }
+
+    private FileTokenStore store(String nodeId) {
+        return new FileTokenStore(directory, JacksonSerializer.defaultSerializer(), nodeId, Duration.ofSeconds(10),
+                                  60_000, 1_000, Clock.systemUTC());
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.axon;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for the binary projection snapshot format
+ */
+public class ProjectionSnapshotTest {
+
+    @Test
+    void testSnapshotRoundTrip() throws IOException {
+        // Given: A snapshot with positions on two partitions and handler state
+        ProjectionSnapshot snapshot = new ProjectionSnapshot(
+                Map.of(new TopicPartition("Axon.Events", 0), 41L, new TopicPartition("Axon.Events", 1), 7L),
+                List.of("event-A", "event-B", "event-A", "poison-pill"),
+                Map.of(3, new LinkedHashSet<>(List.of("event-A", "poison-pill")), 200, Set.of("event-B")),
+                List.of("poison-pill"));
+
+        // When: Writing and reading it back
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(bytes));
+        ProjectionSnapshot restored = ProjectionSnapshot.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // Then: Positions and state are identical
+        assertThat(restored.getPositions()).isEqualTo(snapshot.getPositions());
+        assertThat(restored.getReceivedEvents()).containsExactly("event-A", "event-B", "event-A", "poison-pill");
+        assertThat(restored.getProcessedEvents()).containsOnlyKeys(3, 200);
+        assertThat(restored.getProcessedEvents().get(3)).containsExactly("event-A", "poison-pill");
+        assertThat(restored.getProcessedEvents().get(200)).containsExactly("event-B");
+        assertThat(restored.getPoisonPillEvents()).containsExactly("poison-pill");
+    }
+
+    @Test
+    void testHistoryEndRoundTrip() throws IOException {
+        // Given: A snapshot that refers to the persisted history instead of carrying it
+        ProjectionSnapshot snapshot = new ProjectionSnapshot(
+                Map.of(new TopicPartition("Axon.Events", 0), 41L), List.of(), 1234L,
+                Map.of(0, Set.of("event-A")), List.of());
+
+        // When
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(bytes));
+        ProjectionSnapshot restored = ProjectionSnapshot.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // Then
+        assertThat(restored.getHistoryEnd()).isEqualTo(1234L);
+        assertThat(restored.receivedCount()).isEqualTo(1234L);
+        assertThat(restored.getReceivedEvents()).isEmpty();
+    }
+
+    @Test
+    void testVersion2SnapshotIsReadWithoutPartitions() throws IOException {
+        // Given: A snapshot written before processed payloads were stored per partition
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x41585350);
+        out.writeInt(2);
+        out.writeInt(0);
+        out.writeLong(10L);
+        out.writeInt(0);
+        out.writeInt(1);
+        out.writeInt(7);
+        out.write("event-A".getBytes(StandardCharsets.UTF_8));
+        out.writeInt(0);
+
+        // When
+        ProjectionSnapshot restored = ProjectionSnapshot.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // Then: Its payloads are kept, under no partition
+        assertThat(restored.getHistoryEnd()).isEqualTo(10L);
+        assertThat(restored.getProcessedEvents())
+                .containsExactly(Map.entry(ProjectionSnapshot.UNPARTITIONED, Set.of("event-A")));
+    }
+
+    @Test
+    void testCorruptSnapshotIsRejected() {
+        // Given: Bytes that are not a snapshot
+        byte[] garbage = {1, 2, 3, 4, 5, 6, 7, 8};
+
+        // Then: Reading fails instead of restoring bogus state
+        assertThatThrownBy(() -> ProjectionSnapshot.readFrom(new DataInputStream(new ByteArrayInputStream(garbage))))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.axon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for reading the received-event history page by page
+ */
+public class ReceivedEventHistoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testForEachReadsEveryRetainedPayloadInPages() {
+        // Given: More than two pages of history, most of it past the hot tail
+        ReceivedEventHistory history = new ReceivedEventHistory(directory.toString(), 64 * 1024, 10, 0, 0);
+        int count = ReceivedEventHistory.PAGE * 2 + 500;
+        for (int i = 0; i < count; i++) {
+            history.append("event-" + i);
+        }
+
+        // When: A slow reader consumes it while the handler keeps appending
+        List<String> read = new ArrayList<>();
+        history.forEach(payload -> {
+            read.add(payload);
+            if (read.size() % ReceivedEventHistory.PAGE == 0) {
+                history.append("late-" + read.size());
+            }
+        });
+
+        // Then: Everything retained when it started comes back in order, and nothing appended since
+        assertThat(read).hasSize(count);
+        assertThat(read.get(0)).isEqualTo("event-0");
+        assertThat(read.get(count - 1)).isEqualTo("event-" + (count - 1));
+        assertThat(history.endPosition()).isEqualTo(count + 2);
+        history.close();
+    }
+}
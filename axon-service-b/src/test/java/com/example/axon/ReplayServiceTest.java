@@ -0,0 +1,102 @@
+package com.example.axon;
+
+import org.apache.kafka.common.TopicPartition;
+import org.axonframework.config.EventProcessingConfiguration;
+import org.axonframework.eventhandling.EventTrackerStatus;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventhandling.tokenstore.UnableToClaimTokenException;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.KafkaTrackingToken;
+import org.axonframework.extensions.kafka.eventhandling.consumer.streamable.StreamableKafkaMessageSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Unit tests for resetting the kafka processing group to offsets or a timestamp
+ */
+public class ReplayServiceTest {
+
+    private static final TopicPartition P0 = new TopicPartition("Axon.Events", 0);
+    private static final TopicPartition P1 = new TopicPartition("Axon.Events", 1);
+
+    private TrackingEventProcessor processor;
+    private StreamableKafkaMessageSource<String, byte[]> source;
+    private ReplayThrottle throttle;
+    private ReplayService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        processor = mock(TrackingEventProcessor.class);
+        source = mock(StreamableKafkaMessageSource.class);
+        EventProcessingConfiguration configuration = mock(EventProcessingConfiguration.class);
+        when(configuration.eventProcessor(ReplayService.PROCESSING_GROUP, TrackingEventProcessor.class))
+                .thenReturn(Optional.of(processor));
+        when(processor.supportsReset()).thenReturn(true);
+        EventTrackerStatus status = mock(EventTrackerStatus.class);
+        when(status.getTrackingToken()).thenReturn(KafkaTrackingToken.newInstance(Map.of(P0, 10L, P1, 20L)));
+        when(processor.processingStatus()).thenReturn(Map.of(0, status));
+        throttle = new ReplayThrottle();
+        service = new ReplayService(configuration, source, throttle);
+    }
+
+    @Test
+    void testOffsetsNameTheFirstRecordToReprocess() {
+        // When: Partition 0 is replayed from offset 5 at 100 events/s
+        service.replay(Map.of("Axon.Events-0", 5L), null, 100);
+
+        // Then: The token points just before it, partition 1 stays where it was
+        assertThat(resetPositions()).containsOnly(Map.entry(P0, 4L), Map.entry(P1, 20L));
+        assertThat(throttle.getEventsPerSecond()).isEqualTo(100.0);
+        InOrder order = inOrder(processor);
+        order.verify(processor).shutDown();
+        order.verify(processor).resetTokens(any(TrackingToken.class));
+        order.verify(processor).start();
+    }
+
+    @Test
+    void testTimestampUsesTheOffsetsAtThatTime() {
+        // Given
+        Instant timestamp = Instant.parse("2026-10-18T08:00:00Z");
+        when(source.createTokenAt(timestamp)).thenReturn(KafkaTrackingToken.newInstance(Map.of(P0, 7L)));
+
+        // When
+        service.replay(null, timestamp, 0);
+
+        // Then
+        assertThat(resetPositions()).containsOnly(Map.entry(P0, 7L), Map.entry(P1, 20L));
+    }
+
+    @Test
+    void testProcessorIsRestartedWhenResetFails() {
+        // Given: Another instance holds a segment, so the reset cannot claim it
+        doThrow(new UnableToClaimTokenException("Segment 1 of kafka: owned by node-B"))
+                .when(processor).resetTokens(any(TrackingToken.class));
+
+        // When/Then: The caller learns why and the processor runs again from where it was
+        assertThatThrownBy(() -> service.replay(Map.of("Axon.Events-0", 5L), null, 100))
+                .isInstanceOf(IllegalStateException.class).hasMessageContaining("owned by node-B");
+        verify(processor).start();
+        assertThat(throttle.getEventsPerSecond()).isZero();
+        assertThat(service.status()).containsEntry("startedAt", null);
+    }
+
+    private Map<TopicPartition, Long> resetPositions() {
+        ArgumentCaptor<TrackingToken> token = ArgumentCaptor.forClass(TrackingToken.class);
+        verify(processor).resetTokens(token.capture());
+        return KafkaTrackingToken.from(token.getValue()).getPositions();
+    }
+}
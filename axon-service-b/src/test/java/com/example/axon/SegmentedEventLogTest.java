@@ -0,0 +1,135 @@
+package com.example.axon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the memory-mapped received-event log
+ */
+public class SegmentedEventLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testEntriesAreReadBackFromHotTailAndSegments() {
+        // Given: A small hot tail and segments that roll every few entries
+        SegmentedEventLog log = new SegmentedEventLog(directory, 256, 3, 0, Duration.ZERO, Clock.systemUTC());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String payload = i == 7 ? null : "event-" + i;
+            expected.add(payload);
+            assertThat(log.append(payload)).isEqualTo(i);
+        }
+
+        // Then: Reads across cold segments and the hot tail return everything in order
+        assertThat(log.segmentCount()).isGreaterThan(1);
+        assertThat(log.hotSize()).isEqualTo(3);
+        assertThat(log.read(0, 100)).isEqualTo(expected);
+        assertThat(log.read(45, 3)).containsExactly("event-45", "event-46", "event-47");
+        log.close();
+    }
+
+    @Test
+    void testLogIsRecoveredAfterReopen() {
+        // Given: A log written and closed
+        SegmentedEventLog log = new SegmentedEventLog(directory, 256, 2, 0, Duration.ZERO, Clock.systemUTC());
+        for (int i = 0; i < 30; i++) {
+            log.append("event-" + i);
+        }
+        log.close();
+
+        // When: Reopening it
+        SegmentedEventLog reopened = new SegmentedEventLog(directory, 256, 2, 0, Duration.ZERO, Clock.systemUTC());
+
+        // Then: Positions continue where they left off
+        assertThat(reopened.endPosition()).isEqualTo(30);
+        assertThat(reopened.read(28, 10)).containsExactly("event-28", "event-29");
+        assertThat(reopened.append("event-30")).isEqualTo(30);
+        reopened.close();
+    }
+
+    @Test
+    void testRangeByTimeAndTruncation() {
+        // Given: Entries a second apart
+        MutableClock clock = new MutableClock();
+        SegmentedEventLog log = new SegmentedEventLog(directory, 256, 100, 0, Duration.ZERO, clock);
+        for (int i = 0; i < 20; i++) {
+            log.append("event-" + i);
+            clock.advance(Duration.ofSeconds(1));
+        }
+        long start = Instant.parse("2026-01-01T00:00:00Z").toEpochMilli();
+
+        // Then: Time lookups find the first entry at or after the timestamp
+        assertThat(log.positionAt(start + 5_000)).isEqualTo(5);
+        assertThat(log.positionAt(start + 5_500)).isEqualTo(6);
+        assertThat(log.positionAt(start + 60_000)).isEqualTo(20);
+
+        // When: Truncating to a snapshot's end position
+        log.truncate(12);
+
+        // Then: Later entries are gone and new ones reuse their positions
+        assertThat(log.endPosition()).isEqualTo(12);
+        assertThat(log.read(10, 10)).containsExactly("event-10", "event-11");
+        assertThat(log.append("replacement")).isEqualTo(12);
+        log.close();
+    }
+
+    @Test
+    void testRetentionDropsOldestSegments() {
+        // Given: A size limit of roughly two segments and an age limit of one hour
+        MutableClock clock = new MutableClock();
+        SegmentedEventLog log = new SegmentedEventLog(directory, 256, 0, 600, Duration.ofHours(1), clock);
+        for (int i = 0; i < 200; i++) {
+            log.append("event-" + i);
+        }
+
+        // Then: Only recent segments remain, and reads start at the oldest retained position
+        // retention runs when a segment rolls, so the active segment may take the log past the limit
+        assertThat(log.segmentCount()).isLessThanOrEqualTo(3);
+        assertThat(log.startPosition()).isGreaterThan(0);
+        assertThat(log.read(0, 1)).containsExactly("event-" + log.startPosition());
+
+        // When: Time passes beyond the age limit and the log rolls again
+        clock.advance(Duration.ofHours(2));
+        long end = log.endPosition();
+        for (int i = 0; i < 20; i++) {
+            log.append("late-" + i);
+        }
+
+        // Then: Segments holding only old entries are gone
+        assertThat(log.startPosition()).isGreaterThanOrEqualTo(end);
+        log.close();
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public java.time.ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
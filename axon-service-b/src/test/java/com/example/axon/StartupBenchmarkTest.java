@@ -0,0 +1,160 @@
+package com.example.axon;
+
+import org.axonframework.eventhandling.EventBus;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reference measurement of cold start: time from launching a JVM to the first event handled by the kafka
+ * processing group. Each configuration the build produced is measured in fresh JVMs: the plain build, the
+ * {@code fast-startup} Spring profile, and after {@code mvn -Pfast-startup package} also AOT-processed bean
+ * definitions and the AppCDS archive. The event comes from this service's own event bus, so no broker is
+ * needed; everything up to the handler is the same as for a Kafka record. Runs with {@code mvn -Pbenchmark test}.
+ */
+@Tag("benchmark")
+public class StartupBenchmarkTest {
+    private static final int RUNS = 3;
+    private static final String HANDLED = "startup-probe handled";
+    private static final Path TARGET = Paths.get("target").toAbsolutePath();
+
+    @TempDir
+    Path workingDirectory;
+
+    @Test
+    void testTimeToFirstHandledEvent() throws Exception {
+        // Given: A launch command per configuration the build produced
+        String classPath = System.getProperty("java.class.path");
+        Map<String, List<String>> configurations = new LinkedHashMap<>();
+        configurations.put("default", command(classPath));
+        configurations.put("fast-startup", command(classPath, "--spring.profiles.active=fast-startup"));
+        if (Files.exists(TARGET.resolve("classes/com/example/axon/App__ApplicationContextInitializer.class"))) {
+            configurations.put("fast-startup + AOT", command(classPath, "-Dspring.aot.enabled=true",
+                                                             "--spring.profiles.active=fast-startup"));
+        }
+        Path archive = TARGET.resolve("fast-startup/app.jsa");
+        if (Files.exists(archive)) {
+            // The archive only matches the class path it was trained with, so the test classes go last
+            String trainedClassPath = packagedJar() + File.pathSeparator
+                    + TARGET.resolve("fast-startup/lib") + File.separator + "*" + File.pathSeparator
+                    + TARGET.resolve("test-classes");
+            configurations.put("fast-startup + AOT + AppCDS",
+                               command(trainedClassPath, "-XX:SharedArchiveFile=" + archive,
+                                       "-Dspring.aot.enabled=true", "--spring.profiles.active=fast-startup"));
+        }
+
+        // When: Each one is started a few times
+        Map<String, Long> medians = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> configuration : configurations.entrySet()) {
+            List<Long> millis = new ArrayList<>();
+            for (int run = 0; run < RUNS; run++) {
+                millis.add(timeToFirstEvent(configuration.getValue()));
+            }
+            Collections.sort(millis);
+            medians.put(configuration.getKey(), millis.get(RUNS / 2));
+        }
+
+        // Then: Every configuration handled its event; the printed line is the result to compare
+        medians.forEach((name, millis) -> System.out.printf(
+                "Service B cold start, %s: first event handled after %d ms (median of %d)%n", name, millis, RUNS));
+        assertThat(medians.values()).allMatch(millis -> millis > 0);
+    }
+
+    private static Path packagedJar() throws IOException {
+        try (Stream<Path> files = Files.list(TARGET.resolve("fast-startup"))) {
+            return files.filter(file -> file.toString().endsWith(".jar")).findFirst()
+                    .orElseThrow(() -> new IOException("No jar in " + TARGET.resolve("fast-startup")));
+        }
+    }
+
+    private static List<String> command(String classPath, String... options) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String option : options) {
+            if (option.startsWith("-X") || option.startsWith("-D")) {
+                command.add(option);
+            }
+        }
+        command.add("-cp");
+        command.add(classPath);
+        command.add(Probe.class.getName());
+        for (String option : options) {
+            if (option.startsWith("--")) {
+                command.add(option);
+            }
+        }
+        return command;
+    }
+
+    private long timeToFirstEvent(List<String> command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).directory(workingDirectory.toFile())
+                .redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.equals(HANDLED)) {
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    // Read to the end so the probe is never blocked on a full pipe while it exits
+                    while (output.readLine() != null) {
+                        // Shutdown logging
+                    }
+                    return elapsed;
+                }
+            }
+            return -1;
+        } finally {
+            if (!process.waitFor(60, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Runs in the launched JVM: starts Service B without a broker, publishes one event on its event bus and
+     * reports when the kafka processing group's handler has it.
+     */
+    static final class Probe {
+        public static void main(String[] args) throws InterruptedException {
+            List<String> arguments = new ArrayList<>(List.of(args));
+            arguments.add("--server.port=0");
+            arguments.add("--axon.axonserver.enabled=false");
+            // The processing group subscribes to the event bus instead of tracking Kafka
+            arguments.add("--axon.eventhandling.processors.kafka.mode=subscribing");
+            arguments.add("--axon.eventhandling.processors.kafka.source=eventBus");
+            // Events are also published to Kafka; without a broker that fails at once instead of after a minute
+            arguments.add("--axon.kafka.producer.properties.max.block.ms=1");
+            SpringApplication application = new SpringApplication(App.class);
+            // AOT-processed bean definitions are looked up by the main class, which is not this one
+            application.setMainApplicationClass(App.class);
+            ConfigurableApplicationContext context = application.run(arguments.toArray(new String[0]));
+            context.getBean(EventBus.class).publish(GenericEventMessage.asEventMessage(new TestEvent("startup-probe")));
+            TestEventHandler handler = context.getBean(TestEventHandler.class);
+            while (!handler.getProcessedEvents().contains("startup-probe")) {
+                Thread.sleep(1);
+            }
+            System.out.println(HANDLED);
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+}
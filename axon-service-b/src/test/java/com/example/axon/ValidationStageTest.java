@@ -0,0 +1,144 @@
+package com.example.axon;
+
+import org.apache.avro.Schema;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.messaging.DefaultInterceptorChain;
+import org.axonframework.messaging.MetaData;
+import org.axonframework.messaging.unitofwork.BatchingUnitOfWork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for schema validation of the kafka processing group's events
+ */
+public class ValidationStageTest {
+
+    private static final String ORDER_SCHEMA = "{\"type\":\"record\",\"name\":\"Order\",\"fields\":["
+            + "{\"name\":\"id\",\"type\":\"string\"},"
+            + "{\"name\":\"quantity\",\"type\":\"int\"},"
+            + "{\"name\":\"status\",\"type\":{\"type\":\"enum\",\"name\":\"Status\",\"symbols\":[\"NEW\",\"PAID\"]}},"
+            + "{\"name\":\"note\",\"type\":[\"null\",\"string\"],\"default\":null}"
+            + "]}";
+
+    @TempDir
+    Path directory;
+
+    private ValidationStage stage;
+
+    @AfterEach
+    void close() {
+        if (stage != null) {
+            stage.close();
+        }
+    }
+
+    @Test
+    void testCompiledValidatorReportsReasonCodes() {
+        // Given: A validator compiled from a schema with required, enum and optional fields
+        SchemaValidator validator = SchemaValidator.compile(new Schema.Parser().parse(ORDER_SCHEMA), Order.class);
+
+        // When/Then: Each kind of bad data is named by its reason code and path
+        assertThat(validator.validate(new Order("o-1", 3, "NEW", null))).isNull();
+        assertThat(validator.validate(new Order("o-1", 3, "PAID", "gift"))).isNull();
+        assertThat(validator.validate(new Order(null, 3, "NEW", null)).reason)
+                .isEqualTo(SchemaValidator.ReasonCode.MISSING_FIELD);
+        SchemaValidator.Violation wrongType = validator.validate(new Order("o-1", "three", "NEW", null));
+        assertThat(wrongType.reason).isEqualTo(SchemaValidator.ReasonCode.WRONG_TYPE);
+        assertThat(wrongType.detail).startsWith("Order.quantity expects int");
+        assertThat(validator.validate(new Order("o-1", 3, "SHIPPED", null)).reason)
+                .isEqualTo(SchemaValidator.ReasonCode.UNKNOWN_SYMBOL);
+        assertThat(validator.validate(null).reason).isEqualTo(SchemaValidator.ReasonCode.NULL_PAYLOAD);
+        assertThat(validator.validate(new TestEvent("not an order")).reason)
+                .isEqualTo(SchemaValidator.ReasonCode.WRONG_TYPE);
+    }
+
+    @Test
+    void testBatchIsValidatedInParallelAndInvalidEventsAreQuarantined() throws Exception {
+        // Given: The shipped TestEvent schema and a batch with two events that have no payload
+        QuarantineStore quarantine = quarantine();
+        stage = new ValidationStage(true, ValidationStage.load("classpath*:schemas/*.avsc"), false, 4, 8,
+                                    quarantine);
+        List<EventMessage<?>> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            batch.add(event(i == 5 || i == 13 ? null : "payload-" + i));
+        }
+        batch.add(GenericEventMessage.asEventMessage(new TestEvent("loaded-later"))
+                          .andMetaData(MetaData.with(ClaimCheckResolver.REFERENCE, "sha256:abc")));
+
+        // When: The batch runs through the stage in one unit of work, as the processor does
+        List<Object> handled = handle(batch);
+
+        // Then: Only valid events reach the handler, the others are in the quarantine with their reason
+        assertThat(handled).hasSize(19);
+        assertThat(quarantine.size()).isEqualTo(2);
+        List<Map<String, Object>> entries = quarantine.recent(10);
+        assertThat(entries).extracting(entry -> entry.get("reason")).containsOnly("MISSING_FIELD");
+        assertThat(entries).extracting(entry -> entry.get("eventIdentifier"))
+                .containsExactly(batch.get(5).getIdentifier(), batch.get(13).getIdentifier());
+        assertThat(entries.get(0)).containsEntry("detail", "TestEvent.payload");
+        assertThat(stage.describe()).containsEntry("validated", 21L).containsEntry("parallelBatches", 1L);
+    }
+
+    @Test
+    void testPayloadTypesWithoutSchemaAreQuarantinedOnlyWhenRequired() throws Exception {
+        // Given: One stage that lets unknown payload types pass and one that requires a schema
+        QuarantineStore quarantine = quarantine();
+        List<Schema> schemas = ValidationStage.load("classpath*:schemas/*.avsc");
+        List<EventMessage<?>> batch = List.of(GenericEventMessage.asEventMessage("plain string"), event("p"));
+
+        // When
+        stage = new ValidationStage(true, schemas, false, 1, 32, quarantine);
+        List<Object> lenient = handle(batch);
+        stage.close();
+        stage = new ValidationStage(true, schemas, true, 1, 32, quarantine);
+        List<Object> strict = handle(batch);
+
+        // Then
+        assertThat(lenient).hasSize(2);
+        assertThat(strict).hasSize(1);
+        assertThat(quarantine.recent(10)).singleElement()
+                .satisfies(entry -> assertThat(entry).containsEntry("reason", "UNKNOWN_TYPE")
+                        .containsEntry("payloadType", String.class.getName()));
+    }
+
+    private QuarantineStore quarantine() {
+        return new QuarantineStore(directory.resolve("quarantine").toString(), 1024 * 1024, 16 * 1024 * 1024, 1);
+    }
+
+    private List<Object> handle(List<EventMessage<?>> batch) throws Exception {
+        List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+        BatchingUnitOfWork<EventMessage<?>> unitOfWork = new BatchingUnitOfWork<>(batch);
+        unitOfWork.executeWithResult(() -> new DefaultInterceptorChain<>(
+                unitOfWork, Collections.singletonList(stage), message -> {
+                    handled.add(message.getPayload());
+                    return null;
+                }).proceed());
+        return handled;
+    }
+
+    private static EventMessage<?> event(String payload) {
+        return GenericEventMessage.asEventMessage(new TestEvent(payload));
+    }
+
+    static class Order {
+        private final String id;
+        private final Object quantity;
+        private final String status;
+        private final String note;
+
+        Order(String id, Object quantity, String status, String note) {
+            this.id = id;
+            this.quantity = quantity;
+            this.status = status;
+            this.note = note;
+        }
+    }
+}